@@ -0,0 +1,100 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.util.Argon2Registry;
+
+/**
+ * Argon2 hash and verify cost across a grid of variants and cost parameters, both as a raw library call and through the
+ * {@code ArgonHash} / {@code ArgonVerify} BIFs.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class Argon2Benchmark {
+
+	@Param( { "ARGON2i", "ARGON2id" } )
+	public String						variant;
+
+	@Param( { "1", "4", "8" } )
+	public int							iterations;
+
+	@Param( { "8", "1024", "65536" } )
+	public int							memory;
+
+	@Param( { "1", "4" } )
+	public int							parallelism;
+
+	private Argon2						argon2;
+	private String						password;
+	private String						hash;
+	private BenchmarkRuntime			runtime;
+	private BenchmarkRuntime.Invoker	hashBIF;
+	private BenchmarkRuntime.Invoker	verifyBIF;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		argon2		= Argon2Registry.get( Argon2Types.valueOf( variant ) );
+		password	= "benchmark";
+		hash		= argon2.hash( iterations, memory, parallelism, password.toCharArray() );
+		runtime		= new BenchmarkRuntime();
+		hashBIF		= runtime.bif( "ArgonHash" );
+		verifyBIF	= runtime.bif( "ArgonVerify" );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		runtime.shutdown();
+	}
+
+	@Benchmark
+	public String hashRaw() {
+		return argon2.hash( iterations, memory, parallelism, password.toCharArray() );
+	}
+
+	@Benchmark
+	public boolean verifyRaw() {
+		return argon2.verify( hash, password.toCharArray() );
+	}
+
+	@Benchmark
+	public Object hashBIF() {
+		return hashBIF.invoke( password, variant, parallelism, memory, iterations );
+	}
+
+	@Benchmark
+	public Object verifyBIF() {
+		return verifyBIF.invoke( password, hash );
+	}
+
+}
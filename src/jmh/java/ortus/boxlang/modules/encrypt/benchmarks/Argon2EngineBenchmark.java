@@ -0,0 +1,88 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Factory;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.engines.JavaArgon2;
+
+/**
+ * Compares the native libargon2 binding with the pure Java Argon2 engine at login-sized cost parameters, to choose the
+ * {@code engines.argon2} setting per deployment.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class Argon2EngineBenchmark {
+
+	@Param( { "native", "java" } )
+	public String			engine;
+
+	@Param( { "1024", "16384", "65536" } )
+	public int				memory;
+
+	@Param( { "1", "4" } )
+	public int				parallelism;
+
+	@Param( { "3" } )
+	public int				iterations;
+
+	private Argon2			argon2;
+	private ForkJoinPool	pool;
+	private byte[]			password;
+	private String			hash;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		pool		= new ForkJoinPool( parallelism );
+		argon2		= engine.equals( "native" ) ? Argon2Factory.createAdvanced( Argon2Types.ARGON2id ) : new JavaArgon2( Argon2Types.ARGON2id, pool );
+		password	= "benchmark".getBytes();
+		hash		= argon2.hash( iterations, memory, parallelism, password );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public String hash() {
+		return argon2.hash( iterations, memory, parallelism, password );
+	}
+
+	@Benchmark
+	public boolean verify() {
+		return argon2.verify( hash, password );
+	}
+
+}
@@ -0,0 +1,79 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Factory;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.util.Argon2Registry;
+
+/**
+ * Compares creating a new Argon2 wrapper per call, as the BIFs used to, against the shared instances of the {@link Argon2Registry}.
+ * The verify benchmarks use the lowest cost settings so the per-call overhead is not hidden by the KDF itself.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+public class Argon2RegistryBenchmark {
+
+	@Param( { "ARGON2i", "ARGON2id" } )
+	public String	variant;
+
+	private Argon2Types	type;
+	private String		hash;
+	private char[]		password;
+
+	@Setup
+	public void setup() {
+		type		= Argon2Types.valueOf( variant );
+		password	= "benchmark".toCharArray();
+		hash		= Argon2Registry.get( type ).hash( 1, 8, 1, password );
+	}
+
+	@Benchmark
+	public Argon2 createPerCall() {
+		return Argon2Factory.create( type );
+	}
+
+	@Benchmark
+	public Argon2 createFromRegistry() {
+		return Argon2Registry.get( type );
+	}
+
+	@Benchmark
+	public boolean verifyCreatePerCall() {
+		return Argon2Factory.create( type ).verify( hash, password );
+	}
+
+	@Benchmark
+	public boolean verifyFromRegistry() {
+		return Argon2Registry.get( type ).verify( hash, password );
+	}
+
+}
@@ -0,0 +1,86 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * BCrypt hash and verify cost across a grid of log rounds, both as a raw library call and through the {@code BCryptHash} /
+ * {@code BCryptVerify} BIFs.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class BCryptBenchmark {
+
+	@Param( { "5", "8", "10" } )
+	public int							iterations;
+
+	private String						password;
+	private String						hash;
+	private BenchmarkRuntime			runtime;
+	private BenchmarkRuntime.Invoker	hashBIF;
+	private BenchmarkRuntime.Invoker	verifyBIF;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		password	= "benchmark";
+		hash		= BCrypt.hashpw( password, BCrypt.gensalt( iterations ) );
+		runtime		= new BenchmarkRuntime();
+		hashBIF		= runtime.bif( "BCryptHash" );
+		verifyBIF	= runtime.bif( "BCryptVerify" );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		runtime.shutdown();
+	}
+
+	@Benchmark
+	public String hashRaw() {
+		return BCrypt.hashpw( password, BCrypt.gensalt( iterations ) );
+	}
+
+	@Benchmark
+	public boolean verifyRaw() {
+		return BCrypt.checkpw( password, hash );
+	}
+
+	@Benchmark
+	public Object hashBIF() {
+		return hashBIF.invoke( password, iterations );
+	}
+
+	@Benchmark
+	public Object verifyBIF() {
+		return verifyBIF.invoke( password, hash );
+	}
+
+}
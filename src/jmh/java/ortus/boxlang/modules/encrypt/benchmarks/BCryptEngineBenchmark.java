@@ -0,0 +1,69 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.mindrot.jbcrypt.BCrypt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ortus.boxlang.modules.encrypt.util.BCryptCodec;
+
+/**
+ * Compares jBCrypt with the module's BCrypt engine at the same salt and cost, so only the key schedule differs: {@code hashpw} is the
+ * String based jBCrypt entry point and {@code codec} hashes the UTF-8 bytes with {@link BCryptCodec}.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class BCryptEngineBenchmark {
+
+	@Param( { "6", "10", "12" } )
+	public int		iterations;
+
+	private String	password;
+	private byte[]	passwordBytes;
+	private String	salt;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		password		= "benchmark";
+		passwordBytes	= password.getBytes( StandardCharsets.UTF_8 );
+		salt			= BCrypt.gensalt( iterations );
+	}
+
+	@Benchmark
+	public String hashpw() {
+		return BCrypt.hashpw( password, salt );
+	}
+
+	@Benchmark
+	public String codec() {
+		return BCryptCodec.hash( passwordBytes, salt );
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.bifs.BIFDescriptor;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.Key;
+
+/**
+ * Invokes a module BIF the same way compiled BoxLang code does, through the global function registry of the runtime. This includes the
+ * argument scope creation and validation, so comparing it against the raw library call isolates the BIF dispatch overhead.
+ */
+public final class BenchmarkRuntime {
+
+	private final BoxRuntime	runtime;
+	private final IBoxContext	context;
+
+	public BenchmarkRuntime() {
+		this.runtime	= BoxRuntime.getInstance( true );
+		this.context	= new ScriptingRequestBoxContext( runtime.getRuntimeContext() );
+	}
+
+	/**
+	 * Looks up a BIF once so the benchmark loop only pays for the invocation.
+	 *
+	 * @param name The BIF name
+	 *
+	 * @return An invoker for the BIF
+	 */
+	public Invoker bif( String name ) {
+		Key				key			= Key.of( name );
+		BIFDescriptor	descriptor	= runtime.getFunctionService().getGlobalFunction( key );
+		return arguments -> descriptor.invoke( context, arguments, false, key );
+	}
+
+	public void shutdown() {
+		runtime.shutdown();
+	}
+
+	@FunctionalInterface
+	public interface Invoker {
+
+		Object invoke( Object... arguments );
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.lambdaworks.crypto.SCrypt;
+import com.lambdaworks.crypto.SCryptUtil;
+
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+
+/**
+ * SCrypt hash and verify cost across a grid of CPU cost, memory cost and parallelization, both as a raw library call and through the
+ * {@code SCryptHash} / {@code SCryptVerify} BIFs.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class SCryptBenchmark {
+
+	@Param( { "1024", "16384" } )
+	public int							cpuCost;
+
+	@Param( { "8" } )
+	public int							memory;
+
+	@Param( { "1", "2", "4" } )
+	public int							parallelism;
+
+	private byte[]						password;
+	private byte[]						salt;
+	private String						hash;
+	private BenchmarkRuntime			runtime;
+	private BenchmarkRuntime.Invoker	hashBIF;
+	private BenchmarkRuntime.Invoker	verifyBIF;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		password	= "benchmark".getBytes();
+		salt		= new byte[ 8 ];
+		hash		= PasswordHasher.scrypt( password, 8, cpuCost, memory, parallelism, 32 );
+		runtime		= new BenchmarkRuntime();
+		hashBIF		= runtime.bif( "SCryptHash" );
+		verifyBIF	= runtime.bif( "SCryptVerify" );
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		runtime.shutdown();
+	}
+
+	@Benchmark
+	public byte[] hashRaw() throws GeneralSecurityException {
+		return SCrypt.scrypt( password, salt, cpuCost, memory, parallelism, 32 );
+	}
+
+	@Benchmark
+	public boolean verifyRaw() {
+		return SCryptUtil.check( "benchmark", hash );
+	}
+
+	@Benchmark
+	public Object hashBIF() {
+		return hashBIF.invoke( "benchmark", 8, parallelism, 32, memory, cpuCost );
+	}
+
+	@Benchmark
+	public Object verifyBIF() {
+		return verifyBIF.invoke( "benchmark", hash );
+	}
+
+}
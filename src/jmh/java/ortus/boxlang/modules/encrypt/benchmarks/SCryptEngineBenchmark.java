@@ -0,0 +1,97 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.lambdaworks.crypto.SCrypt;
+
+import ortus.boxlang.modules.encrypt.engines.BlockArena;
+import ortus.boxlang.modules.encrypt.engines.JavaSCrypt;
+
+/**
+ * Compares the native libscrypt, the allocating {@code scryptJ} fallback of lambdaworks and the pooled Java SCrypt engine. Run with
+ * {@code -prof gc} to see the ROMix table allocated per call by {@code scryptJ} disappear with the pooled engine. With {@code threads}
+ * above 1 the Java engine mixes the lanes in parallel, so its latency should stay flat as {@code parallelism} grows on a many-core host.
+ * The {@code vector} engine is the Java engine with the Vector API Salsa20/8 core; it falls back to the scalar core, and measures the
+ * same as {@code java}, when the vector core is not available.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+public class SCryptEngineBenchmark {
+
+	@Param( { "native", "scryptJ", "java", "vector" } )
+	public String			engine;
+
+	@Param( { "16384", "131072" } )
+	public int				cpuCost;
+
+	@Param( { "8" } )
+	public int				memory;
+
+	@Param( { "1", "4" } )
+	public int				parallelism;
+
+	@Param( { "1", "4" } )
+	public int				threads;
+
+	private ForkJoinPool	pool;
+	private JavaSCrypt		java;
+	private JavaSCrypt		vector;
+	private byte[]			password;
+	private byte[]			salt;
+
+	@Setup( Level.Trial )
+	public void setup() {
+		pool		= new ForkJoinPool( threads );
+		java		= new JavaSCrypt( BlockArena.scrypt(), pool, threads );
+		vector		= new JavaSCrypt( BlockArena.scrypt(), pool, threads, true );
+		password	= "benchmark".getBytes();
+		salt		= new byte[ 16 ];
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	@Benchmark
+	public byte[] derive() throws GeneralSecurityException {
+		return switch ( engine ) {
+			case "native" -> SCrypt.scryptN( password, salt, cpuCost, memory, parallelism, 32 );
+			case "scryptJ" -> SCrypt.scryptJ( password, salt, cpuCost, memory, parallelism, 32 );
+			case "vector" -> vector.derive( password, salt, cpuCost, memory, parallelism, 32 );
+			default -> java.derive( password, salt, cpuCost, memory, parallelism, 32 );
+		};
+	}
+
+}
@@ -0,0 +1,63 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import ortus.boxlang.modules.encrypt.util.Secrets;
+
+/**
+ * Compares the copies the BIFs used to make of a password with the pooled UTF-8 buffers of {@link Secrets}. Run with {@code -prof gc} to
+ * see the allocation rate per operation.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+public class SecretsBenchmark {
+
+	@Param( { "correct horse battery staple", "pässwörd mit ümläuten" } )
+	public String password;
+
+	@Benchmark
+	public char[] toCharArray() {
+		return password.toCharArray();
+	}
+
+	@Benchmark
+	public byte[] getBytes() {
+		return password.getBytes( StandardCharsets.UTF_8 );
+	}
+
+	@Benchmark
+	public int pooled() {
+		byte[]	bytes	= Secrets.encode( password );
+		int		length	= bytes.length;
+		Secrets.release( bytes );
+		return length;
+	}
+
+}
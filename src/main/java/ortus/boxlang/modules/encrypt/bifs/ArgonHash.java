@@ -20,13 +20,20 @@ package ortus.boxlang.modules.encrypt.bifs;
 
 import java.util.ArrayList;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import de.mkammerer.argon2.Argon2;
-import de.mkammerer.argon2.Argon2Factory;
 import de.mkammerer.argon2.Argon2Factory.Argon2Types;
 import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.Argon2Registry;
+import ortus.boxlang.modules.encrypt.util.CostDefaults;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.Argon2Cost;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.LoadShedder;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.Secrets;
 import ortus.boxlang.runtime.bifs.BIF;
 import ortus.boxlang.runtime.bifs.BoxBIF;
 import ortus.boxlang.runtime.context.IBoxContext;
@@ -55,9 +62,9 @@ public class ArgonHash extends BIF {
 		declaredArguments = new Argument[] {
 		    new Argument( true, "string", Key.input ),
 		    new Argument( false, "string", Key.variant, "ARGON2i" ),
-		    new Argument( false, "integer", EncryptKeys.parallelism, 1, Set.of( Validator.min( 1 ), Validator.max( 10 ) ) ),
-		    new Argument( false, "integer", EncryptKeys.memory, 8, Set.of( Validator.min( 8 ), Validator.max( 100000 ) ) ),
-		    new Argument( false, "integer", EncryptKeys.iterations, 8, Set.of( Validator.min( 1 ), Validator.max( 20 ) ) ),
+		    new Argument( false, "integer", EncryptKeys.parallelism, Set.of( Validator.min( 1 ), Validator.max( 10 ) ) ),
+		    new Argument( false, "integer", EncryptKeys.memory, Set.of( Validator.min( 8 ), Validator.max( PasswordHasher.ARGON2_MAX_MEMORY ) ) ),
+		    new Argument( false, "integer", EncryptKeys.iterations, Set.of( Validator.min( 1 ), Validator.max( 20 ) ) ),
 		};
 	}
 
@@ -71,11 +78,11 @@ public class ArgonHash extends BIF {
 	 *
 	 * @argument.variant The Argon2 variant to use. Defaults to "ARGON2i".
 	 *
-	 * @argument.parallelism The number of threads to use in the hashing algorithm. Must be between 1 and 10.
+	 * @argument.parallelism The number of threads to use in the hashing algorithm. Must be between 1 and 10. Defaults to the module default ( 1 ).
 	 *
-	 * @argument.memory The amount of memory to use in the hashing algorithm. Must be between 8 and 100000.
+	 * @argument.memory The amount of memory to use in the hashing algorithm. Must be between 8 and 1048576 ( 1 GiB ). Defaults to the module default ( 8 ).
 	 *
-	 * @argument.iterations The number of iterations to use in the hashing algorithm. Must be between 1 and 20.
+	 * @argument.iterations The number of iterations to use in the hashing algorithm. Must be between 1 and 20. Defaults to the module default ( 8 ).
 	 */
 	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
 		String	input		= arguments.getAsString( Key.input );
@@ -84,15 +91,29 @@ public class ArgonHash extends BIF {
 			throw new BoxRuntimeException( "Invalid Argon2 variant: [" + arguments.getAsString( Key.variant ) + "]. Valid variants in this runtime are: ["
 			    + ACCEPTED_VARIANTS.stream().map( StringCaster::cast ).collect( Collectors.joining( ", " ) ) + "]" );
 		}
-		Argon2Types	variant	= Argon2Types.valueOf( arguments.getAsString( Key.variant ) );
-		Argon2		argon2	= Argon2Factory.create( variant );
+		Argon2Types	variant		= Argon2Types.valueOf( arguments.getAsString( Key.variant ) );
+		Argon2Cost	defaults	= CostDefaults.argon2();
+		// Under saturation the load shedding policy may lower the cost towards its floor
+		Argon2Cost	cost		= LoadShedder.getInstance().argon2( new Argon2Cost(
+		    arguments.get( EncryptKeys.iterations ) != null ? arguments.getAsInteger( EncryptKeys.iterations ) : defaults.iterations(),
+		    arguments.get( EncryptKeys.memory ) != null ? arguments.getAsInteger( EncryptKeys.memory ) : defaults.memory(),
+		    arguments.get( EncryptKeys.parallelism ) != null ? arguments.getAsInteger( EncryptKeys.parallelism ) : defaults.parallelism()
+		) );
+		String		parameters	= KDFMetrics.argon2( cost.iterations(), cost.memory(), cost.parallelism() );
 
-		return argon2.hash(
-		    arguments.getAsInteger( EncryptKeys.iterations ),
-		    arguments.getAsInteger( EncryptKeys.memory ),
-		    arguments.getAsInteger( EncryptKeys.parallelism ),
-		    input.toCharArray()
-		);
+		return dispatch( KDFMetrics.getInstance().timed( KDFMetrics.HASH, variant.name().toLowerCase(), parameters,
+		    () -> Secrets.withUtf8( input, bytes -> Argon2Registry.hash( variant, cost.iterations(), cost.memory(), cost.parallelism(), bytes ) ) ) );
+	}
+
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
 	}
 
 }
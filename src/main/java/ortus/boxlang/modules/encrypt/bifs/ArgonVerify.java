@@ -18,13 +18,24 @@
  */
 package ortus.boxlang.modules.encrypt.bifs;
 
-import de.mkammerer.argon2.Argon2Factory;
+import java.util.concurrent.Callable;
+
 import de.mkammerer.argon2.Argon2Factory.Argon2Types;
 import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.Argon2Registry;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.HashFormat;
+import ortus.boxlang.modules.encrypt.util.HashParameters;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher.Algorithm;
+import ortus.boxlang.modules.encrypt.util.Secrets;
+import ortus.boxlang.modules.encrypt.util.VerifyCache;
+import ortus.boxlang.modules.encrypt.util.VerifyThrottle;
 import ortus.boxlang.runtime.bifs.BIF;
 import ortus.boxlang.runtime.bifs.BoxBIF;
 import ortus.boxlang.runtime.context.IBoxContext;
-import ortus.boxlang.runtime.dynamic.casters.KeyCaster;
 import ortus.boxlang.runtime.scopes.ArgumentsScope;
 import ortus.boxlang.runtime.scopes.Key;
 import ortus.boxlang.runtime.types.Argument;
@@ -40,11 +51,11 @@ public class ArgonVerify extends BIF {
 	 */
 	public ArgonVerify() {
 		super();
-		// Uncomment and define declare argument to this BIF
 		declaredArguments = new Argument[] {
 		    new Argument( true, "string", Key.input ),
-		    new Argument( true, "string", EncryptKeys.hashed ),
-		    new Argument( false, "string", Key.variant )
+		    new Argument( true, "any", EncryptKeys.hashed ),
+		    new Argument( false, "string", Key.variant ),
+		    new Argument( false, "string", EncryptKeys.principal )
 		};
 	}
 
@@ -56,43 +67,79 @@ public class ArgonVerify extends BIF {
 	 *
 	 * @argument.input The string to verify against the hash.
 	 *
-	 * @argument.hashed The hashed value to verify against.
+	 * @argument.hashed The hashed value to verify against, or a descriptor of it returned by PasswordParse.
 	 *
 	 * @argument.variant The variant of Argon2 to use. If not provided the hashed value will be tested to determine the variant.
+	 *
+	 * @argument.principal The username, IP address or other key the verification is throttled by when the {@code throttle} module setting
+	 *                     is enabled. Once it has too many failed verifications, a {@code PasswordEncrypt.Throttled} exception is thrown
+	 *                     without running the key derivation. Not throttled if omitted.
 	 */
 	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
-		String	input	= arguments.getAsString( Key.input );
-		String	hashed	= arguments.getAsString( EncryptKeys.hashed );
-		String	variant	= arguments.getAsString( Key.variant );
+		String			input		= arguments.getAsString( Key.input );
+		Object			argument	= arguments.get( EncryptKeys.hashed );
+		HashDescriptor	descriptor	= argument instanceof HashDescriptor parsed ? parsed : null;
+		String			hashed		= HashDescriptor.encoded( argument );
+		String			variant		= arguments.getAsString( Key.variant );
+		String			principal	= arguments.getAsString( EncryptKeys.principal );
+		Argon2Types		type;
 		if ( variant == null ) {
-			StringBuilder variantBuilder = new StringBuilder();
-			for ( int i = 0, n = hashed.length(); i < n; i++ ) {
-				char c = hashed.charAt( i );
-				if ( i == 0 && c != '$' ) {
+			HashFormat format = HashFormat.detect( hashed );
+			if ( format == null || format.variant == null ) {
+				if ( hashed.isEmpty() || hashed.charAt( 0 ) != '$' ) {
 					throw new BoxRuntimeException( "The format of passed Argon2 hash string is incorrect" );
 				}
-				if ( i > 0 && c == '$' ) {
-					break;
-				}
-				if ( i > 0 ) {
-					variantBuilder.append( c );
-				}
+				int end = hashed.indexOf( '$', 1 );
+				throw new BoxRuntimeException( "Invalid Argon2 variant: " + hashed.substring( 1, end > 0 ? end : hashed.length() ) );
 			}
-			String	foundVariant	= variantBuilder.toString();
-			int		found			= ArgonHash.ACCEPTED_VARIANTS.indexOf( Key.of( foundVariant ) );
-
-			if ( found != -1 ) {
-				variant = KeyCaster.cast( ArgonHash.ACCEPTED_VARIANTS.get( found ) ).getName();
-			} else {
-				throw new BoxRuntimeException( "Invalid Argon2 variant: " + foundVariant );
+			type = format.variant;
+		} else {
+			int found = ArgonHash.ACCEPTED_VARIANTS.indexOf( Key.of( variant ) );
+			if ( found == -1 ) {
+				throw new BoxRuntimeException( "Invalid Argon2 variant: " + variant );
 			}
+			type = Argon2Types.valueOf( ArgonHash.ACCEPTED_VARIANTS.get( found ).getName() );
+		}
+		if ( descriptor == null ) {
+			HashValidator.getInstance().validate( hashed, Algorithm.ARGON2 );
+		}
 
+		// A hash of another variant never verifies. Checked before the cache, which only knows the hash and the input.
+		HashParameters parameters = descriptor == null ? HashParameters.parse( hashed ) : descriptor.getParameters();
+		if ( parameters.format.variant != type ) {
+			return resolved( false );
 		}
-		if ( variant != null && !ArgonHash.ACCEPTED_VARIANTS.contains( Key.of( variant ) ) ) {
-			throw new BoxRuntimeException( "Invalid Argon2 variant: " + variant );
+
+		VerifyCache cache = VerifyCache.getInstance();
+		if ( cache.contains( hashed, input ) ) {
+			return resolved( true );
 		}
 
-		return Argon2Factory.create( Argon2Types.valueOf( variant ) ).verify( hashed, input.toCharArray() );
+		Callable<Object> verify = VerifyThrottle.getInstance().guard( principal, cache.remember( hashed, input, () -> Secrets.withUtf8( input,
+		    bytes -> descriptor == null ? Argon2Registry.verify( type, hashed, bytes ) : Argon2Registry.verify( descriptor, bytes ) ) ) );
+		return dispatch( KDFMetrics.getInstance().timedVerify( parameters, verify ) );
+	}
+
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
+	}
+
+	/**
+	 * Returns a result which is already known, such as a verify cache hit, without running a key derivation.
+	 *
+	 * @param result The known result
+	 *
+	 * @return The result
+	 */
+	protected Object resolved( Object result ) {
+		return result;
 	}
 
 }
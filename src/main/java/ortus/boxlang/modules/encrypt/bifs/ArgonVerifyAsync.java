@@ -0,0 +1,85 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.runtime.async.BoxFuture;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+
+@BoxBIF
+
+public class ArgonVerifyAsync extends ArgonVerify {
+
+	/**
+	 * Constructor
+	 */
+	public ArgonVerifyAsync() {
+		super();
+	}
+
+	/**
+	 * Asynchronously performs a Argon2 verification on the given string against the hashed value.
+	 * The work runs on the module executor and a BoxLang future is returned which resolves to whether the input matches the hash.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.input The string to verify against the hash.
+	 *
+	 * @argument.hashed The hashed value to verify against, or a descriptor of it returned by PasswordParse.
+	 *
+	 * @argument.variant The variant of Argon2 to use. If not provided the hashed value will be tested to determine the variant.
+	 *
+	 * @argument.principal The username, IP address or other key the verification is throttled by when the {@code throttle} module setting
+	 *                     is enabled. Once it has too many failed verifications, a {@code PasswordEncrypt.Throttled} exception is thrown
+	 *                     without running the key derivation. Not throttled if omitted.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		return super._invoke( context, arguments );
+	}
+
+	/**
+	 * Submits the key derivation to the module executor without waiting for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return A BoxLang future for the result of the key derivation
+	 */
+	@Override
+	protected Object dispatch( Callable<Object> work ) {
+		return BoxFuture.ofCompletableFuture( KDFExecutor.getInstance().submit( work ) );
+	}
+
+	/**
+	 * Returns a result which is already known, such as a verify cache hit, as a completed future.
+	 *
+	 * @param result The known result
+	 *
+	 * @return A completed BoxLang future for the result
+	 */
+	@Override
+	protected Object resolved( Object result ) {
+		return BoxFuture.ofCompletableFuture( CompletableFuture.completedFuture( result ) );
+	}
+
+}
@@ -19,10 +19,15 @@
 package ortus.boxlang.modules.encrypt.bifs;
 
 import java.util.Set;
-
-import org.mindrot.jbcrypt.BCrypt;
+import java.util.concurrent.Callable;
 
 import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.BCryptCodec;
+import ortus.boxlang.modules.encrypt.util.CostDefaults;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.LoadShedder;
+import ortus.boxlang.modules.encrypt.util.Secrets;
 import ortus.boxlang.runtime.bifs.BIF;
 import ortus.boxlang.runtime.bifs.BoxBIF;
 import ortus.boxlang.runtime.context.IBoxContext;
@@ -56,18 +61,27 @@ public class BCryptHash extends BIF {
 	 * @argument.input The string to perform secure hashing upon.
 	 * 
 	 * @argument.iterations The number of iterations to use in the hashing algorithm. Must be a multiple of 2 and between 2 and 30.
-	 *                      Note that a high number of iterations can take _days_ to complete
+	 *                      Note that a high number of iterations can take _days_ to complete. Defaults to the module default ( 10 ).
 	 */
 	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
 		String	string	= arguments.getAsString( Key.input );
-		String	salt;
-		if ( arguments.get( EncryptKeys.iterations ) != null ) {
-			salt = BCrypt.gensalt( arguments.getAsInteger( EncryptKeys.iterations ) );
-		} else {
-			salt = BCrypt.gensalt();
-		}
+		int		rounds	= LoadShedder.getInstance().bcrypt(
+		    arguments.get( EncryptKeys.iterations ) != null ? arguments.getAsInteger( EncryptKeys.iterations ) : CostDefaults.bcrypt().rounds() );
+		String	salt	= BCryptCodec.gensalt( rounds );
+
+		return dispatch( KDFMetrics.getInstance().timed( KDFMetrics.HASH, "bcrypt", KDFMetrics.bcrypt( rounds ),
+		    () -> Secrets.withUtf8( string, bytes -> BCryptCodec.hash( bytes, salt ) ) ) );
+	}
 
-		return BCrypt.hashpw( string, salt );
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
 	}
 
 }
@@ -18,9 +18,20 @@
  */
 package ortus.boxlang.modules.encrypt.bifs;
 
-import org.mindrot.jbcrypt.BCrypt;
+import java.util.concurrent.Callable;
 
 import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.BCryptCodec;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.HashParameters;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher.Algorithm;
+import ortus.boxlang.modules.encrypt.util.Secrets;
+import ortus.boxlang.modules.encrypt.util.VerifyCache;
+import ortus.boxlang.modules.encrypt.util.VerifyThrottle;
 import ortus.boxlang.runtime.bifs.BIF;
 import ortus.boxlang.runtime.bifs.BoxBIF;
 import ortus.boxlang.runtime.context.IBoxContext;
@@ -40,7 +51,8 @@ public class BCryptVerify extends BIF {
 		super();
 		declaredArguments = new Argument[] {
 		    new Argument( true, "string", Key.string ),
-		    new Argument( true, "string", EncryptKeys.hashed )
+		    new Argument( true, "any", EncryptKeys.hashed ),
+		    new Argument( false, "string", EncryptKeys.principal )
 		};
 	}
 
@@ -52,10 +64,54 @@ public class BCryptVerify extends BIF {
 	 *
 	 * @argument.string The plaintext string to verify against the hashed value.
 	 * 
-	 * @argument.hashed The BCrypt hashed value to verify against.
+	 * @argument.hashed The BCrypt hashed value to verify against. The $2$, $2a$, $2b$ and $2y$ revisions are supported. A descriptor
+	 *                  returned by PasswordParse is accepted as well.
+	 *
+	 * @argument.principal The username, IP address or other key the verification is throttled by when the {@code throttle} module setting
+	 *                     is enabled. Once it has too many failed verifications, a {@code PasswordEncrypt.Throttled} exception is thrown
+	 *                     without running the key derivation. Not throttled if omitted.
 	 */
 	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
-		return BCrypt.checkpw( arguments.getAsString( Key.string ), arguments.getAsString( EncryptKeys.hashed ) );
+		String			string		= arguments.getAsString( Key.string );
+		Object			argument	= arguments.get( EncryptKeys.hashed );
+		HashDescriptor	descriptor	= argument instanceof HashDescriptor parsed ? parsed : null;
+		String			hashed		= HashDescriptor.encoded( argument );
+		String			principal	= arguments.getAsString( EncryptKeys.principal );
+		VerifyCache		cache		= VerifyCache.getInstance();
+		if ( descriptor == null ) {
+			HashValidator.getInstance().validate( hashed, Algorithm.BCRYPT );
+		}
+		if ( cache.contains( hashed, string ) ) {
+			return resolved( true );
+		}
+
+		HashParameters		parameters	= descriptor == null ? HashParameters.parse( hashed ) : descriptor.getParameters();
+		Callable<Object>	verify		= VerifyThrottle.getInstance().guard( principal, cache.remember( hashed, string, () -> descriptor == null
+		    ? PasswordHasher.verifyBCrypt( string, hashed )
+		    : Secrets.withUtf8( string, bytes -> BCryptCodec.verify( bytes, descriptor ) ) ) );
+		return dispatch( KDFMetrics.getInstance().timedVerify( parameters, verify ) );
+	}
+
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
+	}
+
+	/**
+	 * Returns a result which is already known, such as a verify cache hit, without running a key derivation.
+	 *
+	 * @param result The known result
+	 *
+	 * @return The result
+	 */
+	protected Object resolved( Object result ) {
+		return result;
 	}
 
 }
@@ -0,0 +1,78 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.Set;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.Calibrator;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.validation.Validator;
+
+@BoxBIF
+
+public class PasswordCalibrate extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordCalibrate() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "string", EncryptKeys.algorithm ),
+		    new Argument( false, "integer", EncryptKeys.targetMillis, 250, Set.of( Validator.min( 1 ) ) ),
+		    new Argument( false, "integer", EncryptKeys.maxMemory, 65536, Set.of( Validator.min( 8 ) ) ),
+		    new Argument( false, "boolean", EncryptKeys.apply, false )
+		};
+	}
+
+	/**
+	 * Measures the given algorithm on this host and returns the cost parameters which come closest to the target latency without
+	 * exceeding it. The parameters stay within the bounds accepted by the matching hash function.
+	 * <p>
+	 * Returns a struct with the {@code algorithm}, the calibrated {@code parameters} ( named like the arguments of the matching hash
+	 * function ) and the measured {@code millis} of a single hash with those parameters.
+	 * <p>
+	 * Calibration runs several full hashes, so call it at startup or from an admin task rather than on a request path.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.algorithm The algorithm to calibrate: argon2, argon2i, argon2d, argon2id, bcrypt or scrypt.
+	 *
+	 * @argument.targetMillis The target latency of a single hash in milliseconds. Defaults to 250.
+	 *
+	 * @argument.maxMemory The maximum memory a single hash may use, in KiB. Applies to Argon2 and SCrypt. Defaults to 65536 ( 64 MiB ).
+	 *
+	 * @argument.apply If true, the calibrated parameters become the module defaults used when a hash function is called without them.
+	 *                 Defaults to false.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		return Calibrator.calibrate(
+		    arguments.getAsString( EncryptKeys.algorithm ),
+		    arguments.getAsInteger( EncryptKeys.targetMillis ),
+		    arguments.getAsInteger( EncryptKeys.maxMemory ),
+		    arguments.getAsBoolean( EncryptKeys.apply )
+		);
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+
+@BoxBIF
+
+public class PasswordEncryptStats extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordEncryptStats() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( false, "boolean", EncryptKeys.reset, false )
+		};
+	}
+
+	/**
+	 * Returns the metrics collected by the hash and verify functions since the module was loaded or the metrics were last reset.
+	 * <p>
+	 * The {@code operations} array holds one entry per operation, algorithm and parameter set with its {@code calls}, {@code errors},
+	 * {@code rejections} ( verifications which did not match ) and latency percentiles in milliseconds. The {@code executor} struct holds
+	 * the concurrency limit, the active and queued derivations, the number of {@code busy} rejections and the time spent waiting for a
+	 * permit. The {@code loadShedding} struct tells whether the executor is {@code saturated} and how many hashes were {@code degraded} to
+	 * the floor parameters and how many calls were {@code shed} early. The {@code throttle} struct holds the number of tracked
+	 * {@code principals} and of {@code throttled} verifications. The {@code verifyCache} struct holds the {@code size}, {@code hits} and
+	 * {@code misses} of the verify cache, and the {@code salts} struct the number of salts taken from and missed by the salt pool. The
+	 * {@code memoryBudget} struct holds the budget, the bytes admitted, the number of waiting derivations and of {@code busy} rejections. The
+	 * {@code arenas} struct holds the hits, misses and retained bytes of the Java engine memory pools, and for the off-heap Argon2 pool
+	 * also the bytes in use, the budget and the number of waiting hashes.
+	 * <p>
+	 * The same figures are published as JMX MXBeans in the {@code ortus.boxlang.modules.encrypt} domain unless disabled in the module
+	 * settings.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.reset If true, the operation counters and the latency histograms are cleared after the snapshot is taken. Defaults to false.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		KDFMetrics	metrics		= KDFMetrics.getInstance();
+		IStruct		snapshot	= metrics.snapshot();
+		if ( arguments.getAsBoolean( EncryptKeys.reset ) ) {
+			metrics.reset();
+		}
+		return snapshot;
+	}
+
+}
@@ -0,0 +1,84 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+@BoxBIF
+
+public class PasswordHash extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordHash() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "string", Key.input ),
+		    new Argument( false, "string", EncryptKeys.algorithm, "bcrypt" ),
+		    new Argument( false, "struct", EncryptKeys.options )
+		};
+	}
+
+	/**
+	 * Hashes a string with the given algorithm. The resulting hash is self-describing, so it can be checked with PasswordVerify without
+	 * knowing which algorithm produced it.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.input The string to hash.
+	 *
+	 * @argument.algorithm The algorithm to use: argon2, argon2i, argon2d, argon2id, bcrypt or scrypt. Defaults to "bcrypt".
+	 *
+	 * @argument.options A struct of cost parameters, using the same names as the arguments of the matching hash function
+	 *                   ( e.g. iterations, memory, parallelism, cpuCost ).
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		String				input	= arguments.getAsString( Key.input );
+		IStruct				options	= arguments.get( EncryptKeys.options ) == null ? new Struct() : arguments.getAsStruct( EncryptKeys.options );
+		PasswordHasher		hasher	= new PasswordHasher( arguments.getAsString( EncryptKeys.algorithm ), options );
+		Callable<String>	hash	= hasher.timedHash( input );
+
+		return dispatch( hash::call );
+	}
+
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
+	}
+
+}
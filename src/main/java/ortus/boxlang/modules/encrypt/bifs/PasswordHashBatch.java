@@ -0,0 +1,82 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.BatchTask;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+@BoxBIF
+
+public class PasswordHashBatch extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordHashBatch() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "array", EncryptKeys.array ),
+		    new Argument( false, "string", EncryptKeys.algorithm, "bcrypt" ),
+		    new Argument( false, "struct", EncryptKeys.options )
+		};
+	}
+
+	/**
+	 * Hashes every string in the given array with the same algorithm and options. The work is spread across the available cores and the
+	 * results are returned in the order of the input array.
+	 * <p>
+	 * Each result is a struct containing {@code success: true} and the {@code hashed} value, or {@code success: false} and the
+	 * {@code error} message when that item could not be hashed. A failing item does not abort the rest of the batch.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.array The array of strings to hash.
+	 *
+	 * @argument.algorithm The algorithm to use: argon2, argon2i, argon2d, argon2id, bcrypt or scrypt. Defaults to "bcrypt".
+	 *
+	 * @argument.options A struct of cost parameters, using the same names as the arguments of the matching hash function
+	 *                   ( e.g. iterations, memory, parallelism, cpuCost ).
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		IStruct			options	= arguments.get( EncryptKeys.options ) == null ? new Struct() : arguments.getAsStruct( EncryptKeys.options );
+		// Resolve the algorithm and validate the options once for the whole batch
+		PasswordHasher	hasher	= new PasswordHasher( arguments.getAsString( EncryptKeys.algorithm ), options );
+
+		return Array.of( BatchTask.run(
+		    arguments.getAsArray( EncryptKeys.array ),
+		    item -> {
+			    Callable<String> hash = hasher.timedHash( StringCaster.cast( item ) );
+			    return () -> Struct.of( EncryptKeys.success, true, EncryptKeys.hashed, hash.call() );
+		    }
+		) );
+	}
+
+}
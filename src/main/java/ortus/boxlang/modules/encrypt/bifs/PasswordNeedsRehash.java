@@ -0,0 +1,71 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+@BoxBIF
+
+public class PasswordNeedsRehash extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordNeedsRehash() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", EncryptKeys.hashed ),
+		    new Argument( false, "struct", EncryptKeys.policy )
+		};
+	}
+
+	/**
+	 * Checks whether a hash was created with weaker settings than the given policy. The cost parameters are read from the hash itself, so
+	 * no key derivation is performed and the check is cheap enough to run on every login.
+	 * <p>
+	 * A hash needs a rehash when it was created by another algorithm or Argon2 variant than the policy asks for, or when any of its cost
+	 * parameters is lower than the policy. Hashes created with stronger parameters are left alone.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.hashed The hash to check, or a descriptor of it returned by PasswordParse.
+	 *
+	 * @argument.policy A struct with the target {@code algorithm} ( argon2, argon2i, argon2d, argon2id, bcrypt or scrypt ) and its cost
+	 *                  options, using the same names as the arguments of the matching hash function. Without an algorithm, the algorithm
+	 *                  of the hash is kept. Options which are not passed fall back to the module defaults.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		Object			argument	= arguments.get( EncryptKeys.hashed );
+		String			hashed		= HashDescriptor.encoded( argument );
+		IStruct			policy		= arguments.get( EncryptKeys.policy ) == null ? new Struct() : arguments.getAsStruct( EncryptKeys.policy );
+		PasswordHasher	hasher		= PasswordHasher.forPolicy( policy, hashed );
+
+		return argument instanceof HashDescriptor descriptor ? hasher.needsRehash( descriptor ) : hasher.needsRehash( hashed );
+	}
+
+}
@@ -0,0 +1,60 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+
+@BoxBIF
+
+public class PasswordParse extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordParse() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "string", EncryptKeys.hashed )
+		};
+	}
+
+	/**
+	 * Parses a hash once into an immutable descriptor of its algorithm, cost parameters, salt and expected key. The descriptor can be
+	 * kept in a cache or an application scope and passed to any of the verify functions in place of the hash, which then skip splitting
+	 * and decoding the hash on every call. No key derivation is performed.
+	 * <p>
+	 * The descriptor exposes {@code getAlgorithm()}, {@code getFormat()}, {@code getParameters()}, {@code getSalt()}, {@code getKey()}
+	 * and {@code getEncoded()}, which returns the original hash.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.hashed The hash to parse. Any format supported by PasswordVerify is accepted. A malformed hash throws instead of
+	 *                  failing every later verification.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		return HashDescriptor.parse( arguments.getAsString( EncryptKeys.hashed ) );
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.nio.file.Path;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.RehashStream;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+@BoxBIF
+
+public class PasswordRehashStream extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordRehashStream() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "any", EncryptKeys.source ),
+		    new Argument( true, "string", EncryptKeys.destination ),
+		    new Argument( false, "string", EncryptKeys.algorithm, "bcrypt" ),
+		    new Argument( false, "struct", EncryptKeys.options ),
+		    new Argument( false, "string", EncryptKeys.idColumn, "id" ),
+		    new Argument( false, "string", EncryptKeys.valueColumn, "hash" ),
+		    new Argument( false, "string", EncryptKeys.checkpoint ),
+		    new Argument( false, "integer", EncryptKeys.chunkSize, RehashStream.DEFAULT_CHUNK_SIZE ),
+		    new Argument( false, "integer", EncryptKeys.concurrency, 0 )
+		};
+	}
+
+	/**
+	 * Hashes the value of every record of a file, query or JDBC result set with the same algorithm and options, writing the results to a
+	 * file. Use it to migrate a table of legacy hashes, such as MD5 or SHA-1 digests which are then verified by hashing the digest of the
+	 * password, or low-cost BCrypt hashes, in one pass.
+	 * <p>
+	 * The records are read, hashed across the available cores and written in chunks, so memory stays flat whatever the size of the input.
+	 * The progress is checkpointed after every chunk: when a run is interrupted, calling the function again with the same arguments resumes
+	 * after the last completed chunk. The checkpoint is deleted once every record has been written.
+	 * <p>
+	 * Each result is written with the identifier of its record and either its {@code hashed} value or the {@code error} that prevented it
+	 * from being hashed. Returns a struct with the number of {@code records} read, of {@code resumed} records skipped from an earlier run,
+	 * of records {@code processed} and {@code failed} by this run and the duration in {@code millis}.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.source The absolute path of a CSV file with a header row or of an NDJSON file with one flat object per line, a query, or a
+	 *                  JDBC result set, which is read forward only and left open.
+	 *
+	 * @argument.destination The absolute path of the file to write the results to, as CSV when it ends with .csv and as NDJSON otherwise.
+	 *
+	 * @argument.algorithm The algorithm to use: argon2, argon2i, argon2d, argon2id, bcrypt or scrypt. Defaults to "bcrypt".
+	 *
+	 * @argument.options A struct of cost parameters, using the same names as the arguments of the matching hash function
+	 *                   ( e.g. iterations, memory, parallelism, cpuCost ).
+	 *
+	 * @argument.idColumn The column or field identifying each record, copied to the results. Defaults to "id".
+	 *
+	 * @argument.valueColumn The column or field holding the value to hash. Defaults to "hash".
+	 *
+	 * @argument.checkpoint The absolute path of the checkpoint file. Defaults to the destination path followed by ".checkpoint".
+	 *
+	 * @argument.chunkSize The number of records hashed between two checkpoints, which bounds the memory used. Defaults to 1000.
+	 *
+	 * @argument.concurrency The maximum number of records hashed at once, to leave cores free for logins during a migration. Defaults to
+	 *                       the concurrency limit of the module executor.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		IStruct			options		= arguments.get( EncryptKeys.options ) == null ? new Struct() : arguments.getAsStruct( EncryptKeys.options );
+		PasswordHasher	hasher		= new PasswordHasher( arguments.getAsString( EncryptKeys.algorithm ), options );
+		Object			source		= arguments.get( EncryptKeys.source );
+		Path			destination	= Path.of( arguments.getAsString( EncryptKeys.destination ) );
+		String			checkpoint	= arguments.getAsString( EncryptKeys.checkpoint );
+
+		return new RehashStream(
+		    hasher,
+		    arguments.getAsString( EncryptKeys.idColumn ),
+		    arguments.getAsString( EncryptKeys.valueColumn ),
+		    arguments.getAsInteger( EncryptKeys.chunkSize ),
+		    arguments.getAsInteger( EncryptKeys.concurrency )
+		).run(
+		    source instanceof String path ? Path.of( path ) : source,
+		    destination,
+		    checkpoint == null ? Path.of( destination + ".checkpoint" ) : Path.of( checkpoint )
+		);
+	}
+
+}
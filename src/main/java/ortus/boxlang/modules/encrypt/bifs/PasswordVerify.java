@@ -0,0 +1,102 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.HashParameters;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.Secrets;
+import ortus.boxlang.modules.encrypt.util.VerifyCache;
+import ortus.boxlang.modules.encrypt.util.VerifyThrottle;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+
+@BoxBIF
+
+public class PasswordVerify extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordVerify() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "string", Key.input ),
+		    new Argument( true, "any", EncryptKeys.hashed ),
+		    new Argument( false, "string", EncryptKeys.principal )
+		};
+	}
+
+	/**
+	 * Verifies a plaintext string against an Argon2, BCrypt or SCrypt hash. The algorithm and its parameters are read from the prefix of
+	 * the hash, so hashes produced by different algorithms can be verified through the same call.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.input The plaintext string to verify against the hashed value.
+	 *
+	 * @argument.hashed The hashed value to verify against. Supported formats are $argon2i$, $argon2d$, $argon2id$, $2$, $2a$, $2b$, $2y$ and
+	 *                  $s0$, as well as SCrypt hashes stored without their version prefix, or a descriptor returned by PasswordParse.
+	 *
+	 * @argument.principal The username, IP address or other key the verification is throttled by when the {@code throttle} module setting
+	 *                     is enabled. Once it has too many failed verifications, a {@code PasswordEncrypt.Throttled} exception is thrown
+	 *                     without running the key derivation. Not throttled if omitted.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		String			input		= arguments.getAsString( Key.input );
+		Object			argument	= arguments.get( EncryptKeys.hashed );
+		HashDescriptor	descriptor	= argument instanceof HashDescriptor parsed ? parsed : null;
+		String			hashed		= HashDescriptor.encoded( argument );
+		String			principal	= arguments.getAsString( EncryptKeys.principal );
+		VerifyCache		cache		= VerifyCache.getInstance();
+		if ( descriptor == null ) {
+			HashValidator.getInstance().validate( hashed );
+		}
+		if ( cache.contains( hashed, input ) ) {
+			return true;
+		}
+
+		HashParameters		parameters	= descriptor == null ? HashParameters.parse( hashed ) : descriptor.getParameters();
+		Callable<Object>	verify		= VerifyThrottle.getInstance().guard( principal, cache.remember( hashed, input, () -> Secrets.withUtf8( input,
+		    bytes -> descriptor == null ? PasswordHasher.matches( bytes, hashed ) : PasswordHasher.matches( bytes, descriptor ) ) ) );
+		return dispatch( KDFMetrics.getInstance().timedVerify( parameters, verify ) );
+	}
+
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
+	}
+
+}
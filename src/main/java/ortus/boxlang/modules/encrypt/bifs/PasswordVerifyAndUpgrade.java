@@ -0,0 +1,133 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.HashParameters;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.LoadShedder;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.Secrets;
+import ortus.boxlang.modules.encrypt.util.VerifyCache;
+import ortus.boxlang.modules.encrypt.util.VerifyThrottle;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+@BoxBIF
+
+public class PasswordVerifyAndUpgrade extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordVerifyAndUpgrade() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "string", Key.input ),
+		    new Argument( true, "any", EncryptKeys.hashed ),
+		    new Argument( false, "struct", EncryptKeys.policy ),
+		    new Argument( false, "string", EncryptKeys.principal )
+		};
+	}
+
+	/**
+	 * Verifies a plaintext string against a hash and, when it matches and the hash is weaker than the policy, hashes the plaintext again
+	 * with the policy. This moves stored hashes to stronger settings one login at a time, while the plaintext is at hand.
+	 * <p>
+	 * Returns a struct containing {@code valid}, {@code upgraded} and {@code hashed}. When {@code upgraded} is true, {@code hashed} is the
+	 * new hash which should replace the stored one; otherwise it is the passed hash.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.input The plaintext string to verify against the hashed value.
+	 *
+	 * @argument.hashed The stored hash. Any format supported by PasswordVerify is accepted, as is a descriptor returned by
+	 *                  PasswordParse.
+	 *
+	 * @argument.policy A struct with the target {@code algorithm} and its cost options, as accepted by PasswordNeedsRehash.
+	 *
+	 * @argument.principal The username, IP address or other key the verification is throttled by when the {@code throttle} module setting
+	 *                     is enabled. Once it has too many failed verifications, a {@code PasswordEncrypt.Throttled} exception is thrown
+	 *                     without running the key derivation. Not throttled if omitted.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		String			input		= arguments.getAsString( Key.input );
+		Object			argument	= arguments.get( EncryptKeys.hashed );
+		HashDescriptor	descriptor	= argument instanceof HashDescriptor parsed ? parsed : null;
+		String			hashed		= HashDescriptor.encoded( argument );
+		if ( descriptor == null ) {
+			HashValidator.getInstance().validate( hashed );
+		}
+		IStruct				policy		= arguments.get( EncryptKeys.policy ) == null ? new Struct() : arguments.getAsStruct( EncryptKeys.policy );
+		PasswordHasher		hasher		= PasswordHasher.forPolicy( policy, hashed );
+		String				principal	= arguments.getAsString( EncryptKeys.principal );
+		VerifyThrottle		throttle	= VerifyThrottle.getInstance();
+		VerifyCache			cache		= VerifyCache.getInstance();
+		boolean				cached		= cache.contains( hashed, input );
+		long				attempt		= cached ? VerifyThrottle.UNTRACKED : throttle.acquire( principal );
+		HashParameters		parameters	= descriptor == null ? HashParameters.parse( hashed ) : descriptor.getParameters();
+		Callable<Boolean>	verify		= cached ? null : KDFMetrics.getInstance().timedVerify( parameters, () -> Secrets.withUtf8( input,
+		    bytes -> descriptor == null ? PasswordHasher.matches( bytes, hashed ) : PasswordHasher.matches( bytes, descriptor ) ) );
+
+		return dispatch( () -> {
+			boolean	valid		= cached || verify.call();
+			if ( valid ) {
+				throttle.succeeded( principal, attempt );
+			}
+			// Upgrades are deferred while the executor sheds load, the hash is still flagged on the next login
+			boolean	upgraded	= valid && ( descriptor == null ? hasher.needsRehash( hashed ) : hasher.needsRehash( descriptor ) )
+			    && !LoadShedder.getInstance().isSaturated();
+			String	result		= upgraded ? hasher.hash( input ) : hashed;
+			if ( upgraded ) {
+				cache.invalidate( hashed );
+			}
+			if ( valid ) {
+				cache.put( result, input );
+			}
+			return Struct.of(
+			    EncryptKeys.valid, valid,
+			    EncryptKeys.upgraded, upgraded,
+			    EncryptKeys.hashed, result
+			);
+		} );
+	}
+
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
+	}
+
+}
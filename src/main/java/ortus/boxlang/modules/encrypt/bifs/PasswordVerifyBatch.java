@@ -0,0 +1,95 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.BatchTask;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.HashParameters;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.Secrets;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.dynamic.casters.StructCaster;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Argument;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+@BoxBIF
+
+public class PasswordVerifyBatch extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordVerifyBatch() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( true, "array", EncryptKeys.array )
+		};
+	}
+
+	/**
+	 * Verifies every item of the given array against its hash. The algorithm of each item is detected from its hash, so Argon2, BCrypt
+	 * and SCrypt hashes can be mixed in the same batch. The work is spread across the available cores and the results are returned in
+	 * the order of the input array.
+	 * <p>
+	 * Each result is a struct containing {@code success: true} and whether the input is {@code valid}, or {@code success: false} and the
+	 * {@code error} message when that item could not be verified. A failing item does not abort the rest of the batch.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.array An array of structs, each containing the plaintext {@code input} and the {@code hashed} value to verify against,
+	 *                 which may be a descriptor returned by PasswordParse.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		return Array.of( BatchTask.run(
+		    arguments.getAsArray( EncryptKeys.array ),
+		    item -> {
+			    IStruct	pair	= StructCaster.cast( item );
+			    String	input	= pair.getAsString( Key.input );
+			    Object	hashed	= pair.get( EncryptKeys.hashed );
+			    if ( input == null || hashed == null ) {
+				    throw new BoxRuntimeException( "Each item must be a struct containing the keys [input] and [hashed]" );
+			    }
+			    HashDescriptor		descriptor	= hashed instanceof HashDescriptor parsed ? parsed : null;
+			    String				encoded		= descriptor == null ? validated( HashDescriptor.encoded( hashed ) ) : null;
+			    HashParameters		parameters	= descriptor == null ? HashParameters.parse( encoded ) : descriptor.getParameters();
+			    Callable<Boolean>	verify		= KDFMetrics.getInstance().timedVerify( parameters, () -> Secrets.withUtf8( input,
+			        bytes -> descriptor == null ? PasswordHasher.matches( bytes, encoded ) : PasswordHasher.matches( bytes, descriptor ) ) );
+			    return () -> Struct.of( EncryptKeys.success, true, EncryptKeys.valid, verify.call() );
+		    }
+		) );
+	}
+
+	private static String validated( String hashed ) {
+		HashValidator.getInstance().validate( hashed );
+		return hashed;
+	}
+
+}
@@ -0,0 +1,64 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.VerifyCache;
+import ortus.boxlang.runtime.bifs.BIF;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.types.Argument;
+
+@BoxBIF
+
+public class PasswordVerifyCacheInvalidate extends BIF {
+
+	/**
+	 * Constructor
+	 */
+	public PasswordVerifyCacheInvalidate() {
+		super();
+		declaredArguments = new Argument[] {
+		    new Argument( false, "any", EncryptKeys.hashed )
+		};
+	}
+
+	/**
+	 * Removes a hash from the verify cache, so the next verification against it runs the key derivation again. Call it when a password is
+	 * changed or an account is locked, before the cache entry would expire on its own. Without a hash, the whole cache is cleared.
+	 * <p>
+	 * Returns true if an entry was removed, or true when the whole cache was cleared.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.hashed The stored hash, or a descriptor of it, to remove from the cache. If omitted, all entries are removed.
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		String		hashed	= HashDescriptor.encoded( arguments.get( EncryptKeys.hashed ) );
+		VerifyCache	cache	= VerifyCache.getInstance();
+		if ( hashed == null ) {
+			cache.clear();
+			return true;
+		}
+		return cache.invalidate( hashed );
+	}
+
+}
@@ -18,21 +18,24 @@
  */
 package ortus.boxlang.modules.encrypt.bifs;
 
-import java.security.GeneralSecurityException;
-import java.security.SecureRandom;
 import java.util.Set;
-
-import com.lambdaworks.codec.Base64;
-import com.lambdaworks.crypto.SCrypt;
+import java.util.concurrent.Callable;
 
 import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.CostDefaults;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.SCryptCost;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.LoadShedder;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.Secrets;
 import ortus.boxlang.runtime.bifs.BIF;
 import ortus.boxlang.runtime.bifs.BoxBIF;
 import ortus.boxlang.runtime.context.IBoxContext;
 import ortus.boxlang.runtime.scopes.ArgumentsScope;
 import ortus.boxlang.runtime.scopes.Key;
 import ortus.boxlang.runtime.types.Argument;
-import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
 import ortus.boxlang.runtime.validation.Validator;
 
 @BoxBIF
@@ -48,15 +51,15 @@ public class SCryptHash extends BIF {
 		declaredArguments = new Argument[] {
 		    new Argument( true, "string", Key.input ),
 		    new Argument( false, "integer", EncryptKeys.saltLength, 8, Set.of( Validator.min( 8 ) ) ),
-		    new Argument( false, "integer", EncryptKeys.parallelism, 1, Set.of( Validator.min( 1 ), Validator.max( 10 ) ) ),
+		    new Argument( false, "integer", EncryptKeys.parallelism, Set.of( Validator.min( 1 ), Validator.max( 10 ) ) ),
 		    new Argument( false, "integer", EncryptKeys.keySize, 32, Set.of( Validator.min( 32 ) ) ),
-		    new Argument( false, "integer", EncryptKeys.memory, 8, Set.of( Validator.min( 2 ) ) ),
-		    new Argument( false, "integer", EncryptKeys.cpuCost, 16384, Set.of( Validator.min( 2 ) ) ),
+		    new Argument( false, "integer", EncryptKeys.memory, Set.of( Validator.min( 2 ) ) ),
+		    new Argument( false, "integer", EncryptKeys.cpuCost, Set.of( Validator.min( 2 ) ) ),
 		};
 	}
 
 	/**
-	 * Returns a secure input hash of the given string using the Argon2 hashing algorithm.
+	 * Returns a secure input hash of the given string using the SCrypt hashing algorithm.
 	 *
 	 * @param context   The context in which the BIF is being invoked.
 	 * @param arguments Argument scope for the BIF.
@@ -65,64 +68,44 @@ public class SCryptHash extends BIF {
 	 * 
 	 * @argument.saltLength The length of the salt to use in the hashing algorithm. Must be greated than 8.
 	 * 
-	 * @argument.parallelism The number of threads to use in the hashing algorithm. Must be between 1 and 10.
+	 * @argument.parallelism The number of threads to use in the hashing algorithm. Must be between 1 and 10. Defaults to the module default ( 1 ).
 	 * 
 	 * @argument.keySize The size of the key to use in the hashing algorithm. Must be greater than 32.
 	 * 
-	 * @argument.memory The amount of memory to use in the hashing algorithm. Must be between 8 and 100000.
+	 * @argument.memory The block size ( r ) of the hashing algorithm. Must be at least 2. The hash works in 128 * memory * cpuCost *
+	 *                  parallelism bytes, which may not exceed the verifyLimits.maxMemoryMiB module setting. Defaults to the module default ( 8 ).
 	 * 
-	 * @argument.cpuCost The CPU cost to use in the hashing algorithm. Must be greater than 2 and be a power off 2
+	 * @argument.cpuCost The CPU cost to use in the hashing algorithm. Must be greater than 2 and be a power off 2. Defaults to the module default ( 16384 ).
 	 */
 	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		String		input		= arguments.getAsString( Key.input );
+		int			saltLength	= arguments.getAsInteger( EncryptKeys.saltLength );
+		SCryptCost	defaults	= CostDefaults.scrypt();
+		SCryptCost	requested	= new SCryptCost(
+		    arguments.get( EncryptKeys.cpuCost ) != null ? arguments.getAsInteger( EncryptKeys.cpuCost ) : defaults.cpuCost(),
+		    arguments.get( EncryptKeys.memory ) != null ? arguments.getAsInteger( EncryptKeys.memory ) : defaults.memory(),
+		    arguments.get( EncryptKeys.parallelism ) != null ? arguments.getAsInteger( EncryptKeys.parallelism ) : defaults.parallelism()
+		);
+		// A hash the verify functions would refuse is rejected whether or not the load shedding policy lowers its cost
+		HashValidator.getInstance().checkSCrypt( requested.cpuCost(), requested.memory(), requested.parallelism() );
+		// Under saturation the load shedding policy may lower the cost towards its floor
+		SCryptCost	cost		= LoadShedder.getInstance().scrypt( requested );
+		int			keySize		= arguments.getAsInteger( EncryptKeys.keySize );
 
-		try {
-			byte[] salt = new byte[ arguments.getAsInteger( EncryptKeys.saltLength ) ];
-			SecureRandom.getInstance( "SHA1PRNG" ).nextBytes( salt );
-
-			byte[]			result		= SCrypt.scrypt(
-			    arguments.getAsString( Key.input ).getBytes(),
-			    salt,
-			    arguments.getAsInteger( EncryptKeys.cpuCost ),
-			    arguments.getAsInteger( EncryptKeys.memory ),
-			    arguments.getAsInteger( EncryptKeys.parallelism ),
-			    arguments.getAsInteger( EncryptKeys.keySize )
-			);
-
-			// The ScryptUtil class in the lambdaworks-crypto library does not allow for the key length argument so we have to manually build the response from
-			// our raw byte array
-
-			StringBuilder	response	= new StringBuilder( ( arguments.getAsInteger( EncryptKeys.saltLength ) + result.length ) * 2 );
-			String			params		= Long.toString( log2( arguments.getAsInteger( EncryptKeys.cpuCost ) ) << 16L
-			    | arguments.getAsInteger( EncryptKeys.memory ) << 8 | arguments.getAsInteger( EncryptKeys.parallelism ), 16 );
-			response.append( "$s0$" ).append( params ).append( '$' );
-			response.append( Base64.encode( salt ) ).append( '$' );
-			response.append( Base64.encode( result ) );
-
-			return response.toString();
-		} catch ( GeneralSecurityException e ) {
-			throw new BoxRuntimeException( "An exception occurred while performing the function SCryptHash: " + e.getMessage(), e );
-		}
+		return dispatch( KDFMetrics.getInstance().timed( KDFMetrics.HASH, "scrypt", KDFMetrics.scrypt( cost.cpuCost(), cost.memory(), cost.parallelism() ),
+		    () -> Secrets.withUtf8( input,
+		        bytes -> PasswordHasher.scrypt( bytes, saltLength, cost.cpuCost(), cost.memory(), cost.parallelism(), keySize ) ) ) );
 	}
 
-	private static int log2( int n ) {
-		int log = 0;
-		if ( ( n & 0xffff0000 ) != 0 ) {
-			n	>>>= 16;
-			log	= 16;
-		}
-		if ( n >= 256 ) {
-			n	>>>= 8;
-			log	+= 8;
-		}
-		if ( n >= 16 ) {
-			n	>>>= 4;
-			log	+= 4;
-		}
-		if ( n >= 4 ) {
-			n	>>>= 2;
-			log	+= 2;
-		}
-		return log + ( n >>> 1 );
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
 	}
 
 }
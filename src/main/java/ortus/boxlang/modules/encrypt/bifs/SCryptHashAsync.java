@@ -0,0 +1,75 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.runtime.async.BoxFuture;
+import ortus.boxlang.runtime.bifs.BoxBIF;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+
+@BoxBIF
+
+public class SCryptHashAsync extends SCryptHash {
+
+	/**
+	 * Constructor
+	 */
+	public SCryptHashAsync() {
+		super();
+	}
+
+	/**
+	 * Asynchronously returns a secure input hash of the given string using the SCrypt hashing algorithm.
+	 * The work runs on the module executor and a BoxLang future is returned which resolves to the hashed value.
+	 *
+	 * @param context   The context in which the BIF is being invoked.
+	 * @param arguments Argument scope for the BIF.
+	 *
+	 * @argument.input The string to perform secure hashing upon.
+	 *
+	 * @argument.saltLength The length of the salt to use in the hashing algorithm. Must be greated than 8.
+	 *
+	 * @argument.parallelism The number of threads to use in the hashing algorithm. Must be between 1 and 10.
+	 *
+	 * @argument.keySize The size of the key to use in the hashing algorithm. Must be greater than 32.
+	 *
+	 * @argument.memory The block size ( r ) of the hashing algorithm. Must be at least 2. The hash works in 128 * memory * cpuCost *
+	 *                  parallelism bytes, which may not exceed the verifyLimits.maxMemoryMiB module setting.
+	 *
+	 * @argument.cpuCost The CPU cost to use in the hashing algorithm. Must be greater than 2 and be a power off 2
+	 */
+	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		return super._invoke( context, arguments );
+	}
+
+	/**
+	 * Submits the key derivation to the module executor without waiting for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return A BoxLang future for the result of the key derivation
+	 */
+	@Override
+	protected Object dispatch( Callable<Object> work ) {
+		return BoxFuture.ofCompletableFuture( KDFExecutor.getInstance().submit( work ) );
+	}
+
+}
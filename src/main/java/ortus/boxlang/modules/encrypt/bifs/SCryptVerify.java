@@ -18,9 +18,19 @@
  */
 package ortus.boxlang.modules.encrypt.bifs;
 
-import com.lambdaworks.crypto.SCryptUtil;
+import java.util.concurrent.Callable;
 
 import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.HashDescriptor;
+import ortus.boxlang.modules.encrypt.util.HashParameters;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.modules.encrypt.util.KDFMetrics;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher.Algorithm;
+import ortus.boxlang.modules.encrypt.util.Secrets;
+import ortus.boxlang.modules.encrypt.util.VerifyCache;
+import ortus.boxlang.modules.encrypt.util.VerifyThrottle;
 import ortus.boxlang.runtime.bifs.BIF;
 import ortus.boxlang.runtime.bifs.BoxBIF;
 import ortus.boxlang.runtime.context.IBoxContext;
@@ -39,7 +49,8 @@ public class SCryptVerify extends BIF {
 		super();
 		declaredArguments = new Argument[] {
 		    new Argument( true, "string", Key.string ),
-		    new Argument( true, "string", EncryptKeys.hashed )
+		    new Argument( true, "any", EncryptKeys.hashed ),
+		    new Argument( false, "string", EncryptKeys.principal )
 		};
 	}
 
@@ -51,19 +62,53 @@ public class SCryptVerify extends BIF {
 	 *
 	 * @argument.string The plaintext string to verify against the hashed value.
 	 *
-	 * @argument.hashed The SCrypt hashed value to verify against.
+	 * @argument.hashed The SCrypt hashed value to verify against, or a descriptor of it returned by PasswordParse.
+	 *
+	 * @argument.principal The username, IP address or other key the verification is throttled by when the {@code throttle} module setting
+	 *                     is enabled. Once it has too many failed verifications, a {@code PasswordEncrypt.Throttled} exception is thrown
+	 *                     without running the key derivation. Not throttled if omitted.
 	 */
 	public Object _invoke( IBoxContext context, ArgumentsScope arguments ) {
+		String			string		= arguments.getAsString( Key.string );
+		// Hashes with their $s0 version prefix stripped ( as stored by ACF ) are accepted as well
+		Object			argument	= arguments.get( EncryptKeys.hashed );
+		HashDescriptor	descriptor	= argument instanceof HashDescriptor parsed ? parsed : null;
+		String			hashed		= HashDescriptor.encoded( argument );
+		String			principal	= arguments.getAsString( EncryptKeys.principal );
+		VerifyCache		cache		= VerifyCache.getInstance();
+		if ( descriptor == null ) {
+			HashValidator.getInstance().validate( hashed, Algorithm.SCRYPT );
+		}
+		if ( cache.contains( hashed, string ) ) {
+			return resolved( true );
+		}
 
-		final String	versionPrefix	= "$s0";
-
-		String			hashValue		= arguments.getAsString( EncryptKeys.hashed );
+		HashParameters		parameters	= descriptor == null ? HashParameters.parse( hashed ) : descriptor.getParameters();
+		Callable<Object>	verify		= VerifyThrottle.getInstance().guard( principal, cache.remember( hashed, string, () -> Secrets.withUtf8( string,
+		    bytes -> descriptor == null ? PasswordHasher.verifySCrypt( bytes, hashed ) : PasswordHasher.verifySCrypt( bytes, descriptor ) ) ) );
+		return dispatch( KDFMetrics.getInstance().timedVerify( parameters, verify ) );
+	}
 
-		if ( !hashValue.substring( 0, 3 ).equals( versionPrefix ) ) {
-			hashValue = versionPrefix + hashValue;
-		}
+	/**
+	 * Runs the key derivation on the module executor and waits for its result.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the key derivation
+	 */
+	protected Object dispatch( Callable<Object> work ) {
+		return KDFExecutor.getInstance().execute( work );
+	}
 
-		return SCryptUtil.check( arguments.getAsString( Key.string ), hashValue );
+	/**
+	 * Returns a result which is already known, such as a verify cache hit, without running a key derivation.
+	 *
+	 * @param result The known result
+	 *
+	 * @return The result
+	 */
+	protected Object resolved( Object result ) {
+		return result;
 	}
 
 }
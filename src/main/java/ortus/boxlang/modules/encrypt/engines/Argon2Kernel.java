@@ -0,0 +1,502 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Argon2 memory-hard function ( RFC 9106 ) in pure Java.
+ * <p>
+ * The memory matrix is a single {@code long[]} from a {@link BlockArena}, holding {@code lanes * laneLength} blocks of 128 longs ( 1 KiB ),
+ * or a direct {@link LongBuffer} from an off-heap arena. Off-heap, the blocks a compression reads are copied into per-segment arrays and
+ * the result is copied back, which costs a few memory copies per block next to the BLAKE2b rounds.
+ * Each pass over the matrix is split into four slices; within a slice the segments of all lanes are independent, so with more than one lane
+ * they are filled in parallel on the given fork-join pool and joined before the next slice starts.
+ */
+final class Argon2Kernel {
+
+	/**
+	 * Argon2d, data dependent addressing
+	 */
+	static final int			TYPE_D			= 0;
+
+	/**
+	 * Argon2i, data independent addressing
+	 */
+	static final int			TYPE_I			= 1;
+
+	/**
+	 * Argon2id, data independent addressing for the first half of the first pass
+	 */
+	static final int			TYPE_ID			= 2;
+
+	static final int			VERSION_10		= 0x10;
+	static final int			VERSION_13		= 0x13;
+
+	/**
+	 * The number of longs in a 1 KiB block
+	 */
+	static final int			BLOCK			= 128;
+
+	private static final int	SYNC_POINTS		= 4;
+
+	private final int			type;
+	private final int			version;
+	private final int			passes;
+	private final int			lanes;
+	private final int			laneLength;
+	private final int			segmentLength;
+	private final int			blockCount;
+	private final long[]		memory;
+	private final LongBuffer	direct;
+
+	private Argon2Kernel( int type, int version, int passes, int lanes, int blockCount, long[] memory, LongBuffer direct ) {
+		this.type			= type;
+		this.version		= version;
+		this.passes			= passes;
+		this.lanes			= lanes;
+		this.blockCount		= blockCount;
+		this.laneLength		= blockCount / lanes;
+		this.segmentLength	= laneLength / SYNC_POINTS;
+		this.memory			= memory;
+		this.direct			= direct;
+	}
+
+	/**
+	 * Derives a tag from the password.
+	 *
+	 * @param type           One of {@link #TYPE_D}, {@link #TYPE_I} or {@link #TYPE_ID}
+	 * @param version        {@link #VERSION_10} or {@link #VERSION_13}
+	 * @param iterations     The number of passes over the memory
+	 * @param memoryKiB      The memory size in KiB, at least 8 per lane
+	 * @param parallelism    The number of lanes
+	 * @param password       The password
+	 * @param salt           The salt, at least 8 bytes
+	 * @param secret         The optional secret key, or null
+	 * @param associatedData The optional associated data, or null
+	 * @param out            The array receiving the tag; its length is the tag length
+	 * @param arena          The arena providing the memory matrix
+	 * @param pool           The pool running the lanes in parallel, or null to fill them on the calling thread
+	 */
+	static void derive( int type, int version, int iterations, int memoryKiB, int parallelism, byte[] password, byte[] salt, byte[] secret,
+	    byte[] associatedData, byte[] out, BlockArena<long[]> arena, ForkJoinPool pool ) {
+		derive( type, version, iterations, memoryKiB, parallelism, password, salt, secret, associatedData, out, arena, pool, parallelism );
+	}
+
+	/**
+	 * Derives a tag from the password, filling at most {@code maxThreads} lanes at the same time.
+	 *
+	 * @param type           One of {@link #TYPE_D}, {@link #TYPE_I} or {@link #TYPE_ID}
+	 * @param version        {@link #VERSION_10} or {@link #VERSION_13}
+	 * @param iterations     The number of passes over the memory
+	 * @param memoryKiB      The memory size in KiB, at least 8 per lane
+	 * @param parallelism    The number of lanes
+	 * @param password       The password
+	 * @param salt           The salt, at least 8 bytes
+	 * @param secret         The optional secret key, or null
+	 * @param associatedData The optional associated data, or null
+	 * @param out            The array receiving the tag; its length is the tag length
+	 * @param arena          The arena providing the memory matrix
+	 * @param pool           The pool running the lanes in parallel, or null to fill them on the calling thread
+	 * @param maxThreads     The maximum number of lanes filled at the same time
+	 */
+	static void derive( int type, int version, int iterations, int memoryKiB, int parallelism, byte[] password, byte[] salt, byte[] secret,
+	    byte[] associatedData, byte[] out, BlockArena<long[]> arena, ForkJoinPool pool, int maxThreads ) {
+		derive( type, version, iterations, memoryKiB, parallelism, password, salt, secret, associatedData, out, arena, null, pool, maxThreads );
+	}
+
+	/**
+	 * Derives a tag from the password, with the memory matrix taken from the off-heap arena when one is given.
+	 *
+	 * @param type           One of {@link #TYPE_D}, {@link #TYPE_I} or {@link #TYPE_ID}
+	 * @param version        {@link #VERSION_10} or {@link #VERSION_13}
+	 * @param iterations     The number of passes over the memory
+	 * @param memoryKiB      The memory size in KiB, at least 8 per lane
+	 * @param parallelism    The number of lanes
+	 * @param password       The password
+	 * @param salt           The salt, at least 8 bytes
+	 * @param secret         The optional secret key, or null
+	 * @param associatedData The optional associated data, or null
+	 * @param out            The array receiving the tag; its length is the tag length
+	 * @param arena          The arena providing the memory matrix on the heap
+	 * @param offHeap        The arena providing the memory matrix off the heap, or null to use the heap arena
+	 * @param pool           The pool running the lanes in parallel, or null to fill them on the calling thread
+	 * @param maxThreads     The maximum number of lanes filled at the same time
+	 */
+	static void derive( int type, int version, int iterations, int memoryKiB, int parallelism, byte[] password, byte[] salt, byte[] secret,
+	    byte[] associatedData, byte[] out, BlockArena<long[]> arena, BlockArena<LongBuffer> offHeap, ForkJoinPool pool, int maxThreads ) {
+		if ( parallelism < 1 || parallelism > 0xffffff ) {
+			throw new IllegalArgumentException( "Parallelism must be between 1 and 16777215" );
+		}
+		if ( iterations < 1 ) {
+			throw new IllegalArgumentException( "Time cost is too small" );
+		}
+		if ( memoryKiB < 8 * parallelism ) {
+			throw new IllegalArgumentException( "Memory cost is too small" );
+		}
+		if ( salt.length < 8 ) {
+			throw new IllegalArgumentException( "Salt is too short" );
+		}
+		if ( out.length < 4 ) {
+			throw new IllegalArgumentException( "Output is too short" );
+		}
+
+		// Round the memory down to a multiple of 4 blocks per lane
+		int			blockCount	= memoryKiB / ( SYNC_POINTS * parallelism ) * SYNC_POINTS * parallelism;
+		long[]		matrix		= offHeap == null ? arena.acquire( blockCount * BLOCK ) : null;
+		LongBuffer	buffer		= offHeap == null ? null : offHeap.acquire( blockCount * BLOCK );
+		byte[]		h0			= new byte[ 72 ];
+		byte[]		block		= new byte[ BLOCK * 8 ];
+		long[]		words		= new long[ BLOCK ];
+		long[]		lastWords	= new long[ BLOCK ];
+		try {
+			new Blake2b( 64 )
+			    .updateInt( parallelism ).updateInt( out.length ).updateInt( memoryKiB ).updateInt( iterations ).updateInt( version ).updateInt( type )
+			    .updateInt( password.length ).update( password )
+			    .updateInt( salt.length ).update( salt )
+			    .updateInt( secret == null ? 0 : secret.length ).update( secret )
+			    .updateInt( associatedData == null ? 0 : associatedData.length ).update( associatedData )
+			    .digest( h0, 0 );
+
+			Argon2Kernel kernel = new Argon2Kernel( type, version, iterations, parallelism, blockCount, matrix, buffer );
+			for ( int lane = 0; lane < parallelism; lane++ ) {
+				writeInt( h0, 68, lane );
+				for ( int column = 0; column < 2; column++ ) {
+					writeInt( h0, 64, column );
+					hash( h0, block, block.length );
+					for ( int i = 0; i < BLOCK; i++ ) {
+						words[ i ] = readLong( block, i << 3 );
+					}
+					kernel.store( lane * kernel.laneLength + column, words );
+				}
+			}
+
+			kernel.fill( pool, pool == null ? 1 : Math.min( parallelism, Math.max( 1, maxThreads ) ) );
+
+			// XOR the last block of every lane into the first one's
+			kernel.load( kernel.laneLength - 1, lastWords );
+			for ( int lane = 1; lane < parallelism; lane++ ) {
+				kernel.load( lane * kernel.laneLength + kernel.laneLength - 1, words );
+				for ( int i = 0; i < BLOCK; i++ ) {
+					lastWords[ i ] ^= words[ i ];
+				}
+			}
+			for ( int i = 0; i < BLOCK; i++ ) {
+				writeLong( block, i << 3, lastWords[ i ] );
+			}
+			hash( block, out, out.length );
+		} finally {
+			Arrays.fill( h0, ( byte ) 0 );
+			Arrays.fill( block, ( byte ) 0 );
+			Arrays.fill( words, 0L );
+			Arrays.fill( lastWords, 0L );
+			if ( buffer != null ) {
+				offHeap.release( buffer );
+			} else {
+				arena.release( matrix );
+			}
+		}
+	}
+
+	/**
+	 * Copies a block of the matrix into the given array.
+	 */
+	private void load( int index, long[] target ) {
+		if ( direct != null ) {
+			direct.get( index * BLOCK, target, 0, BLOCK );
+		} else {
+			System.arraycopy( memory, index * BLOCK, target, 0, BLOCK );
+		}
+	}
+
+	/**
+	 * Copies the given array into a block of the matrix.
+	 */
+	private void store( int index, long[] source ) {
+		if ( direct != null ) {
+			direct.put( index * BLOCK, source, 0, BLOCK );
+		} else {
+			System.arraycopy( source, 0, memory, index * BLOCK, BLOCK );
+		}
+	}
+
+	/**
+	 * Runs all passes, filling the segments of a slice on the given number of threads.
+	 */
+	private void fill( ForkJoinPool pool, int threads ) {
+		for ( int pass = 0; pass < passes; pass++ ) {
+			for ( int slice = 0; slice < SYNC_POINTS; slice++ ) {
+				if ( threads == 1 ) {
+					for ( int lane = 0; lane < lanes; lane++ ) {
+						fillSegment( pass, lane, slice );
+					}
+				} else {
+					Segments segments = new Segments( pass, slice, 0, threads, threads );
+					if ( ForkJoinTask.getPool() == pool ) {
+						segments.invoke();
+					} else {
+						pool.invoke( segments );
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills the blocks of one lane within one slice.
+	 */
+	private void fillSegment( int pass, int lane, int slice ) {
+		boolean	dataIndependent	= type == TYPE_I || ( type == TYPE_ID && pass == 0 && slice < SYNC_POINTS / 2 );
+		boolean	xor				= version != VERSION_10 && pass != 0;
+		long[]	scratch			= new long[ BLOCK ];
+		long[]	permuted		= new long[ BLOCK ];
+		long[]	zero			= null;
+		long[]	input			= null;
+		long[]	addresses		= null;
+		// Off-heap, the previous, reference and current blocks are compressed in copies
+		long[]	x				= direct == null ? null : new long[ BLOCK ];
+		long[]	y				= direct == null ? null : new long[ BLOCK ];
+		long[]	z				= direct == null ? null : new long[ BLOCK ];
+		if ( dataIndependent ) {
+			zero		= new long[ BLOCK ];
+			input		= new long[ BLOCK ];
+			addresses	= new long[ BLOCK ];
+			input[ 0 ]	= pass;
+			input[ 1 ]	= lane;
+			input[ 2 ]	= slice;
+			input[ 3 ]	= blockCount;
+			input[ 4 ]	= passes;
+			input[ 5 ]	= type;
+		}
+
+		int start = 0;
+		if ( pass == 0 && slice == 0 ) {
+			// The first two blocks of every lane are derived from H0
+			start = 2;
+			if ( dataIndependent ) {
+				nextAddresses( zero, input, addresses, scratch, permuted );
+			}
+		}
+
+		int	current		= lane * laneLength + slice * segmentLength + start;
+		int	previous	= current % laneLength == 0 ? current + laneLength - 1 : current - 1;
+		for ( int index = start; index < segmentLength; index++, current++, previous++ ) {
+			if ( current % laneLength == 1 ) {
+				previous = current - 1;
+			}
+			long pseudoRandom;
+			if ( dataIndependent ) {
+				if ( index % BLOCK == 0 ) {
+					nextAddresses( zero, input, addresses, scratch, permuted );
+				}
+				pseudoRandom = addresses[ index % BLOCK ];
+			} else {
+				pseudoRandom = direct == null ? memory[ previous * BLOCK ] : direct.get( previous * BLOCK );
+			}
+			int refLane = pass == 0 && slice == 0 ? lane : ( int ) ( ( pseudoRandom >>> 32 ) % lanes );
+			int reference = refLane * laneLength + referenceIndex( pass, slice, index, pseudoRandom & 0xffffffffL, refLane == lane );
+			if ( direct == null ) {
+				compress( memory, previous * BLOCK, memory, reference * BLOCK, memory, current * BLOCK, xor, scratch, permuted );
+			} else {
+				load( previous, x );
+				load( reference, y );
+				if ( xor ) {
+					load( current, z );
+				}
+				compress( x, 0, y, 0, z, 0, xor, scratch, permuted );
+				store( current, z );
+			}
+		}
+	}
+
+	/**
+	 * Maps the pseudo random value to a block of the reference lane which has already been filled.
+	 */
+	private int referenceIndex( int pass, int slice, int index, long pseudoRandom, boolean sameLane ) {
+		long areaSize;
+		if ( pass == 0 ) {
+			if ( slice == 0 ) {
+				areaSize = index - 1;
+			} else if ( sameLane ) {
+				areaSize = slice * segmentLength + index - 1;
+			} else {
+				areaSize = slice * segmentLength + ( index == 0 ? -1 : 0 );
+			}
+		} else if ( sameLane ) {
+			areaSize = laneLength - segmentLength + index - 1;
+		} else {
+			areaSize = laneLength - segmentLength + ( index == 0 ? -1 : 0 );
+		}
+		long	relative	= pseudoRandom * pseudoRandom >>> 32;
+		long	position	= areaSize - 1 - ( areaSize * relative >>> 32 );
+		long	startAt		= pass == 0 || slice == SYNC_POINTS - 1 ? 0 : ( slice + 1 ) * segmentLength;
+		return ( int ) ( ( startAt + position ) % laneLength );
+	}
+
+	/**
+	 * Generates the next 128 pseudo random values for data independent addressing.
+	 */
+	private static void nextAddresses( long[] zero, long[] input, long[] addresses, long[] scratch, long[] permuted ) {
+		input[ 6 ]++;
+		compress( zero, 0, input, 0, addresses, 0, false, scratch, permuted );
+		compress( zero, 0, addresses, 0, addresses, 0, false, scratch, permuted );
+	}
+
+	/**
+	 * The compression function G: {@code out = P( x ^ y ) ^ x ^ y}, additionally XORed with the previous content of {@code out} from the
+	 * second pass on in version 1.3.
+	 */
+	private static void compress( long[] x, int xOffset, long[] y, int yOffset, long[] out, int outOffset, boolean xor, long[] r, long[] z ) {
+		for ( int i = 0; i < BLOCK; i++ ) {
+			r[ i ] = x[ xOffset + i ] ^ y[ yOffset + i ];
+		}
+		System.arraycopy( r, 0, z, 0, BLOCK );
+		// Rows of 16 longs
+		for ( int i = 0; i < 128; i += 16 ) {
+			permute( z, i, i + 1, i + 2, i + 3, i + 4, i + 5, i + 6, i + 7, i + 8, i + 9, i + 10, i + 11, i + 12, i + 13, i + 14, i + 15 );
+		}
+		// Columns of 2 longs
+		for ( int i = 0; i < 16; i += 2 ) {
+			permute( z, i, i + 1, i + 16, i + 17, i + 32, i + 33, i + 48, i + 49, i + 64, i + 65, i + 80, i + 81, i + 96, i + 97, i + 112, i + 113 );
+		}
+		if ( xor ) {
+			for ( int i = 0; i < BLOCK; i++ ) {
+				out[ outOffset + i ] ^= r[ i ] ^ z[ i ];
+			}
+		} else {
+			for ( int i = 0; i < BLOCK; i++ ) {
+				out[ outOffset + i ] = r[ i ] ^ z[ i ];
+			}
+		}
+	}
+
+	/**
+	 * The BLAKE2b round function with multiplications, applied to 16 longs of the block.
+	 */
+	private static void permute( long[] v, int v0, int v1, int v2, int v3, int v4, int v5, int v6, int v7, int v8, int v9, int v10, int v11,
+	    int v12, int v13, int v14, int v15 ) {
+		mix( v, v0, v4, v8, v12 );
+		mix( v, v1, v5, v9, v13 );
+		mix( v, v2, v6, v10, v14 );
+		mix( v, v3, v7, v11, v15 );
+		mix( v, v0, v5, v10, v15 );
+		mix( v, v1, v6, v11, v12 );
+		mix( v, v2, v7, v8, v13 );
+		mix( v, v3, v4, v9, v14 );
+	}
+
+	private static void mix( long[] v, int a, int b, int c, int d ) {
+		v[ a ]	= v[ a ] + v[ b ] + 2 * ( v[ a ] & 0xffffffffL ) * ( v[ b ] & 0xffffffffL );
+		v[ d ]	= Long.rotateRight( v[ d ] ^ v[ a ], 32 );
+		v[ c ]	= v[ c ] + v[ d ] + 2 * ( v[ c ] & 0xffffffffL ) * ( v[ d ] & 0xffffffffL );
+		v[ b ]	= Long.rotateRight( v[ b ] ^ v[ c ], 24 );
+		v[ a ]	= v[ a ] + v[ b ] + 2 * ( v[ a ] & 0xffffffffL ) * ( v[ b ] & 0xffffffffL );
+		v[ d ]	= Long.rotateRight( v[ d ] ^ v[ a ], 16 );
+		v[ c ]	= v[ c ] + v[ d ] + 2 * ( v[ c ] & 0xffffffffL ) * ( v[ d ] & 0xffffffffL );
+		v[ b ]	= Long.rotateRight( v[ b ] ^ v[ c ], 63 );
+	}
+
+	/**
+	 * The variable length hash H': BLAKE2b for up to 64 bytes, otherwise a chain of BLAKE2b-512 digests of which the first 32 bytes each are
+	 * used.
+	 */
+	private static void hash( byte[] input, byte[] out, int outLength ) {
+		if ( outLength <= 64 ) {
+			new Blake2b( outLength ).updateInt( outLength ).update( input ).digest( out, 0 );
+			return;
+		}
+		Blake2b	blake2b	= new Blake2b( 64 );
+		byte[]	v		= new byte[ 64 ];
+		blake2b.updateInt( outLength ).update( input ).digest( v, 0 );
+		System.arraycopy( v, 0, out, 0, 32 );
+		int	position	= 32;
+		int	remaining	= outLength - 32;
+		while ( remaining > 64 ) {
+			blake2b.init( 64 ).update( v ).digest( v, 0 );
+			System.arraycopy( v, 0, out, position, 32 );
+			position	+= 32;
+			remaining	-= 32;
+		}
+		blake2b.init( remaining ).update( v ).digest( out, position );
+		Arrays.fill( v, ( byte ) 0 );
+	}
+
+	static long readLong( byte[] bytes, int offset ) {
+		return ( bytes[ offset ] & 0xffL )
+		    | ( bytes[ offset + 1 ] & 0xffL ) << 8
+		    | ( bytes[ offset + 2 ] & 0xffL ) << 16
+		    | ( bytes[ offset + 3 ] & 0xffL ) << 24
+		    | ( bytes[ offset + 4 ] & 0xffL ) << 32
+		    | ( bytes[ offset + 5 ] & 0xffL ) << 40
+		    | ( bytes[ offset + 6 ] & 0xffL ) << 48
+		    | ( bytes[ offset + 7 ] & 0xffL ) << 56;
+	}
+
+	private static void writeLong( byte[] bytes, int offset, long value ) {
+		for ( int i = 0; i < 8; i++ ) {
+			bytes[ offset + i ] = ( byte ) ( value >>> ( i << 3 ) );
+		}
+	}
+
+	private static void writeInt( byte[] bytes, int offset, int value ) {
+		for ( int i = 0; i < 4; i++ ) {
+			bytes[ offset + i ] = ( byte ) ( value >>> ( i << 3 ) );
+		}
+	}
+
+	/**
+	 * Fills the segments of a range of threads for one slice, splitting the range until each task is a single thread filling every
+	 * {@code threads}-th lane.
+	 */
+	private final class Segments extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private final int			pass;
+		private final int			slice;
+		private final int			from;
+		private final int			to;
+		private final int			threads;
+
+		Segments( int pass, int slice, int from, int to, int threads ) {
+			this.pass		= pass;
+			this.slice		= slice;
+			this.from		= from;
+			this.to			= to;
+			this.threads	= threads;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from == 1 ) {
+				for ( int lane = from; lane < lanes; lane += threads ) {
+					fillSegment( pass, lane, slice );
+				}
+				return;
+			}
+			int middle = ( from + to ) >>> 1;
+			invokeAll( new Segments( pass, slice, from, middle, threads ), new Segments( pass, slice, middle, to, threads ) );
+		}
+
+	}
+
+}
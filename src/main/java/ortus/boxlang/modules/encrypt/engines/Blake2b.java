@@ -0,0 +1,176 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+/**
+ * Unkeyed BLAKE2b ( RFC 7693 ) with a variable output length of 1 to 64 bytes, as used by Argon2 for its initial and final hashing.
+ * <p>
+ * An instance can be reused for any number of digests through {@link #init(int)}. Instances are not thread safe.
+ */
+final class Blake2b {
+
+	private static final long[]	IV		= {
+	    0x6a09e667f3bcc908L, 0xbb67ae8584caa73bL, 0x3c6ef372fe94f82bL, 0xa54ff53a5f1d36f1L,
+	    0x510e527fade682d1L, 0x9b05688c2b3e6c1fL, 0x1f83d9abfb41bd6bL, 0x5be0cd19137e2179L
+	};
+
+	private static final byte[][]	SIGMA	= {
+	    { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+	    { 14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3 },
+	    { 11, 8, 12, 0, 5, 2, 15, 13, 10, 14, 3, 6, 7, 1, 9, 4 },
+	    { 7, 9, 3, 1, 13, 12, 11, 14, 2, 6, 5, 10, 4, 0, 15, 8 },
+	    { 9, 0, 5, 7, 2, 4, 10, 15, 14, 1, 11, 12, 6, 8, 3, 13 },
+	    { 2, 12, 6, 10, 0, 11, 8, 3, 4, 13, 7, 5, 15, 14, 1, 9 },
+	    { 12, 5, 1, 15, 14, 13, 4, 10, 0, 7, 6, 3, 9, 2, 8, 11 },
+	    { 13, 11, 7, 14, 12, 1, 3, 9, 5, 0, 15, 4, 8, 6, 2, 10 },
+	    { 6, 15, 14, 9, 11, 3, 0, 8, 12, 2, 13, 7, 1, 4, 10, 5 },
+	    { 10, 2, 8, 4, 7, 6, 1, 5, 15, 11, 9, 14, 3, 12, 13, 0 },
+	    { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+	    { 14, 10, 4, 8, 9, 15, 13, 6, 1, 12, 0, 2, 11, 7, 5, 3 }
+	};
+
+	private final long[]			h		= new long[ 8 ];
+	private final long[]			m		= new long[ 16 ];
+	private final long[]			v		= new long[ 16 ];
+	private final byte[]			buffer	= new byte[ 128 ];
+	private int						bufferLength;
+	private long					counter;
+	private int						outLength;
+
+	/**
+	 * Creates a digest with the given output length.
+	 *
+	 * @param outLength The output length in bytes, 1 to 64
+	 */
+	Blake2b( int outLength ) {
+		init( outLength );
+	}
+
+	/**
+	 * Resets the digest for a new message with the given output length.
+	 *
+	 * @param outLength The output length in bytes, 1 to 64
+	 *
+	 * @return This digest
+	 */
+	Blake2b init( int outLength ) {
+		if ( outLength < 1 || outLength > 64 ) {
+			throw new IllegalArgumentException( "The BLAKE2b output length must be between 1 and 64 bytes" );
+		}
+		System.arraycopy( IV, 0, h, 0, 8 );
+		h[ 0 ]				^= 0x01010000L ^ outLength;
+		this.outLength		= outLength;
+		this.counter		= 0;
+		this.bufferLength	= 0;
+		return this;
+	}
+
+	/**
+	 * Appends the given bytes to the message.
+	 */
+	Blake2b update( byte[] input, int offset, int length ) {
+		while ( length > 0 ) {
+			// The last block is only compressed by digest(), as it is flagged as final
+			if ( bufferLength == 128 ) {
+				counter += 128;
+				compress( false );
+				bufferLength = 0;
+			}
+			int chunk = Math.min( 128 - bufferLength, length );
+			System.arraycopy( input, offset, buffer, bufferLength, chunk );
+			bufferLength	+= chunk;
+			offset			+= chunk;
+			length			-= chunk;
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the given bytes to the message. A null array is treated as empty.
+	 */
+	Blake2b update( byte[] input ) {
+		return input == null ? this : update( input, 0, input.length );
+	}
+
+	/**
+	 * Appends the given value to the message as 4 little endian bytes.
+	 */
+	Blake2b updateInt( int value ) {
+		byte[] bytes = { ( byte ) value, ( byte ) ( value >>> 8 ), ( byte ) ( value >>> 16 ), ( byte ) ( value >>> 24 ) };
+		return update( bytes, 0, 4 );
+	}
+
+	/**
+	 * Finishes the message and writes the digest to the given array.
+	 *
+	 * @param out    The array to write to
+	 * @param offset The offset to start writing at
+	 */
+	void digest( byte[] out, int offset ) {
+		counter += bufferLength;
+		for ( int i = bufferLength; i < 128; i++ ) {
+			buffer[ i ] = 0;
+		}
+		compress( true );
+		for ( int i = 0; i < outLength; i++ ) {
+			out[ offset + i ] = ( byte ) ( h[ i >> 3 ] >>> ( ( i & 7 ) << 3 ) );
+		}
+		// The buffer may hold key material, e.g. the Argon2 password
+		for ( int i = 0; i < 128; i++ ) {
+			buffer[ i ] = 0;
+		}
+	}
+
+	private void compress( boolean last ) {
+		for ( int i = 0; i < 16; i++ ) {
+			m[ i ] = Argon2Kernel.readLong( buffer, i << 3 );
+		}
+		System.arraycopy( h, 0, v, 0, 8 );
+		System.arraycopy( IV, 0, v, 8, 8 );
+		v[ 12 ] ^= counter;
+		if ( last ) {
+			v[ 14 ] = ~v[ 14 ];
+		}
+		for ( int round = 0; round < 12; round++ ) {
+			byte[] s = SIGMA[ round ];
+			g( 0, 4, 8, 12, m[ s[ 0 ] ], m[ s[ 1 ] ] );
+			g( 1, 5, 9, 13, m[ s[ 2 ] ], m[ s[ 3 ] ] );
+			g( 2, 6, 10, 14, m[ s[ 4 ] ], m[ s[ 5 ] ] );
+			g( 3, 7, 11, 15, m[ s[ 6 ] ], m[ s[ 7 ] ] );
+			g( 0, 5, 10, 15, m[ s[ 8 ] ], m[ s[ 9 ] ] );
+			g( 1, 6, 11, 12, m[ s[ 10 ] ], m[ s[ 11 ] ] );
+			g( 2, 7, 8, 13, m[ s[ 12 ] ], m[ s[ 13 ] ] );
+			g( 3, 4, 9, 14, m[ s[ 14 ] ], m[ s[ 15 ] ] );
+		}
+		for ( int i = 0; i < 8; i++ ) {
+			h[ i ] ^= v[ i ] ^ v[ i + 8 ];
+		}
+	}
+
+	private void g( int a, int b, int c, int d, long x, long y ) {
+		v[ a ]	= v[ a ] + v[ b ] + x;
+		v[ d ]	= Long.rotateRight( v[ d ] ^ v[ a ], 32 );
+		v[ c ]	= v[ c ] + v[ d ];
+		v[ b ]	= Long.rotateRight( v[ b ] ^ v[ c ], 24 );
+		v[ a ]	= v[ a ] + v[ b ] + y;
+		v[ d ]	= Long.rotateRight( v[ d ] ^ v[ a ], 16 );
+		v[ c ]	= v[ c ] + v[ d ];
+		v[ b ]	= Long.rotateRight( v[ b ] ^ v[ c ], 63 );
+	}
+
+}
@@ -0,0 +1,301 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * A pool of the large working arrays of the pure Java engines: the {@code long[]} memory matrix of Argon2 and the {@code int[]} ROMix
+ * table of SCrypt.
+ * <p>
+ * A login path hashes with the same cost parameters over and over, so the array of a finished hash is zeroed and kept for the next hash
+ * of the same size instead of leaving megabytes to the garbage collector on every call. Arrays are pooled by their exact length, which is
+ * the size class that matters when the cost parameters are fixed, and the total size of the idle arrays is capped so a burst of unusual
+ * parameters cannot pin memory forever.
+ * <p>
+ * An arena of direct {@link LongBuffer}s keeps the Argon2 matrix off the heap, so memory-hard parameters do not compete with the
+ * application for heap space. Such an arena can also enforce a budget on the bytes handed out at the same time: an acquisition that
+ * would exceed it waits, first come first served, until enough memory has been released, and fails with a {@code PasswordEncrypt.Busy}
+ * exception when that takes longer than the queue timeout.
+ *
+ * @param <T> The array type
+ */
+public final class BlockArena<T> {
+
+	/**
+	 * The default cap on the idle arrays kept by each shared arena: 256 MiB
+	 */
+	public static final long											DEFAULT_MAX_RETAINED	= 256L << 20;
+
+	private static final BlockArena<long[]>								ARGON2					= longs( DEFAULT_MAX_RETAINED );
+	private static final BlockArena<int[]>								SCRYPT					= ints( DEFAULT_MAX_RETAINED );
+
+	/**
+	 * The granularity of the budget: one permit per KiB
+	 */
+	private static final int											PERMIT_BYTES			= 1024;
+
+	private static final long[]											ZEROS					= new long[ 1024 ];
+
+	private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<T>>	free					= new ConcurrentHashMap<>();
+	private final IntFunction<T>										allocator;
+	private final ToIntFunction<T>										lengthOf;
+	private final Consumer<T>											zeroer;
+	private final int													elementBytes;
+	private final long													maxRetained;
+	private final Semaphore												budget;
+	private final long													budgetBytes;
+	private final long													timeoutNanos;
+	private final AtomicLong											retained				= new AtomicLong();
+	private final LongAdder												hits					= new LongAdder();
+	private final LongAdder												misses					= new LongAdder();
+
+	private BlockArena( IntFunction<T> allocator, ToIntFunction<T> lengthOf, Consumer<T> zeroer, int elementBytes, long maxRetained,
+	    long budgetBytes, long queueTimeout ) {
+		this.allocator		= allocator;
+		this.lengthOf		= lengthOf;
+		this.zeroer			= zeroer;
+		this.elementBytes	= elementBytes;
+		this.maxRetained	= maxRetained;
+		this.budgetBytes	= budgetBytes;
+		this.timeoutNanos	= TimeUnit.MILLISECONDS.toNanos( Math.max( 0, queueTimeout ) );
+		this.budget			= budgetBytes > 0 ? new Semaphore( ( int ) Math.min( Integer.MAX_VALUE, budgetBytes / PERMIT_BYTES ), true ) : null;
+	}
+
+	/**
+	 * Creates an arena of {@code long[]} arrays.
+	 *
+	 * @param maxRetained The maximum number of bytes kept in idle arrays
+	 *
+	 * @return The arena
+	 */
+	public static BlockArena<long[]> longs( long maxRetained ) {
+		return new BlockArena<>( long[]::new, array -> array.length, array -> Arrays.fill( array, 0L ), Long.BYTES, maxRetained, 0, 0 );
+	}
+
+	/**
+	 * Creates an arena of off-heap {@link LongBuffer}s in native byte order, with a cap on the bytes in use at the same time. A buffer
+	 * holds at most {@link Integer#MAX_VALUE} bytes.
+	 *
+	 * @param maxRetained  The maximum number of bytes kept in idle buffers
+	 * @param budget       The maximum number of bytes handed out and not yet released, or {@code 0} for no limit
+	 * @param queueTimeout The maximum number of milliseconds an acquisition may wait for the budget
+	 *
+	 * @return The arena
+	 */
+	public static BlockArena<LongBuffer> directLongs( long maxRetained, long budget, long queueTimeout ) {
+		return new BlockArena<>(
+		    length -> ByteBuffer.allocateDirect( Math.multiplyExact( length, Long.BYTES ) ).order( ByteOrder.nativeOrder() ).asLongBuffer(),
+		    LongBuffer::capacity,
+		    BlockArena::zero,
+		    Long.BYTES,
+		    maxRetained,
+		    budget,
+		    queueTimeout
+		);
+	}
+
+	/**
+	 * Creates an arena of {@code int[]} arrays.
+	 *
+	 * @param maxRetained The maximum number of bytes kept in idle arrays
+	 *
+	 * @return The arena
+	 */
+	public static BlockArena<int[]> ints( long maxRetained ) {
+		return new BlockArena<>( int[]::new, array -> array.length, array -> Arrays.fill( array, 0 ), Integer.BYTES, maxRetained, 0, 0 );
+	}
+
+	/**
+	 * Returns the arena shared by all Argon2 engine instances.
+	 *
+	 * @return The shared Argon2 arena
+	 */
+	public static BlockArena<long[]> argon2() {
+		return ARGON2;
+	}
+
+	/**
+	 * Returns the arena shared by all SCrypt engine calls.
+	 *
+	 * @return The shared SCrypt arena
+	 */
+	public static BlockArena<int[]> scrypt() {
+		return SCRYPT;
+	}
+
+	/**
+	 * Takes a zeroed array of the given length from the pool, or allocates one. With a budget, waits up to the queue timeout until the
+	 * array fits into it.
+	 *
+	 * @param length The number of elements
+	 *
+	 * @return The array, to be handed back to {@link #release(Object)}
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.InvalidHash} when the array alone is larger than the budget, or of type
+	 *                             {@code PasswordEncrypt.Busy} when it could not be admitted in time
+	 */
+	public T acquire( int length ) {
+		if ( budget != null ) {
+			int permits = permits( length );
+			if ( permits > budgetBytes / PERMIT_BYTES ) {
+				throw new BoxRuntimeException(
+				    "The requested [" + ( ( long ) elementBytes * length >> 20 ) + "] MiB exceed the off-heap memory budget of [" + ( budgetBytes >> 20 )
+				        + "] MiB. Lower the memory cost or raise the offHeap.budgetMiB module setting.",
+				    HashValidator.INVALID_TYPE
+				);
+			}
+			if ( !tryAcquire( permits ) ) {
+				throw new BoxRuntimeException(
+				    "The off-heap memory budget is exhausted: [" + ( ( long ) elementBytes * length >> 10 )
+				        + "] KiB could not be admitted within the queue timeout, [" + ( getInUse() >> 10 ) + "] of [" + ( budgetBytes >> 10 )
+				        + "] KiB are in use. Please try again later.",
+				    KDFExecutor.BUSY_TYPE
+				);
+			}
+		}
+		ConcurrentLinkedQueue<T>	queue	= free.get( length );
+		T							array	= queue == null ? null : queue.poll();
+		if ( array == null ) {
+			misses.increment();
+			return allocator.apply( length );
+		}
+		retained.addAndGet( -( long ) elementBytes * length );
+		hits.increment();
+		return array;
+	}
+
+	/**
+	 * Zeroes an array and keeps it for the next hash of the same size, unless the arena is full.
+	 *
+	 * @param array The array obtained from {@link #acquire(int)}
+	 */
+	public void release( T array ) {
+		zeroer.accept( array );
+		int		length	= lengthOf.applyAsInt( array );
+		long	bytes	= ( long ) elementBytes * length;
+		if ( retained.addAndGet( bytes ) > maxRetained ) {
+			retained.addAndGet( -bytes );
+		} else {
+			free.computeIfAbsent( length, key -> new ConcurrentLinkedQueue<>() ).offer( array );
+		}
+		if ( budget != null ) {
+			budget.release( permits( length ) );
+		}
+	}
+
+	/**
+	 * Returns the number of bytes currently kept in idle arrays.
+	 *
+	 * @return The retained bytes
+	 */
+	public long getRetained() {
+		return retained.get();
+	}
+
+	/**
+	 * Returns the configured cap on the idle arrays.
+	 *
+	 * @return The maximum retained bytes
+	 */
+	public long getMaxRetained() {
+		return maxRetained;
+	}
+
+	/**
+	 * Returns the cap on the bytes handed out at the same time.
+	 *
+	 * @return The budget in bytes, {@code 0} if the arena has none
+	 */
+	public long getBudget() {
+		return budgetBytes;
+	}
+
+	/**
+	 * Returns the number of bytes handed out and not yet released, rounded up to whole KiB per array.
+	 *
+	 * @return The bytes in use, {@code 0} if the arena has no budget
+	 */
+	public long getInUse() {
+		return budget == null ? 0 : ( budgetBytes / PERMIT_BYTES - budget.availablePermits() ) * PERMIT_BYTES;
+	}
+
+	/**
+	 * Returns the number of acquisitions waiting for the budget.
+	 *
+	 * @return The number of waiting threads, an estimate
+	 */
+	public int getWaiting() {
+		return budget == null ? 0 : budget.getQueueLength();
+	}
+
+	/**
+	 * Returns how many acquisitions were served from the pool.
+	 *
+	 * @return The pool hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns how many acquisitions had to allocate a new array.
+	 *
+	 * @return The pool misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private int permits( int length ) {
+		return ( int ) ( ( ( long ) elementBytes * length + PERMIT_BYTES - 1 ) / PERMIT_BYTES );
+	}
+
+	private boolean tryAcquire( int permits ) {
+		try {
+			// Unlike the untimed tryAcquire, the timed one honors the fairness of the semaphore
+			return budget.tryAcquire( permits, timeoutNanos, TimeUnit.NANOSECONDS );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static void zero( LongBuffer buffer ) {
+		for ( int i = 0, length = buffer.capacity(); i < length; i += ZEROS.length ) {
+			buffer.put( i, ZEROS, 0, Math.min( ZEROS.length, length - i ) );
+		}
+	}
+
+}
@@ -0,0 +1,294 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Constants;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.util.HashParameters;
+import ortus.boxlang.modules.encrypt.util.SaltService;
+import ortus.boxlang.modules.encrypt.util.Secrets;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * A pure Java implementation of the argon2-jvm {@link Argon2} interface, so it can be used wherever the JNA binding to the native libargon2
+ * is used. Hashes are encoded in the same {@code $argon2id$v=19$m=,t=,p=$salt$hash} format with the same default salt and hash lengths,
+ * so hashes of either engine verify with the other.
+ * <p>
+ * Memory matrices come from the shared {@link BlockArena}, and with a parallelism above 1 the lanes are filled on the given fork-join pool,
+ * by at most {@code maxThreads} tasks per hash. Given an off-heap arena, hashes with at least {@code offHeapMinMemory} KiB keep their matrix
+ * in direct memory instead, subject to the budget of that arena.
+ */
+public final class JavaArgon2 implements Argon2 {
+
+	private final Argon2Types				variant;
+	private final int						type;
+	private final int						saltLength;
+	private final int						hashLength;
+	private final BlockArena<long[]>		arena;
+	private final BlockArena<LongBuffer>	offHeap;
+	private final int						offHeapMinMemory;
+	private final ForkJoinPool				pool;
+	private final int						maxThreads;
+
+	/**
+	 * Creates an engine with the default salt and hash lengths of argon2-jvm.
+	 *
+	 * @param variant The Argon2 variant
+	 * @param pool    The pool running the lanes of a hash in parallel, or null to fill them on the calling thread
+	 */
+	public JavaArgon2( Argon2Types variant, ForkJoinPool pool ) {
+		this( variant, pool, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Creates an engine with the default salt and hash lengths of argon2-jvm and a cap on the threads of a hash.
+	 *
+	 * @param variant    The Argon2 variant
+	 * @param pool       The pool running the lanes of a hash in parallel, or null to fill them on the calling thread
+	 * @param maxThreads The maximum number of lanes a single hash fills at the same time
+	 */
+	public JavaArgon2( Argon2Types variant, ForkJoinPool pool, int maxThreads ) {
+		this( variant, Argon2Constants.DEFAULT_SALT_LENGTH, Argon2Constants.DEFAULT_HASH_LENGTH, BlockArena.argon2(), pool, maxThreads );
+	}
+
+	/**
+	 * Creates an engine.
+	 *
+	 * @param variant    The Argon2 variant
+	 * @param saltLength The length of the generated salts in bytes
+	 * @param hashLength The length of the generated hashes in bytes
+	 * @param arena      The arena providing the memory matrices
+	 * @param pool       The pool running the lanes of a hash in parallel, or null to fill them on the calling thread
+	 */
+	public JavaArgon2( Argon2Types variant, int saltLength, int hashLength, BlockArena<long[]> arena, ForkJoinPool pool ) {
+		this( variant, saltLength, hashLength, arena, pool, Integer.MAX_VALUE );
+	}
+
+	/**
+	 * Creates an engine with a cap on the threads of a hash.
+	 *
+	 * @param variant    The Argon2 variant
+	 * @param saltLength The length of the generated salts in bytes
+	 * @param hashLength The length of the generated hashes in bytes
+	 * @param arena      The arena providing the memory matrices
+	 * @param pool       The pool running the lanes of a hash in parallel, or null to fill them on the calling thread
+	 * @param maxThreads The maximum number of lanes a single hash fills at the same time
+	 */
+	public JavaArgon2( Argon2Types variant, int saltLength, int hashLength, BlockArena<long[]> arena, ForkJoinPool pool, int maxThreads ) {
+		this( variant, saltLength, hashLength, arena, null, Integer.MAX_VALUE, pool, maxThreads );
+	}
+
+	/**
+	 * Creates an engine which keeps the matrices of large hashes off the heap.
+	 *
+	 * @param variant          The Argon2 variant
+	 * @param saltLength       The length of the generated salts in bytes
+	 * @param hashLength       The length of the generated hashes in bytes
+	 * @param arena            The arena providing the memory matrices on the heap
+	 * @param offHeap          The arena providing the memory matrices off the heap, or null to keep every matrix on the heap
+	 * @param offHeapMinMemory The memory cost in KiB from which a matrix is taken from the off-heap arena
+	 * @param pool             The pool running the lanes of a hash in parallel, or null to fill them on the calling thread
+	 * @param maxThreads       The maximum number of lanes a single hash fills at the same time
+	 */
+	public JavaArgon2( Argon2Types variant, int saltLength, int hashLength, BlockArena<long[]> arena, BlockArena<LongBuffer> offHeap,
+	    int offHeapMinMemory, ForkJoinPool pool, int maxThreads ) {
+		this.variant			= variant;
+		this.type				= switch ( variant ) {
+									case ARGON2d -> Argon2Kernel.TYPE_D;
+									case ARGON2i -> Argon2Kernel.TYPE_I;
+									case ARGON2id -> Argon2Kernel.TYPE_ID;
+								};
+		this.saltLength			= saltLength;
+		this.hashLength			= hashLength;
+		this.arena				= arena;
+		this.offHeap			= offHeap;
+		this.offHeapMinMemory	= offHeapMinMemory;
+		this.pool				= pool;
+		this.maxThreads			= maxThreads;
+	}
+
+	@Override
+	public String hash( int iterations, int memory, int parallelism, byte[] data ) {
+		byte[] salt = SaltService.getInstance().salt( saltLength );
+		byte[] hash = new byte[ hashLength ];
+		Argon2Kernel.derive( type, Argon2Kernel.VERSION_13, iterations, memory, parallelism, data, salt, null, null, hash, arena, offHeap( memory ), pool,
+		    maxThreads );
+
+		Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+		return new StringBuilder( 96 )
+		    .append( '$' ).append( variant.name().toLowerCase() )
+		    .append( "$v=" ).append( Argon2Kernel.VERSION_13 )
+		    .append( "$m=" ).append( memory ).append( ",t=" ).append( iterations ).append( ",p=" ).append( parallelism )
+		    .append( '$' ).append( encoder.encodeToString( salt ) )
+		    .append( '$' ).append( encoder.encodeToString( hash ) )
+		    .toString();
+	}
+
+	@Override
+	public String hash( int iterations, int memory, int parallelism, char[] password ) {
+		return Secrets.withUtf8( password, bytes -> hash( iterations, memory, parallelism, bytes ) );
+	}
+
+	@Override
+	public String hash( int iterations, int memory, int parallelism, char[] password, Charset charset ) {
+		return withEncoded( CharBuffer.wrap( password ), charset, bytes -> hash( iterations, memory, parallelism, bytes ) );
+	}
+
+	@Override
+	public String hash( int iterations, int memory, int parallelism, String password ) {
+		return Secrets.withUtf8( password, bytes -> hash( iterations, memory, parallelism, bytes ) );
+	}
+
+	@Override
+	public String hash( int iterations, int memory, int parallelism, String password, Charset charset ) {
+		return withEncoded( CharBuffer.wrap( password ), charset, bytes -> hash( iterations, memory, parallelism, bytes ) );
+	}
+
+	/**
+	 * Whether this engine keeps its matrices off the heap from some memory cost on.
+	 *
+	 * @return True if the engine has an off-heap arena
+	 */
+	public boolean isOffHeap() {
+		return offHeap != null;
+	}
+
+	/**
+	 * Derives a raw key from decoded parameters, e.g. to verify a hash whose salt and key were parsed ahead of time.
+	 *
+	 * @param version     The Argon2 version, {@code 0x10} or {@code 0x13}
+	 * @param iterations  The number of passes over the memory
+	 * @param memory      The memory in KiB
+	 * @param parallelism The number of lanes
+	 * @param password    The password bytes
+	 * @param salt        The salt
+	 * @param length      The length of the key in bytes
+	 *
+	 * @return The derived key
+	 */
+	public byte[] derive( int version, int iterations, int memory, int parallelism, byte[] password, byte[] salt, int length ) {
+		byte[] hash = new byte[ length ];
+		Argon2Kernel.derive( type, version, iterations, memory, parallelism, password, salt, null, null, hash, arena, offHeap( memory ), pool,
+		    maxThreads );
+		return hash;
+	}
+
+	/**
+	 * Verifies the password against an encoded hash. Like the native binding, a malformed hash or a hash of another variant does not
+	 * verify instead of throwing.
+	 */
+	@Override
+	public boolean verify( String hash, byte[] password ) {
+		HashParameters parameters;
+		byte[] salt;
+		byte[] expected;
+		try {
+			parameters = HashParameters.parse( hash );
+			int	keyStart	= hash.lastIndexOf( '$' );
+			int	saltStart	= hash.lastIndexOf( '$', keyStart - 1 );
+			salt		= Base64.getDecoder().decode( hash.substring( saltStart + 1, keyStart ) );
+			expected	= Base64.getDecoder().decode( hash.substring( keyStart + 1 ) );
+		} catch ( BoxRuntimeException | IllegalArgumentException | IndexOutOfBoundsException e ) {
+			return false;
+		}
+		if ( parameters.format.variant != variant || expected.length < 4 ) {
+			return false;
+		}
+		byte[] actual = new byte[ expected.length ];
+		Argon2Kernel.derive( type, parameters.version, parameters.iterations, parameters.memory, parameters.parallelism, password, salt, null,
+		    null, actual, arena, offHeap( parameters.memory ), pool, maxThreads );
+		return MessageDigest.isEqual( actual, expected );
+	}
+
+	@Override
+	public boolean verify( String hash, char[] password ) {
+		return Secrets.withUtf8( password, bytes -> verify( hash, bytes ) );
+	}
+
+	@Override
+	public boolean verify( String hash, char[] password, Charset charset ) {
+		return withEncoded( CharBuffer.wrap( password ), charset, bytes -> verify( hash, bytes ) );
+	}
+
+	@Override
+	public boolean verify( String hash, String password ) {
+		return Secrets.withUtf8( password, bytes -> verify( hash, bytes ) );
+	}
+
+	@Override
+	public boolean verify( String hash, String password, Charset charset ) {
+		return withEncoded( CharBuffer.wrap( password ), charset, bytes -> verify( hash, bytes ) );
+	}
+
+	@Override
+	public boolean needsRehash( String hash, int iterations, int memory, int parallelism ) {
+		HashParameters parameters = HashParameters.parse( hash );
+		return parameters.iterations != iterations || parameters.memory != memory || parameters.parallelism != parallelism;
+	}
+
+	@Override
+	public void wipeArray( char[] array ) {
+		Arrays.fill( array, '\0' );
+	}
+
+	@Override
+	public void wipeArray( byte[] array ) {
+		Arrays.fill( array, ( byte ) 0 );
+	}
+
+	/**
+	 * Returns the variant of this engine
+	 *
+	 * @return The Argon2 variant
+	 */
+	public Argon2Types getVariant() {
+		return variant;
+	}
+
+	private static <T> T withEncoded( CharBuffer password, Charset charset, Function<byte[], T> work ) {
+		if ( StandardCharsets.UTF_8.equals( charset ) ) {
+			return Secrets.withUtf8( password, work );
+		}
+		ByteBuffer encoded = charset.encode( password );
+		try {
+			return Secrets.withBytes( encoded, work );
+		} finally {
+			Arrays.fill( encoded.array(), ( byte ) 0 );
+		}
+	}
+
+	/**
+	 * The off-heap arena for a hash of the given memory cost, or null to use the heap. A direct buffer holds at most 2 GiB.
+	 */
+	private BlockArena<LongBuffer> offHeap( int memory ) {
+		return offHeap != null && memory >= offHeapMinMemory && memory <= Integer.MAX_VALUE / 1024 ? offHeap : null;
+	}
+
+}
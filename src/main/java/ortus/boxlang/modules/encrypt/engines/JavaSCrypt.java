@@ -0,0 +1,441 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+
+import com.lambdaworks.crypto.PBKDF;
+
+/**
+ * The SCrypt key derivation function ( RFC 7914 ) in pure Java.
+ * <p>
+ * Unlike {@code SCrypt.scryptJ} of lambdaworks, which allocates the {@code 128 * r * N} byte ROMix table and its work buffers on every
+ * call, the mixing runs on little-endian {@code int} words in arrays leased from a {@link BlockArena}: the table and the work buffers of
+ * a finished derivation are zeroed and reused by the next derivation with the same cost parameters.
+ * <p>
+ * The {@code p} ROMix lanes are independent, so with a fork-join pool they are mixed concurrently by up to {@code maxThreads} tasks, each
+ * with its own table. A higher {@code p} then costs more memory and CPU time but roughly the same wall-clock time.
+ */
+public final class JavaSCrypt {
+
+	/**
+	 * The class of the Vector API Salsa20/8 core, compiled in its own source set so that only it is built against the incubating module
+	 */
+	private static final String			VECTOR_CORE_CLASS	= "ortus.boxlang.modules.encrypt.engines.Salsa20Vector";
+
+	/**
+	 * The Vector API Salsa20/8 core, or null when it is not available
+	 */
+	private static final Salsa20Core	VECTOR_CORE			= loadVectorCore();
+
+	/**
+	 * Whether the {@code jdk.incubator.vector} module is present and its Salsa20/8 core runs on SIMD registers of this host
+	 */
+	public static final boolean			VECTOR_AVAILABLE	= VECTOR_CORE != null;
+
+	private final BlockArena<int[]>		arena;
+	private final ForkJoinPool			pool;
+	private final int					maxThreads;
+	private final boolean				vector;
+
+	/**
+	 * Creates an engine leasing its working arrays from the shared SCrypt arena and mixing the lanes on the calling thread.
+	 */
+	public JavaSCrypt() {
+		this( BlockArena.scrypt(), null, 1 );
+	}
+
+	/**
+	 * Creates an engine leasing its working arrays from the given arena and mixing the lanes on the calling thread.
+	 *
+	 * @param arena The arena providing the ROMix tables and work buffers
+	 */
+	public JavaSCrypt( BlockArena<int[]> arena ) {
+		this( arena, null, 1 );
+	}
+
+	/**
+	 * Creates an engine mixing the lanes of a derivation in parallel.
+	 *
+	 * @param arena      The arena providing the ROMix tables and work buffers
+	 * @param pool       The pool running the lanes in parallel, or null to mix them on the calling thread
+	 * @param maxThreads The maximum number of lanes a single derivation mixes at the same time
+	 */
+	public JavaSCrypt( BlockArena<int[]> arena, ForkJoinPool pool, int maxThreads ) {
+		this( arena, pool, maxThreads, false );
+	}
+
+	/**
+	 * Creates an engine mixing the lanes of a derivation in parallel, choosing between the vector and the scalar Salsa20/8 core. Which
+	 * one is faster depends on the JDK and the SIMD width of the host, so the other constructors keep to the scalar core.
+	 *
+	 * @param arena      The arena providing the ROMix tables and work buffers
+	 * @param pool       The pool running the lanes in parallel, or null to mix them on the calling thread
+	 * @param maxThreads The maximum number of lanes a single derivation mixes at the same time
+	 * @param vector     Whether to use the Vector API core when it is {@link #VECTOR_AVAILABLE available}, the scalar core otherwise
+	 */
+	public JavaSCrypt( BlockArena<int[]> arena, ForkJoinPool pool, int maxThreads, boolean vector ) {
+		this.arena		= arena;
+		this.pool		= pool;
+		this.maxThreads	= Math.max( 1, maxThreads );
+		this.vector		= vector && VECTOR_AVAILABLE;
+	}
+
+	/**
+	 * Whether this engine mixes with the Vector API Salsa20/8 core
+	 *
+	 * @return True for the vector core, false for the scalar core
+	 */
+	public boolean isVectorized() {
+		return vector;
+	}
+
+	/**
+	 * Returns the number of lanes a derivation with the given parallelization mixes at the same time.
+	 *
+	 * @param lanes The parallelization p
+	 *
+	 * @return The number of concurrent lanes, 1 when the lanes are mixed on the calling thread
+	 */
+	public int getThreads( int lanes ) {
+		return pool == null ? 1 : Math.min( lanes, Math.min( maxThreads, pool.getParallelism() ) );
+	}
+
+	/**
+	 * Derives a key with the same contract as {@code SCrypt.scrypt} of lambdaworks.
+	 *
+	 * @param password The password
+	 * @param salt     The salt
+	 * @param cpuCost  The CPU cost N, a power of 2 greater than 1
+	 * @param memory   The memory cost r
+	 * @param lanes    The parallelization p
+	 * @param length   The length of the derived key in bytes
+	 *
+	 * @return The derived key
+	 *
+	 * @throws GeneralSecurityException If HMAC-SHA256 is not available
+	 */
+	public byte[] derive( byte[] password, byte[] salt, int cpuCost, int memory, int lanes, int length ) throws GeneralSecurityException {
+		if ( cpuCost < 2 || ( cpuCost & ( cpuCost - 1 ) ) != 0 ) {
+			throw new IllegalArgumentException( "N must be a power of 2 greater than 1" );
+		}
+		if ( cpuCost > Integer.MAX_VALUE / 128 / memory ) {
+			throw new IllegalArgumentException( "Parameter N is too large" );
+		}
+		if ( memory > Integer.MAX_VALUE / 128 / lanes ) {
+			throw new IllegalArgumentException( "Parameter r is too large" );
+		}
+
+		Mac mac = Mac.getInstance( "HmacSHA256" );
+		mac.init( new RawKey( password ) );
+
+		byte[]	blocks	= new byte[ 128 * memory * lanes ];
+		byte[]	derived	= new byte[ length ];
+		try {
+			PBKDF.pbkdf2( mac, salt, 1, blocks, blocks.length );
+			int threads = getThreads( lanes );
+			if ( threads == 1 ) {
+				mixLanes( blocks, memory, cpuCost, 0, 1 );
+			} else {
+				Lanes tasks = new Lanes( blocks, memory, cpuCost, 0, threads, threads );
+				if ( ForkJoinTask.getPool() == pool ) {
+					tasks.invoke();
+				} else {
+					pool.invoke( tasks );
+				}
+			}
+			PBKDF.pbkdf2( mac, blocks, 1, derived, length );
+			return derived;
+		} finally {
+			Arrays.fill( blocks, ( byte ) 0 );
+		}
+	}
+
+	/**
+	 * Mixes the lanes {@code first, first + step, ...} with one leased table and work buffer.
+	 */
+	private void mixLanes( byte[] blocks, int r, int n, int first, int step ) {
+		int		blockLength	= 128 * r;
+		int[]	table		= arena.acquire( 32 * r * n );
+		int[]	work		= arena.acquire( 64 * r + 16 );
+		try {
+			for ( int offset = first * blockLength; offset < blocks.length; offset += step * blockLength ) {
+				smix( blocks, offset, r, n, table, work, vector );
+			}
+		} finally {
+			arena.release( work );
+			arena.release( table );
+		}
+	}
+
+	/**
+	 * ROMix of one lane: {@code blocks[ offset, offset + 128 * r )} is replaced in place by its mixed value.
+	 *
+	 * @param blocks The lane blocks
+	 * @param offset The offset of the lane
+	 * @param r      The memory cost
+	 * @param n      The CPU cost
+	 * @param table  The ROMix table of {@code 32 * r * n} ints
+	 * @param work   The work buffer of {@code 64 * r + 16} ints
+	 * @param vector Whether to use the Vector API core
+	 */
+	static void smix( byte[] blocks, int offset, int r, int n, int[] table, int[] work, boolean vector ) {
+		int	words	= 32 * r;
+		int	x		= 0;
+		int	y		= words;
+
+		for ( int i = 0; i < words; i++ ) {
+			work[ i ] = readInt( blocks, offset + 4 * i );
+		}
+		for ( int i = 0; i < n; i += 2 ) {
+			System.arraycopy( work, x, table, i * words, words );
+			blockMix( work, x, y, r, vector );
+			System.arraycopy( work, y, table, ( i + 1 ) * words, words );
+			blockMix( work, y, x, r, vector );
+		}
+		int mask = n - 1;
+		for ( int i = 0; i < n; i += 2 ) {
+			int j = work[ x + ( 2 * r - 1 ) * 16 ] & mask;
+			xor( table, j * words, work, x, words );
+			blockMix( work, x, y, r, vector );
+			j = work[ y + ( 2 * r - 1 ) * 16 ] & mask;
+			xor( table, j * words, work, y, words );
+			blockMix( work, y, x, r, vector );
+		}
+		for ( int i = 0; i < words; i++ ) {
+			writeInt( blocks, offset + 4 * i, work[ x + i ] );
+		}
+	}
+
+	/**
+	 * BlockMix with Salsa20/8 from {@code work[ in, in + 32 * r )} into {@code work[ out, out + 32 * r )}, using the 16 ints at
+	 * {@code 64 * r} as scratch. The vector core needs no scratch.
+	 */
+	static void blockMix( int[] work, int in, int out, int r, boolean vector ) {
+		if ( vector ) {
+			VECTOR_CORE.blockMix( work, in, out, r );
+			return;
+		}
+		int t = 64 * r;
+		System.arraycopy( work, in + ( 2 * r - 1 ) * 16, work, t, 16 );
+		for ( int i = 0; i < 2 * r; i++ ) {
+			xor( work, in + i * 16, work, t, 16 );
+			salsa20_8( work, t );
+			System.arraycopy( work, t, work, out + ( ( i & 1 ) * r + ( i >>> 1 ) ) * 16, 16 );
+		}
+	}
+
+	/**
+	 * The Salsa20/8 core applied in place to the 16 ints at {@code offset}.
+	 *
+	 * @param b      The state
+	 * @param offset The offset of the 64 byte block
+	 */
+	static void salsa20_8( int[] b, int offset ) {
+		int	x0	= b[ offset ], x1 = b[ offset + 1 ], x2 = b[ offset + 2 ], x3 = b[ offset + 3 ];
+		int	x4	= b[ offset + 4 ], x5 = b[ offset + 5 ], x6 = b[ offset + 6 ], x7 = b[ offset + 7 ];
+		int	x8	= b[ offset + 8 ], x9 = b[ offset + 9 ], x10 = b[ offset + 10 ], x11 = b[ offset + 11 ];
+		int	x12	= b[ offset + 12 ], x13 = b[ offset + 13 ], x14 = b[ offset + 14 ], x15 = b[ offset + 15 ];
+
+		for ( int i = 0; i < 8; i += 2 ) {
+			// columns
+			x4	^= Integer.rotateLeft( x0 + x12, 7 );
+			x8	^= Integer.rotateLeft( x4 + x0, 9 );
+			x12	^= Integer.rotateLeft( x8 + x4, 13 );
+			x0	^= Integer.rotateLeft( x12 + x8, 18 );
+			x9	^= Integer.rotateLeft( x5 + x1, 7 );
+			x13	^= Integer.rotateLeft( x9 + x5, 9 );
+			x1	^= Integer.rotateLeft( x13 + x9, 13 );
+			x5	^= Integer.rotateLeft( x1 + x13, 18 );
+			x14	^= Integer.rotateLeft( x10 + x6, 7 );
+			x2	^= Integer.rotateLeft( x14 + x10, 9 );
+			x6	^= Integer.rotateLeft( x2 + x14, 13 );
+			x10	^= Integer.rotateLeft( x6 + x2, 18 );
+			x3	^= Integer.rotateLeft( x15 + x11, 7 );
+			x7	^= Integer.rotateLeft( x3 + x15, 9 );
+			x11	^= Integer.rotateLeft( x7 + x3, 13 );
+			x15	^= Integer.rotateLeft( x11 + x7, 18 );
+			// rows
+			x1	^= Integer.rotateLeft( x0 + x3, 7 );
+			x2	^= Integer.rotateLeft( x1 + x0, 9 );
+			x3	^= Integer.rotateLeft( x2 + x1, 13 );
+			x0	^= Integer.rotateLeft( x3 + x2, 18 );
+			x6	^= Integer.rotateLeft( x5 + x4, 7 );
+			x7	^= Integer.rotateLeft( x6 + x5, 9 );
+			x4	^= Integer.rotateLeft( x7 + x6, 13 );
+			x5	^= Integer.rotateLeft( x4 + x7, 18 );
+			x11	^= Integer.rotateLeft( x10 + x9, 7 );
+			x8	^= Integer.rotateLeft( x11 + x10, 9 );
+			x9	^= Integer.rotateLeft( x8 + x11, 13 );
+			x10	^= Integer.rotateLeft( x9 + x8, 18 );
+			x12	^= Integer.rotateLeft( x15 + x14, 7 );
+			x13	^= Integer.rotateLeft( x12 + x15, 9 );
+			x14	^= Integer.rotateLeft( x13 + x12, 13 );
+			x15	^= Integer.rotateLeft( x14 + x13, 18 );
+		}
+
+		b[ offset ]			+= x0;
+		b[ offset + 1 ]		+= x1;
+		b[ offset + 2 ]		+= x2;
+		b[ offset + 3 ]		+= x3;
+		b[ offset + 4 ]		+= x4;
+		b[ offset + 5 ]		+= x5;
+		b[ offset + 6 ]		+= x6;
+		b[ offset + 7 ]		+= x7;
+		b[ offset + 8 ]		+= x8;
+		b[ offset + 9 ]		+= x9;
+		b[ offset + 10 ]	+= x10;
+		b[ offset + 11 ]	+= x11;
+		b[ offset + 12 ]	+= x12;
+		b[ offset + 13 ]	+= x13;
+		b[ offset + 14 ]	+= x14;
+		b[ offset + 15 ]	+= x15;
+	}
+
+	/**
+	 * Loads and probes the Vector API core. The module must be checked first: without it, loading the core fails.
+	 */
+	private static Salsa20Core loadVectorCore() {
+		if ( ModuleLayer.boot().findModule( "jdk.incubator.vector" ).isEmpty() ) {
+			return null;
+		}
+		try {
+			Salsa20Core core = ( Salsa20Core ) Class.forName( VECTOR_CORE_CLASS ).getDeclaredConstructor().newInstance();
+			return core.isSupported() ? core : null;
+		} catch ( ReflectiveOperationException | LinkageError | RuntimeException e ) {
+			return null;
+		}
+	}
+
+	private static void xor( int[] source, int sourceOffset, int[] target, int targetOffset, int length ) {
+		for ( int i = 0; i < length; i++ ) {
+			target[ targetOffset + i ] ^= source[ sourceOffset + i ];
+		}
+	}
+
+	private static int readInt( byte[] bytes, int offset ) {
+		return ( bytes[ offset ] & 0xff )
+		    | ( bytes[ offset + 1 ] & 0xff ) << 8
+		    | ( bytes[ offset + 2 ] & 0xff ) << 16
+		    | ( bytes[ offset + 3 ] & 0xff ) << 24;
+	}
+
+	private static void writeInt( byte[] bytes, int offset, int value ) {
+		bytes[ offset ]		= ( byte ) value;
+		bytes[ offset + 1 ]	= ( byte ) ( value >>> 8 );
+		bytes[ offset + 2 ]	= ( byte ) ( value >>> 16 );
+		bytes[ offset + 3 ]	= ( byte ) ( value >>> 24 );
+	}
+
+	/**
+	 * Mixes the lanes of a range of threads, splitting the range until each task is a single thread mixing every {@code threads}-th lane.
+	 */
+	private final class Lanes extends RecursiveAction {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private final byte[]		blocks;
+		private final int			r;
+		private final int			n;
+		private final int			from;
+		private final int			to;
+		private final int			threads;
+
+		Lanes( byte[] blocks, int r, int n, int from, int to, int threads ) {
+			this.blocks		= blocks;
+			this.r			= r;
+			this.n			= n;
+			this.from		= from;
+			this.to			= to;
+			this.threads	= threads;
+		}
+
+		@Override
+		protected void compute() {
+			if ( to - from == 1 ) {
+				mixLanes( blocks, r, n, from, threads );
+				return;
+			}
+			int middle = ( from + to ) >>> 1;
+			invokeAll( new Lanes( blocks, r, n, from, middle, threads ), new Lanes( blocks, r, n, middle, to, threads ) );
+		}
+
+	}
+
+	/**
+	 * The password as an HMAC key without the copy of {@code SecretKeySpec}, which also rejects the empty passwords that the native
+	 * libscrypt accepts.
+	 */
+	private static final class RawKey implements SecretKey {
+
+		private static final long	serialVersionUID	= 1L;
+
+		private final byte[]		key;
+
+		RawKey( byte[] key ) {
+			this.key = key;
+		}
+
+		@Override
+		public String getAlgorithm() {
+			return "HmacSHA256";
+		}
+
+		@Override
+		public String getFormat() {
+			return "RAW";
+		}
+
+		@Override
+		public byte[] getEncoded() {
+			return key.clone();
+		}
+
+	}
+
+	/**
+	 * A BlockMix with Salsa20/8 implemented outside of the main sources, such as the Vector API core.
+	 */
+	interface Salsa20Core {
+
+		/**
+		 * Whether this core runs efficiently on this host and matches the scalar BlockMix.
+		 *
+		 * @return True if this core can replace the scalar one
+		 */
+		boolean isSupported();
+
+		/**
+		 * BlockMix with Salsa20/8 from {@code work[ in, in + 32 * r )} into {@code work[ out, out + 32 * r )}.
+		 *
+		 * @param work The work buffer
+		 * @param in   The offset of the input blocks
+		 * @param out  The offset of the output blocks
+		 * @param r    The memory cost
+		 */
+		void blockMix( int[] work, int in, int out, int r );
+	}
+
+}
@@ -4,13 +4,113 @@ import ortus.boxlang.runtime.scopes.Key;
 
 public class EncryptKeys {
 
-	public static final Key	salt		= Key.of( "salt" );
-	public static final Key	rounds		= Key.of( "rounds" );
-	public static final Key	iterations	= Key.of( "iterations" );
-	public static final Key	hashed		= Key.of( "hashed" );
-	public static final Key	parallelism	= Key.of( "parallelism" );
-	public static final Key	memory		= Key.of( "memory" );
-	public static final Key	keySize		= Key.of( "keySize" );
-	public static final Key	cpuCost		= Key.of( "cpuCost" );
-	public static final Key	saltLength	= Key.of( "saltLength" );
+	public static final Key	moduleName	= Key.of( "password-encrypt" );
+
+	public static final Key	salt			= Key.of( "salt" );
+	public static final Key	rounds			= Key.of( "rounds" );
+	public static final Key	iterations		= Key.of( "iterations" );
+	public static final Key	hashed			= Key.of( "hashed" );
+	public static final Key	parallelism		= Key.of( "parallelism" );
+	public static final Key	memory			= Key.of( "memory" );
+	public static final Key	keySize			= Key.of( "keySize" );
+	public static final Key	cpuCost			= Key.of( "cpuCost" );
+	public static final Key	saltLength		= Key.of( "saltLength" );
+	public static final Key	array			= Key.of( "array" );
+	public static final Key	algorithm		= Key.of( "algorithm" );
+	public static final Key	options			= Key.of( "options" );
+	public static final Key	success			= Key.of( "success" );
+	public static final Key	valid			= Key.of( "valid" );
+	public static final Key	error			= Key.of( "error" );
+	public static final Key	targetMillis	= Key.of( "targetMillis" );
+	public static final Key	maxMemory		= Key.of( "maxMemory" );
+	public static final Key	apply			= Key.of( "apply" );
+	public static final Key	millis			= Key.of( "millis" );
+	public static final Key	parameters		= Key.of( "parameters" );
+	public static final Key	policy			= Key.of( "policy" );
+	public static final Key	upgraded		= Key.of( "upgraded" );
+	public static final Key	operations		= Key.of( "operations" );
+	public static final Key	operation		= Key.of( "operation" );
+	public static final Key	calls			= Key.of( "calls" );
+	public static final Key	errors			= Key.of( "errors" );
+	public static final Key	rejections		= Key.of( "rejections" );
+	public static final Key	meanMillis		= Key.of( "meanMillis" );
+	public static final Key	p50Millis		= Key.of( "p50Millis" );
+	public static final Key	p90Millis		= Key.of( "p90Millis" );
+	public static final Key	p99Millis		= Key.of( "p99Millis" );
+	public static final Key	maxMillis		= Key.of( "maxMillis" );
+	public static final Key	active			= Key.of( "active" );
+	public static final Key	queueDepth		= Key.of( "queueDepth" );
+	public static final Key	busy			= Key.of( "busy" );
+	public static final Key	queueWait		= Key.of( "queueWait" );
+	public static final Key	arenas			= Key.of( "arenas" );
+	public static final Key	hits			= Key.of( "hits" );
+	public static final Key	misses			= Key.of( "misses" );
+	public static final Key	retainedBytes	= Key.of( "retainedBytes" );
+	public static final Key	reset			= Key.of( "reset" );
+	public static final Key	durationNanos	= Key.of( "durationNanos" );
+	public static final Key	outcome			= Key.of( "outcome" );
+	public static final Key	saturated		= Key.of( "saturated" );
+	public static final Key	degraded		= Key.of( "degraded" );
+	public static final Key	shed			= Key.of( "shed" );
+	public static final Key	principal		= Key.of( "principal" );
+	public static final Key	principals		= Key.of( "principals" );
+	public static final Key	throttled		= Key.of( "throttled" );
+	public static final Key	size			= Key.of( "size" );
+	public static final Key	source			= Key.of( "source" );
+	public static final Key	destination		= Key.of( "destination" );
+	public static final Key	checkpoint		= Key.of( "checkpoint" );
+	public static final Key	idColumn		= Key.of( "idColumn" );
+	public static final Key	valueColumn		= Key.of( "valueColumn" );
+	public static final Key	chunkSize		= Key.of( "chunkSize" );
+	public static final Key	concurrency		= Key.of( "concurrency" );
+	public static final Key	records			= Key.of( "records" );
+	public static final Key	processed		= Key.of( "processed" );
+	public static final Key	failed			= Key.of( "failed" );
+	public static final Key	resumed			= Key.of( "resumed" );
+
+	// Interception points
+	public static final Key	onEncryptRequest	= Key.of( "onEncryptRequest" );
+	public static final Key	postEncryptRequest	= Key.of( "postEncryptRequest" );
+
+	// Module settings
+	public static final Key	executor		= Key.of( "executor" );
+	public static final Key	enabled			= Key.of( "enabled" );
+	public static final Key	maxConcurrency	= Key.of( "maxConcurrency" );
+	public static final Key	queueSize		= Key.of( "queueSize" );
+	public static final Key	queueTimeout	= Key.of( "queueTimeout" );
+	public static final Key	maxLaneThreads	= Key.of( "maxLaneThreads" );
+	public static final Key	defaults		= Key.of( "defaults" );
+	public static final Key	argon2			= Key.of( "argon2" );
+	public static final Key	bcrypt			= Key.of( "bcrypt" );
+	public static final Key	scrypt			= Key.of( "scrypt" );
+	public static final Key	calibration		= Key.of( "calibration" );
+	public static final Key	engines			= Key.of( "engines" );
+	public static final Key	vector			= Key.of( "vector" );
+	public static final Key	metrics			= Key.of( "metrics" );
+	public static final Key	jmx				= Key.of( "jmx" );
+	public static final Key	loadShedding	= Key.of( "loadShedding" );
+	public static final Key	queueWaitMillis	= Key.of( "queueWaitMillis" );
+	public static final Key	rejectEarly		= Key.of( "rejectEarly" );
+	public static final Key	floor			= Key.of( "floor" );
+	public static final Key	throttle		= Key.of( "throttle" );
+	public static final Key	maxFailures		= Key.of( "maxFailures" );
+	public static final Key	windowSeconds	= Key.of( "windowSeconds" );
+	public static final Key	maxPrincipals	= Key.of( "maxPrincipals" );
+	public static final Key	verifyCache		= Key.of( "verifyCache" );
+	public static final Key	ttlSeconds		= Key.of( "ttlSeconds" );
+	public static final Key	maxEntries		= Key.of( "maxEntries" );
+	public static final Key	salts			= Key.of( "salts" );
+	public static final Key	poolSize		= Key.of( "poolSize" );
+	public static final Key	offHeap			= Key.of( "offHeap" );
+	public static final Key	minMemory		= Key.of( "minMemory" );
+	public static final Key	budgetMiB		= Key.of( "budgetMiB" );
+	public static final Key	maxRetainedMiB	= Key.of( "maxRetainedMiB" );
+	public static final Key	inUseBytes		= Key.of( "inUseBytes" );
+	public static final Key	budgetBytes		= Key.of( "budgetBytes" );
+	public static final Key	waiting			= Key.of( "waiting" );
+	public static final Key	memoryBudget	= Key.of( "memoryBudget" );
+	public static final Key	verifyLimits	= Key.of( "verifyLimits" );
+	public static final Key	maxMemoryMiB	= Key.of( "maxMemoryMiB" );
+	public static final Key	maxIterations	= Key.of( "maxIterations" );
+	public static final Key	maxBCryptCost	= Key.of( "maxBCryptCost" );
 }
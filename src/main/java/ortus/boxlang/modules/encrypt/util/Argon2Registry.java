@@ -0,0 +1,246 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.nio.LongBuffer;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Advanced;
+import de.mkammerer.argon2.Argon2Constants;
+import de.mkammerer.argon2.Argon2Factory;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import de.mkammerer.argon2.Argon2Version;
+import ortus.boxlang.modules.encrypt.engines.BlockArena;
+import ortus.boxlang.modules.encrypt.engines.JavaArgon2;
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+
+/**
+ * Holds one {@link Argon2} instance per Argon2 variant, backed by the engine selected in the {@code engines.argon2} module setting:
+ * <ul>
+ * <li>{@code native}: the JNA binding to libargon2 of argon2-jvm</li>
+ * <li>{@code java}: the pure Java {@link JavaArgon2} engine, which needs no native library</li>
+ * <li>{@code auto}: the native binding if libargon2 loads on this platform, the Java engine otherwise</li>
+ * </ul>
+ * The instances are stateless and thread safe, so they are created lazily on first use of each variant and shared by every hash and
+ * verify call afterwards. Both engines produce and accept the same encoded hashes.
+ * <p>
+ * With {@code offHeap.enabled}, the Java engine takes the matrix of every hash of at least {@code offHeap.minMemory} KiB from a shared arena
+ * of direct buffers. That arena hands out at most {@code offHeap.budgetMiB} at once; further hashes wait for memory to be released, up to
+ * the {@code executor.queueTimeout}. With the {@link MemoryBudget} enabled, the memory budget caps the arena instead.
+ */
+public final class Argon2Registry {
+
+	private static final Argon2Types[]					VARIANTS	= Argon2Types.values();
+	private static final AtomicReferenceArray<Argon2>	INSTANCES	= new AtomicReferenceArray<>( VARIANTS.length );
+	private static volatile KDFEngine				engine;
+	private static volatile Boolean						nativeAvailable;
+	private static volatile BlockArena<LongBuffer>		offHeapArena;
+
+	private Argon2Registry() {
+	}
+
+	/**
+	 * Returns the shared Argon2 instance for the given variant.
+	 *
+	 * @param variant The Argon2 variant
+	 *
+	 * @return The shared instance
+	 */
+	public static Argon2 get( Argon2Types variant ) {
+		Argon2 argon2 = INSTANCES.get( variant.ordinal() );
+		if ( argon2 == null ) {
+			// Losing the race only costs a throwaway wrapper, the first registered instance wins
+			INSTANCES.compareAndSet( variant.ordinal(), null, create( variant ) );
+			argon2 = INSTANCES.get( variant.ordinal() );
+		}
+		return argon2;
+	}
+
+	/**
+	 * Hashes a password with the engine in use and a salt from the {@link SaltService}, instead of the per-instance random of argon2-jvm,
+	 * once its memory fits into the {@link MemoryBudget}.
+	 *
+	 * @param variant     The Argon2 variant
+	 * @param iterations  The number of passes over the memory
+	 * @param memory      The memory in KiB
+	 * @param parallelism The number of lanes
+	 * @param password    The password bytes
+	 *
+	 * @return The encoded hash
+	 */
+	public static String hash( Argon2Types variant, int iterations, int memory, int parallelism, byte[] password ) {
+		Argon2 argon2 = get( variant );
+		return MemoryBudget.getInstance().admit( MemoryBudget.argon2( memory ), () -> {
+			if ( argon2 instanceof JavaArgon2 || password.length == 0 ) {
+				// The Java engine draws from the salt service itself, JNA cannot allocate the native copy of an empty password
+				return argon2.hash( iterations, memory, parallelism, password );
+			}
+			byte[] salt = SaltService.getInstance().salt( Argon2Constants.DEFAULT_SALT_LENGTH );
+			return ( ( Argon2Advanced ) argon2 ).hashAdvanced( iterations, memory, parallelism, password, salt, Argon2Constants.DEFAULT_HASH_LENGTH,
+			    Argon2Version.V13 ).getEncoded();
+		} );
+	}
+
+	/**
+	 * Verifies a password against an encoded hash with the engine in use, once the memory of the hash fits into the {@link MemoryBudget}.
+	 *
+	 * @param variant  The Argon2 variant the hash must have been created with
+	 * @param hashed   The encoded Argon2 hash
+	 * @param password The password bytes
+	 *
+	 * @return Whether the password matches the hash
+	 */
+	public static boolean verify( Argon2Types variant, String hashed, byte[] password ) {
+		Argon2 argon2 = get( variant );
+		return MemoryBudget.getInstance().admit( hashed, () -> argon2.verify( hashed, password ) );
+	}
+
+	/**
+	 * Verifies a password against a parsed hash with the engine in use. The key is derived straight from the decoded salt and parameters,
+	 * so neither engine parses the encoded hash again. The verification waits until the memory of the hash fits into the {@link MemoryBudget}.
+	 *
+	 * @param hashed   The parsed Argon2 hash
+	 * @param password The password bytes
+	 *
+	 * @return Whether the password matches the hash
+	 */
+	public static boolean verify( HashDescriptor hashed, byte[] password ) {
+		HashParameters	parameters	= hashed.getParameters();
+		Argon2			argon2		= get( parameters.format.variant );
+		return MemoryBudget.getInstance().admit( MemoryBudget.cost( parameters ), () -> {
+			byte[] derived;
+			if ( argon2 instanceof JavaArgon2 java ) {
+				derived = java.derive( parameters.version, parameters.iterations, parameters.memory, parameters.parallelism, password, hashed.salt(),
+				    hashed.getKeyLength() );
+			} else if ( password.length == 0 ) {
+				// JNA cannot allocate the native copy of an empty password, the encoded path of the binding handles it
+				return argon2.verify( hashed.getEncoded(), password );
+			} else {
+				derived = ( ( Argon2Advanced ) argon2 ).rawHashAdvanced( parameters.iterations, parameters.memory, parameters.parallelism, password,
+				    hashed.salt(), null, null, hashed.getKeyLength(), parameters.version == 0x10 ? Argon2Version.V10 : Argon2Version.V13 );
+			}
+			return MessageDigest.isEqual( derived, hashed.key() );
+		} );
+	}
+
+	/**
+	 * Returns the engine in use, resolving {@code auto} to the engine it selected.
+	 *
+	 * @return Either {@link KDFEngine#NATIVE} or {@link KDFEngine#JAVA}
+	 */
+	public static KDFEngine getEngine() {
+		KDFEngine result = engine;
+		if ( result == null ) {
+			String configured = ModuleSettings.getString( ModuleSettings.getStruct( EncryptKeys.engines ), EncryptKeys.argon2, "auto" );
+			result = engine = resolve( KDFEngine.parse( "Argon2", configured ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Switches the engine, replacing the shared instances of all variants.
+	 *
+	 * @param selected The engine to use from now on
+	 */
+	public static void setEngine( KDFEngine selected ) {
+		engine = resolve( selected );
+		for ( int i = 0; i < VARIANTS.length; i++ ) {
+			INSTANCES.set( i, null );
+		}
+	}
+
+	/**
+	 * Whether the native libargon2 can be loaded on this platform. The library is probed once with a minimal hash.
+	 *
+	 * @return True if the native binding works
+	 */
+	public static boolean isNativeAvailable() {
+		Boolean result = nativeAvailable;
+		if ( result == null ) {
+			try {
+				Argon2Factory.createAdvanced( Argon2Types.ARGON2id ).hash( 1, 8, 1, new byte[ 1 ] );
+				result = Boolean.TRUE;
+			} catch ( LinkageError e ) {
+				result = Boolean.FALSE;
+			}
+			nativeAvailable = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the arena of direct buffers shared by the Java engine instances, created from the {@code offHeap} module settings.
+	 * <p>
+	 * When the {@link MemoryBudget} is enabled the arena has no budget of its own: every derivation is already admitted against the
+	 * memory budget, on or off the heap, and charging it twice would make it wait on two budgets with different timeouts.
+	 *
+	 * @return The off-heap arena, or null if off-heap matrices are disabled
+	 */
+	public static BlockArena<LongBuffer> getOffHeapArena() {
+		BlockArena<LongBuffer> result = offHeapArena;
+		if ( result == null ) {
+			IStruct settings = ModuleSettings.getStruct( EncryptKeys.offHeap );
+			if ( !ModuleSettings.getBoolean( settings, EncryptKeys.enabled, false ) ) {
+				return null;
+			}
+			synchronized ( Argon2Registry.class ) {
+				result = offHeapArena;
+				if ( result == null ) {
+					long budget = MemoryBudget.getInstance().isEnabled() ? 0 : ( long ) ModuleSettings.getInt( settings, EncryptKeys.budgetMiB, 1024 ) << 20;
+					result = offHeapArena = BlockArena.directLongs(
+					    ( long ) ModuleSettings.getInt( settings, EncryptKeys.maxRetainedMiB, 256 ) << 20,
+					    budget,
+					    ModuleSettings.getInt( ModuleSettings.getStruct( EncryptKeys.executor ), EncryptKeys.queueTimeout, KDFExecutor.DEFAULT_QUEUE_TIMEOUT )
+					);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Eagerly creates the instances of all variants, so the engine is resolved before the first request. Called from the
+	 * {@code onLoad()} method of the module.
+	 */
+	public static void warmUp() {
+		for ( Argon2Types variant : VARIANTS ) {
+			get( variant );
+		}
+	}
+
+	private static KDFEngine resolve( KDFEngine selected ) {
+		if ( selected == KDFEngine.AUTO ) {
+			return isNativeAvailable() ? KDFEngine.NATIVE : KDFEngine.JAVA;
+		}
+		return selected;
+	}
+
+	private static Argon2 create( Argon2Types variant ) {
+		if ( getEngine() == KDFEngine.NATIVE ) {
+			return Argon2Factory.createAdvanced( variant );
+		}
+		KDFExecutor executor = KDFExecutor.getInstance();
+		return new JavaArgon2( variant, Argon2Constants.DEFAULT_SALT_LENGTH, Argon2Constants.DEFAULT_HASH_LENGTH, BlockArena.argon2(),
+		    getOffHeapArena(), ModuleSettings.getInt( ModuleSettings.getStruct( EncryptKeys.offHeap ), EncryptKeys.minMemory, 65536 ),
+		    executor.getForkJoinPool(), executor.getMaxLaneThreads() );
+	}
+
+}
@@ -0,0 +1,249 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.Arrays;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import ortus.boxlang.modules.encrypt.engines.JavaBCrypt;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Byte oriented BCrypt hashing in the modular crypt format ( {@code $2a$10$<22 char salt><31 char hash>} ).
+ * <p>
+ * {@link BCrypt#hashpw(String, String)} only accepts the password as a {@code String} and copies it twice on the way to the key schedule.
+ * This codec feeds UTF-8 bytes straight into the {@link JavaBCrypt} key schedule and does the salt parsing and radix-64 encoding itself,
+ * so the password bytes stay under the control of the caller. The $2a$, $2b$ and $2y$ revisions all hash the NUL-terminated password and produce
+ * identical keys; the revision of the salt is kept in the result. The legacy $2$ revision, which has no minor version and is one character
+ * shorter, hashes the password without its terminating NUL, as jBCrypt does.
+ */
+public final class BCryptCodec {
+
+	/**
+	 * The length of the decoded salt in bytes
+	 */
+	private static final int	SALT_LENGTH	= 16;
+
+	/**
+	 * The number of ciphertext bytes in the encoded hash, all but the last one
+	 */
+	private static final int	HASH_LENGTH	= 23;
+
+	private static final char[]	ALPHABET	= "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+
+	private static final byte[]	INDEX		= new byte[ 128 ];
+	static {
+		Arrays.fill( INDEX, ( byte ) -1 );
+		for ( int i = 0; i < ALPHABET.length; i++ ) {
+			INDEX[ ALPHABET[ i ] ] = ( byte ) i;
+		}
+	}
+
+	private BCryptCodec() {
+	}
+
+	/**
+	 * Generates a {@code $2a$} salt with the given cost, drawing its random bytes from the {@link SaltService}. Equivalent to
+	 * {@link BCrypt#gensalt(int)}, which seeds a new {@link java.security.SecureRandom} on every call.
+	 *
+	 * @param rounds The log2 of the number of rounds, between 4 and 30
+	 *
+	 * @return The encoded salt
+	 */
+	public static String gensalt( int rounds ) {
+		if ( rounds < 4 || rounds > 30 ) {
+			throw new BoxRuntimeException( "The BCrypt cost must be between 4 and 30, but was " + rounds );
+		}
+		StringBuilder result = new StringBuilder( 29 );
+		result.append( "$2a$" ).append( rounds / 10 ).append( rounds % 10 ).append( '$' );
+		encode( SaltService.getInstance().salt( SALT_LENGTH ), SALT_LENGTH, result );
+		return result.toString();
+	}
+
+	/**
+	 * Hashes the UTF-8 bytes of a password with the given salt.
+	 *
+	 * @param password The UTF-8 encoded password, without a terminating NUL
+	 * @param salt     A salt as produced by {@link #gensalt(int)} or {@link BCrypt#gensalt(int)}, or an existing hash to reuse its salt and
+	 *                 cost
+	 *
+	 * @return The encoded hash
+	 */
+	public static String hash( byte[] password, String salt ) {
+		HashFormat format = HashFormat.detect( salt );
+		if ( format == null || format.algorithm != PasswordHasher.Algorithm.BCRYPT ) {
+			throw new BoxRuntimeException( "The format of the passed BCrypt salt is incorrect" );
+		}
+		int cost = format.prefix.length();
+		if ( salt.length() < cost + 25 || salt.charAt( cost + 2 ) != '$' ) {
+			throw new BoxRuntimeException( "The format of the passed BCrypt salt is incorrect" );
+		}
+		int rounds = ( salt.charAt( cost ) - '0' ) * 10 + salt.charAt( cost + 1 ) - '0';
+		if ( rounds < 4 || rounds > 31 ) {
+			throw new BoxRuntimeException( "The BCrypt cost must be between 4 and 31, but was " + salt.substring( cost, cost + 2 ) );
+		}
+		byte[]			saltb	= decodeSalt( salt );
+		byte[]			hashed	= derive( password, saltb, rounds, format );
+
+		StringBuilder	result	= new StringBuilder( 60 );
+		result.append( salt, 0, cost + 3 );
+		encode( saltb, SALT_LENGTH, result );
+		encode( hashed, HASH_LENGTH, result );
+		return result.toString();
+	}
+
+	/**
+	 * Verifies the UTF-8 bytes of a password against a hash, comparing in constant time.
+	 *
+	 * @param password The UTF-8 encoded password, without a terminating NUL
+	 * @param hashed   The encoded hash
+	 *
+	 * @return Whether the password matches the hash
+	 */
+	public static boolean verify( byte[] password, String hashed ) {
+		String	computed	= hash( password, hashed );
+		int		diff		= computed.length() ^ hashed.length();
+		for ( int i = 0, length = Math.min( computed.length(), hashed.length() ); i < length; i++ ) {
+			diff |= computed.charAt( i ) ^ hashed.charAt( i );
+		}
+		return diff == 0;
+	}
+
+	/**
+	 * Verifies the UTF-8 bytes of a password against a parsed hash, comparing in constant time. The salt is not decoded again, but the
+	 * derived key is compared in its encoded form like {@link #verify(byte[], String)} does: a hash whose last salt or key character
+	 * carries unused bits decodes to the same bytes as the canonical one, yet never matches, whichever path verifies it.
+	 *
+	 * @param password The UTF-8 encoded password, without a terminating NUL
+	 * @param hashed   The parsed BCrypt hash
+	 *
+	 * @return Whether the password matches the hash
+	 */
+	public static boolean verify( byte[] password, HashDescriptor hashed ) {
+		if ( hashed.getAlgorithm() != PasswordHasher.Algorithm.BCRYPT ) {
+			throw new BoxRuntimeException( "The format of the passed BCrypt salt is incorrect" );
+		}
+		byte[]			derived		= derive( password, hashed.salt(), hashed.getParameters().iterations, hashed.getFormat() );
+		StringBuilder	computed	= new StringBuilder( 53 );
+		encode( hashed.salt(), SALT_LENGTH, computed );
+		encode( derived, HASH_LENGTH, computed );
+		String			expected	= hashed.getEncoded();
+		int				offset		= saltOffset( expected );
+		int				diff		= computed.length() ^ ( expected.length() - offset );
+		for ( int i = 0, length = Math.min( computed.length(), expected.length() - offset ); i < length; i++ ) {
+			diff |= computed.charAt( i ) ^ expected.charAt( offset + i );
+		}
+		return diff == 0;
+	}
+
+	/**
+	 * Runs the key schedule over the password, NUL-terminated unless the hash is of the legacy $2$ revision.
+	 */
+	private static byte[] derive( byte[] password, byte[] salt, int rounds, HashFormat format ) {
+		byte[] key = Secrets.acquire( format == HashFormat.BCRYPT_2 ? password.length : password.length + 1 );
+		System.arraycopy( password, 0, key, 0, password.length );
+		try {
+			return JavaBCrypt.derive( key, salt, rounds );
+		} finally {
+			Secrets.release( key );
+		}
+	}
+
+	/**
+	 * Returns the index of the salt in an encoded hash or salt: after {@code $2a$10$}, or after {@code $2$10$} for the legacy revision.
+	 */
+	static int saltOffset( String hashed ) {
+		return hashed.charAt( 2 ) == '$' ? 6 : 7;
+	}
+
+	/**
+	 * Decodes the 16 byte salt of an encoded hash or salt.
+	 */
+	static byte[] decodeSalt( String hashed ) {
+		return decode( hashed, saltOffset( hashed ), SALT_LENGTH );
+	}
+
+	/**
+	 * Decodes the 23 byte key of an encoded hash.
+	 */
+	static byte[] decodeKey( String hashed ) {
+		return decode( hashed, saltOffset( hashed ) + 22, HASH_LENGTH );
+	}
+
+	/**
+	 * Encodes the first {@code length} bytes with the BCrypt radix-64 alphabet, without padding.
+	 */
+	private static void encode( byte[] data, int length, StringBuilder out ) {
+		int i = 0;
+		while ( i < length ) {
+			int c1 = data[ i++ ] & 0xff;
+			out.append( ALPHABET[ c1 >> 2 ] );
+			c1 = ( c1 & 0x03 ) << 4;
+			if ( i >= length ) {
+				out.append( ALPHABET[ c1 ] );
+				break;
+			}
+			int c2 = data[ i++ ] & 0xff;
+			out.append( ALPHABET[ c1 | c2 >> 4 ] );
+			c1 = ( c2 & 0x0f ) << 2;
+			if ( i >= length ) {
+				out.append( ALPHABET[ c1 ] );
+				break;
+			}
+			c2 = data[ i++ ] & 0xff;
+			out.append( ALPHABET[ c1 | c2 >> 6 ] );
+			out.append( ALPHABET[ c2 & 0x3f ] );
+		}
+	}
+
+	/**
+	 * Decodes {@code length} bytes from the radix-64 characters starting at the given offset.
+	 */
+	private static byte[] decode( String encoded, int offset, int length ) {
+		byte[]	data	= new byte[ length ];
+		int		j		= 0;
+		int		i		= offset;
+		while ( j < length ) {
+			int	c1	= char64( encoded, i++ );
+			int	c2	= char64( encoded, i++ );
+			data[ j++ ] = ( byte ) ( c1 << 2 | c2 >> 4 );
+			if ( j >= length ) {
+				break;
+			}
+			int c3 = char64( encoded, i++ );
+			data[ j++ ] = ( byte ) ( c2 << 4 | c3 >> 2 );
+			if ( j >= length ) {
+				break;
+			}
+			int c4 = char64( encoded, i++ );
+			data[ j++ ] = ( byte ) ( c3 << 6 | c4 );
+		}
+		return data;
+	}
+
+	private static int char64( String encoded, int index ) {
+		char	c		= encoded.charAt( index );
+		int		value	= c < 128 ? INDEX[ c ] : -1;
+		if ( value < 0 ) {
+			throw new BoxRuntimeException( "The format of the passed BCrypt salt is incorrect" );
+		}
+		return value;
+	}
+
+}
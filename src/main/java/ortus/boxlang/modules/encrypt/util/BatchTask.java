@@ -0,0 +1,112 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Fans a list of items out across the slots of the {@link KDFExecutor}, applying the same work to each item.
+ * <p>
+ * Every item is submitted to the executor like a single hash or verify call, so a batch shares the concurrency cap, the queue timeout and
+ * the {@code PasswordEncrypt.Busy} handling with every other caller and never runs more key derivations than the executor allows. At most
+ * {@code concurrency} items are submitted at a time, so a large batch takes no more than that many places in the queue and logins arriving
+ * meanwhile are not stuck behind it.
+ * <p>
+ * The task of an item is prepared on the calling thread right before it is submitted, so the {@code onEncryptRequest} interception point
+ * of a wrapped key derivation is announced before the item is queued.
+ * <p>
+ * Results keep the order of the items. A failing item does not abort the batch: its slot receives a struct with {@code success: false}
+ * and the error message instead. So does an item whose task could not be prepared, e.g. because an interceptor rejected it.
+ */
+public final class BatchTask {
+
+	private BatchTask() {
+	}
+
+	/**
+	 * Applies the work to every item on the module executor and waits for all of them to complete.
+	 *
+	 * @param items The items to process
+	 * @param work  Prepares the task of each item. The result of the task is stored in the slot of the item.
+	 *
+	 * @return The results, in the order of the items
+	 */
+	public static Object[] run( List<?> items, Function<Object, Callable<?>> work ) {
+		KDFExecutor executor = KDFExecutor.getInstance();
+		return run( executor, executor.getMaxConcurrency(), items, work );
+	}
+
+	/**
+	 * Applies the work to every item on the given executor and waits for all of them to complete.
+	 *
+	 * @param executor    The executor to run the work on
+	 * @param concurrency The maximum number of items submitted at a time
+	 * @param items       The items to process
+	 * @param work        Prepares the task of each item. The result of the task is stored in the slot of the item.
+	 *
+	 * @return The results, in the order of the items
+	 */
+	public static Object[] run( KDFExecutor executor, int concurrency, List<?> items, Function<Object, Callable<?>> work ) {
+		Object[]				results	= new Object[ items.size() ];
+		Semaphore				window	= new Semaphore( Math.max( 1, concurrency ) );
+		CompletableFuture<?>[]	done	= new CompletableFuture<?>[ results.length ];
+		try {
+			for ( int i = 0; i < results.length; i++ ) {
+				int		slot	= i;
+				Object	item	= items.get( i );
+				window.acquire();
+				Callable<?> task;
+				try {
+					task = work.apply( item );
+				} catch ( RuntimeException e ) {
+					// Rejected before it was queued, e.g. by an interceptor or an invalid item
+					results[ i ]	= failure( e );
+					done[ i ]		= CompletableFuture.completedFuture( null );
+					window.release();
+					continue;
+				}
+				done[ i ] = executor.submit( task ).handle( ( result, error ) -> {
+					results[ slot ] = error == null ? result : failure( error );
+					window.release();
+					return null;
+				} );
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new BoxRuntimeException( "Interrupted while submitting a password hashing batch", e );
+		}
+		CompletableFuture.allOf( done ).join();
+		return results;
+	}
+
+	private static IStruct failure( Throwable error ) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+		return Struct.of( EncryptKeys.success, false, EncryptKeys.error, String.valueOf( cause.getMessage() ) );
+	}
+
+}
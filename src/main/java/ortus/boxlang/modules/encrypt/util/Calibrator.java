@@ -0,0 +1,198 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.Argon2Cost;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.BCryptCost;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.SCryptCost;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Measures the hashing algorithms on the current host and derives the cost parameters which come closest to a target latency without
+ * exceeding it.
+ * <p>
+ * Each algorithm is probed at a cheap setting first, then the cost is scaled using the fact that hashing time grows linearly with
+ * Argon2 iterations and SCrypt CPU cost, and doubles with each BCrypt round. The resulting parameters are measured once more so the
+ * reported latency is real. Parameters are kept within the bounds accepted by the hash functions.
+ */
+public final class Calibrator {
+
+	private static final int	SAMPLES				= 3;
+	private static final byte[]	PASSWORD			= "calibration-password".getBytes( StandardCharsets.UTF_8 );
+	private static final byte[]	SALT				= new byte[ 16 ];
+
+	private static final int	ARGON2_MIN_MEMORY	= 8;
+	private static final int	ARGON2_MAX_ITER		= 20;
+	private static final int	BCRYPT_MIN_ROUNDS	= 5;
+	private static final int	BCRYPT_MAX_ROUNDS	= 10;
+	private static final int	SCRYPT_MIN_N		= 1024;
+	private static final int	SCRYPT_R			= 8;
+
+	private Calibrator() {
+	}
+
+	/**
+	 * Calibrates an algorithm and optionally makes the result the default cost of the module.
+	 *
+	 * @param algorithm    The algorithm name: argon2, argon2i, argon2d, argon2id, bcrypt or scrypt
+	 * @param targetMillis The target latency of a single hash in milliseconds
+	 * @param maxMemory    The maximum memory a single hash may use, in KiB
+	 * @param apply        Whether to make the calibrated parameters the module defaults
+	 *
+	 * @return A struct with the {@code algorithm}, the calibrated {@code parameters} and the measured {@code millis}
+	 */
+	public static IStruct calibrate( String algorithm, int targetMillis, int maxMemory, boolean apply ) {
+		if ( targetMillis < 1 ) {
+			throw new BoxRuntimeException( "The calibration target must be at least 1 millisecond" );
+		}
+		String name = algorithm.toLowerCase();
+		if ( name.startsWith( "argon2" ) ) {
+			return calibrateArgon2( name, targetMillis, maxMemory, apply );
+		} else if ( name.equals( "bcrypt" ) ) {
+			return calibrateBCrypt( targetMillis, apply );
+		} else if ( name.equals( "scrypt" ) ) {
+			return calibrateSCrypt( targetMillis, maxMemory, apply );
+		}
+		throw new BoxRuntimeException( "Invalid password hashing algorithm: [" + algorithm + "]. Valid algorithms are: [argon2, argon2i, argon2d, argon2id, bcrypt, scrypt]" );
+	}
+
+	private static IStruct calibrateArgon2( String name, int targetMillis, int maxMemory, boolean apply ) {
+		Argon2Types	variant		= name.equals( "argon2" ) ? Argon2Types.ARGON2i : PasswordHasher.argon2Variant( name );
+		Argon2		argon2		= Argon2Registry.get( variant );
+		char[]		password	= new String( PASSWORD ).toCharArray();
+		int			memory		= Math.max( ARGON2_MIN_MEMORY, Math.min( maxMemory, argon2MaxMemory() ) );
+
+		// Memory hardness is the point of Argon2, so spend the budget on memory first and only shrink it if a single pass is too slow
+		double		millis		= measure( () -> argon2.hash( 1, memory, 1, password ) );
+		int			fitted		= memory;
+		while ( millis > targetMillis && fitted > ARGON2_MIN_MEMORY ) {
+			fitted = Math.max( ARGON2_MIN_MEMORY, fitted / 2 );
+			int probe = fitted;
+			millis = measure( () -> argon2.hash( 1, probe, 1, password ) );
+		}
+		int			iterations	= clamp( ( int ) ( targetMillis / Math.max( millis, 0.001 ) ), 1, ARGON2_MAX_ITER );
+		int			finalMemory	= fitted;
+		double		result		= measure( () -> argon2.hash( iterations, finalMemory, 1, password ) );
+
+		Argon2Cost	cost		= new Argon2Cost( iterations, finalMemory, 1 );
+		if ( apply ) {
+			CostDefaults.setArgon2( cost );
+		}
+		return Struct.of(
+		    EncryptKeys.algorithm, name,
+		    EncryptKeys.parameters, Struct.of(
+		        EncryptKeys.iterations, cost.iterations(),
+		        EncryptKeys.memory, cost.memory(),
+		        EncryptKeys.parallelism, cost.parallelism()
+		    ),
+		    EncryptKeys.millis, result
+		);
+	}
+
+	private static IStruct calibrateBCrypt( int targetMillis, boolean apply ) {
+		// Timed with the engine the hash functions use
+		double		millis		= measure( () -> BCryptCodec.hash( PASSWORD, BCryptCodec.gensalt( BCRYPT_MIN_ROUNDS ) ) );
+		// Every additional round doubles the time
+		int			rounds		= BCRYPT_MIN_ROUNDS + ( int ) Math.floor( log2( targetMillis / Math.max( millis, 0.001 ) ) );
+		int			fitted		= clamp( rounds, BCRYPT_MIN_ROUNDS, BCRYPT_MAX_ROUNDS );
+		double		result		= measure( () -> BCryptCodec.hash( PASSWORD, BCryptCodec.gensalt( fitted ) ) );
+
+		BCryptCost	cost		= new BCryptCost( fitted );
+		if ( apply ) {
+			CostDefaults.setBCrypt( cost );
+		}
+		return Struct.of(
+		    EncryptKeys.algorithm, "bcrypt",
+		    EncryptKeys.parameters, Struct.of( EncryptKeys.iterations, cost.rounds() ),
+		    EncryptKeys.millis, result
+		);
+	}
+
+	/**
+	 * The largest Argon2 memory cost worth calibrating: accepted by the hash functions, and by the verify functions under the module's
+	 * {@code verifyLimits}.
+	 */
+	private static int argon2MaxMemory() {
+		return ( int ) Math.min( PasswordHasher.ARGON2_MAX_MEMORY, HashValidator.getInstance().getMaxMemory() >> 10 );
+	}
+
+	private static IStruct calibrateSCrypt( int targetMillis, int maxMemory, boolean apply ) {
+		double		millis		= measure( () -> scrypt( SCRYPT_MIN_N ) );
+		// Time grows linearly with N, and N must be a power of two that fits in the memory budget of 128 * r * N bytes, which the verify
+		// functions cap at verifyLimits.maxMemoryMiB like the memory of Argon2
+		long		byTime		= ( long ) ( SCRYPT_MIN_N * ( targetMillis / Math.max( millis, 0.001 ) ) );
+		long		byMemory	= Math.min( maxMemory * 1024L, HashValidator.getInstance().getMaxMemory() ) / ( 128L * SCRYPT_R );
+		int			cpuCost		= ( int ) Math.max( SCRYPT_MIN_N, Long.highestOneBit( Math.max( 1, Math.min( Math.min( byTime, byMemory ), 1 << 30 ) ) ) );
+		double		result		= measure( () -> scrypt( cpuCost ) );
+
+		SCryptCost	cost		= new SCryptCost( cpuCost, SCRYPT_R, 1 );
+		if ( apply ) {
+			CostDefaults.setSCrypt( cost );
+		}
+		return Struct.of(
+		    EncryptKeys.algorithm, "scrypt",
+		    EncryptKeys.parameters, Struct.of(
+		        EncryptKeys.cpuCost, cost.cpuCost(),
+		        EncryptKeys.memory, cost.memory(),
+		        EncryptKeys.parallelism, cost.parallelism()
+		    ),
+		    EncryptKeys.millis, result
+		);
+	}
+
+	private static byte[] scrypt( int cpuCost ) {
+		try {
+			return SCryptRegistry.derive( PASSWORD, SALT, cpuCost, SCRYPT_R, 1, 32 );
+		} catch ( GeneralSecurityException e ) {
+			throw new BoxRuntimeException( "An exception occurred while calibrating SCrypt: " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * Runs the work once to warm up, then returns the median duration of a few samples in milliseconds.
+	 */
+	private static double measure( Runnable work ) {
+		work.run();
+		double[] samples = new double[ SAMPLES ];
+		for ( int i = 0; i < SAMPLES; i++ ) {
+			long start = System.nanoTime();
+			work.run();
+			samples[ i ] = ( System.nanoTime() - start ) / 1_000_000d;
+		}
+		Arrays.sort( samples );
+		return samples[ SAMPLES / 2 ];
+	}
+
+	private static int clamp( int value, int min, int max ) {
+		return Math.max( min, Math.min( value, max ) );
+	}
+
+	private static double log2( double value ) {
+		return Math.log( value ) / Math.log( 2 );
+	}
+
+}
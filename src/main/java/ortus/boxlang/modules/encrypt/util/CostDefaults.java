@@ -0,0 +1,139 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+
+/**
+ * The cost parameters used by the hash functions when the caller does not pass them.
+ * <p>
+ * They start from the {@code defaults} struct of the module settings, falling back to the historical defaults of each BIF, and can be
+ * replaced at runtime with values measured on the actual host by {@link Calibrator}.
+ */
+public final class CostDefaults {
+
+	/**
+	 * Argon2 cost parameters
+	 *
+	 * @param iterations  The number of passes over the memory
+	 * @param memory      The memory cost in KiB
+	 * @param parallelism The number of lanes
+	 */
+	public record Argon2Cost( int iterations, int memory, int parallelism ) {
+	}
+
+	/**
+	 * BCrypt cost parameters
+	 *
+	 * @param rounds The log2 of the number of key expansion rounds
+	 */
+	public record BCryptCost( int rounds ) {
+	}
+
+	/**
+	 * SCrypt cost parameters
+	 *
+	 * @param cpuCost     The CPU cost ( N ), a power of two
+	 * @param memory      The block size ( r )
+	 * @param parallelism The parallelization ( p )
+	 */
+	public record SCryptCost( int cpuCost, int memory, int parallelism ) {
+	}
+
+	private static volatile Argon2Cost	argon2;
+	private static volatile BCryptCost	bcrypt;
+	private static volatile SCryptCost	scrypt;
+
+	static {
+		IStruct	defaults		= ModuleSettings.getStruct( EncryptKeys.defaults );
+		IStruct	argon2Settings	= ModuleSettings.getStruct( defaults, EncryptKeys.argon2 );
+		IStruct	bcryptSettings	= ModuleSettings.getStruct( defaults, EncryptKeys.bcrypt );
+		IStruct	scryptSettings	= ModuleSettings.getStruct( defaults, EncryptKeys.scrypt );
+
+		argon2	= new Argon2Cost(
+		    ModuleSettings.getInt( argon2Settings, EncryptKeys.iterations, 8 ),
+		    ModuleSettings.getInt( argon2Settings, EncryptKeys.memory, 8 ),
+		    ModuleSettings.getInt( argon2Settings, EncryptKeys.parallelism, 1 )
+		);
+		bcrypt	= new BCryptCost( ModuleSettings.getInt( bcryptSettings, EncryptKeys.iterations, 10 ) );
+		scrypt	= new SCryptCost(
+		    ModuleSettings.getInt( scryptSettings, EncryptKeys.cpuCost, 16384 ),
+		    ModuleSettings.getInt( scryptSettings, EncryptKeys.memory, 8 ),
+		    ModuleSettings.getInt( scryptSettings, EncryptKeys.parallelism, 1 )
+		);
+	}
+
+	private CostDefaults() {
+	}
+
+	/**
+	 * Returns the Argon2 costs ArgonHash and PasswordHash use when the caller does not pass them.
+	 *
+	 * @return The default Argon2 costs
+	 */
+	public static Argon2Cost argon2() {
+		return argon2;
+	}
+
+	/**
+	 * Returns the BCrypt cost BCryptHash and PasswordHash use when the caller does not pass one.
+	 *
+	 * @return The default BCrypt cost
+	 */
+	public static BCryptCost bcrypt() {
+		return bcrypt;
+	}
+
+	/**
+	 * Returns the SCrypt costs SCryptHash and PasswordHash use when the caller does not pass them.
+	 *
+	 * @return The default SCrypt costs
+	 */
+	public static SCryptCost scrypt() {
+		return scrypt;
+	}
+
+	/**
+	 * Replaces the default Argon2 costs for the hashes created from now on. Existing hashes keep the costs they were created with.
+	 *
+	 * @param cost The new default Argon2 costs
+	 */
+	public static void setArgon2( Argon2Cost cost ) {
+		argon2 = cost;
+	}
+
+	/**
+	 * Replaces the default BCrypt cost for the hashes created from now on. Existing hashes keep the cost they were created with.
+	 *
+	 * @param cost The new default BCrypt cost
+	 */
+	public static void setBCrypt( BCryptCost cost ) {
+		bcrypt = cost;
+	}
+
+	/**
+	 * Replaces the default SCrypt costs for the hashes created from now on. Existing hashes keep the costs they were created with.
+	 *
+	 * @param cost The new default SCrypt costs
+	 */
+	public static void setSCrypt( SCryptCost cost ) {
+		scrypt = cost;
+	}
+
+}
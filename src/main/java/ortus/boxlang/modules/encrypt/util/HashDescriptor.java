@@ -0,0 +1,233 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.Base64;
+
+import ortus.boxlang.modules.encrypt.util.PasswordHasher.Algorithm;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * An encoded hash parsed once into its parameters, salt and expected key.
+ * <p>
+ * Verifying an encoded hash re-reads its prefix, splits its segments and Base64 or radix-64 decodes the salt and the key on every call.
+ * A descriptor does that work up front, so an application which verifies the same stored hash repeatedly ( e.g. a service account or an
+ * API key ) can parse it once and pass the descriptor to every verify function instead of the string. Descriptors are immutable and
+ * thread safe: the salt and key getters return copies, and equality is that of the encoded hash.
+ */
+public final class HashDescriptor {
+
+	/**
+	 * The length of a BCrypt hash in the modular crypt format, with a minor revision such as {@code $2a$}
+	 */
+	private static final int		BCRYPT_LENGTH	= 60;
+
+	private final String			encoded;
+	private final HashParameters	parameters;
+	private final byte[]			salt;
+	private final byte[]			key;
+
+	private HashDescriptor( String encoded, HashParameters parameters, byte[] salt, byte[] key ) {
+		this.encoded	= encoded;
+		this.parameters	= parameters;
+		this.salt		= salt;
+		this.key		= key;
+	}
+
+	/**
+	 * Parses an encoded hash of any of the supported algorithms.
+	 *
+	 * @param hashed The encoded hash
+	 *
+	 * @return The descriptor of the hash
+	 *
+	 * @throws BoxRuntimeException If the format of the hash is not recognized, any of its segments is malformed or its cost exceeds the
+	 *                             limits of the {@link HashValidator}
+	 */
+	public static HashDescriptor parse( String hashed ) {
+		HashValidator.getInstance().validate( hashed );
+		HashParameters parameters = HashParameters.parse( hashed );
+		return switch ( parameters.format.algorithm ) {
+			case ARGON2 -> parseArgon2( hashed, parameters );
+			case BCRYPT -> parseBCrypt( hashed, parameters );
+			case SCRYPT -> parseSCrypt( hashed, parameters );
+		};
+	}
+
+	/**
+	 * Returns the encoded hash of a verify function argument, which is either the hash itself or a descriptor of it.
+	 *
+	 * @param hashed The argument
+	 *
+	 * @return The encoded hash, or null if the argument is null
+	 */
+	public static String encoded( Object hashed ) {
+		if ( hashed instanceof HashDescriptor descriptor ) {
+			return descriptor.encoded;
+		}
+		return hashed == null ? null : StringCaster.cast( hashed );
+	}
+
+	/**
+	 * {@code $argon2id$v=19$m=65536,t=3,p=4$salt$key}, both Base64 without padding
+	 */
+	private static HashDescriptor parseArgon2( String hashed, HashParameters parameters ) {
+		int	keyStart	= hashed.lastIndexOf( '$' );
+		int	saltStart	= hashed.lastIndexOf( '$', keyStart - 1 );
+		try {
+			byte[]	salt	= Base64.getDecoder().decode( hashed.substring( saltStart + 1, keyStart ) );
+			byte[]	key		= Base64.getDecoder().decode( hashed.substring( keyStart + 1 ) );
+			if ( key.length < 4 || parameters.iterations < 1 || parameters.memory < 1 || parameters.parallelism < 1 ) {
+				throw new IllegalArgumentException( "The Argon2 key or cost parameters are out of range" );
+			}
+			return new HashDescriptor( hashed, parameters, salt, key );
+		} catch ( IllegalArgumentException | IndexOutOfBoundsException e ) {
+			throw new BoxRuntimeException( "The format of the passed Argon2 hash string is incorrect", e );
+		}
+	}
+
+	/**
+	 * {@code $2a$10$<22 char salt><31 char key>}, one character shorter for the legacy {@code $2$} revision. Like the validator, the
+	 * unused bits of the last salt and key characters are not checked; such a hash never matches when it is verified.
+	 */
+	private static HashDescriptor parseBCrypt( String hashed, HashParameters parameters ) {
+		int cost = parameters.format.prefix.length();
+		if ( hashed.length() != BCRYPT_LENGTH - 4 + cost ) {
+			throw new BoxRuntimeException( "The format of the passed BCrypt hash string is incorrect" );
+		}
+		if ( parameters.iterations < 4 || parameters.iterations > 31 ) {
+			throw new BoxRuntimeException( "The BCrypt cost must be between 4 and 31, but was " + hashed.substring( cost, cost + 2 ) );
+		}
+		return new HashDescriptor( hashed, parameters, BCryptCodec.decodeSalt( hashed ), BCryptCodec.decodeKey( hashed ) );
+	}
+
+	/**
+	 * {@code $s0$params$salt$key}, or {@code $params$salt$key} when the version prefix was stripped, both Base64 with padding
+	 */
+	private static HashDescriptor parseSCrypt( String hashed, HashParameters parameters ) {
+		int	saltStart	= hashed.indexOf( '$', hashed.startsWith( HashFormat.SCRYPT.prefix ) ? HashFormat.SCRYPT.prefix.length() : 1 ) + 1;
+		int	keyStart	= hashed.indexOf( '$', saltStart ) + 1;
+		if ( keyStart == 0 ) {
+			throw new BoxRuntimeException( "The format of the passed SCrypt hash string is incorrect" );
+		}
+		try {
+			byte[]	salt	= Base64.getDecoder().decode( hashed.substring( saltStart, keyStart - 1 ) );
+			byte[]	key		= Base64.getDecoder().decode( hashed.substring( keyStart ) );
+			return new HashDescriptor( hashed, parameters, salt, key );
+		} catch ( IllegalArgumentException e ) {
+			throw new BoxRuntimeException( "The format of the passed SCrypt hash string is incorrect", e );
+		}
+	}
+
+	/**
+	 * Returns the format of the hash.
+	 *
+	 * @return The format
+	 */
+	public HashFormat getFormat() {
+		return parameters.format;
+	}
+
+	/**
+	 * Returns the algorithm which produced the hash.
+	 *
+	 * @return The algorithm
+	 */
+	public Algorithm getAlgorithm() {
+		return parameters.format.algorithm;
+	}
+
+	/**
+	 * Returns the cost parameters of the hash.
+	 *
+	 * @return The parameters
+	 */
+	public HashParameters getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Returns a copy of the decoded salt.
+	 *
+	 * @return The salt
+	 */
+	public byte[] getSalt() {
+		return salt.clone();
+	}
+
+	/**
+	 * Returns a copy of the decoded key the hash expects.
+	 *
+	 * @return The key
+	 */
+	public byte[] getKey() {
+		return key.clone();
+	}
+
+	/**
+	 * Returns the length of the expected key in bytes.
+	 *
+	 * @return The key length
+	 */
+	public int getKeyLength() {
+		return key.length;
+	}
+
+	/**
+	 * Returns the encoded hash the descriptor was parsed from.
+	 *
+	 * @return The encoded hash
+	 */
+	public String getEncoded() {
+		return encoded;
+	}
+
+	/**
+	 * The decoded salt, shared with the engines of this package which never modify it
+	 */
+	byte[] salt() {
+		return salt;
+	}
+
+	/**
+	 * The decoded key, shared with the engines of this package which never modify it
+	 */
+	byte[] key() {
+		return key;
+	}
+
+	@Override
+	public boolean equals( Object other ) {
+		return other instanceof HashDescriptor descriptor && encoded.equals( descriptor.encoded );
+	}
+
+	@Override
+	public int hashCode() {
+		return encoded.hashCode();
+	}
+
+	/**
+	 * Returns the encoded hash, so a descriptor can be stored or displayed wherever the hash string was.
+	 */
+	@Override
+	public String toString() {
+		return encoded;
+	}
+
+}
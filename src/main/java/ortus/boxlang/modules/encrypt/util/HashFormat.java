@@ -0,0 +1,121 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher.Algorithm;
+
+/**
+ * The self-describing hash formats produced by the supported algorithms, identified by their PHC / modular crypt prefix.
+ * <p>
+ * Detection dispatches on the second character of the hash and then compares the candidate prefixes in place, so it never allocates
+ * and costs a handful of character comparisons per hash.
+ */
+public enum HashFormat {
+
+	ARGON2I( "$argon2i$", Algorithm.ARGON2, Argon2Types.ARGON2i ),
+	ARGON2D( "$argon2d$", Algorithm.ARGON2, Argon2Types.ARGON2d ),
+	ARGON2ID( "$argon2id$", Algorithm.ARGON2, Argon2Types.ARGON2id ),
+	BCRYPT_2( "$2$", Algorithm.BCRYPT, null ),
+	BCRYPT_2A( "$2a$", Algorithm.BCRYPT, null ),
+	BCRYPT_2B( "$2b$", Algorithm.BCRYPT, null ),
+	BCRYPT_2Y( "$2y$", Algorithm.BCRYPT, null ),
+	SCRYPT( "$s0$", Algorithm.SCRYPT, null );
+
+	/**
+	 * The prefix which identifies the format
+	 */
+	public final String			prefix;
+
+	/**
+	 * The algorithm which produced the hash
+	 */
+	public final Algorithm		algorithm;
+
+	/**
+	 * The Argon2 variant, or null for the other algorithms
+	 */
+	public final Argon2Types	variant;
+
+	HashFormat( String prefix, Algorithm algorithm, Argon2Types variant ) {
+		this.prefix		= prefix;
+		this.algorithm	= algorithm;
+		this.variant	= variant;
+	}
+
+	/**
+	 * Detects the format of the given hash from its prefix.
+	 *
+	 * @param hashed The encoded hash
+	 *
+	 * @return The format, or null if the hash format is not recognized
+	 */
+	public static HashFormat detect( String hashed ) {
+		if ( hashed == null || hashed.length() < 4 || hashed.charAt( 0 ) != '$' ) {
+			return null;
+		}
+		HashFormat format = switch ( hashed.charAt( 1 ) ) {
+			case 'a' -> matches( hashed, ARGON2ID ) ? ARGON2ID
+			    : matches( hashed, ARGON2I ) ? ARGON2I
+			    : matches( hashed, ARGON2D ) ? ARGON2D
+			    : null;
+			// The legacy $2$ revision has no minor version
+			case '2' -> hashed.charAt( 2 ) == '$' ? BCRYPT_2 : hashed.charAt( 3 ) != '$' ? null : switch ( hashed.charAt( 2 ) ) {
+				case 'a' -> BCRYPT_2A;
+				case 'b' -> BCRYPT_2B;
+				case 'y' -> BCRYPT_2Y;
+				default -> null;
+			};
+			case 's' -> matches( hashed, SCRYPT ) ? SCRYPT : null;
+			default -> null;
+		};
+		// The hexadecimal parameters of a stripped SCrypt hash can start with any of the characters above
+		return format != null ? format : isStrippedSCrypt( hashed ) ? SCRYPT : null;
+	}
+
+	/**
+	 * Whether the hash is an SCrypt hash with its $s0 version prefix stripped, as produced by Adobe ColdFusion: {@code $params$salt$key}
+	 * with hexadecimal parameters.
+	 *
+	 * @param hashed The encoded hash
+	 *
+	 * @return True if the hash is a stripped SCrypt hash
+	 */
+	public static boolean isStrippedSCrypt( String hashed ) {
+		int	length	= hashed.length();
+		int	i		= 1;
+		while ( i < length && Character.digit( hashed.charAt( i ), 16 ) >= 0 ) {
+			i++;
+		}
+		if ( i == 1 || i >= length || hashed.charAt( i ) != '$' ) {
+			return false;
+		}
+		int separators = 0;
+		for ( ; i < length; i++ ) {
+			if ( hashed.charAt( i ) == '$' ) {
+				separators++;
+			}
+		}
+		return separators == 2;
+	}
+
+	private static boolean matches( String hashed, HashFormat format ) {
+		return hashed.startsWith( format.prefix );
+	}
+
+}
@@ -0,0 +1,175 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * The cost parameters encoded in a hash, read straight from the encoded string without decoding the salt or the key.
+ * <p>
+ * Fields which do not apply to the algorithm of the hash are {@code 0}. The fields use the same names and units as the arguments of the
+ * hash functions, so a parsed hash can be compared against the options of a {@link PasswordHasher}:
+ * <ul>
+ * <li>Argon2: {@code $argon2id$v=19$m=65536,t=3,p=4$...} gives {@code memory} ( KiB ), {@code iterations} and {@code parallelism}</li>
+ * <li>BCrypt: {@code $2a$10$...} gives {@code iterations} ( the log2 cost )</li>
+ * <li>SCrypt: {@code $s0$e0801$...} gives {@code cpuCost} ( N ), {@code memory} ( r ) and {@code parallelism} ( p )</li>
+ * </ul>
+ */
+public final class HashParameters {
+
+	/**
+	 * The format of the hash
+	 */
+	public final HashFormat	format;
+
+	/**
+	 * The Argon2 version, e.g. {@code 19} for 1.3
+	 */
+	public final int		version;
+
+	/**
+	 * The Argon2 iterations or the BCrypt log2 cost
+	 */
+	public final int		iterations;
+
+	/**
+	 * The Argon2 memory in KiB or the SCrypt block size ( r )
+	 */
+	public final int		memory;
+
+	/**
+	 * The Argon2 lanes or the SCrypt parallelization ( p )
+	 */
+	public final int		parallelism;
+
+	/**
+	 * The SCrypt CPU cost ( N )
+	 */
+	public final int		cpuCost;
+
+	private HashParameters( HashFormat format, int version, int iterations, int memory, int parallelism, int cpuCost ) {
+		this.format			= format;
+		this.version		= version;
+		this.iterations		= iterations;
+		this.memory			= memory;
+		this.parallelism	= parallelism;
+		this.cpuCost		= cpuCost;
+	}
+
+	/**
+	 * Parses the cost parameters of the given hash.
+	 *
+	 * @param hashed The encoded hash
+	 *
+	 * @return The parameters of the hash
+	 *
+	 * @throws BoxRuntimeException If the format of the hash is not recognized or its parameters are malformed
+	 */
+	public static HashParameters parse( String hashed ) {
+		HashFormat format = HashFormat.detect( hashed );
+		if ( format == null ) {
+			throw new BoxRuntimeException( "The format of the passed hash string is not recognized" );
+		}
+		try {
+			return switch ( format ) {
+				case ARGON2I, ARGON2D, ARGON2ID -> parseArgon2( format, hashed );
+				case BCRYPT_2, BCRYPT_2A, BCRYPT_2B, BCRYPT_2Y -> parseBCrypt( format, hashed );
+				case SCRYPT -> parseSCrypt( format, hashed );
+			};
+		} catch ( NumberFormatException | IndexOutOfBoundsException e ) {
+			throw new BoxRuntimeException( "The parameters of the passed " + format.algorithm + " hash string are malformed", e );
+		}
+	}
+
+	/**
+	 * {@code $argon2id$v=19$m=65536,t=3,p=4$salt$key}. The version segment is absent from hashes created before Argon2 1.3.
+	 */
+	private static HashParameters parseArgon2( HashFormat format, String hashed ) {
+		int	version		= 0x10;
+		int	iterations	= 0;
+		int	memory		= 0;
+		int	parallelism	= 0;
+		int	i			= format.prefix.length();
+		if ( hashed.startsWith( "v=", i ) ) {
+			int end = segmentEnd( hashed, i );
+			version	= Integer.parseInt( hashed, i + 2, end, 10 );
+			i		= end + 1;
+		}
+		int end = segmentEnd( hashed, i );
+		while ( i < end ) {
+			int comma = hashed.indexOf( ',', i );
+			if ( comma < 0 || comma > end ) {
+				comma = end;
+			}
+			if ( hashed.charAt( i + 1 ) != '=' ) {
+				throw new NumberFormatException( "Missing '=' in the Argon2 parameters" );
+			}
+			int value = Integer.parseInt( hashed, i + 2, comma, 10 );
+			switch ( hashed.charAt( i ) ) {
+				case 'm' -> memory = value;
+				case 't' -> iterations = value;
+				case 'p' -> parallelism = value;
+				default -> throw new NumberFormatException( "Unknown Argon2 parameter: " + hashed.charAt( i ) );
+			}
+			i = comma + 1;
+		}
+		return new HashParameters( format, version, iterations, memory, parallelism, 0 );
+	}
+
+	/**
+	 * {@code $2a$10$saltkey}, or {@code $2$10$saltkey} for the legacy revision, where the cost is always two decimal digits
+	 */
+	private static HashParameters parseBCrypt( HashFormat format, String hashed ) {
+		int cost = format.prefix.length();
+		if ( hashed.charAt( cost + 2 ) != '$' ) {
+			throw new NumberFormatException( "The BCrypt cost must be two digits" );
+		}
+		return new HashParameters( format, 0, Integer.parseInt( hashed, cost, cost + 2, 10 ), 0, 0, 0 );
+	}
+
+	/**
+	 * {@code $s0$params$salt$key}, or {@code $params$salt$key} when the version prefix was stripped. The hexadecimal parameters pack
+	 * log2( N ) in the upper 16 bits, r in the next 8 and p in the lowest 8.
+	 */
+	private static HashParameters parseSCrypt( HashFormat format, String hashed ) {
+		int		start	= hashed.startsWith( format.prefix ) ? format.prefix.length() : 1;
+		long	params	= Long.parseLong( hashed, start, segmentEnd( hashed, start ), 16 );
+		return new HashParameters( format, 0, 0, ( int ) ( params >> 8 & 0xff ), ( int ) ( params & 0xff ), 1 << ( params >> 16 & 0xffff ) );
+	}
+
+	@Override
+	public boolean equals( Object other ) {
+		return other instanceof HashParameters that && format == that.format && version == that.version && iterations == that.iterations
+		    && memory == that.memory && parallelism == that.parallelism && cpuCost == that.cpuCost;
+	}
+
+	@Override
+	public int hashCode() {
+		// Without varargs boxing, the metrics look parameters up on every verify
+		return ( ( ( ( format.hashCode() * 31 + version ) * 31 + iterations ) * 31 + memory ) * 31 + parallelism ) * 31 + cpuCost;
+	}
+
+	private static int segmentEnd( String hashed, int from ) {
+		int end = hashed.indexOf( '$', from );
+		if ( end < 0 ) {
+			throw new NumberFormatException( "Missing '$' separator" );
+		}
+		return end;
+	}
+
+}
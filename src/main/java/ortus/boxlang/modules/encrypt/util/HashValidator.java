@@ -0,0 +1,405 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher.Algorithm;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Checks the structure and the cost parameters of an encoded hash before any key derivation work is done for it.
+ * <p>
+ * The verify functions hand a stored hash to the engines, which allocate its memory and run its passes before they can tell whether it
+ * is well-formed. A truncated or tampered hash, or a hostile one asking for gigabytes of memory or billions of rounds, would therefore
+ * hold an executor slot and memory until the derivation fails or completes. The validator walks the hash once, character by character,
+ * and checks its prefix, the number and order of its segments, the range of every cost parameter and the alphabet and length of the
+ * encoded salt and key. It never allocates unless the hash is rejected, so every verification can afford it.
+ * <p>
+ * The cost limits apply to verification only and default to well above what the hash functions of this module produce:
+ * {@code maxMemoryMiB} bounds the memory of an Argon2 or SCrypt hash, computed like the {@link MemoryBudget} does, {@code maxIterations}
+ * the passes of an Argon2 hash and {@code maxBCryptCost} the log2 cost of a BCrypt hash, which by default allows every cost up to 31.
+ * <p>
+ * Configured through the {@code verifyLimits} struct of the module settings.
+ */
+public final class HashValidator {
+
+	/**
+	 * The exception type thrown when a hash is malformed or exceeds the verification limits
+	 */
+	public static final String	INVALID_TYPE			= "PasswordEncrypt.InvalidHash";
+
+	public static final int		DEFAULT_MAX_MEMORY		= 1024;
+	public static final int		DEFAULT_MAX_ITERATIONS	= 64;
+	public static final int		DEFAULT_MAX_BCRYPT_COST	= 31;
+
+	/**
+	 * The length of a BCrypt hash in the modular crypt format, with a minor revision such as {@code $2a$}
+	 */
+	private static final int	BCRYPT_LENGTH			= 60;
+
+	/**
+	 * The Argon2 specification requires at least 8 bytes of salt and 4 bytes of key
+	 */
+	private static final int	ARGON2_MIN_SALT			= 11;
+	private static final int	ARGON2_MIN_KEY			= 6;
+	private static final int	ARGON2_MAX_LANES		= 0xFFFFFF;
+
+	private final long			maxMemoryBytes;
+	private final int			maxIterations;
+	private final int			maxBCryptCost;
+
+	private static final class Holder {
+
+		private static final HashValidator INSTANCE = new HashValidator( ModuleSettings.getStruct( EncryptKeys.verifyLimits ) );
+	}
+
+	/**
+	 * Returns the module-wide validator, created from the module settings on first use.
+	 *
+	 * @return The validator instance
+	 */
+	public static HashValidator getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates a validator from a {@code verifyLimits} settings struct.
+	 *
+	 * @param settings The verification limit settings
+	 */
+	public HashValidator( IStruct settings ) {
+		this(
+		    ModuleSettings.getInt( settings, EncryptKeys.maxMemoryMiB, DEFAULT_MAX_MEMORY ),
+		    ModuleSettings.getInt( settings, EncryptKeys.maxIterations, DEFAULT_MAX_ITERATIONS ),
+		    ModuleSettings.getInt( settings, EncryptKeys.maxBCryptCost, DEFAULT_MAX_BCRYPT_COST )
+		);
+	}
+
+	/**
+	 * Creates a validator.
+	 *
+	 * @param maxMemoryMiB  The maximum memory of an Argon2 or SCrypt hash in MiB
+	 * @param maxIterations The maximum number of passes of an Argon2 hash
+	 * @param maxBCryptCost The maximum log2 cost of a BCrypt hash, at most 31
+	 */
+	public HashValidator( int maxMemoryMiB, int maxIterations, int maxBCryptCost ) {
+		this.maxMemoryBytes	= ( long ) Math.max( 1, maxMemoryMiB ) << 20;
+		this.maxIterations	= Math.max( 1, maxIterations );
+		this.maxBCryptCost	= Math.max( 4, Math.min( maxBCryptCost, 31 ) );
+	}
+
+	/**
+	 * Checks an encoded hash of any of the supported algorithms.
+	 *
+	 * @param hashed The encoded hash
+	 *
+	 * @return The format of the hash
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.InvalidHash} if the format is not recognized, the hash is malformed or
+	 *                             its cost exceeds the verification limits
+	 */
+	public HashFormat validate( String hashed ) {
+		return validate( hashed, null );
+	}
+
+	/**
+	 * Checks an encoded hash which must have been produced by the given algorithm.
+	 *
+	 * @param hashed    The encoded hash
+	 * @param algorithm The expected algorithm, or null to accept any
+	 *
+	 * @return The format of the hash
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.InvalidHash} if the hash is not of the expected algorithm, is malformed
+	 *                             or its cost exceeds the verification limits
+	 */
+	public HashFormat validate( String hashed, Algorithm algorithm ) {
+		HashFormat format = HashFormat.detect( hashed );
+		if ( format == null ) {
+			throw algorithm == null ? new BoxRuntimeException( "The format of the passed hash string is not recognized", INVALID_TYPE )
+			    : incorrect( algorithm, "its prefix is not recognized" );
+		}
+		if ( algorithm != null && format.algorithm != algorithm ) {
+			throw incorrect( algorithm, "it is a " + name( format.algorithm ) + " hash" );
+		}
+		switch ( format.algorithm ) {
+			case ARGON2 -> validateArgon2( hashed, format.prefix.length() );
+			case BCRYPT -> validateBCrypt( hashed, format.prefix.length() );
+			case SCRYPT -> validateSCrypt( hashed, hashed.startsWith( format.prefix ) ? format.prefix.length() : 1 );
+		}
+		return format;
+	}
+
+	/**
+	 * Checks the cost of a new SCrypt hash against the verification limits, so the module never creates a hash its own verify functions
+	 * refuse.
+	 *
+	 * @param cpuCost     The CPU cost ( N )
+	 * @param memory      The block size ( r )
+	 * @param parallelism The parallelization ( p )
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.InvalidHash} if the hash would need more memory than the limit
+	 */
+	public void checkSCrypt( int cpuCost, int memory, int parallelism ) {
+		long required = MemoryBudget.scrypt( cpuCost, memory, parallelism );
+		if ( required > maxMemoryBytes ) {
+			throw new BoxRuntimeException( "An SCrypt hash with a CPU cost of " + cpuCost + ", a memory cost of " + memory + " and a parallelization of "
+			    + parallelism + " requires " + ( required + ( 1 << 20 ) - 1 >> 20 ) + " MiB of memory, which exceeds the verification limit of "
+			    + ( maxMemoryBytes >> 20 ) + " MiB. Lower the cost or raise the verifyLimits module setting.", INVALID_TYPE );
+		}
+	}
+
+	/**
+	 * Returns the maximum memory of an Argon2 or SCrypt hash.
+	 *
+	 * @return The limit in bytes
+	 */
+	public long getMaxMemory() {
+		return maxMemoryBytes;
+	}
+
+	/**
+	 * Returns the maximum number of passes of an Argon2 hash.
+	 *
+	 * @return The limit
+	 */
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Returns the maximum log2 cost of a BCrypt hash.
+	 *
+	 * @return The limit
+	 */
+	public int getMaxBCryptCost() {
+		return maxBCryptCost;
+	}
+
+	/**
+	 * {@code $argon2id$v=19$m=65536,t=3,p=4$salt$key}, with the parameters in the order of the reference implementation and the salt and
+	 * key in Base64 without padding
+	 */
+	private void validateArgon2( String hashed, int i ) {
+		if ( hashed.startsWith( "v=", i ) ) {
+			int end = digitsEnd( hashed, i + 2 );
+			if ( end == i + 2 || end >= hashed.length() || hashed.charAt( end ) != '$' ) {
+				throw incorrect( Algorithm.ARGON2, "the version is malformed" );
+			}
+			long version = number( hashed, i + 2, end );
+			if ( version != 0x10 && version != 0x13 ) {
+				throw incorrect( Algorithm.ARGON2, "the version must be 16 or 19, but was " + version );
+			}
+			i = end + 1;
+		}
+		int		mEnd		= parameterEnd( hashed, i, 'm', ',' );
+		int		tEnd		= parameterEnd( hashed, mEnd + 1, 't', ',' );
+		int		pEnd		= parameterEnd( hashed, tEnd + 1, 'p', '$' );
+		long	memory		= number( hashed, i + 2, mEnd );
+		long	iterations	= number( hashed, mEnd + 3, tEnd );
+		long	parallelism	= number( hashed, tEnd + 3, pEnd );
+		if ( parallelism < 1 || parallelism > ARGON2_MAX_LANES ) {
+			throw incorrect( Algorithm.ARGON2, "the parallelism must be between 1 and " + ARGON2_MAX_LANES + ", but was " + parallelism );
+		}
+		if ( memory < 8 * parallelism ) {
+			throw incorrect( Algorithm.ARGON2, "the memory must be at least 8 KiB per lane, but was " + memory + " KiB for " + parallelism + " lanes" );
+		}
+		if ( iterations < 1 ) {
+			throw incorrect( Algorithm.ARGON2, "the iterations must be at least 1" );
+		}
+		if ( iterations > maxIterations ) {
+			throw exceeds( Algorithm.ARGON2, iterations + " iterations", maxIterations + " iterations" );
+		}
+		if ( memory > maxMemoryBytes >> 10 ) {
+			throw exceeds( Algorithm.ARGON2, ( memory + 1023 >> 10 ) + " MiB of memory", ( maxMemoryBytes >> 20 ) + " MiB" );
+		}
+		int	saltEnd	= hashed.indexOf( '$', pEnd + 1 );
+		int	length	= hashed.length();
+		if ( saltEnd < 0 || hashed.indexOf( '$', saltEnd + 1 ) >= 0 ) {
+			throw incorrect( Algorithm.ARGON2, "it must have a salt and a key segment" );
+		}
+		if ( !isBase64( hashed, pEnd + 1, saltEnd, false ) || saltEnd - pEnd - 1 < ARGON2_MIN_SALT ) {
+			throw incorrect( Algorithm.ARGON2, "the salt must be at least 8 bytes of unpadded Base64" );
+		}
+		if ( !isBase64( hashed, saltEnd + 1, length, false ) || length - saltEnd - 1 < ARGON2_MIN_KEY ) {
+			throw incorrect( Algorithm.ARGON2, "the key must be at least 4 bytes of unpadded Base64" );
+		}
+	}
+
+	/**
+	 * {@code $2a$10$<22 char salt><31 char key>} in the BCrypt radix-64 alphabet, one character shorter for the legacy {@code $2$}
+	 * revision. The unused low bits of the last character of the salt and of the key are not checked: other implementations do not always
+	 * zero them, and the verification decides whether such a hash matches.
+	 */
+	private void validateBCrypt( String hashed, int i ) {
+		int length = BCRYPT_LENGTH - 4 + i;
+		if ( hashed.length() != length ) {
+			throw incorrect( Algorithm.BCRYPT, "it must be " + length + " characters long, but was " + hashed.length() );
+		}
+		if ( hashed.charAt( i + 2 ) != '$' || digitsEnd( hashed, i ) != i + 2 ) {
+			throw incorrect( Algorithm.BCRYPT, "the cost must be two digits" );
+		}
+		long cost = number( hashed, i, i + 2 );
+		if ( cost < 4 ) {
+			throw new BoxRuntimeException( "The BCrypt cost must be between 4 and 31, but was " + cost, INVALID_TYPE );
+		}
+		if ( cost > maxBCryptCost ) {
+			throw exceeds( Algorithm.BCRYPT, "a cost of " + cost, "a cost of " + maxBCryptCost );
+		}
+		for ( int j = i + 3; j < length; j++ ) {
+			if ( radix64( hashed.charAt( j ) ) < 0 ) {
+				throw incorrect( Algorithm.BCRYPT, "the salt and key must be BCrypt Base64" );
+			}
+		}
+	}
+
+	/**
+	 * {@code $s0$params$salt$key}, or {@code $params$salt$key} when the version prefix was stripped, with hexadecimal parameters packing
+	 * log2( N ), r and p and the salt and key in padded Base64
+	 */
+	private void validateSCrypt( String hashed, int i ) {
+		int paramsEnd = i;
+		while ( paramsEnd < hashed.length() && Character.digit( hashed.charAt( paramsEnd ), 16 ) >= 0 ) {
+			paramsEnd++;
+		}
+		if ( paramsEnd == i || paramsEnd - i > 8 || paramsEnd >= hashed.length() || hashed.charAt( paramsEnd ) != '$' ) {
+			throw incorrect( Algorithm.SCRYPT, "the parameters must be up to 8 hexadecimal digits" );
+		}
+		long params = 0;
+		for ( int j = i; j < paramsEnd; j++ ) {
+			params = params << 4 | Character.digit( hashed.charAt( j ), 16 );
+		}
+		long	log2N		= params >> 16;
+		long	blockSize	= params >> 8 & 0xff;
+		long	parallelism	= params & 0xff;
+		if ( log2N < 1 || log2N > 30 ) {
+			throw incorrect( Algorithm.SCRYPT, "the CPU cost must be a power of 2 between 2 and 2^30, but was 2^" + log2N );
+		}
+		if ( blockSize < 1 || parallelism < 1 ) {
+			throw incorrect( Algorithm.SCRYPT, "the memory cost and parallelization must be at least 1" );
+		}
+		long memory = MemoryBudget.scrypt( 1 << log2N, ( int ) blockSize, ( int ) parallelism );
+		if ( memory > maxMemoryBytes ) {
+			throw exceeds( Algorithm.SCRYPT, ( memory + ( 1 << 20 ) - 1 >> 20 ) + " MiB of memory", ( maxMemoryBytes >> 20 ) + " MiB" );
+		}
+		int	saltEnd	= hashed.indexOf( '$', paramsEnd + 1 );
+		int	length	= hashed.length();
+		if ( saltEnd < 0 || hashed.indexOf( '$', saltEnd + 1 ) >= 0 ) {
+			throw incorrect( Algorithm.SCRYPT, "it must have a salt and a key segment" );
+		}
+		if ( saltEnd == paramsEnd + 1 || !isBase64( hashed, paramsEnd + 1, saltEnd, true ) ) {
+			throw incorrect( Algorithm.SCRYPT, "the salt must be padded Base64" );
+		}
+		if ( length == saltEnd + 1 || !isBase64( hashed, saltEnd + 1, length, true ) ) {
+			throw incorrect( Algorithm.SCRYPT, "the key must be padded Base64" );
+		}
+	}
+
+	/**
+	 * Checks that {@code <name>=<digits>} starts at the given index and ends with the given separator.
+	 *
+	 * @return The index of the separator
+	 */
+	private static int parameterEnd( String hashed, int i, char name, char separator ) {
+		int end = digitsEnd( hashed, i + 2 );
+		if ( i + 1 >= hashed.length() || hashed.charAt( i ) != name || hashed.charAt( i + 1 ) != '=' || end == i + 2 || end >= hashed.length()
+		    || hashed.charAt( end ) != separator ) {
+			throw incorrect( Algorithm.ARGON2, "the parameters must be m=<memory>,t=<iterations>,p=<parallelism>" );
+		}
+		return end;
+	}
+
+	private static int digitsEnd( String hashed, int i ) {
+		int length = hashed.length();
+		while ( i < length && hashed.charAt( i ) >= '0' && hashed.charAt( i ) <= '9' ) {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Parses a run of decimal digits, saturating at {@link Long#MAX_VALUE} so absurd values are reported instead of overflowing.
+	 */
+	private static long number( String hashed, int start, int end ) {
+		long value = 0;
+		for ( int i = start; i < end; i++ ) {
+			value = value > ( Long.MAX_VALUE - 9 ) / 10 ? Long.MAX_VALUE : value * 10 + ( hashed.charAt( i ) - '0' );
+		}
+		return value;
+	}
+
+	private static boolean isBase64( String hashed, int start, int end, boolean padded ) {
+		int length = end - start;
+		if ( padded ) {
+			if ( length % 4 != 0 ) {
+				return false;
+			}
+			// At most two padding characters, and only at the end
+			if ( length > 0 && hashed.charAt( end - 1 ) == '=' ) {
+				end -= hashed.charAt( end - 2 ) == '=' ? 2 : 1;
+			}
+		} else if ( length % 4 == 1 ) {
+			return false;
+		}
+		for ( int i = start; i < end; i++ ) {
+			char c = hashed.charAt( i );
+			if ( ! ( c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/' ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the value of a character of the BCrypt alphabet {@code ./A-Za-z0-9}, or -1.
+	 */
+	private static int radix64( char c ) {
+		if ( c == '.' || c == '/' ) {
+			return c - '.';
+		}
+		if ( c >= 'A' && c <= 'Z' ) {
+			return c - 'A' + 2;
+		}
+		if ( c >= 'a' && c <= 'z' ) {
+			return c - 'a' + 28;
+		}
+		if ( c >= '0' && c <= '9' ) {
+			return c - '0' + 54;
+		}
+		return -1;
+	}
+
+	private static String name( Algorithm algorithm ) {
+		return switch ( algorithm ) {
+			case ARGON2 -> "Argon2";
+			case BCRYPT -> "BCrypt";
+			case SCRYPT -> "SCrypt";
+		};
+	}
+
+	private static BoxRuntimeException incorrect( Algorithm algorithm, String reason ) {
+		return new BoxRuntimeException( "The format of the passed " + name( algorithm ) + " hash string is incorrect: " + reason, INVALID_TYPE );
+	}
+
+	private static BoxRuntimeException exceeds( Algorithm algorithm, String requirement, String limit ) {
+		return new BoxRuntimeException( "The passed " + name( algorithm ) + " hash requires " + requirement + ", which exceeds the verification limit of "
+		    + limit + ". Raise the verifyLimits module setting to verify it.", INVALID_TYPE );
+	}
+
+}
@@ -0,0 +1,59 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * The implementations an algorithm can be computed with, as selected in the {@code engines} module setting.
+ */
+public enum KDFEngine {
+
+	/**
+	 * The native library bundled with the binding of the algorithm
+	 */
+	NATIVE,
+
+	/**
+	 * The pure Java engine of the module
+	 */
+	JAVA,
+
+	/**
+	 * The native library if it loads on this platform, the Java engine otherwise
+	 */
+	AUTO;
+
+	/**
+	 * Parses an engine name from the settings.
+	 *
+	 * @param algorithm The algorithm the engine is selected for, used in the error message
+	 * @param name      The engine name: native, java or auto
+	 *
+	 * @return The engine
+	 */
+	public static KDFEngine parse( String algorithm, String name ) {
+		for ( KDFEngine candidate : values() ) {
+			if ( candidate.name().equalsIgnoreCase( name ) ) {
+				return candidate;
+			}
+		}
+		throw new BoxRuntimeException( "Invalid " + algorithm + " engine: [" + name + "]. Valid engines are: [native, java, auto]" );
+	}
+
+}
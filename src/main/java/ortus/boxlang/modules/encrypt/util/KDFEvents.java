@@ -0,0 +1,158 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.events.InterceptorState;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.services.InterceptorService;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+/**
+ * Announces the {@code onEncryptRequest} and {@code postEncryptRequest} interception points around every hash and verify operation.
+ * <p>
+ * {@code onEncryptRequest} is announced before the operation is queued, with its {@code operation}, {@code algorithm} and
+ * {@code parameters}. An interceptor can throw to reject the call, e.g. to rate limit it, before any key derivation work is done. The BIFs
+ * announce it on the calling thread, before the call takes a place in the executor queue. The only exception is the upgrade hash of
+ * {@code PasswordVerifyAndUpgrade}, which is only decided once the verification matched and is announced in the slot of that verification.
+ * {@code postEncryptRequest} is announced when the operation completes, with the same data plus its {@code durationNanos} and
+ * {@code outcome}: {@code success}, {@code rejected} for a verify which did not match, or {@code error} with the {@code error} message.
+ * It is announced exactly once per operation, after its result is known. An exception thrown by a {@code postEncryptRequest} listener
+ * is ignored, so the caller always gets the result of the operation, or its own exception.
+ * <p>
+ * The interceptor pool is checked before anything else, so no payload is built and no clock is read for a point nobody listens to.
+ */
+public final class KDFEvents {
+
+	public static final String			SUCCESS		= "success";
+	public static final String			REJECTED	= "rejected";
+	public static final String			ERROR		= "error";
+
+	private final InterceptorService	interceptorService;
+
+	private static final class Holder {
+
+		private static final KDFEvents INSTANCE = new KDFEvents( interceptorService() );
+	}
+
+	/**
+	 * Returns the module-wide announcer, bound to the interceptor service of the runtime.
+	 *
+	 * @return The announcer
+	 */
+	public static KDFEvents getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates an announcer.
+	 *
+	 * @param interceptorService The interceptor service to announce to, or null to never announce
+	 */
+	public KDFEvents( InterceptorService interceptorService ) {
+		this.interceptorService = interceptorService;
+	}
+
+	/**
+	 * Whether an interceptor listens to either interception point.
+	 *
+	 * @return True if there is at least one listener
+	 */
+	public boolean isListening() {
+		return isListening( EncryptKeys.onEncryptRequest ) || isListening( EncryptKeys.postEncryptRequest );
+	}
+
+	/**
+	 * Whether an interceptor listens to the given interception point.
+	 *
+	 * @param point The interception point
+	 *
+	 * @return True if there is at least one listener
+	 */
+	public boolean isListening( Key point ) {
+		if ( interceptorService == null || !interceptorService.hasState( point ) ) {
+			return false;
+		}
+		InterceptorState state = interceptorService.getState( point );
+		return state != null && state.size() > 0;
+	}
+
+	/**
+	 * Announces {@code onEncryptRequest} right away and wraps the operation so that {@code postEncryptRequest} is announced when it
+	 * completes. Without listeners, the operation is returned as is.
+	 *
+	 * @param operation  {@link KDFMetrics#HASH} or {@link KDFMetrics#VERIFY}
+	 * @param algorithm  The algorithm name, e.g. argon2id, bcrypt or scrypt
+	 * @param parameters The parameter set, as labelled by {@link KDFMetrics}
+	 * @param work       The key derivation
+	 *
+	 * @return The announcing key derivation
+	 */
+	public <T> Callable<T> wrap( String operation, String algorithm, String parameters, Callable<T> work ) {
+		if ( isListening( EncryptKeys.onEncryptRequest ) ) {
+			interceptorService.announce( EncryptKeys.onEncryptRequest, Struct.of(
+			    EncryptKeys.operation, operation,
+			    EncryptKeys.algorithm, algorithm,
+			    EncryptKeys.parameters, parameters
+			) );
+		}
+		if ( !isListening( EncryptKeys.postEncryptRequest ) ) {
+			return work;
+		}
+		return () -> {
+			long	start	= System.nanoTime();
+			T		result;
+			try {
+				result = work.call();
+			} catch ( Exception | Error e ) {
+				announce( operation, algorithm, parameters, System.nanoTime() - start, ERROR, e.getMessage() );
+				throw e;
+			}
+			announce( operation, algorithm, parameters, System.nanoTime() - start, Boolean.FALSE.equals( result ) ? REJECTED : SUCCESS, null );
+			return result;
+		};
+	}
+
+	private void announce( String operation, String algorithm, String parameters, long durationNanos, String outcome, String error ) {
+		IStruct data = Struct.of(
+		    EncryptKeys.operation, operation,
+		    EncryptKeys.algorithm, algorithm,
+		    EncryptKeys.parameters, parameters,
+		    EncryptKeys.durationNanos, durationNanos,
+		    EncryptKeys.outcome, outcome
+		);
+		if ( error != null ) {
+			data.put( EncryptKeys.error, error );
+		}
+		try {
+			interceptorService.announce( EncryptKeys.postEncryptRequest, data );
+		} catch ( RuntimeException e ) {
+			// The operation has completed, a failing listener must not replace its result or its exception
+		}
+	}
+
+	private static InterceptorService interceptorService() {
+		BoxRuntime runtime = BoxRuntime.getInstance();
+		return runtime == null ? null : runtime.getInterceptorService();
+	}
+
+}
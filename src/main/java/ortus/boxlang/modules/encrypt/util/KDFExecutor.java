@@ -0,0 +1,491 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * The module-owned executor that runs the key derivation work of every hash and verify BIF.
+ * <p>
+ * Password KDFs are deliberately expensive, so instead of running on the calling request thread the work is handed to a small pool of
+ * platform threads capped at {@code maxConcurrency}. The caller parks until the result is ready, which is cheap for platform threads and
+ * releases the carrier for virtual threads, so a login burst can never oversubscribe the host.
+ * <p>
+ * At most {@code queueSize} calls may wait for a free slot. Calls beyond that, or calls which could not start within {@code queueTimeout}
+ * milliseconds, fail fast with a {@code PasswordEncrypt.Busy} exception instead of piling up. The timeout only applies to the wait for a
+ * slot: once the KDF has started the caller always receives its result.
+ * <p>
+ * The lanes of a single Argon2 or SCrypt hash with a parallelism above 1 run on a separate fork-join pool, using at most
+ * {@code maxLaneThreads} of its threads per hash so one high-parallelism hash cannot occupy every core.
+ * <p>
+ * Configured through the {@code executor} struct of the module settings.
+ */
+public final class KDFExecutor {
+
+	/**
+	 * The exception type thrown when the executor cannot accept more work
+	 */
+	public static final String		BUSY_TYPE				= "PasswordEncrypt.Busy";
+
+	public static final int			DEFAULT_QUEUE_SIZE		= 500;
+	public static final int			DEFAULT_QUEUE_TIMEOUT	= 5000;
+
+	private final boolean			enabled;
+	private final int				maxConcurrency;
+	private final int				queueSize;
+	private final long				queueTimeoutNanos;
+	private final int				maxLaneThreads;
+	private final ThreadPoolExecutor	pool;
+	private volatile ForkJoinPool		forkJoinPool;
+	private final LongAdder			busyCount		= new LongAdder();
+	private final LatencyHistogram	queueWait		= new LatencyHistogram();
+	private final AtomicLong		recentWaitNanos	= new AtomicLong();
+	private final AtomicLong		recentRunNanos	= new AtomicLong();
+	private volatile LoadShedder	loadShedder;
+
+	private static final class Holder {
+
+		private static final KDFExecutor INSTANCE = create();
+
+		private static KDFExecutor create() {
+			KDFExecutor executor = new KDFExecutor( ModuleSettings.getStruct( EncryptKeys.executor ) );
+			executor.loadShedder = new LoadShedder( ModuleSettings.getStruct( EncryptKeys.loadShedding ), executor );
+			return ModuleLifecycle.onUnload( executor, KDFExecutor::shutdown );
+		}
+	}
+
+	/**
+	 * Returns the module-wide executor, created from the module settings on first use.
+	 *
+	 * @return The executor instance
+	 */
+	public static KDFExecutor getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates an executor from an {@code executor} settings struct.
+	 *
+	 * @param settings The executor settings
+	 */
+	public KDFExecutor( IStruct settings ) {
+		this(
+		    ModuleSettings.getBoolean( settings, EncryptKeys.enabled, true ),
+		    ModuleSettings.getInt( settings, EncryptKeys.maxConcurrency, 0 ),
+		    ModuleSettings.getInt( settings, EncryptKeys.queueSize, DEFAULT_QUEUE_SIZE ),
+		    ModuleSettings.getInt( settings, EncryptKeys.queueTimeout, DEFAULT_QUEUE_TIMEOUT ),
+		    ModuleSettings.getInt( settings, EncryptKeys.maxLaneThreads, 0 )
+		);
+	}
+
+	/**
+	 * Creates an executor.
+	 *
+	 * @param enabled        Whether work is dispatched to the pool at all. When false every call runs on the calling thread.
+	 * @param maxConcurrency The maximum number of concurrent key derivations. Zero or less means the number of available processors.
+	 * @param queueSize      The maximum number of calls waiting for a free slot
+	 * @param queueTimeout   The maximum number of milliseconds a call may wait for a free slot
+	 */
+	public KDFExecutor( boolean enabled, int maxConcurrency, int queueSize, long queueTimeout ) {
+		this( enabled, maxConcurrency, queueSize, queueTimeout, 0 );
+	}
+
+	/**
+	 * Creates an executor with a cap on the threads used by the lanes of a single hash.
+	 *
+	 * @param enabled        Whether work is dispatched to the pool at all. When false every call runs on the calling thread.
+	 * @param maxConcurrency The maximum number of concurrent key derivations. Zero or less means the number of available processors.
+	 * @param queueSize      The maximum number of calls waiting for a free slot
+	 * @param queueTimeout   The maximum number of milliseconds a call may wait for a free slot
+	 * @param maxLaneThreads The maximum number of threads the lanes of a single hash may use. Zero or less means the concurrency cap.
+	 */
+	public KDFExecutor( boolean enabled, int maxConcurrency, int queueSize, long queueTimeout, int maxLaneThreads ) {
+		this.enabled			= enabled;
+		this.maxConcurrency		= maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+		this.queueSize			= Math.max( 1, queueSize );
+		this.queueTimeoutNanos	= TimeUnit.MILLISECONDS.toNanos( Math.max( 0, queueTimeout ) );
+		this.maxLaneThreads		= maxLaneThreads > 0 ? Math.min( maxLaneThreads, this.maxConcurrency ) : this.maxConcurrency;
+		this.pool				= new ThreadPoolExecutor(
+		    this.maxConcurrency,
+		    this.maxConcurrency,
+		    60L,
+		    TimeUnit.SECONDS,
+		    new LinkedBlockingQueue<>( this.queueSize ),
+		    new WorkerFactory(),
+		    new ThreadPoolExecutor.AbortPolicy()
+		);
+		this.pool.allowCoreThreadTimeOut( true );
+		// The module instance replaces this with the policy from the module settings
+		this.loadShedder = new LoadShedder( new Struct(), this );
+	}
+
+	/**
+	 * Runs the given key derivation on the pool and waits for its result.
+	 * <p>
+	 * Calls made from a pool thread, or when the executor is disabled, run directly on the calling thread.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return The result of the work
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.Busy} when the work could not be started in time
+	 */
+	public <T> T execute( Callable<T> work ) {
+		if ( !enabled || Thread.currentThread() instanceof Worker ) {
+			return call( work );
+		}
+		if ( loadShedder.shouldShed() ) {
+			throw overloaded();
+		}
+		Task<T> task = new Task<>( work );
+		try {
+			pool.execute( task );
+		} catch ( RejectedExecutionException e ) {
+			throw busy();
+		}
+		return task.await();
+	}
+
+	/**
+	 * Submits the given key derivation to the pool without waiting for its result.
+	 * <p>
+	 * The returned future completes exceptionally with a {@code PasswordEncrypt.Busy} exception when the queue is full or the work could
+	 * not start within the queue timeout. When the executor is disabled the work runs on the calling thread before this method returns.
+	 *
+	 * @param work The key derivation to perform
+	 *
+	 * @return A future for the result of the work
+	 */
+	public <T> CompletableFuture<T> submit( Callable<T> work ) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		if ( !enabled ) {
+			complete( future, work );
+			return future;
+		}
+		if ( loadShedder.shouldShed() ) {
+			future.completeExceptionally( overloaded() );
+			return future;
+		}
+		long	queued		= System.nanoTime();
+		long	deadline	= queued + queueTimeoutNanos;
+		try {
+			pool.execute( () -> {
+				if ( future.isDone() ) {
+					// Cancelled by the caller while queued
+					return;
+				}
+				long started = System.nanoTime();
+				recordWait( started - queued );
+				if ( started - deadline > 0 ) {
+					future.completeExceptionally( busy() );
+					return;
+				}
+				complete( future, work );
+				recordRun( System.nanoTime() - started );
+			} );
+		} catch ( RejectedExecutionException e ) {
+			future.completeExceptionally( busy() );
+		}
+		return future;
+	}
+
+	/**
+	 * Returns the fork-join pool the lanes of a single Argon2 or SCrypt hash run on. Its parallelism matches the concurrency cap of this
+	 * executor. Whole key derivations never run on it, they always take a slot of the executor. The pool is created on first use.
+	 *
+	 * @return The fork-join pool
+	 */
+	public ForkJoinPool getForkJoinPool() {
+		ForkJoinPool result = forkJoinPool;
+		if ( result == null ) {
+			synchronized ( this ) {
+				result = forkJoinPool;
+				if ( result == null ) {
+					AtomicInteger counter = new AtomicInteger();
+					result = forkJoinPool = new ForkJoinPool(
+					    maxConcurrency,
+					    fjPool -> {
+						    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( fjPool );
+						    thread.setName( "bx-password-encrypt-fj-" + counter.incrementAndGet() );
+						    return thread;
+					    },
+					    null,
+					    false
+					);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the maximum number of concurrent key derivations.
+	 *
+	 * @return The concurrency cap
+	 */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * Returns the maximum number of threads the lanes of a single hash may use on the fork-join pool.
+	 *
+	 * @return The per-hash lane thread cap
+	 */
+	public int getMaxLaneThreads() {
+		return maxLaneThreads;
+	}
+
+	/**
+	 * Returns the number of calls currently waiting for a free slot.
+	 *
+	 * @return The queue depth
+	 */
+	public int getQueueDepth() {
+		return pool.getQueue().size();
+	}
+
+	/**
+	 * Returns the number of key derivations currently running on the pool.
+	 *
+	 * @return The number of active workers
+	 */
+	public int getActiveCount() {
+		return pool.getActiveCount();
+	}
+
+	/**
+	 * Returns how many calls were turned away with a {@code PasswordEncrypt.Busy} exception.
+	 *
+	 * @return The number of rejected calls
+	 */
+	public long getBusyCount() {
+		return busyCount.sum();
+	}
+
+	/**
+	 * Returns the histogram of the time calls spent waiting for a free slot.
+	 *
+	 * @return The queue wait histogram
+	 */
+	public LatencyHistogram getQueueWait() {
+		return queueWait;
+	}
+
+	/**
+	 * Returns the recent time calls spent waiting for a free slot, as an exponentially weighted moving average which follows the last
+	 * few dozen calls.
+	 *
+	 * @return The recent queue wait in nanoseconds
+	 */
+	public long getRecentQueueWaitNanos() {
+		return recentWaitNanos.get();
+	}
+
+	/**
+	 * Returns the recent run time of a key derivation on the pool, as an exponentially weighted moving average which follows the last
+	 * few dozen calls.
+	 *
+	 * @return The recent run time in nanoseconds
+	 */
+	public long getRecentRunNanos() {
+		return recentRunNanos.get();
+	}
+
+	/**
+	 * Returns the maximum time a call may wait for a free slot.
+	 *
+	 * @return The queue timeout in nanoseconds
+	 */
+	public long getQueueTimeoutNanos() {
+		return queueTimeoutNanos;
+	}
+
+	/**
+	 * Returns the load shedding policy of this executor. Executors created outside of the module use a disabled policy.
+	 *
+	 * @return The load shedding policy
+	 */
+	public LoadShedder getLoadShedder() {
+		return loadShedder;
+	}
+
+	/**
+	 * Stops accepting new work. Work that is already queued is still completed.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+		if ( forkJoinPool != null ) {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	private BoxRuntimeException busy() {
+		busyCount.increment();
+		return new BoxRuntimeException(
+		    "The password hashing executor is busy: all [" + maxConcurrency + "] slots are in use and [" + queueSize
+		        + "] calls are already waiting. Please try again later.",
+		    BUSY_TYPE
+		);
+	}
+
+	private BoxRuntimeException overloaded() {
+		busyCount.increment();
+		return new BoxRuntimeException(
+		    "The password hashing executor is overloaded: [" + getQueueDepth() + "] calls are waiting for [" + maxConcurrency
+		        + "] slots and would not start within the queue timeout. Please try again later.",
+		    BUSY_TYPE
+		);
+	}
+
+	private void recordWait( long nanos ) {
+		queueWait.record( nanos );
+		average( recentWaitNanos, nanos );
+	}
+
+	private void recordRun( long nanos ) {
+		average( recentRunNanos, nanos );
+	}
+
+	/**
+	 * Moves the average an eighth of the way towards the sample, so it reacts within a few calls but does not jump on a single outlier.
+	 */
+	private static void average( AtomicLong average, long sample ) {
+		average.accumulateAndGet( sample, ( current, next ) -> current == 0 ? next : current + ( ( next - current ) >> 3 ) );
+	}
+
+	private static <T> void complete( CompletableFuture<T> future, Callable<T> work ) {
+		try {
+			future.complete( work.call() );
+		} catch ( Throwable e ) {
+			future.completeExceptionally( e );
+		}
+	}
+
+	private static <T> T call( Callable<T> work ) {
+		try {
+			return work.call();
+		} catch ( RuntimeException e ) {
+			throw e;
+		} catch ( Exception e ) {
+			throw new BoxRuntimeException( "An exception occurred while performing a password hashing operation: " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * A unit of work submitted to the pool. The caller and the worker race for the task state so that a call which times out in the queue
+	 * is never run, while a call which already started is always awaited.
+	 */
+	private final class Task<T> implements Runnable {
+
+		private static final int			PENDING		= 0;
+		private static final int			RUNNING		= 1;
+		private static final int			ABANDONED	= 2;
+
+		private final Callable<T>			work;
+		private final AtomicInteger			state		= new AtomicInteger( PENDING );
+		private final CompletableFuture<T>	result		= new CompletableFuture<>();
+		private final long					queued		= System.nanoTime();
+
+		Task( Callable<T> work ) {
+			this.work = work;
+		}
+
+		@Override
+		public void run() {
+			if ( !state.compareAndSet( PENDING, RUNNING ) ) {
+				return;
+			}
+			long started = System.nanoTime();
+			recordWait( started - queued );
+			try {
+				result.complete( work.call() );
+			} catch ( Throwable e ) {
+				result.completeExceptionally( e );
+			}
+			recordRun( System.nanoTime() - started );
+		}
+
+		T await() {
+			try {
+				try {
+					return result.get( queueTimeoutNanos, TimeUnit.NANOSECONDS );
+				} catch ( TimeoutException e ) {
+					if ( state.compareAndSet( PENDING, ABANDONED ) ) {
+						pool.remove( this );
+						throw busy();
+					}
+					// The work has started, so wait for it to finish
+					return result.get();
+				}
+			} catch ( InterruptedException e ) {
+				if ( state.compareAndSet( PENDING, ABANDONED ) ) {
+					pool.remove( this );
+				}
+				Thread.currentThread().interrupt();
+				throw new BoxRuntimeException( "Interrupted while waiting for a password hashing operation", e );
+			} catch ( ExecutionException e ) {
+				Throwable cause = e.getCause();
+				if ( cause instanceof RuntimeException runtimeException ) {
+					throw runtimeException;
+				}
+				if ( cause instanceof Error error ) {
+					throw error;
+				}
+				throw new BoxRuntimeException( "An exception occurred while performing a password hashing operation: " + cause.getMessage(), cause );
+			}
+		}
+	}
+
+	private static final class Worker extends Thread {
+
+		Worker( Runnable target, String name ) {
+			super( target, name );
+			setDaemon( true );
+		}
+	}
+
+	private static final class WorkerFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread( Runnable target ) {
+			return new Worker( target, "bx-password-encrypt-kdf-" + counter.incrementAndGet() );
+		}
+	}
+
+}
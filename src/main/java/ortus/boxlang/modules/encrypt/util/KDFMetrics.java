@@ -0,0 +1,641 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.lang.management.ManagementFactory;
+import java.nio.LongBuffer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import ortus.boxlang.modules.encrypt.engines.BlockArena;
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Call counters and latency histograms of every hash and verify operation, one series per operation, algorithm and parameter set.
+ * <p>
+ * Counters are {@link LongAdder}s and latencies go into a {@link LatencyHistogram}, so recording never takes a lock and stays in the
+ * nanoseconds next to a key derivation in the milliseconds. A verify which completes with {@code false} counts as a rejection, so a
+ * credential stuffing attack shows up as a spike in the rejection rate of the verify series; an exception counts as an error.
+ * <p>
+ * The series, the executor and the memory arenas are readable through the {@code PasswordEncryptStats} BIF and, unless disabled in the
+ * {@code metrics} module settings, as MXBeans under the {@value #DOMAIN} JMX domain. To bound the number of series when hashes with
+ * arbitrary parameters are verified, parameter sets beyond the first {@value #MAX_SERIES} series are recorded as {@code other}.
+ */
+public final class KDFMetrics {
+
+	/**
+	 * The JMX domain of the MXBeans
+	 */
+	public static final String								DOMAIN				= "ortus.boxlang.modules.encrypt";
+
+	public static final String								HASH				= "hash";
+	public static final String								VERIFY				= "verify";
+
+	private static final int								MAX_SERIES			= 256;
+	private static final String								OTHER				= "other";
+
+	private final boolean									enabled;
+	private final boolean									jmx;
+	private final ConcurrentHashMap<String, Series>			allSeries			= new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<HashParameters, Series>	seriesByParameters	= new ConcurrentHashMap<>();
+
+	private static final class Holder {
+
+		private static final KDFMetrics INSTANCE = ModuleLifecycle.onUnload( new KDFMetrics( ModuleSettings.getStruct( EncryptKeys.metrics ) ),
+		    KDFMetrics::unregister );
+	}
+
+	/**
+	 * Returns the module-wide metrics, created from the module settings on first use.
+	 *
+	 * @return The metrics instance
+	 */
+	public static KDFMetrics getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates the metrics from a {@code metrics} settings struct.
+	 *
+	 * @param settings The metrics settings
+	 */
+	public KDFMetrics( IStruct settings ) {
+		this( ModuleSettings.getBoolean( settings, EncryptKeys.enabled, true ), ModuleSettings.getBoolean( settings, EncryptKeys.jmx, true ) );
+	}
+
+	/**
+	 * Creates the metrics.
+	 *
+	 * @param enabled Whether operations are recorded at all
+	 * @param jmx     Whether the series, the executor and the arenas are registered as MXBeans
+	 */
+	public KDFMetrics( boolean enabled, boolean jmx ) {
+		this.enabled	= enabled;
+		this.jmx		= jmx;
+		if ( enabled && jmx ) {
+			register( "type=Executor", new ExecutorStats(), ExecutorMXBean.class );
+			register( "type=Arena,name=argon2", new ArenaStats( BlockArena.argon2() ), ArenaMXBean.class );
+			register( "type=Arena,name=scrypt", new ArenaStats( BlockArena.scrypt() ), ArenaMXBean.class );
+		}
+	}
+
+	/**
+	 * Wraps a key derivation so that its latency and outcome are recorded when it runs. The interception points of {@link KDFEvents} are
+	 * announced around it as well.
+	 *
+	 * @param operation  {@link #HASH} or {@link #VERIFY}
+	 * @param algorithm  The algorithm name, e.g. argon2id, bcrypt or scrypt
+	 * @param parameters The parameter set, as returned by {@link #parameters(HashParameters)} and its siblings
+	 * @param work       The key derivation
+	 *
+	 * @return The recording key derivation, or the given one when metrics are disabled and nobody listens
+	 */
+	public <T> Callable<T> timed( String operation, String algorithm, String parameters, Callable<T> work ) {
+		Callable<T> recorded = work;
+		if ( enabled ) {
+			Series target = series( operation, algorithm, parameters );
+			recorded = () -> target.record( work );
+		}
+		return KDFEvents.getInstance().wrap( operation, algorithm, parameters, recorded );
+	}
+
+	/**
+	 * Wraps a verification so that its latency and outcome are recorded under the algorithm and parameters of the given hash. Prefer
+	 * {@link #timedVerify(HashParameters, Callable)} when the parameters have already been parsed.
+	 *
+	 * @param hashed The hash being verified
+	 * @param work   The verification
+	 *
+	 * @return The recording verification, or the given one when metrics are disabled and nobody listens
+	 */
+	public <T> Callable<T> timedVerify( String hashed, Callable<T> work ) {
+		if ( !enabled && !KDFEvents.getInstance().isListening() ) {
+			return work;
+		}
+		HashParameters parameters;
+		try {
+			parameters = HashParameters.parse( hashed );
+		} catch ( BoxRuntimeException e ) {
+			// The verification itself reports the malformed hash
+			return timed( VERIFY, "unknown", OTHER, work );
+		}
+		return timedVerify( parameters, work );
+	}
+
+	/**
+	 * Wraps a verification so that its latency and outcome are recorded under the given parameters of the hash being verified. The
+	 * series of a parameter set is looked up once, so verifying against the same parameters again builds no labels.
+	 *
+	 * @param parameters The parameters parsed from the hash being verified
+	 * @param work       The verification
+	 *
+	 * @return The recording verification, or the given one when metrics are disabled and nobody listens
+	 */
+	public <T> Callable<T> timedVerify( HashParameters parameters, Callable<T> work ) {
+		if ( !enabled ) {
+			return KDFEvents.getInstance().isListening() ? timed( VERIFY, algorithm( parameters.format ), parameters( parameters ), work ) : work;
+		}
+		Series target = seriesByParameters.get( parameters );
+		if ( target == null ) {
+			target = series( VERIFY, algorithm( parameters.format ), parameters( parameters ) );
+			// Bounded like the series, hashes with arbitrary parameters fall back to building the labels
+			if ( seriesByParameters.size() < MAX_SERIES ) {
+				seriesByParameters.putIfAbsent( parameters, target );
+			}
+		}
+		Series recorder = target;
+		return KDFEvents.getInstance().wrap( VERIFY, target.algorithm, target.parameters, () -> recorder.record( work ) );
+	}
+
+	/**
+	 * Wraps a verification so that its latency and outcome are recorded under the algorithm and parameters of the given parsed hash.
+	 *
+	 * @param hashed The parsed hash being verified
+	 * @param work   The verification
+	 *
+	 * @return The recording verification, or the given one when metrics are disabled and nobody listens
+	 */
+	public <T> Callable<T> timedVerify( HashDescriptor hashed, Callable<T> work ) {
+		return timedVerify( hashed.getParameters(), work );
+	}
+
+	/**
+	 * Runs a key derivation on the calling thread and records its latency and outcome.
+	 *
+	 * @param operation  {@link #HASH} or {@link #VERIFY}
+	 * @param algorithm  The algorithm name
+	 * @param parameters The parameter set
+	 * @param work       The key derivation
+	 *
+	 * @return The result of the key derivation
+	 */
+	public <T> T record( String operation, String algorithm, String parameters, Callable<T> work ) {
+		return call( timed( operation, algorithm, parameters, work ) );
+	}
+
+	/**
+	 * Runs a verification on the calling thread and records its latency and outcome under the algorithm and parameters of the hash.
+	 *
+	 * @param hashed The hash being verified
+	 * @param work   The verification
+	 *
+	 * @return The result of the verification
+	 */
+	public <T> T recordVerify( String hashed, Callable<T> work ) {
+		return call( timedVerify( hashed, work ) );
+	}
+
+	/**
+	 * Runs a verification on the calling thread and records its latency and outcome under the algorithm and parameters of the parsed
+	 * hash.
+	 *
+	 * @param hashed The parsed hash being verified
+	 * @param work   The verification
+	 *
+	 * @return The result of the verification
+	 */
+	public <T> T recordVerify( HashDescriptor hashed, Callable<T> work ) {
+		return call( timedVerify( hashed, work ) );
+	}
+
+	/**
+	 * Returns a snapshot of all series, the executor and the memory arenas.
+	 *
+	 * @return A struct with the {@code operations} array and the {@code executor}, {@code loadShedding}, {@code throttle},
+	 *         {@code verifyCache}, {@code salts}, {@code memoryBudget} and {@code arenas} structs
+	 */
+	public IStruct snapshot() {
+		Array operations = new Array();
+		allSeries.values().stream()
+		    .sorted( ( a, b ) -> a.key.compareTo( b.key ) )
+		    .forEach( entry -> operations.add( Struct.of(
+		        EncryptKeys.operation, entry.operation,
+		        EncryptKeys.algorithm, entry.algorithm,
+		        EncryptKeys.parameters, entry.parameters,
+		        EncryptKeys.calls, entry.getCalls(),
+		        EncryptKeys.errors, entry.getErrors(),
+		        EncryptKeys.rejections, entry.getRejections(),
+		        EncryptKeys.meanMillis, entry.getMeanMillis(),
+		        EncryptKeys.p50Millis, entry.getP50Millis(),
+		        EncryptKeys.p90Millis, entry.getP90Millis(),
+		        EncryptKeys.p99Millis, entry.getP99Millis(),
+		        EncryptKeys.maxMillis, entry.getMaxMillis()
+		    ) ) );
+
+		KDFExecutor		executor	= KDFExecutor.getInstance();
+		LoadShedder		shedder		= executor.getLoadShedder();
+		VerifyThrottle	throttle	= VerifyThrottle.getInstance();
+		VerifyCache		cache		= VerifyCache.getInstance();
+		SaltService		salts		= SaltService.getInstance();
+		MemoryBudget	budget		= MemoryBudget.getInstance();
+		return Struct.of(
+		    EncryptKeys.enabled, enabled,
+		    EncryptKeys.operations, operations,
+		    EncryptKeys.executor, Struct.of(
+		        EncryptKeys.maxConcurrency, executor.getMaxConcurrency(),
+		        EncryptKeys.active, executor.getActiveCount(),
+		        EncryptKeys.queueDepth, executor.getQueueDepth(),
+		        EncryptKeys.busy, executor.getBusyCount(),
+		        EncryptKeys.queueWait, Struct.of(
+		            EncryptKeys.meanMillis, executor.getQueueWait().getMeanMillis(),
+		            EncryptKeys.p99Millis, executor.getQueueWait().getPercentileMillis( 0.99 ),
+		            EncryptKeys.maxMillis, executor.getQueueWait().getMaxMillis()
+		        )
+		    ),
+		    EncryptKeys.loadShedding, Struct.of(
+		        EncryptKeys.enabled, shedder.isEnabled(),
+		        EncryptKeys.saturated, shedder.isSaturated(),
+		        EncryptKeys.degraded, shedder.getDegradedCount(),
+		        EncryptKeys.shed, shedder.getShedCount()
+		    ),
+		    EncryptKeys.throttle, Struct.of(
+		        EncryptKeys.enabled, throttle.isEnabled(),
+		        EncryptKeys.principals, throttle.getPrincipalCount(),
+		        EncryptKeys.throttled, throttle.getThrottledCount()
+		    ),
+		    EncryptKeys.verifyCache, Struct.of(
+		        EncryptKeys.enabled, cache.isEnabled(),
+		        EncryptKeys.size, cache.getSize(),
+		        EncryptKeys.hits, cache.getHits(),
+		        EncryptKeys.misses, cache.getMisses()
+		    ),
+		    EncryptKeys.salts, Struct.of(
+		        EncryptKeys.algorithm, salts.getAlgorithm(),
+		        EncryptKeys.poolSize, salts.getPoolSize(),
+		        EncryptKeys.hits, salts.getHits(),
+		        EncryptKeys.misses, salts.getMisses()
+		    ),
+		    EncryptKeys.memoryBudget, Struct.of(
+		        EncryptKeys.enabled, budget.isEnabled(),
+		        EncryptKeys.budgetBytes, budget.getBudget(),
+		        EncryptKeys.inUseBytes, budget.getInUse(),
+		        EncryptKeys.waiting, budget.getWaiting(),
+		        EncryptKeys.busy, budget.getBusyCount()
+		    ),
+		    EncryptKeys.arenas, arenas()
+		);
+	}
+
+	/**
+	 * Clears all counters and histograms, including the queue wait of the executor. The series themselves are kept.
+	 */
+	public void reset() {
+		allSeries.values().forEach( Series::reset );
+		KDFExecutor.getInstance().getQueueWait().reset();
+	}
+
+	/**
+	 * Returns the series label of an Argon2 parameter set, in the order of the encoded hash.
+	 *
+	 * @param iterations  The time cost
+	 * @param memory      The memory cost in KiB
+	 * @param parallelism The number of lanes
+	 *
+	 * @return The label
+	 */
+	public static String argon2( int iterations, int memory, int parallelism ) {
+		return "m=" + memory + ",t=" + iterations + ",p=" + parallelism;
+	}
+
+	/**
+	 * Returns the series label of a BCrypt cost.
+	 *
+	 * @param cost The log2 of the number of rounds
+	 *
+	 * @return The label
+	 */
+	public static String bcrypt( int cost ) {
+		return "cost=" + cost;
+	}
+
+	/**
+	 * Returns the series label of an SCrypt parameter set.
+	 *
+	 * @param cpuCost     N
+	 * @param memory      r
+	 * @param parallelism p
+	 *
+	 * @return The label
+	 */
+	public static String scrypt( int cpuCost, int memory, int parallelism ) {
+		return "N=" + cpuCost + ",r=" + memory + ",p=" + parallelism;
+	}
+
+	/**
+	 * Returns the series label of the parameters parsed from a hash.
+	 *
+	 * @param parameters The parsed parameters
+	 *
+	 * @return The label
+	 */
+	public static String parameters( HashParameters parameters ) {
+		return switch ( parameters.format.algorithm ) {
+			case ARGON2 -> argon2( parameters.iterations, parameters.memory, parameters.parallelism );
+			case BCRYPT -> bcrypt( parameters.iterations );
+			case SCRYPT -> scrypt( parameters.cpuCost, parameters.memory, parameters.parallelism );
+		};
+	}
+
+	/**
+	 * Returns the algorithm name of a hash format: the Argon2 variant, bcrypt or scrypt.
+	 *
+	 * @param format The hash format
+	 *
+	 * @return The name
+	 */
+	public static String algorithm( HashFormat format ) {
+		return format.variant != null ? format.variant.name().toLowerCase() : format.algorithm.name().toLowerCase();
+	}
+
+	private Series series( String operation, String algorithm, String parameters ) {
+		String	key		= operation + ' ' + algorithm + ' ' + parameters;
+		Series	result	= allSeries.get( key );
+		if ( result == null ) {
+			if ( allSeries.size() >= MAX_SERIES && !parameters.equals( OTHER ) ) {
+				return series( operation, algorithm, OTHER );
+			}
+			result = allSeries.computeIfAbsent( key, k -> {
+				Series created = new Series( k, operation, algorithm, parameters );
+				if ( jmx ) {
+					register( "type=Operation,operation=" + operation + ",algorithm=" + algorithm + ",parameters=" + ObjectName.quote( parameters ),
+					    created, SeriesMXBean.class );
+				}
+				return created;
+			} );
+		}
+		return result;
+	}
+
+	private static IStruct arenas() {
+		IStruct					result	= Struct.of(
+		    EncryptKeys.argon2, arena( BlockArena.argon2() ),
+		    EncryptKeys.scrypt, arena( BlockArena.scrypt() )
+		);
+		BlockArena<LongBuffer>	offHeap	= Argon2Registry.getOffHeapArena();
+		if ( offHeap != null ) {
+			IStruct stats = arena( offHeap );
+			stats.put( EncryptKeys.inUseBytes, offHeap.getInUse() );
+			stats.put( EncryptKeys.budgetBytes, offHeap.getBudget() );
+			stats.put( EncryptKeys.waiting, offHeap.getWaiting() );
+			result.put( EncryptKeys.offHeap, stats );
+		}
+		return result;
+	}
+
+	private static IStruct arena( BlockArena<?> arena ) {
+		return Struct.of(
+		    EncryptKeys.hits, arena.getHits(),
+		    EncryptKeys.misses, arena.getMisses(),
+		    EncryptKeys.retainedBytes, arena.getRetained()
+		);
+	}
+
+	/**
+	 * Unregisters every MXBean of the {@value #DOMAIN} domain, so an unloaded module leaves none behind in the platform MBean server.
+	 */
+	public void unregister() {
+		if ( !jmx ) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			for ( ObjectName name : server.queryNames( new ObjectName( DOMAIN + ":*" ), null ) ) {
+				server.unregisterMBean( name );
+			}
+		} catch ( JMException e ) {
+			// Metrics must never break the module, an unload included
+		}
+	}
+
+	private static <T> void register( String properties, T bean, Class<T> type ) {
+		try {
+			MBeanServer	server	= ManagementFactory.getPlatformMBeanServer();
+			ObjectName	name	= new ObjectName( DOMAIN + ":" + properties );
+			// A reloaded module replaces the beans of its previous instance
+			if ( server.isRegistered( name ) ) {
+				server.unregisterMBean( name );
+			}
+			server.registerMBean( new StandardMBean( bean, type, true ), name );
+		} catch ( JMException e ) {
+			// Metrics must never break hashing, the BIF still reports everything
+		}
+	}
+
+	private static <T> T call( Callable<T> work ) {
+		try {
+			return work.call();
+		} catch ( RuntimeException e ) {
+			throw e;
+		} catch ( Exception e ) {
+			throw new BoxRuntimeException( "An exception occurred while performing a password hashing operation: " + e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * The JMX view of one operation, algorithm and parameter set
+	 */
+	public interface SeriesMXBean {
+
+		long getCalls();
+
+		long getErrors();
+
+		long getRejections();
+
+		double getMeanMillis();
+
+		double getP50Millis();
+
+		double getP90Millis();
+
+		double getP99Millis();
+
+		double getMaxMillis();
+	}
+
+	/**
+	 * The JMX view of the hashing executor
+	 */
+	public interface ExecutorMXBean {
+
+		int getMaxConcurrency();
+
+		int getActiveCount();
+
+		int getQueueDepth();
+
+		long getBusyCount();
+
+		double getQueueWaitP99Millis();
+	}
+
+	/**
+	 * The JMX view of a memory arena of the Java engines
+	 */
+	public interface ArenaMXBean {
+
+		long getHits();
+
+		long getMisses();
+
+		long getRetainedBytes();
+	}
+
+	private static final class Series implements SeriesMXBean {
+
+		private final String			key;
+		private final String			operation;
+		private final String			algorithm;
+		private final String			parameters;
+		private final LongAdder			calls		= new LongAdder();
+		private final LongAdder			errors		= new LongAdder();
+		private final LongAdder			rejections	= new LongAdder();
+		private final LatencyHistogram	latency		= new LatencyHistogram();
+
+		Series( String key, String operation, String algorithm, String parameters ) {
+			this.key		= key;
+			this.operation	= operation;
+			this.algorithm	= algorithm;
+			this.parameters	= parameters;
+		}
+
+		<T> T record( Callable<T> work ) {
+			long start = System.nanoTime();
+			calls.increment();
+			try {
+				T result = call( work );
+				latency.record( System.nanoTime() - start );
+				if ( Boolean.FALSE.equals( result ) ) {
+					rejections.increment();
+				}
+				return result;
+			} catch ( RuntimeException | Error e ) {
+				errors.increment();
+				throw e;
+			}
+		}
+
+		void reset() {
+			calls.reset();
+			errors.reset();
+			rejections.reset();
+			latency.reset();
+		}
+
+		@Override
+		public long getCalls() {
+			return calls.sum();
+		}
+
+		@Override
+		public long getErrors() {
+			return errors.sum();
+		}
+
+		@Override
+		public long getRejections() {
+			return rejections.sum();
+		}
+
+		@Override
+		public double getMeanMillis() {
+			return latency.getMeanMillis();
+		}
+
+		@Override
+		public double getP50Millis() {
+			return latency.getPercentileMillis( 0.5 );
+		}
+
+		@Override
+		public double getP90Millis() {
+			return latency.getPercentileMillis( 0.9 );
+		}
+
+		@Override
+		public double getP99Millis() {
+			return latency.getPercentileMillis( 0.99 );
+		}
+
+		@Override
+		public double getMaxMillis() {
+			return latency.getMaxMillis();
+		}
+
+	}
+
+	private static final class ExecutorStats implements ExecutorMXBean {
+
+		@Override
+		public int getMaxConcurrency() {
+			return KDFExecutor.getInstance().getMaxConcurrency();
+		}
+
+		@Override
+		public int getActiveCount() {
+			return KDFExecutor.getInstance().getActiveCount();
+		}
+
+		@Override
+		public int getQueueDepth() {
+			return KDFExecutor.getInstance().getQueueDepth();
+		}
+
+		@Override
+		public long getBusyCount() {
+			return KDFExecutor.getInstance().getBusyCount();
+		}
+
+		@Override
+		public double getQueueWaitP99Millis() {
+			return KDFExecutor.getInstance().getQueueWait().getPercentileMillis( 0.99 );
+		}
+
+	}
+
+	private record ArenaStats( BlockArena<?> arena ) implements ArenaMXBean {
+
+		@Override
+		public long getHits() {
+			return arena.getHits();
+		}
+
+		@Override
+		public long getMisses() {
+			return arena.getMisses();
+		}
+
+		@Override
+		public long getRetainedBytes() {
+			return arena.getRetained();
+		}
+
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with HDR-style log-linear buckets.
+ * <p>
+ * Latencies are recorded in microseconds. Every power of two is split into 16 linear sub-buckets, so any percentile is reported within
+ * 6.25% of the true value while the whole range from 1 microsecond to days fits in under a thousand counters. Recording is a couple of
+ * bit operations and one atomic increment, which is noise next to a key derivation.
+ */
+public final class LatencyHistogram {
+
+	private static final int	SUB_BUCKET_BITS		= 4;
+	private static final int	SUB_BUCKETS			= 1 << SUB_BUCKET_BITS;
+	private static final int	BUCKETS				= ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKETS;
+
+	private final AtomicLongArray	counts				= new AtomicLongArray( BUCKETS );
+	private final LongAdder			count				= new LongAdder();
+	private final LongAdder			totalMicros			= new LongAdder();
+	private final LongAccumulator	maxMicros			= new LongAccumulator( Math::max, 0 );
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos The latency in nanoseconds
+	 */
+	public void record( long nanos ) {
+		long micros = Math.max( 0, nanos / 1000 );
+		counts.incrementAndGet( index( micros ) );
+		count.increment();
+		totalMicros.add( micros );
+		maxMicros.accumulate( micros );
+	}
+
+	/**
+	 * Returns the number of recorded latencies.
+	 *
+	 * @return The count
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the mean latency in milliseconds.
+	 *
+	 * @return The mean, or 0 if nothing was recorded
+	 */
+	public double getMeanMillis() {
+		long n = count.sum();
+		return n == 0 ? 0 : totalMicros.sum() / ( n * 1000.0 );
+	}
+
+	/**
+	 * Returns the highest recorded latency in milliseconds.
+	 *
+	 * @return The maximum
+	 */
+	public double getMaxMillis() {
+		return maxMicros.get() / 1000.0;
+	}
+
+	/**
+	 * Returns the latency below which the given fraction of the recorded latencies fall, in milliseconds.
+	 *
+	 * @param quantile The quantile, between 0 and 1
+	 *
+	 * @return The upper bound of the bucket holding the quantile, or 0 if nothing was recorded
+	 */
+	public double getPercentileMillis( double quantile ) {
+		long[]	snapshot	= new long[ BUCKETS ];
+		long	total		= 0;
+		for ( int i = 0; i < BUCKETS; i++ ) {
+			snapshot[ i ]	= counts.get( i );
+			total			+= snapshot[ i ];
+		}
+		if ( total == 0 ) {
+			return 0;
+		}
+		long	rank	= Math.max( 1, ( long ) Math.ceil( quantile * total ) );
+		long	seen	= 0;
+		for ( int i = 0; i < BUCKETS; i++ ) {
+			seen += snapshot[ i ];
+			if ( seen >= rank ) {
+				return Math.min( upperBound( i ), maxMicros.get() ) / 1000.0;
+			}
+		}
+		return getMaxMillis();
+	}
+
+	/**
+	 * Clears all recorded latencies. Latencies recorded concurrently with the reset may be partially kept.
+	 */
+	public void reset() {
+		for ( int i = 0; i < BUCKETS; i++ ) {
+			counts.set( i, 0 );
+		}
+		count.reset();
+		totalMicros.reset();
+		maxMicros.reset();
+	}
+
+	/**
+	 * The bucket of a value: values below 16 have a bucket each, above that every power of two has 16 buckets.
+	 */
+	static int index( long value ) {
+		if ( value < SUB_BUCKETS ) {
+			return ( int ) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros( value ) - SUB_BUCKET_BITS;
+		return ( shift + 1 ) * SUB_BUCKETS + ( int ) ( ( value >>> shift ) & ( SUB_BUCKETS - 1 ) );
+	}
+
+	/**
+	 * The highest value that falls into the given bucket.
+	 */
+	static long upperBound( int index ) {
+		if ( index < SUB_BUCKETS ) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return ( ( long ) ( SUB_BUCKETS + index % SUB_BUCKETS + 1 ) << shift ) - 1;
+	}
+
+}
@@ -0,0 +1,221 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.Argon2Cost;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.SCryptCost;
+import ortus.boxlang.runtime.types.IStruct;
+
+/**
+ * The adaptive load shedding policy of the {@link KDFExecutor}.
+ * <p>
+ * The executor is saturated when at least {@code queueDepth} calls wait for a slot, or when calls wait at all and the recent queue wait
+ * exceeds {@code queueWaitMillis}. While it is saturated, new hashes are created with the cost parameters of the operator-defined
+ * {@code floor} instead of the requested ones, so every login costs less and the queue drains. A parameter without a floor, or requested
+ * below its floor, is never changed. The cheaper hashes fall below the module defaults, so {@code PasswordNeedsRehash} and
+ * {@code PasswordVerifyAndUpgrade} replace them on the next login once the storm is over; the latter defers upgrades while the executor
+ * is saturated.
+ * <p>
+ * With {@code rejectEarly}, a call which would not start within the queue timeout given the current queue and the recent run time of a
+ * key derivation is rejected with a {@code PasswordEncrypt.Busy} exception right away, instead of holding a request thread until the
+ * timeout expires.
+ * <p>
+ * Verification is never affected: it always uses the parameters encoded in the stored hash.
+ * <p>
+ * Configured through the {@code loadShedding} struct of the module settings, disabled by default.
+ */
+public final class LoadShedder {
+
+	private final KDFExecutor	executor;
+	private final boolean		enabled;
+	private final int			queueDepth;
+	private final long			queueWaitNanos;
+	private final boolean		rejectEarly;
+	private final Argon2Cost	argon2Floor;
+	private final int			bcryptFloor;
+	private final SCryptCost	scryptFloor;
+	private final LongAdder		degradedCount	= new LongAdder();
+	private final LongAdder		shedCount		= new LongAdder();
+
+	/**
+	 * Returns the load shedding policy of the module executor.
+	 *
+	 * @return The policy
+	 */
+	public static LoadShedder getInstance() {
+		return KDFExecutor.getInstance().getLoadShedder();
+	}
+
+	/**
+	 * Creates a policy from a {@code loadShedding} settings struct.
+	 *
+	 * @param settings The load shedding settings
+	 * @param executor The executor whose queue is watched
+	 */
+	public LoadShedder( IStruct settings, KDFExecutor executor ) {
+		IStruct	floor	= ModuleSettings.getStruct( settings, EncryptKeys.floor );
+		IStruct	argon2	= ModuleSettings.getStruct( floor, EncryptKeys.argon2 );
+		IStruct	scrypt	= ModuleSettings.getStruct( floor, EncryptKeys.scrypt );
+		int		depth	= ModuleSettings.getInt( settings, EncryptKeys.queueDepth, 0 );
+
+		this.executor		= executor;
+		this.enabled		= ModuleSettings.getBoolean( settings, EncryptKeys.enabled, false );
+		this.queueDepth		= depth > 0 ? depth : executor.getMaxConcurrency();
+		this.queueWaitNanos	= TimeUnit.MILLISECONDS.toNanos( ModuleSettings.getInt( settings, EncryptKeys.queueWaitMillis, 100 ) );
+		this.rejectEarly	= ModuleSettings.getBoolean( settings, EncryptKeys.rejectEarly, true );
+		this.argon2Floor	= new Argon2Cost(
+		    ModuleSettings.getInt( argon2, EncryptKeys.iterations, Integer.MAX_VALUE ),
+		    ModuleSettings.getInt( argon2, EncryptKeys.memory, Integer.MAX_VALUE ),
+		    ModuleSettings.getInt( argon2, EncryptKeys.parallelism, Integer.MAX_VALUE )
+		);
+		this.bcryptFloor	= ModuleSettings.getInt( ModuleSettings.getStruct( floor, EncryptKeys.bcrypt ), EncryptKeys.iterations, Integer.MAX_VALUE );
+		this.scryptFloor	= new SCryptCost(
+		    ModuleSettings.getInt( scrypt, EncryptKeys.cpuCost, Integer.MAX_VALUE ),
+		    ModuleSettings.getInt( scrypt, EncryptKeys.memory, Integer.MAX_VALUE ),
+		    ModuleSettings.getInt( scrypt, EncryptKeys.parallelism, Integer.MAX_VALUE )
+		);
+	}
+
+	/**
+	 * Whether load shedding is enabled at all.
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Whether the executor is saturated, so new hashes should use the floor parameters.
+	 *
+	 * @return True if enabled and saturated
+	 */
+	public boolean isSaturated() {
+		if ( !enabled ) {
+			return false;
+		}
+		int depth = executor.getQueueDepth();
+		return depth >= queueDepth || ( depth > 0 && executor.getRecentQueueWaitNanos() >= queueWaitNanos );
+	}
+
+	/**
+	 * Whether a new call should be rejected right away because it would not start within the queue timeout.
+	 *
+	 * @return True if enabled, early rejection is on and the estimated wait exceeds the queue timeout
+	 */
+	public boolean shouldShed() {
+		if ( !enabled || !rejectEarly ) {
+			return false;
+		}
+		int depth = executor.getQueueDepth();
+		if ( depth == 0 ) {
+			return false;
+		}
+		// Every slot works through its share of the queue before this call starts
+		long estimatedWait = ( depth + 1L ) * executor.getRecentRunNanos() / executor.getMaxConcurrency();
+		if ( estimatedWait <= executor.getQueueTimeoutNanos() ) {
+			return false;
+		}
+		shedCount.increment();
+		return true;
+	}
+
+	/**
+	 * Returns the Argon2 cost parameters to use for a new hash.
+	 *
+	 * @param requested The requested cost parameters
+	 *
+	 * @return The requested parameters, or the floor where it is lower while the executor is saturated
+	 */
+	public Argon2Cost argon2( Argon2Cost requested ) {
+		if ( !isSaturated() ) {
+			return requested;
+		}
+		Argon2Cost result = new Argon2Cost(
+		    Math.min( requested.iterations(), argon2Floor.iterations() ),
+		    Math.min( requested.memory(), argon2Floor.memory() ),
+		    Math.min( requested.parallelism(), argon2Floor.parallelism() )
+		);
+		return degraded( requested, result );
+	}
+
+	/**
+	 * Returns the BCrypt cost to use for a new hash.
+	 *
+	 * @param requested The requested log2 of the number of rounds
+	 *
+	 * @return The requested cost, or the floor if it is lower while the executor is saturated
+	 */
+	public int bcrypt( int requested ) {
+		if ( requested <= bcryptFloor || !isSaturated() ) {
+			return requested;
+		}
+		degradedCount.increment();
+		return bcryptFloor;
+	}
+
+	/**
+	 * Returns the SCrypt cost parameters to use for a new hash.
+	 *
+	 * @param requested The requested cost parameters
+	 *
+	 * @return The requested parameters, or the floor where it is lower while the executor is saturated
+	 */
+	public SCryptCost scrypt( SCryptCost requested ) {
+		if ( !isSaturated() ) {
+			return requested;
+		}
+		SCryptCost result = new SCryptCost(
+		    Math.min( requested.cpuCost(), scryptFloor.cpuCost() ),
+		    Math.min( requested.memory(), scryptFloor.memory() ),
+		    Math.min( requested.parallelism(), scryptFloor.parallelism() )
+		);
+		return degraded( requested, result );
+	}
+
+	/**
+	 * Returns how many hashes were created with floor parameters.
+	 *
+	 * @return The number of degraded hashes
+	 */
+	public long getDegradedCount() {
+		return degradedCount.sum();
+	}
+
+	/**
+	 * Returns how many calls were rejected early.
+	 *
+	 * @return The number of shed calls
+	 */
+	public long getShedCount() {
+		return shedCount.sum();
+	}
+
+	private <T> T degraded( T requested, T result ) {
+		if ( result.equals( requested ) ) {
+			return requested;
+		}
+		degradedCount.increment();
+		return result;
+	}
+
+}
@@ -0,0 +1,241 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Admits memory-hard key derivations against a total memory budget shared by every algorithm.
+ * <p>
+ * The cost of a derivation follows from its parameters: {@code memory} KiB for Argon2 and {@code 128 * r * N} bytes per lane for SCrypt,
+ * counting every lane as mixed at once. Verifications are charged the cost of the parameters encoded in the stored hash. BCrypt works in a
+ * few KiB and is never charged. A derivation only starts once its cost fits into what is left of the budget; until then it waits, in
+ * arrival order, for other derivations to finish. A derivation which cannot be admitted within {@code queueTimeout} milliseconds fails
+ * with a {@code PasswordEncrypt.Busy} exception, so a login spike is slowed down instead of running the process out of memory.
+ * <p>
+ * The budget is a fair weighted semaphore with one permit per KiB, so admitting a derivation while nobody waits is a single
+ * compare-and-set. A derivation costing more than the whole budget is admitted once it has the budget to itself.
+ * <p>
+ * Configured through the {@code memoryBudget} struct of the module settings, disabled by default.
+ */
+public final class MemoryBudget {
+
+	private final boolean	enabled;
+	private final int		permits;
+	private final long		timeoutNanos;
+	private final Semaphore	semaphore;
+	private final LongAdder	busyCount	= new LongAdder();
+
+	private static final class Holder {
+
+		private static final MemoryBudget INSTANCE = new MemoryBudget( ModuleSettings.getStruct( EncryptKeys.memoryBudget ) );
+	}
+
+	/**
+	 * Returns the module-wide memory budget, created from the module settings on first use.
+	 *
+	 * @return The memory budget instance
+	 */
+	public static MemoryBudget getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates a memory budget from a {@code memoryBudget} settings struct.
+	 *
+	 * @param settings The memory budget settings
+	 */
+	public MemoryBudget( IStruct settings ) {
+		this(
+		    ModuleSettings.getBoolean( settings, EncryptKeys.enabled, false ),
+		    ( long ) ModuleSettings.getInt( settings, EncryptKeys.budgetMiB, 0 ) << 20,
+		    ModuleSettings.getInt( settings, EncryptKeys.queueTimeout, KDFExecutor.DEFAULT_QUEUE_TIMEOUT )
+		);
+	}
+
+	/**
+	 * Creates a memory budget.
+	 *
+	 * @param enabled      Whether derivations are admitted against the budget at all
+	 * @param budgetBytes  The total memory of the derivations running at once. Zero or less means half of the maximum heap size.
+	 * @param queueTimeout The maximum number of milliseconds a derivation may wait for the budget
+	 */
+	public MemoryBudget( boolean enabled, long budgetBytes, long queueTimeout ) {
+		long budget = budgetBytes > 0 ? budgetBytes : Runtime.getRuntime().maxMemory() / 2;
+		this.enabled		= enabled;
+		this.permits		= ( int ) Math.max( 1, Math.min( budget >> 10, Integer.MAX_VALUE ) );
+		this.timeoutNanos	= TimeUnit.MILLISECONDS.toNanos( Math.max( 0, queueTimeout ) );
+		this.semaphore		= new Semaphore( this.permits, true );
+	}
+
+	/**
+	 * Returns the memory an Argon2 derivation works in.
+	 *
+	 * @param memory The memory cost in KiB
+	 *
+	 * @return The cost in bytes
+	 */
+	public static long argon2( int memory ) {
+		return ( long ) memory << 10;
+	}
+
+	/**
+	 * Returns the memory an SCrypt derivation works in when all of its lanes are mixed at once.
+	 *
+	 * @param cpuCost     The CPU cost ( N )
+	 * @param memory      The block size ( r )
+	 * @param parallelism The parallelization ( p )
+	 *
+	 * @return The cost in bytes
+	 */
+	public static long scrypt( int cpuCost, int memory, int parallelism ) {
+		return 128L * memory * cpuCost * parallelism;
+	}
+
+	/**
+	 * Returns the memory a verification against a hash with the given parameters works in.
+	 *
+	 * @param parameters The parameters of the stored hash
+	 *
+	 * @return The cost in bytes, {@code 0} for BCrypt
+	 */
+	public static long cost( HashParameters parameters ) {
+		return switch ( parameters.format.algorithm ) {
+			case ARGON2 -> argon2( parameters.memory );
+			case BCRYPT -> 0;
+			case SCRYPT -> scrypt( parameters.cpuCost, parameters.memory, parameters.parallelism );
+		};
+	}
+
+	/**
+	 * Runs a derivation once its memory cost fits into the budget, and gives the memory back when it completes.
+	 *
+	 * @param bytes The memory cost of the derivation
+	 * @param work  The derivation
+	 *
+	 * @return The result of the derivation
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.Busy} when the derivation could not be admitted in time
+	 */
+	public <T> T admit( long bytes, Supplier<T> work ) {
+		if ( !enabled || bytes <= 0 ) {
+			return work.get();
+		}
+		int wanted = ( int ) Math.min( ( bytes + 1023 ) >> 10, permits );
+		if ( !acquire( wanted ) ) {
+			busyCount.increment();
+			throw new BoxRuntimeException(
+			    "The password hashing memory budget is exhausted: [" + ( bytes >> 10 ) + "] KiB could not be admitted within the queue timeout, ["
+			        + ( getInUse() >> 10 ) + "] of [" + permits + "] KiB are in use. Please try again later.",
+			    KDFExecutor.BUSY_TYPE
+			);
+		}
+		try {
+			return work.get();
+		} finally {
+			semaphore.release( wanted );
+		}
+	}
+
+	/**
+	 * Runs a verification once the memory cost of the parameters of the stored hash fits into the budget. A hash which cannot be parsed
+	 * is not charged, so the verification reports its own error.
+	 *
+	 * @param hashed The encoded hash
+	 * @param work   The verification
+	 *
+	 * @return The result of the verification
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.Busy} when the verification could not be admitted in time
+	 */
+	public <T> T admit( String hashed, Supplier<T> work ) {
+		if ( !enabled ) {
+			return work.get();
+		}
+		long bytes;
+		try {
+			bytes = cost( HashParameters.parse( hashed ) );
+		} catch ( BoxRuntimeException e ) {
+			bytes = 0;
+		}
+		return admit( bytes, work );
+	}
+
+	/**
+	 * Whether derivations are admitted against the budget at all.
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the total memory of the derivations running at once.
+	 *
+	 * @return The budget in bytes
+	 */
+	public long getBudget() {
+		return ( long ) permits << 10;
+	}
+
+	/**
+	 * Returns the memory of the derivations running now.
+	 *
+	 * @return The admitted bytes
+	 */
+	public long getInUse() {
+		return ( long ) ( permits - semaphore.availablePermits() ) << 10;
+	}
+
+	/**
+	 * Returns the approximate number of derivations waiting for the budget.
+	 *
+	 * @return The number of waiting derivations
+	 */
+	public int getWaiting() {
+		return semaphore.getQueueLength();
+	}
+
+	/**
+	 * Returns how many derivations were turned away because they could not be admitted in time.
+	 *
+	 * @return The number of rejected derivations
+	 */
+	public long getBusyCount() {
+		return busyCount.sum();
+	}
+
+	private boolean acquire( int wanted ) {
+		try {
+			// Unlike the untimed tryAcquire, the timed one honors the fairness of the semaphore
+			return semaphore.tryAcquire( wanted, timeoutNanos, TimeUnit.NANOSECONDS );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+}
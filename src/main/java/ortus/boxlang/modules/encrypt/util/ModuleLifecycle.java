@@ -0,0 +1,66 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Consumer;
+
+/**
+ * Releases the resources the module starts on first use, such as the executor threads, the salt refill thread and the MXBeans, when the
+ * module is unloaded.
+ * <p>
+ * The module-wide instances register how they are released as they are created, so unloading a module that never hashed anything does
+ * not create them only to stop them. They are released in the reverse order of their creation.
+ */
+public final class ModuleLifecycle {
+
+	private static final Deque<Runnable> HOOKS = new ConcurrentLinkedDeque<>();
+
+	private ModuleLifecycle() {
+	}
+
+	/**
+	 * Registers how a module-wide instance is released when the module is unloaded.
+	 *
+	 * @param instance The instance
+	 * @param release  Releases the resources of the instance
+	 *
+	 * @return The instance
+	 */
+	public static <T> T onUnload( T instance, Consumer<T> release ) {
+		HOOKS.push( () -> release.accept( instance ) );
+		return instance;
+	}
+
+	/**
+	 * Releases every registered instance. Called from the {@code onUnload()} method of the module; a failing release does not keep the
+	 * others from running.
+	 */
+	public static void unload() {
+		Runnable hook;
+		while ( ( hook = HOOKS.poll() ) != null ) {
+			try {
+				hook.run();
+			} catch ( RuntimeException e ) {
+				// Keep releasing the rest, the module is going away either way
+			}
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.dynamic.casters.BooleanCaster;
+import ortus.boxlang.runtime.dynamic.casters.IntegerCaster;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.dynamic.casters.StructCaster;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.services.ModuleService;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+/**
+ * Read-only access to the settings declared in the module's {@code ModuleConfig.bx}.
+ * <p>
+ * When the BIFs are loaded outside of a registered module ( e.g. in unit tests ) an empty struct is returned and every caller falls back to
+ * its own defaults.
+ */
+public final class ModuleSettings {
+
+	private ModuleSettings() {
+	}
+
+	/**
+	 * Returns the settings struct of the module, or an empty struct if the module is not registered in the runtime.
+	 *
+	 * @return The module settings
+	 */
+	public static IStruct get() {
+		BoxRuntime runtime = BoxRuntime.getInstance();
+		if ( runtime == null ) {
+			return new Struct();
+		}
+		ModuleService moduleService = runtime.getModuleService();
+		if ( moduleService == null || !moduleService.hasModule( EncryptKeys.moduleName ) ) {
+			return new Struct();
+		}
+		IStruct settings = moduleService.getModuleSettings( EncryptKeys.moduleName );
+		return settings == null ? new Struct() : settings;
+	}
+
+	/**
+	 * Returns a nested settings struct, or an empty struct if it has not been configured.
+	 *
+	 * @param name The name of the nested settings struct
+	 *
+	 * @return The nested settings
+	 */
+	public static IStruct getStruct( Key name ) {
+		return getStruct( get(), name );
+	}
+
+	/**
+	 * Returns a struct nested in the given settings struct, or an empty struct if it has not been configured.
+	 *
+	 * @param settings The settings struct
+	 * @param name     The name of the nested settings struct
+	 *
+	 * @return The nested settings
+	 */
+	public static IStruct getStruct( IStruct settings, Key name ) {
+		Object value = settings.get( name );
+		return value == null ? new Struct() : StructCaster.cast( value );
+	}
+
+	/**
+	 * Returns an integer setting from the given struct, or the default value when it is not present.
+	 *
+	 * @param settings     The settings struct
+	 * @param name         The setting name
+	 * @param defaultValue The value to use when the setting is not present
+	 *
+	 * @return The setting value
+	 */
+	public static int getInt( IStruct settings, Key name, int defaultValue ) {
+		Object value = settings.get( name );
+		return value == null ? defaultValue : IntegerCaster.cast( value );
+	}
+
+	/**
+	 * Returns a string setting from the given struct, or the default value when it is not present.
+	 *
+	 * @param settings     The settings struct
+	 * @param name         The setting name
+	 * @param defaultValue The value to use when the setting is not present
+	 *
+	 * @return The setting value
+	 */
+	public static String getString( IStruct settings, Key name, String defaultValue ) {
+		Object value = settings.get( name );
+		return value == null ? defaultValue : StringCaster.cast( value );
+	}
+
+	/**
+	 * Returns a boolean setting from the given struct, or the default value when it is not present.
+	 *
+	 * @param settings     The settings struct
+	 * @param name         The setting name
+	 * @param defaultValue The value to use when the setting is not present
+	 *
+	 * @return The setting value
+	 */
+	public static boolean getBoolean( IStruct settings, Key name, boolean defaultValue ) {
+		Object value = settings.get( name );
+		return value == null ? defaultValue : BooleanCaster.cast( value );
+	}
+
+}
@@ -0,0 +1,553 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.concurrent.Callable;
+
+import com.lambdaworks.codec.Base64;
+
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.Argon2Cost;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.SCryptCost;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Algorithm-agnostic password hashing shared by the functions which are not bound to a single algorithm.
+ * <p>
+ * A hasher resolves its algorithm and cost parameters once, so it can be reused to hash any number of inputs. Verification needs no
+ * configuration as the algorithm and its parameters are encoded in the hash itself.
+ */
+public final class PasswordHasher {
+
+	/**
+	 * The supported password hashing algorithms
+	 */
+	public enum Algorithm {
+		ARGON2,
+		BCRYPT,
+		SCRYPT
+	}
+
+	/**
+	 * The highest Argon2 memory cost accepted by the hash functions, in KiB ( 1 GiB )
+	 */
+	public static final int		ARGON2_MAX_MEMORY	= 1048576;
+
+	private final Algorithm		algorithm;
+	private final Argon2Types	variant;
+	private final int			iterations;
+	private final int			memory;
+	private final int			parallelism;
+	private final int			cpuCost;
+	private final int			keySize;
+	private final int			saltLength;
+	private final String		metricsAlgorithm;
+	private final String		metricsParameters;
+
+	/**
+	 * Creates a hasher for the given algorithm name. Supported names are {@code argon2}, {@code argon2i}, {@code argon2d},
+	 * {@code argon2id}, {@code bcrypt} and {@code scrypt}. The options accept the same keys as the arguments of the matching hash BIF.
+	 *
+	 * @param algorithm The algorithm name
+	 * @param options   The cost parameters of the algorithm
+	 */
+	public PasswordHasher( String algorithm, IStruct options ) {
+		String name = algorithm.toLowerCase();
+		if ( name.startsWith( "argon2" ) ) {
+			this.algorithm	= Algorithm.ARGON2;
+			this.variant	= argon2Variant( name.length() > 6 ? name : options.getOrDefault( Key.variant, "ARGON2i" ).toString() );
+			Argon2Cost defaults = CostDefaults.argon2();
+			this.iterations	= range( options, EncryptKeys.iterations, defaults.iterations(), 1, 20 );
+			this.memory		= range( options, EncryptKeys.memory, defaults.memory(), 8, ARGON2_MAX_MEMORY );
+			this.parallelism	= range( options, EncryptKeys.parallelism, defaults.parallelism(), 1, 10 );
+			this.cpuCost	= 0;
+			this.keySize	= 0;
+			this.saltLength	= 0;
+		} else if ( name.equals( "bcrypt" ) ) {
+			this.algorithm	= Algorithm.BCRYPT;
+			this.variant	= null;
+			this.iterations	= range( options, EncryptKeys.iterations, CostDefaults.bcrypt().rounds(), 5, 10 );
+			this.memory		= 0;
+			this.parallelism	= 0;
+			this.cpuCost	= 0;
+			this.keySize	= 0;
+			this.saltLength	= 0;
+		} else if ( name.equals( "scrypt" ) ) {
+			this.algorithm	= Algorithm.SCRYPT;
+			this.variant	= null;
+			this.iterations	= 0;
+			this.saltLength	= range( options, EncryptKeys.saltLength, 8, 8, Integer.MAX_VALUE );
+			SCryptCost defaults = CostDefaults.scrypt();
+			this.parallelism	= range( options, EncryptKeys.parallelism, defaults.parallelism(), 1, 10 );
+			this.keySize	= range( options, EncryptKeys.keySize, 32, 32, Integer.MAX_VALUE );
+			this.memory		= range( options, EncryptKeys.memory, defaults.memory(), 2, Integer.MAX_VALUE );
+			this.cpuCost	= range( options, EncryptKeys.cpuCost, defaults.cpuCost(), 2, Integer.MAX_VALUE );
+			HashValidator.getInstance().checkSCrypt( cpuCost, memory, parallelism );
+		} else {
+			throw new BoxRuntimeException( "Invalid password hashing algorithm: [" + algorithm + "]. Valid algorithms are: [argon2, argon2i, argon2d, argon2id, bcrypt, scrypt]" );
+		}
+		this.metricsAlgorithm	= this.variant != null ? this.variant.name().toLowerCase() : this.algorithm.name().toLowerCase();
+		this.metricsParameters	= switch ( this.algorithm ) {
+			case ARGON2 -> KDFMetrics.argon2( iterations, memory, parallelism );
+			case BCRYPT -> KDFMetrics.bcrypt( iterations );
+			case SCRYPT -> KDFMetrics.scrypt( cpuCost, memory, parallelism );
+		};
+	}
+
+	/**
+	 * Creates a hasher for a rehash policy. The policy holds the target {@code algorithm} and the cost options of that algorithm. Without an
+	 * {@code algorithm}, the algorithm of the given hash is kept and only its cost parameters are checked against the policy and the module
+	 * defaults.
+	 *
+	 * @param policy The rehash policy
+	 * @param hashed The hash the policy is applied to
+	 *
+	 * @return The hasher which produces hashes satisfying the policy
+	 */
+	public static PasswordHasher forPolicy( IStruct policy, String hashed ) {
+		Object algorithm = policy.get( EncryptKeys.algorithm );
+		if ( algorithm == null ) {
+			HashFormat format = format( hashed );
+			algorithm = format.variant != null ? format.variant.name() : format.algorithm.name();
+		}
+		return new PasswordHasher( algorithm.toString(), policy );
+	}
+
+	/**
+	 * Returns the algorithm of this hasher
+	 *
+	 * @return The algorithm
+	 */
+	public Algorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Hashes the given input with a new random salt. The input is encoded as UTF-8 into a pooled buffer which is zeroed afterwards.
+	 *
+	 * @param input The plaintext to hash
+	 *
+	 * @return The encoded hash
+	 */
+	public String hash( String input ) {
+		return Secrets.withUtf8( input, this::hash );
+	}
+
+	/**
+	 * Hashes the given input with a new random salt. The passed array is not modified; wiping it is up to the caller.
+	 *
+	 * @param input The plaintext to hash
+	 *
+	 * @return The encoded hash
+	 */
+	public String hash( char[] input ) {
+		return Secrets.withUtf8( input, this::hash );
+	}
+
+	/**
+	 * Hashes the remaining bytes of the given buffer, which must hold the UTF-8 encoded plaintext, with a new random salt. The position of
+	 * the buffer is not changed.
+	 *
+	 * @param input The UTF-8 encoded plaintext to hash
+	 *
+	 * @return The encoded hash
+	 */
+	public String hash( ByteBuffer input ) {
+		return Secrets.withBytes( input, this::hash );
+	}
+
+	/**
+	 * Hashes the given UTF-8 encoded input with a new random salt. The passed array is not modified; wiping it is up to the caller.
+	 * <p>
+	 * While the {@link LoadShedder} reports the executor as saturated, the hash is created with the floor parameters of its policy. The
+	 * hash is recorded and announced on the calling thread, which is meant for embedded Java callers; work handed to the module executor
+	 * is prepared with {@link #timedHash(String)} instead.
+	 *
+	 * @param input The UTF-8 encoded plaintext to hash
+	 *
+	 * @return The encoded hash
+	 */
+	public String hash( byte[] input ) {
+		PasswordHasher hasher = underLoad();
+		return KDFMetrics.getInstance().record( KDFMetrics.HASH, hasher.metricsAlgorithm, hasher.metricsParameters, () -> hasher.derive( input ) );
+	}
+
+	/**
+	 * Prepares the hash of the given input with a new random salt, to be run on the module executor. The {@code onEncryptRequest}
+	 * interception point is announced right away on the calling thread, so an interceptor can reject the call before it is queued. The
+	 * returned task derives the key and records it.
+	 *
+	 * @param input The plaintext to hash
+	 *
+	 * @return The recording key derivation
+	 */
+	public Callable<String> timedHash( String input ) {
+		PasswordHasher hasher = underLoad();
+		return KDFMetrics.getInstance().timed( KDFMetrics.HASH, hasher.metricsAlgorithm, hasher.metricsParameters,
+		    () -> Secrets.withUtf8( input, hasher::derive ) );
+	}
+
+	private String derive( byte[] input ) {
+		return switch ( algorithm ) {
+			case ARGON2 -> Argon2Registry.hash( variant, iterations, memory, parallelism, input );
+			case BCRYPT -> BCryptCodec.hash( input, BCryptCodec.gensalt( iterations ) );
+			case SCRYPT -> scrypt( input, saltLength, cpuCost, memory, parallelism, keySize );
+		};
+	}
+
+	/**
+	 * Whether the given hash is weaker than this hasher would produce: it was created by another algorithm or Argon2 variant, or any of
+	 * its cost parameters is lower. Hashes with stronger parameters are not downgraded.
+	 *
+	 * @param hashed The encoded hash
+	 *
+	 * @return True if the hash should be replaced by a new hash from this hasher
+	 */
+	public boolean needsRehash( String hashed ) {
+		return needsRehash( HashParameters.parse( hashed ) );
+	}
+
+	/**
+	 * Whether the given parsed hash is weaker than this hasher would produce.
+	 *
+	 * @param hashed The parsed hash
+	 *
+	 * @return True if the hash should be replaced by a new hash from this hasher
+	 *
+	 * @see #needsRehash(String)
+	 */
+	public boolean needsRehash( HashDescriptor hashed ) {
+		return needsRehash( hashed.getParameters() );
+	}
+
+	private boolean needsRehash( HashParameters parameters ) {
+		if ( parameters.format.algorithm != algorithm || parameters.format.variant != variant ) {
+			return true;
+		}
+		return switch ( algorithm ) {
+			case ARGON2 -> parameters.version < 0x13 || parameters.iterations < iterations || parameters.memory < memory
+			    || parameters.parallelism < parallelism;
+			case BCRYPT -> parameters.iterations < iterations;
+			case SCRYPT -> parameters.cpuCost < cpuCost || parameters.memory < memory || parameters.parallelism < parallelism;
+		};
+	}
+
+	/**
+	 * Verifies a plaintext against a hash produced by any of the supported algorithms. The algorithm is detected from the hash prefix.
+	 *
+	 * @param input  The plaintext to verify
+	 * @param hashed The encoded hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verify( String input, String hashed ) {
+		return Secrets.withUtf8( input, bytes -> verify( bytes, hashed ) );
+	}
+
+	/**
+	 * Verifies a plaintext against a hash produced by any of the supported algorithms. The passed array is not modified.
+	 *
+	 * @param input  The plaintext to verify
+	 * @param hashed The encoded hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verify( char[] input, String hashed ) {
+		return Secrets.withUtf8( input, bytes -> verify( bytes, hashed ) );
+	}
+
+	/**
+	 * Verifies the UTF-8 encoded plaintext in the remaining bytes of the buffer against a hash produced by any of the supported algorithms.
+	 * The position of the buffer is not changed.
+	 *
+	 * @param input  The UTF-8 encoded plaintext to verify
+	 * @param hashed The encoded hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verify( ByteBuffer input, String hashed ) {
+		return Secrets.withBytes( input, bytes -> verify( bytes, hashed ) );
+	}
+
+	/**
+	 * Verifies a UTF-8 encoded plaintext against a hash produced by any of the supported algorithms. The passed array is not modified.
+	 *
+	 * @param input  The UTF-8 encoded plaintext to verify
+	 * @param hashed The encoded hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verify( byte[] input, String hashed ) {
+		format( hashed );
+		return KDFMetrics.getInstance().recordVerify( hashed, () -> matches( input, hashed ) );
+	}
+
+	/**
+	 * Verifies a UTF-8 encoded plaintext against a hash produced by any of the supported algorithms, without recording it. For callers
+	 * which record the verification themselves, such as the BIFs, which wrap it with
+	 * {@link KDFMetrics#timedVerify(HashParameters, Callable)} before it is queued.
+	 *
+	 * @param input  The UTF-8 encoded plaintext to verify
+	 * @param hashed The encoded hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean matches( byte[] input, String hashed ) {
+		HashFormat format = format( hashed );
+		return switch ( format ) {
+			case ARGON2I, ARGON2D, ARGON2ID -> Argon2Registry.verify( format.variant, hashed, input );
+			case BCRYPT_2, BCRYPT_2A, BCRYPT_2B, BCRYPT_2Y -> BCryptCodec.verify( input, hashed );
+			case SCRYPT -> verifySCrypt( input, hashed );
+		};
+	}
+
+	/**
+	 * Verifies a plaintext against a parsed hash of any of the supported algorithms.
+	 *
+	 * @param input  The plaintext to verify
+	 * @param hashed The parsed hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verify( String input, HashDescriptor hashed ) {
+		return Secrets.withUtf8( input, bytes -> verify( bytes, hashed ) );
+	}
+
+	/**
+	 * Verifies a UTF-8 encoded plaintext against a parsed hash of any of the supported algorithms. The salt and the key are not decoded
+	 * again, so repeated verifications against the same stored hash only pay for the key derivation.
+	 *
+	 * @param input  The UTF-8 encoded plaintext to verify
+	 * @param hashed The parsed hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verify( byte[] input, HashDescriptor hashed ) {
+		return KDFMetrics.getInstance().recordVerify( hashed, () -> matches( input, hashed ) );
+	}
+
+	/**
+	 * Verifies a UTF-8 encoded plaintext against a parsed hash of any of the supported algorithms, without recording it.
+	 *
+	 * @param input  The UTF-8 encoded plaintext to verify
+	 * @param hashed The parsed hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 *
+	 * @see #matches(byte[], String)
+	 */
+	public static boolean matches( byte[] input, HashDescriptor hashed ) {
+		return switch ( hashed.getAlgorithm() ) {
+			case ARGON2 -> Argon2Registry.verify( hashed, input );
+			case BCRYPT -> BCryptCodec.verify( input, hashed );
+			case SCRYPT -> verifySCrypt( input, hashed );
+		};
+	}
+
+	/**
+	 * Verifies a plaintext against a BCrypt hash of any minor revision.
+	 *
+	 * @param input  The plaintext to verify
+	 * @param hashed The BCrypt hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verifyBCrypt( String input, String hashed ) {
+		return Secrets.withUtf8( input, bytes -> BCryptCodec.verify( bytes, hashed ) );
+	}
+
+	/**
+	 * Verifies a UTF-8 encoded plaintext against an SCrypt hash, with or without its $s0 version prefix. Unlike
+	 * {@code SCryptUtil.check}, the derived key is compared at the length stored in the hash, so hashes with a key size above 32 bytes
+	 * verify too.
+	 *
+	 * @param input  The UTF-8 encoded plaintext to verify
+	 * @param hashed The SCrypt hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verifySCrypt( byte[] input, String hashed ) {
+		HashFormat format = HashFormat.detect( hashed );
+		if ( format != null && format != HashFormat.SCRYPT ) {
+			throw new BoxRuntimeException( "The format of the passed SCrypt hash string is incorrect" );
+		}
+		return verifySCrypt( input, HashDescriptor.parse( hashed ) );
+	}
+
+	/**
+	 * Verifies a UTF-8 encoded plaintext against a parsed SCrypt hash.
+	 *
+	 * @param input  The UTF-8 encoded plaintext to verify
+	 * @param hashed The parsed SCrypt hash
+	 *
+	 * @return Whether the plaintext matches the hash
+	 */
+	public static boolean verifySCrypt( byte[] input, HashDescriptor hashed ) {
+		HashParameters parameters = hashed.getParameters();
+		if ( parameters.format != HashFormat.SCRYPT ) {
+			throw new BoxRuntimeException( "The format of the passed SCrypt hash string is incorrect" );
+		}
+		return MemoryBudget.getInstance().admit( MemoryBudget.cost( parameters ), () -> {
+			try {
+				byte[] derived = SCryptRegistry.derive( input, hashed.salt(), parameters.cpuCost, parameters.memory, parameters.parallelism,
+				    hashed.getKeyLength() );
+				return MessageDigest.isEqual( derived, hashed.key() );
+			} catch ( GeneralSecurityException e ) {
+				throw new BoxRuntimeException( "An exception occurred while performing the function SCryptVerify: " + e.getMessage(), e );
+			}
+		} );
+	}
+
+	/**
+	 * Detects the algorithm that produced the given hash from its prefix.
+	 *
+	 * @param hashed The encoded hash
+	 *
+	 * @return The algorithm, or null if the hash format is not recognized
+	 */
+	public static Algorithm detect( String hashed ) {
+		HashFormat format = HashFormat.detect( hashed );
+		return format == null ? null : format.algorithm;
+	}
+
+	private static HashFormat format( String hashed ) {
+		HashFormat format = HashFormat.detect( hashed );
+		if ( format == null ) {
+			throw new BoxRuntimeException( "The format of the passed hash string is not recognized" );
+		}
+		return format;
+	}
+
+	/**
+	 * Returns the hasher to use for a new hash right now: this one, or one with the floor parameters of the load shedding policy while
+	 * the executor is saturated.
+	 */
+	private PasswordHasher underLoad() {
+		LoadShedder shedder = LoadShedder.getInstance();
+		if ( !shedder.isSaturated() ) {
+			return this;
+		}
+		IStruct options = switch ( algorithm ) {
+			case ARGON2 -> {
+				Argon2Cost cost = shedder.argon2( new Argon2Cost( iterations, memory, parallelism ) );
+				yield Struct.of( EncryptKeys.iterations, cost.iterations(), EncryptKeys.memory, cost.memory(), EncryptKeys.parallelism, cost.parallelism() );
+			}
+			case BCRYPT -> Struct.of( EncryptKeys.iterations, shedder.bcrypt( iterations ) );
+			case SCRYPT -> {
+				SCryptCost cost = shedder.scrypt( new SCryptCost( cpuCost, memory, parallelism ) );
+				yield Struct.of( EncryptKeys.cpuCost, cost.cpuCost(), EncryptKeys.memory, cost.memory(), EncryptKeys.parallelism, cost.parallelism(),
+				    EncryptKeys.saltLength, saltLength, EncryptKeys.keySize, keySize );
+			}
+		};
+		PasswordHasher degraded = new PasswordHasher( metricsAlgorithm, options );
+		return degraded.metricsParameters.equals( metricsParameters ) ? this : degraded;
+	}
+
+	/**
+	 * Hashes the input with a random salt and encodes the result in the {@code $s0$params$salt$key} format.
+	 *
+	 * @param input       The bytes to hash
+	 * @param saltLength  The length of the random salt
+	 * @param cpuCost     The CPU cost ( N )
+	 * @param memory      The memory cost ( r )
+	 * @param parallelism The parallelization ( p )
+	 * @param keySize     The length of the derived key
+	 *
+	 * @return The encoded hash
+	 */
+	public static String scrypt( byte[] input, int saltLength, int cpuCost, int memory, int parallelism, int keySize ) {
+		return MemoryBudget.getInstance().admit( MemoryBudget.scrypt( cpuCost, memory, parallelism ), () -> {
+			try {
+				byte[]			salt		= SaltService.getInstance().salt( saltLength );
+				byte[]			result		= SCryptRegistry.derive( input, salt, cpuCost, memory, parallelism, keySize );
+
+				// The ScryptUtil class in the lambdaworks-crypto library does not allow for the key length argument so we have to manually build the response from
+				// our raw byte array
+
+				StringBuilder	response	= new StringBuilder( ( saltLength + result.length ) * 2 );
+				String			params		= Long.toString( log2( cpuCost ) << 16L | memory << 8 | parallelism, 16 );
+				response.append( "$s0$" ).append( params ).append( '$' );
+				response.append( Base64.encode( salt ) ).append( '$' );
+				response.append( Base64.encode( result ) );
+
+				return response.toString();
+			} catch ( GeneralSecurityException e ) {
+				throw new BoxRuntimeException( "An exception occurred while performing the function SCryptHash: " + e.getMessage(), e );
+			}
+		} );
+	}
+
+	/**
+	 * Resolves an Argon2 variant from its name, ignoring case
+	 *
+	 * @param name The variant name, e.g. argon2id
+	 *
+	 * @return The variant
+	 */
+	static Argon2Types argon2Variant( String name ) {
+		for ( Argon2Types type : Argon2Types.values() ) {
+			if ( type.name().equalsIgnoreCase( name ) ) {
+				return type;
+			}
+		}
+		throw new BoxRuntimeException( "Invalid Argon2 variant: " + name );
+	}
+
+	/**
+	 * Returns an option validated against the bounds of the matching BIF argument, or the default when the option is not passed.
+	 */
+	private static int range( IStruct options, Key name, int defaultValue, int min, int max ) {
+		if ( options.get( name ) == null ) {
+			return defaultValue;
+		}
+		int value = ModuleSettings.getInt( options, name, defaultValue );
+		if ( value < min || value > max ) {
+			throw new BoxRuntimeException( "The option [" + name.getName() + "] must be between " + min + " and " + max + ", but was " + value );
+		}
+		return value;
+	}
+
+	private static int log2( int n ) {
+		int log = 0;
+		if ( ( n & 0xffff0000 ) != 0 ) {
+			n	>>>= 16;
+			log	= 16;
+		}
+		if ( n >= 256 ) {
+			n	>>>= 8;
+			log	+= 8;
+		}
+		if ( n >= 16 ) {
+			n	>>>= 4;
+			log	+= 4;
+		}
+		if ( n >= 4 ) {
+			n	>>>= 2;
+			log	+= 2;
+		}
+		return log + ( n >>> 1 );
+	}
+
+}
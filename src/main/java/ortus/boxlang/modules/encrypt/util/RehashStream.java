@@ -0,0 +1,589 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.dynamic.casters.StringCaster;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Re-hashes a stream of records, such as an export of legacy MD5 or SHA-1 digests or of low-cost BCrypt hashes, with a
+ * {@link PasswordHasher}.
+ * <p>
+ * Records are read incrementally from a CSV or NDJSON file, a JDBC result set or any iterable of structs such as a query, hashed in chunks
+ * on the slots of the {@link KDFExecutor} and appended to the destination in input order. The next chunk is only read once the previous one has been
+ * written, so memory stays bounded by the chunk size whatever the size of the input.
+ * <p>
+ * After every chunk the destination is forced to disk and a checkpoint with the number of records consumed and the length of the
+ * destination is replaced atomically. A run started with an existing checkpoint truncates the destination to that length, skips the
+ * records already consumed and carries on from there. The checkpoint is deleted once the source is exhausted.
+ */
+public final class RehashStream {
+
+	public static final int			DEFAULT_CHUNK_SIZE	= 1000;
+
+	private static final String		SOURCE				= "source";
+	private static final String		RECORDS				= "records";
+	private static final String		BYTES				= "bytes";
+
+	private final PasswordHasher	hasher;
+	private final String			idColumn;
+	private final String			valueColumn;
+	private final int				chunkSize;
+	private final int				concurrency;
+
+	/**
+	 * Creates a stream.
+	 *
+	 * @param hasher      The hasher applied to the value of every record
+	 * @param idColumn    The column or field holding the record identifier, which is copied to the destination
+	 * @param valueColumn The column or field holding the value to hash
+	 * @param chunkSize   The number of records hashed and written between two checkpoints
+	 * @param concurrency The maximum number of records hashed at once. Zero or less means the concurrency limit of the executor.
+	 */
+	public RehashStream( PasswordHasher hasher, String idColumn, String valueColumn, int chunkSize, int concurrency ) {
+		this.hasher			= hasher;
+		this.idColumn		= idColumn;
+		this.valueColumn	= valueColumn;
+		this.chunkSize		= Math.max( 1, chunkSize );
+		this.concurrency	= concurrency;
+	}
+
+	/**
+	 * Re-hashes every record of the source into the destination, resuming from the checkpoint when there is one.
+	 * <p>
+	 * A record which cannot be hashed does not abort the run: it is written with its error instead of a hash. A malformed line in a file
+	 * source does, so it can be fixed before the run is resumed.
+	 *
+	 * @param source      A CSV or NDJSON file, told apart by the {@code .csv} extension, a {@link ResultSet} or an {@link Iterable} of
+	 *                    structs such as a query
+	 * @param destination The file the results are written to, as CSV when it has the {@code .csv} extension and as NDJSON otherwise
+	 * @param checkpoint  The file the progress is recorded in
+	 *
+	 * @return A struct with the number of {@code records} consumed from the source, of {@code resumed} records consumed by earlier runs
+	 *         and of records {@code processed} and {@code failed} by this run, and the duration in {@code millis}
+	 */
+	public IStruct run( Object source, Path destination, Path checkpoint ) {
+		long		start		= System.nanoTime();
+		String		name		= describe( source );
+		Properties	progress	= readCheckpoint( checkpoint, name );
+		long		resumed		= Long.parseLong( progress.getProperty( RECORDS, "0" ) );
+		long		bytes		= Long.parseLong( progress.getProperty( BYTES, "0" ) );
+		boolean		csv			= isCsv( destination );
+		KDFExecutor	executor	= KDFExecutor.getInstance();
+		int			window		= concurrency > 0 ? Math.min( concurrency, executor.getMaxConcurrency() ) : executor.getMaxConcurrency();
+		long		records		= resumed;
+		long		processed	= 0;
+		long		failed		= 0;
+
+		try (
+		    Rows rows = open( source );
+		    FileChannel channel = FileChannel.open( destination, StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+		    Writer out = new BufferedWriter( Channels.newWriter( channel, StandardCharsets.UTF_8 ) ) ) {
+			if ( channel.size() < bytes ) {
+				throw new BoxRuntimeException( "The destination [" + destination + "] is shorter than recorded in the checkpoint [" + checkpoint + "]" );
+			}
+			// Drop whatever was written after the last checkpoint
+			channel.truncate( bytes );
+			channel.position( bytes );
+			if ( bytes == 0 && csv ) {
+				out.write( csvField( idColumn ) + ",hashed,error\n" );
+			}
+			for ( long skipped = 0; skipped < resumed; skipped++ ) {
+				if ( rows.next() == null ) {
+					throw new BoxRuntimeException( "The source [" + name + "] has fewer records than recorded in the checkpoint [" + checkpoint + "]" );
+				}
+			}
+
+			List<Row> chunk = new ArrayList<>( chunkSize );
+			while ( true ) {
+				chunk.clear();
+				Row row;
+				while ( chunk.size() < chunkSize && ( row = rows.next() ) != null ) {
+					chunk.add( row );
+				}
+				if ( chunk.isEmpty() ) {
+					break;
+				}
+
+				Object[] results = BatchTask.run( executor, window, chunk, item -> hash( ( Row ) item ) );
+				for ( int i = 0; i < results.length; i++ ) {
+					if ( results[ i ] instanceof String hashed ) {
+						write( out, csv, chunk.get( i ).id, hashed, null );
+						processed++;
+					} else {
+						write( out, csv, chunk.get( i ).id, null, ( ( IStruct ) results[ i ] ).getAsString( EncryptKeys.error ) );
+						failed++;
+					}
+				}
+				out.flush();
+				channel.force( false );
+				records += chunk.size();
+				writeCheckpoint( checkpoint, name, records, channel.position() );
+			}
+			Files.deleteIfExists( checkpoint );
+		} catch ( IOException | SQLException e ) {
+			throw new BoxRuntimeException( "Could not re-hash [" + name + "] into [" + destination + "]: " + e.getMessage(), e );
+		}
+
+		return Struct.of(
+		    EncryptKeys.records, records,
+		    EncryptKeys.resumed, resumed,
+		    EncryptKeys.processed, processed,
+		    EncryptKeys.failed, failed,
+		    EncryptKeys.millis, ( System.nanoTime() - start ) / 1_000_000
+		);
+	}
+
+	private Callable<String> hash( Row row ) {
+		if ( row.value == null ) {
+			throw new BoxRuntimeException( "The record has no [" + valueColumn + "] value" );
+		}
+		return hasher.timedHash( row.value );
+	}
+
+	private Rows open( Object source ) throws IOException, SQLException {
+		if ( source instanceof Path path ) {
+			return new FileRows( path, isCsv( path ), Files.newBufferedReader( path, StandardCharsets.UTF_8 ) );
+		}
+		if ( source instanceof ResultSet resultSet ) {
+			return new ResultSetRows( resultSet );
+		}
+		if ( source instanceof Iterable<?> iterable ) {
+			return new IterableRows( iterable.iterator() );
+		}
+		throw new BoxRuntimeException( "The source must be a file path, a query or a JDBC result set" );
+	}
+
+	private static String describe( Object source ) {
+		return source instanceof Path path ? path.toAbsolutePath().normalize().toString() : source.getClass().getSimpleName();
+	}
+
+	private static boolean isCsv( Path path ) {
+		return path.getFileName().toString().toLowerCase().endsWith( ".csv" );
+	}
+
+	private static Properties readCheckpoint( Path checkpoint, String name ) {
+		Properties progress = new Properties();
+		if ( !Files.exists( checkpoint ) ) {
+			return progress;
+		}
+		try ( Reader reader = Files.newBufferedReader( checkpoint, StandardCharsets.UTF_8 ) ) {
+			progress.load( reader );
+		} catch ( IOException e ) {
+			throw new BoxRuntimeException( "Could not read the checkpoint [" + checkpoint + "]: " + e.getMessage(), e );
+		}
+		if ( !name.equals( progress.getProperty( SOURCE ) ) ) {
+			throw new BoxRuntimeException( "The checkpoint [" + checkpoint + "] belongs to another source: [" + progress.getProperty( SOURCE ) + "]" );
+		}
+		return progress;
+	}
+
+	private static void writeCheckpoint( Path checkpoint, String name, long records, long bytes ) throws IOException {
+		Properties progress = new Properties();
+		progress.setProperty( SOURCE, name );
+		progress.setProperty( RECORDS, Long.toString( records ) );
+		progress.setProperty( BYTES, Long.toString( bytes ) );
+		Path temporary = checkpoint.resolveSibling( checkpoint.getFileName() + ".tmp" );
+		try ( Writer writer = Files.newBufferedWriter( temporary, StandardCharsets.UTF_8 ) ) {
+			progress.store( writer, null );
+		}
+		Files.move( temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+	}
+
+	private void write( Writer out, boolean csv, String id, String hashed, String error ) throws IOException {
+		if ( csv ) {
+			out.write( csvField( id ) );
+			out.write( ',' );
+			out.write( csvField( hashed ) );
+			out.write( ',' );
+			out.write( csvField( error ) );
+		} else {
+			out.write( '{' );
+			jsonString( out, idColumn );
+			out.write( ':' );
+			jsonString( out, id );
+			out.write( hashed != null ? ",\"hashed\":" : ",\"error\":" );
+			jsonString( out, hashed != null ? hashed : error );
+			out.write( '}' );
+		}
+		out.write( '\n' );
+	}
+
+	private static String csvField( String value ) {
+		if ( value == null ) {
+			return "";
+		}
+		for ( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt( i );
+			if ( c == ',' || c == '"' || c == '\n' || c == '\r' ) {
+				return '"' + value.replace( "\"", "\"\"" ) + '"';
+			}
+		}
+		return value;
+	}
+
+	private static void jsonString( Writer out, String value ) throws IOException {
+		if ( value == null ) {
+			out.write( "null" );
+			return;
+		}
+		out.write( '"' );
+		for ( int i = 0; i < value.length(); i++ ) {
+			char c = value.charAt( i );
+			if ( c == '"' || c == '\\' ) {
+				out.write( '\\' );
+				out.write( c );
+			} else if ( c < 0x20 ) {
+				out.write( String.format( "\\u%04x", ( int ) c ) );
+			} else {
+				out.write( c );
+			}
+		}
+		out.write( '"' );
+	}
+
+	/**
+	 * Splits a CSV line into its fields. Quoted fields may contain commas and doubled quotes, but not line breaks.
+	 *
+	 * @param line The line to split
+	 *
+	 * @return The fields of the line
+	 */
+	static List<String> parseCsv( String line ) {
+		List<String>	fields	= new ArrayList<>();
+		StringBuilder	field	= new StringBuilder();
+		boolean			quoted	= false;
+		for ( int i = 0; i < line.length(); i++ ) {
+			char c = line.charAt( i );
+			if ( quoted ) {
+				if ( c != '"' ) {
+					field.append( c );
+				} else if ( i + 1 < line.length() && line.charAt( i + 1 ) == '"' ) {
+					field.append( '"' );
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if ( c == '"' ) {
+				quoted = true;
+			} else if ( c == ',' ) {
+				fields.add( field.toString() );
+				field.setLength( 0 );
+			} else {
+				field.append( c );
+			}
+		}
+		fields.add( field.toString() );
+		return fields;
+	}
+
+	/**
+	 * Parses a line holding a flat JSON object. Numbers and booleans are returned as their literal text, nested objects and arrays are
+	 * rejected.
+	 *
+	 * @param line The line to parse
+	 *
+	 * @return The fields of the object, with case-insensitive names
+	 */
+	static Map<String, String> parseJson( String line ) {
+		return new JsonLine( line ).object();
+	}
+
+	private record Row( String id, String value ) {
+	}
+
+	/**
+	 * A source of records, read one at a time
+	 */
+	private interface Rows extends Closeable {
+
+		/**
+		 * Reads the next record.
+		 *
+		 * @return The record, or null when the source is exhausted
+		 */
+		Row next() throws IOException, SQLException;
+
+	}
+
+	private final class FileRows implements Rows {
+
+		private final Path				path;
+		private final boolean			csv;
+		private final BufferedReader	reader;
+		private int						idIndex		= -1;
+		private int						valueIndex	= -1;
+		private long					line;
+
+		private FileRows( Path path, boolean csv, BufferedReader reader ) throws IOException {
+			this.path	= path;
+			this.csv	= csv;
+			this.reader	= reader;
+			if ( csv ) {
+				String header = reader.readLine();
+				line++;
+				List<String> columns = header == null ? List.of() : parseCsv( header );
+				for ( int i = 0; i < columns.size(); i++ ) {
+					if ( columns.get( i ).trim().equalsIgnoreCase( idColumn ) ) {
+						idIndex = i;
+					} else if ( columns.get( i ).trim().equalsIgnoreCase( valueColumn ) ) {
+						valueIndex = i;
+					}
+				}
+				if ( valueIndex == -1 ) {
+					reader.close();
+					throw new BoxRuntimeException( "The CSV file [" + path + "] has no [" + valueColumn + "] column" );
+				}
+			}
+		}
+
+		@Override
+		public Row next() throws IOException {
+			String text;
+			do {
+				text = reader.readLine();
+				line++;
+			} while ( text != null && text.isBlank() );
+			if ( text == null ) {
+				return null;
+			}
+			try {
+				if ( csv ) {
+					List<String> fields = parseCsv( text );
+					return new Row(
+					    idIndex != -1 && idIndex < fields.size() ? fields.get( idIndex ) : null,
+					    valueIndex < fields.size() ? fields.get( valueIndex ) : null
+					);
+				}
+				Map<String, String> fields = parseJson( text );
+				return new Row( fields.get( idColumn ), fields.get( valueColumn ) );
+			} catch ( RuntimeException e ) {
+				throw new BoxRuntimeException( "Invalid record on line " + line + " of [" + path + "]: " + e.getMessage(), e );
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+
+	}
+
+	private final class ResultSetRows implements Rows {
+
+		private final ResultSet	resultSet;
+		private final int		idIndex;
+		private final int		valueIndex;
+
+		private ResultSetRows( ResultSet resultSet ) throws SQLException {
+			this.resultSet	= resultSet;
+			this.valueIndex	= resultSet.findColumn( valueColumn );
+			int found = -1;
+			try {
+				found = resultSet.findColumn( idColumn );
+			} catch ( SQLException e ) {
+				// Records are written without an identifier
+			}
+			this.idIndex = found;
+		}
+
+		@Override
+		public Row next() throws SQLException {
+			if ( !resultSet.next() ) {
+				return null;
+			}
+			return new Row( idIndex != -1 ? resultSet.getString( idIndex ) : null, resultSet.getString( valueIndex ) );
+		}
+
+		@Override
+		public void close() {
+			// The result set belongs to the caller
+		}
+
+	}
+
+	private final class IterableRows implements Rows {
+
+		private final Iterator<?>	iterator;
+		private final Key			idKey		= Key.of( idColumn );
+		private final Key			valueKey	= Key.of( valueColumn );
+
+		private IterableRows( Iterator<?> iterator ) {
+			this.iterator = iterator;
+		}
+
+		@Override
+		public Row next() {
+			if ( !iterator.hasNext() ) {
+				return null;
+			}
+			if ( ! ( iterator.next() instanceof IStruct struct ) ) {
+				throw new BoxRuntimeException( "Every row of the source must be a struct" );
+			}
+			Object	id		= struct.get( idKey );
+			Object	value	= struct.get( valueKey );
+			return new Row( id == null ? null : StringCaster.cast( id ), value == null ? null : StringCaster.cast( value ) );
+		}
+
+		@Override
+		public void close() {
+			// The rows belong to the caller
+		}
+
+	}
+
+	private static final class JsonLine {
+
+		private final String	line;
+		private int				at;
+
+		private JsonLine( String line ) {
+			this.line = line;
+		}
+
+		private Map<String, String> object() {
+			Map<String, String> fields = new TreeMap<>( String.CASE_INSENSITIVE_ORDER );
+			expect( '{' );
+			if ( peek() == '}' ) {
+				at++;
+				return fields;
+			}
+			do {
+				String name = string();
+				expect( ':' );
+				fields.put( name, value() );
+			} while ( either( ',', '}' ) == ',' );
+			return fields;
+		}
+
+		private String value() {
+			char c = peek();
+			if ( c == '"' ) {
+				return string();
+			}
+			if ( c == '{' || c == '[' ) {
+				throw error( "nested values are not supported" );
+			}
+			int from = at;
+			while ( at < line.length() && ",} \t".indexOf( line.charAt( at ) ) == -1 ) {
+				at++;
+			}
+			String literal = line.substring( from, at );
+			if ( literal.isEmpty() ) {
+				throw error( "a value is expected" );
+			}
+			return literal.equals( "null" ) ? null : literal;
+		}
+
+		private String string() {
+			expect( '"' );
+			StringBuilder result = new StringBuilder();
+			while ( true ) {
+				if ( at >= line.length() ) {
+					throw error( "unterminated string" );
+				}
+				char c = line.charAt( at++ );
+				if ( c == '"' ) {
+					return result.toString();
+				}
+				if ( c != '\\' ) {
+					result.append( c );
+					continue;
+				}
+				if ( at >= line.length() ) {
+					throw error( "unterminated string" );
+				}
+				char escaped = line.charAt( at++ );
+				switch ( escaped ) {
+					case 'b' -> result.append( '\b' );
+					case 'f' -> result.append( '\f' );
+					case 'n' -> result.append( '\n' );
+					case 'r' -> result.append( '\r' );
+					case 't' -> result.append( '\t' );
+					case 'u' -> {
+						if ( at + 4 > line.length() ) {
+							throw error( "unterminated escape" );
+						}
+						result.append( ( char ) Integer.parseInt( line, at, at + 4, 16 ) );
+						at += 4;
+					}
+					default -> result.append( escaped );
+				}
+			}
+		}
+
+		private char peek() {
+			while ( at < line.length() && Character.isWhitespace( line.charAt( at ) ) ) {
+				at++;
+			}
+			if ( at >= line.length() ) {
+				throw error( "unexpected end of line" );
+			}
+			return line.charAt( at );
+		}
+
+		private void expect( char expected ) {
+			if ( peek() != expected ) {
+				throw error( "'" + expected + "' expected" );
+			}
+			at++;
+		}
+
+		private char either( char first, char second ) {
+			char c = peek();
+			if ( c != first && c != second ) {
+				throw error( "'" + first + "' or '" + second + "' expected" );
+			}
+			at++;
+			return c;
+		}
+
+		private BoxRuntimeException error( String message ) {
+			return new BoxRuntimeException( "column " + ( at + 1 ) + ": " + message );
+		}
+
+	}
+
+}
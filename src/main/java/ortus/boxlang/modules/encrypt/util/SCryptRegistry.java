@@ -0,0 +1,146 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.security.GeneralSecurityException;
+
+import com.lambdaworks.crypto.SCrypt;
+
+import ortus.boxlang.modules.encrypt.engines.BlockArena;
+import ortus.boxlang.modules.encrypt.engines.JavaSCrypt;
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+
+/**
+ * Computes SCrypt with the engine selected in the {@code engines.scrypt} module setting:
+ * <ul>
+ * <li>{@code native}: the libscrypt bundled with lambdaworks scrypt, available on x86_64 Linux, macOS and FreeBSD</li>
+ * <li>{@code java}: the pure Java {@link JavaSCrypt} engine, which reuses its ROMix tables between calls</li>
+ * <li>{@code auto}: the native library if it loads on this platform, the Java engine otherwise. Derivations with a parallelism above 1
+ * always use the Java engine when it may run lanes in parallel, since libscrypt mixes them one after another.</li>
+ * </ul>
+ * On platforms without the native library lambdaworks falls back to {@code SCrypt.scryptJ}, which allocates the whole ROMix table on every
+ * call; the Java engine replaces that fallback. Its lanes run on the fork-join pool of the {@link KDFExecutor}, at most
+ * {@code executor.maxLaneThreads} at a time. With {@code engines.vector} enabled and the JVM started with
+ * {@code --add-modules jdk.incubator.vector}, it mixes the blocks with a Vector API Salsa20/8 core. Both engines derive the same keys.
+ */
+public final class SCryptRegistry {
+
+	private static volatile KDFEngine	engine;
+	private static volatile boolean		auto;
+	private static volatile Boolean		nativeAvailable;
+
+	private static final class Holder {
+
+		private static final JavaSCrypt JAVA = new JavaSCrypt(
+		    BlockArena.scrypt(),
+		    KDFExecutor.getInstance().getForkJoinPool(),
+		    KDFExecutor.getInstance().getMaxLaneThreads(),
+		    ModuleSettings.getBoolean( ModuleSettings.getStruct( EncryptKeys.engines ), EncryptKeys.vector, false )
+		);
+	}
+
+	private SCryptRegistry() {
+	}
+
+	/**
+	 * Derives an SCrypt key with the selected engine.
+	 *
+	 * @param password The password
+	 * @param salt     The salt
+	 * @param cpuCost  The CPU cost N, a power of 2 greater than 1
+	 * @param memory   The memory cost r
+	 * @param lanes    The parallelization p
+	 * @param length   The length of the derived key in bytes
+	 *
+	 * @return The derived key
+	 *
+	 * @throws GeneralSecurityException If HMAC-SHA256 is not available
+	 */
+	public static byte[] derive( byte[] password, byte[] salt, int cpuCost, int memory, int lanes, int length ) throws GeneralSecurityException {
+		JavaSCrypt java = Holder.JAVA;
+		if ( getEngine() == KDFEngine.NATIVE && !( auto && java.getThreads( lanes ) > 1 ) ) {
+			byte[] derived = SCrypt.scryptN( password, salt, cpuCost, memory, lanes, length );
+			if ( derived != null ) {
+				return derived;
+			}
+			// libscrypt only reports failure, the Java engine tells which parameter is wrong
+		}
+		return java.derive( password, salt, cpuCost, memory, lanes, length );
+	}
+
+	/**
+	 * Returns the engine in use, resolving {@code auto} to the engine it selected.
+	 *
+	 * @return Either {@link KDFEngine#NATIVE} or {@link KDFEngine#JAVA}
+	 */
+	public static KDFEngine getEngine() {
+		KDFEngine result = engine;
+		if ( result == null ) {
+			String configured = ModuleSettings.getString( ModuleSettings.getStruct( EncryptKeys.engines ), EncryptKeys.scrypt, "auto" );
+			KDFEngine selected = KDFEngine.parse( "SCrypt", configured );
+			auto	= selected == KDFEngine.AUTO;
+			result	= engine = resolve( selected );
+		}
+		return result;
+	}
+
+	/**
+	 * Switches the engine.
+	 *
+	 * @param selected The engine to use from now on
+	 */
+	public static void setEngine( KDFEngine selected ) {
+		auto	= selected == KDFEngine.AUTO;
+		engine	= resolve( selected );
+	}
+
+	/**
+	 * Whether the native libscrypt can be loaded on this platform. The library is probed once with a minimal derivation.
+	 *
+	 * @return True if the native binding works
+	 */
+	public static boolean isNativeAvailable() {
+		Boolean result = nativeAvailable;
+		if ( result == null ) {
+			try {
+				result = SCrypt.scryptN( new byte[ 1 ], new byte[ 1 ], 2, 1, 1, 1 ) != null;
+			} catch ( LinkageError e ) {
+				result = Boolean.FALSE;
+			}
+			nativeAvailable = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the arena of the Java engine, whose hit and miss counts show how often a derivation reused a pooled ROMix table.
+	 *
+	 * @return The SCrypt arena
+	 */
+	public static BlockArena<int[]> getArena() {
+		return BlockArena.scrypt();
+	}
+
+	private static KDFEngine resolve( KDFEngine selected ) {
+		if ( selected == KDFEngine.AUTO ) {
+			return isNativeAvailable() ? KDFEngine.NATIVE : KDFEngine.JAVA;
+		}
+		return selected;
+	}
+
+}
@@ -0,0 +1,223 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * The source of every random salt of the module, shared by all three algorithms.
+ * <p>
+ * Salts are drawn from a fixed set of {@link SecureRandom} instances ( a DRBG by default ) which are created and seeded once, when the
+ * service is first used, instead of looking up a provider and seeding a fresh generator for each hash. Callers are spread over as many
+ * instances as there are cores, so concurrent hashes rarely wait on the same generator lock.
+ * <p>
+ * With a {@code poolSize} above {@code 0}, salts are additionally pre-generated into a lock-free ring of 16 byte slots which a background
+ * virtual thread refills. A hash claims its slots with a single atomic swap each, and only falls back to the generators when the ring has
+ * been drained faster than it is refilled. Every slot is handed out at most once.
+ * <p>
+ * Configured through the {@code salts} struct of the module settings.
+ */
+public final class SaltService {
+
+	/**
+	 * The number of random bytes in a slot of the pool
+	 */
+	static final int							SLOT	= 16;
+
+	private final String						algorithm;
+	private final SecureRandom[]				randoms;
+	private final AtomicReferenceArray<byte[]>	pool;
+	private final AtomicLong					claimed	= new AtomicLong();
+	private final Thread						refiller;
+	private final LongAdder						hits	= new LongAdder();
+	private final LongAdder						misses	= new LongAdder();
+
+	private static final class Holder {
+
+		private static final SaltService INSTANCE = ModuleLifecycle.onUnload( new SaltService( ModuleSettings.getStruct( EncryptKeys.salts ) ),
+		    SaltService::shutdown );
+	}
+
+	/**
+	 * Returns the module-wide salt service, created from the module settings on first use.
+	 *
+	 * @return The service instance
+	 */
+	public static SaltService getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates a salt service from a {@code salts} settings struct.
+	 *
+	 * @param settings The salt settings
+	 */
+	public SaltService( IStruct settings ) {
+		this(
+		    ModuleSettings.getString( settings, EncryptKeys.algorithm, "DRBG" ),
+		    ModuleSettings.getInt( settings, EncryptKeys.poolSize, 0 )
+		);
+	}
+
+	/**
+	 * Creates a salt service.
+	 *
+	 * @param algorithm The {@link SecureRandom} algorithm, e.g. {@code DRBG} or {@code NativePRNGNonBlocking}
+	 * @param poolSize  The number of 16 byte slots to pre-generate, rounded up to a power of two, or {@code 0} to generate every salt on
+	 *                  demand
+	 */
+	public SaltService( String algorithm, int poolSize ) {
+		this.algorithm	= algorithm;
+		this.randoms	= new SecureRandom[ Integer.highestOneBit( Math.max( 1, Runtime.getRuntime().availableProcessors() ) * 2 - 1 ) ];
+		try {
+			for ( int i = 0; i < randoms.length; i++ ) {
+				randoms[ i ] = SecureRandom.getInstance( algorithm );
+				// Forces the seeding now rather than in the first hash
+				randoms[ i ].nextBytes( new byte[ 1 ] );
+			}
+		} catch ( NoSuchAlgorithmException e ) {
+			throw new BoxRuntimeException( "The SecureRandom algorithm [" + algorithm + "] is not available", e );
+		}
+		if ( poolSize > 0 ) {
+			this.pool		= new AtomicReferenceArray<>( Integer.highestOneBit( poolSize * 2 - 1 ) );
+			this.refiller	= Thread.ofVirtual().name( "bx-password-salts" ).start( this::refill );
+		} else {
+			this.pool		= null;
+			this.refiller	= null;
+		}
+	}
+
+	/**
+	 * Returns a new random salt.
+	 *
+	 * @param length The length of the salt in bytes
+	 *
+	 * @return The salt
+	 */
+	public byte[] salt( int length ) {
+		byte[] salt = new byte[ length ];
+		nextBytes( salt );
+		return salt;
+	}
+
+	/**
+	 * Fills the given array with random bytes, taking them from the pool when it is enabled.
+	 *
+	 * @param salt The array to fill
+	 */
+	public void nextBytes( byte[] salt ) {
+		if ( pool == null ) {
+			random().nextBytes( salt );
+			return;
+		}
+		int mask = pool.length() - 1;
+		for ( int offset = 0; offset < salt.length; offset += SLOT ) {
+			long	index	= claimed.getAndIncrement();
+			byte[]	slot	= pool.getAndSet( ( int ) index & mask, null );
+			// Wake the refiller each time half of the ring has been claimed, or as soon as it runs dry
+			if ( slot == null || ( index & mask >> 1 ) == 0 ) {
+				LockSupport.unpark( refiller );
+			}
+			if ( slot == null ) {
+				misses.increment();
+				byte[] rest = new byte[ salt.length - offset ];
+				random().nextBytes( rest );
+				System.arraycopy( rest, 0, salt, offset, rest.length );
+				return;
+			}
+			hits.increment();
+			System.arraycopy( slot, 0, salt, offset, Math.min( SLOT, salt.length - offset ) );
+		}
+	}
+
+	/**
+	 * Returns the {@link SecureRandom} algorithm in use.
+	 *
+	 * @return The algorithm name
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Returns the number of slots of the pool.
+	 *
+	 * @return The pool size, {@code 0} if salts are generated on demand
+	 */
+	public int getPoolSize() {
+		return pool == null ? 0 : pool.length();
+	}
+
+	/**
+	 * Returns the number of slots taken from the pool.
+	 *
+	 * @return The hit count
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the number of salts generated on demand because the pool was empty.
+	 *
+	 * @return The miss count
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private SecureRandom random() {
+		int hash = Thread.currentThread().hashCode() * 0x9E3779B9;
+		return randoms[ ( hash ^ hash >>> 16 ) & randoms.length - 1 ];
+	}
+
+	/**
+	 * Stops the refill thread. Salts are still handed out, from the generators once the pool has been drained.
+	 */
+	public void shutdown() {
+		if ( refiller != null ) {
+			refiller.interrupt();
+		}
+	}
+
+	/**
+	 * Fills every empty slot, then parks until a caller signals that the ring is being drained, or until the service is shut down.
+	 */
+	private void refill() {
+		while ( !Thread.currentThread().isInterrupted() ) {
+			for ( int i = 0; i < pool.length(); i++ ) {
+				if ( pool.get( i ) == null ) {
+					byte[] slot = new byte[ SLOT ];
+					random().nextBytes( slot );
+					pool.compareAndSet( i, null, slot );
+				}
+			}
+			LockSupport.park( this );
+		}
+	}
+
+}
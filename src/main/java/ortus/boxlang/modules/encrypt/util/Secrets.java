@@ -0,0 +1,184 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * UTF-8 encoding of passwords into short-lived byte arrays which are zeroed as soon as the key derivation is done.
+ * <p>
+ * The key derivation libraries only accept whole arrays, so secrets are encoded into arrays of their exact length. Each thread keeps one
+ * array per length up to {@link #POOLED_LENGTH} bytes, which covers practically every password, so a hash or verify call on the login path
+ * does not produce any garbage holding the plaintext. An array is taken out of the pool by {@link #acquire(int)} and only put back, zeroed,
+ * by {@link #release(byte[])}, so nested use on the same thread falls back to a fresh array instead of sharing one.
+ * <p>
+ * Arrays passed in by callers are never wiped: their owner decides how long they live.
+ */
+public final class Secrets {
+
+	/**
+	 * The longest secret, in bytes, which is encoded into a pooled array
+	 */
+	public static final int					POOLED_LENGTH	= 128;
+
+	private static final ThreadLocal<byte[][]>	POOL			= ThreadLocal.withInitial( () -> new byte[ POOLED_LENGTH + 1 ][] );
+
+	private Secrets() {
+	}
+
+	/**
+	 * Runs the given work with the UTF-8 bytes of a secret and zeroes them afterwards.
+	 *
+	 * @param secret The secret to encode
+	 * @param work   The work to run with the encoded secret, which must not keep a reference to the array
+	 *
+	 * @return The result of the work
+	 */
+	public static <T> T withUtf8( CharSequence secret, Function<byte[], T> work ) {
+		byte[] bytes = encode( secret );
+		try {
+			return work.apply( bytes );
+		} finally {
+			release( bytes );
+		}
+	}
+
+	/**
+	 * Runs the given work with the UTF-8 bytes of a secret and zeroes them afterwards. The passed array is left untouched.
+	 *
+	 * @param secret The secret to encode
+	 * @param work   The work to run with the encoded secret, which must not keep a reference to the array
+	 *
+	 * @return The result of the work
+	 */
+	public static <T> T withUtf8( char[] secret, Function<byte[], T> work ) {
+		return withUtf8( CharBuffer.wrap( secret ), work );
+	}
+
+	/**
+	 * Runs the given work with a copy of the remaining bytes of a buffer and zeroes the copy afterwards. The position of the buffer is not
+	 * changed.
+	 *
+	 * @param secret The buffer holding the UTF-8 encoded secret
+	 * @param work   The work to run with the copied secret, which must not keep a reference to the array
+	 *
+	 * @return The result of the work
+	 */
+	public static <T> T withBytes( ByteBuffer secret, Function<byte[], T> work ) {
+		byte[] bytes = acquire( secret.remaining() );
+		secret.get( secret.position(), bytes );
+		try {
+			return work.apply( bytes );
+		} finally {
+			release( bytes );
+		}
+	}
+
+	/**
+	 * Encodes a secret as UTF-8 into an array of its exact length. Unpaired surrogates are encoded as {@code ?}, like
+	 * {@link String#getBytes(java.nio.charset.Charset)} does. The array must be handed back to {@link #release(byte[])}.
+	 *
+	 * @param secret The secret to encode
+	 *
+	 * @return The encoded secret
+	 */
+	public static byte[] encode( CharSequence secret ) {
+		byte[]	bytes	= acquire( utf8Length( secret ) );
+		int		length	= secret.length();
+		int		j		= 0;
+		for ( int i = 0; i < length; i++ ) {
+			char c = secret.charAt( i );
+			if ( c < 0x80 ) {
+				bytes[ j++ ] = ( byte ) c;
+			} else if ( c < 0x800 ) {
+				bytes[ j++ ]	= ( byte ) ( 0xc0 | c >> 6 );
+				bytes[ j++ ]	= ( byte ) ( 0x80 | c & 0x3f );
+			} else if ( Character.isHighSurrogate( c ) && i + 1 < length && Character.isLowSurrogate( secret.charAt( i + 1 ) ) ) {
+				int codePoint = Character.toCodePoint( c, secret.charAt( ++i ) );
+				bytes[ j++ ]	= ( byte ) ( 0xf0 | codePoint >> 18 );
+				bytes[ j++ ]	= ( byte ) ( 0x80 | codePoint >> 12 & 0x3f );
+				bytes[ j++ ]	= ( byte ) ( 0x80 | codePoint >> 6 & 0x3f );
+				bytes[ j++ ]	= ( byte ) ( 0x80 | codePoint & 0x3f );
+			} else if ( Character.isSurrogate( c ) ) {
+				bytes[ j++ ] = '?';
+			} else {
+				bytes[ j++ ]	= ( byte ) ( 0xe0 | c >> 12 );
+				bytes[ j++ ]	= ( byte ) ( 0x80 | c >> 6 & 0x3f );
+				bytes[ j++ ]	= ( byte ) ( 0x80 | c & 0x3f );
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Takes an array of the given length out of the calling thread's pool, or allocates one if the pool has none.
+	 *
+	 * @param length The length of the array
+	 *
+	 * @return A zeroed array which must be handed back to {@link #release(byte[])}
+	 */
+	public static byte[] acquire( int length ) {
+		if ( length > POOLED_LENGTH ) {
+			return new byte[ length ];
+		}
+		byte[][]	pool	= POOL.get();
+		byte[]		bytes	= pool[ length ];
+		if ( bytes == null ) {
+			return new byte[ length ];
+		}
+		pool[ length ] = null;
+		return bytes;
+	}
+
+	/**
+	 * Zeroes an array obtained from {@link #acquire(int)} or {@link #encode(CharSequence)} and returns it to the calling thread's pool.
+	 *
+	 * @param bytes The array to release
+	 */
+	public static void release( byte[] bytes ) {
+		Arrays.fill( bytes, ( byte ) 0 );
+		if ( bytes.length <= POOLED_LENGTH ) {
+			POOL.get()[ bytes.length ] = bytes;
+		}
+	}
+
+	private static int utf8Length( CharSequence secret ) {
+		int	length	= secret.length();
+		int	bytes	= length;
+		for ( int i = 0; i < length; i++ ) {
+			char c = secret.charAt( i );
+			if ( c < 0x80 ) {
+				continue;
+			}
+			if ( c < 0x800 ) {
+				bytes += 1;
+			} else if ( Character.isHighSurrogate( c ) && i + 1 < length && Character.isLowSurrogate( secret.charAt( i + 1 ) ) ) {
+				// Two chars become four bytes
+				bytes	+= 2;
+				i++;
+			} else if ( !Character.isSurrogate( c ) ) {
+				bytes += 2;
+			}
+		}
+		return bytes;
+	}
+
+}
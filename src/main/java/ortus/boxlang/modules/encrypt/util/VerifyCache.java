@@ -0,0 +1,323 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * A short-lived cache of successful verifications, for APIs which verify the same credentials on every request, e.g. with HTTP basic
+ * authentication.
+ * <p>
+ * Neither the plaintext nor anything derived from it without a secret is kept. An entry is looked up by an HMAC-SHA256 of the hash and
+ * holds an HMAC-SHA256 of the hash and the plaintext, both keyed with a random key which never leaves the process, so a heap dump of the
+ * cache is worthless for guessing passwords. Only successful verifications are cached: a wrong password always misses and pays the full
+ * key derivation cost, so the cache does nothing for brute force.
+ * <p>
+ * Entries expire {@code ttlSeconds} after they were verified, however often they are hit. The cache holds at most {@code maxEntries}
+ * entries, spread over independently locked stripes which each evict their least recently used entry when full. As the cache is keyed
+ * by hash, {@link #invalidate(String)} drops the entry of a hash, e.g. when the password is changed, and a hash holds at most one entry.
+ * <p>
+ * Configured through the {@code verifyCache} struct of the module settings, disabled by default.
+ */
+public final class VerifyCache {
+
+	private static final String				HMAC		= "HmacSHA256";
+	private static final int				STRIPES		= 16;
+
+	private final boolean					enabled;
+	private final long						ttlNanos;
+	private final SecretKeySpec				key;
+	private final ThreadLocal<Mac>			macs;
+	private final Stripe[]					stripes		= new Stripe[ STRIPES ];
+	private final LongAdder					hits		= new LongAdder();
+	private final LongAdder					misses		= new LongAdder();
+
+	private static final class Holder {
+
+		private static final VerifyCache INSTANCE = new VerifyCache( ModuleSettings.getStruct( EncryptKeys.verifyCache ) );
+	}
+
+	/**
+	 * Returns the module-wide cache, created from the module settings on first use.
+	 *
+	 * @return The cache instance
+	 */
+	public static VerifyCache getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates a cache from a {@code verifyCache} settings struct.
+	 *
+	 * @param settings The cache settings
+	 */
+	public VerifyCache( IStruct settings ) {
+		this(
+		    ModuleSettings.getBoolean( settings, EncryptKeys.enabled, false ),
+		    TimeUnit.SECONDS.toMillis( ModuleSettings.getInt( settings, EncryptKeys.ttlSeconds, 60 ) ),
+		    ModuleSettings.getInt( settings, EncryptKeys.maxEntries, 10000 )
+		);
+	}
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param enabled    Whether verifications are cached at all
+	 * @param ttlMillis  How long a successful verification is remembered, in milliseconds
+	 * @param maxEntries The maximum number of remembered verifications
+	 */
+	public VerifyCache( boolean enabled, long ttlMillis, int maxEntries ) {
+		byte[] secret = new byte[ 32 ];
+		new SecureRandom().nextBytes( secret );
+		this.enabled	= enabled;
+		this.ttlNanos	= TimeUnit.MILLISECONDS.toNanos( Math.max( 0, ttlMillis ) );
+		this.key		= new SecretKeySpec( secret, HMAC );
+		this.macs		= ThreadLocal.withInitial( this::newMac );
+		int capacity = Math.max( 1, maxEntries / STRIPES );
+		for ( int i = 0; i < STRIPES; i++ ) {
+			stripes[ i ] = new Stripe( capacity );
+		}
+	}
+
+	/**
+	 * Whether the plaintext was verified against the hash within the TTL.
+	 *
+	 * @param hashed The hash
+	 * @param input  The plaintext
+	 *
+	 * @return True if the verification is cached, false if it has to be performed
+	 */
+	public boolean contains( String hashed, String input ) {
+		if ( !enabled ) {
+			return false;
+		}
+		Id		id		= id( hashed );
+		Stripe	stripe	= stripe( id );
+		Entry	entry	= stripe.get( id );
+		if ( entry != null && entry.expires - System.nanoTime() <= 0 ) {
+			stripe.remove( id );
+			entry = null;
+		}
+		if ( entry != null && MessageDigest.isEqual( entry.digest, digest( hashed, input ) ) ) {
+			hits.increment();
+			return true;
+		}
+		misses.increment();
+		return false;
+	}
+
+	/**
+	 * Remembers that the plaintext verified successfully against the hash.
+	 *
+	 * @param hashed The hash
+	 * @param input  The plaintext
+	 */
+	public void put( String hashed, String input ) {
+		if ( !enabled || ttlNanos == 0 ) {
+			return;
+		}
+		Id id = id( hashed );
+		stripe( id ).put( id, new Entry( digest( hashed, input ), System.nanoTime() + ttlNanos ) );
+	}
+
+	/**
+	 * Wraps a verification so that a successful result is remembered.
+	 *
+	 * @param hashed The hash being verified
+	 * @param input  The plaintext being verified
+	 * @param work   The verification
+	 *
+	 * @return The remembering verification, or the given one when the cache is disabled
+	 */
+	public <T> Callable<T> remember( String hashed, String input, Callable<T> work ) {
+		if ( !enabled ) {
+			return work;
+		}
+		return () -> {
+			T result = work.call();
+			if ( Boolean.TRUE.equals( result ) ) {
+				put( hashed, input );
+			}
+			return result;
+		};
+	}
+
+	/**
+	 * Drops the cached verification of a hash.
+	 *
+	 * @param hashed The hash
+	 *
+	 * @return True if a verification was cached for the hash
+	 */
+	public boolean invalidate( String hashed ) {
+		if ( !enabled ) {
+			return false;
+		}
+		Id id = id( hashed );
+		return stripe( id ).remove( id );
+	}
+
+	/**
+	 * Drops all cached verifications.
+	 */
+	public void clear() {
+		for ( Stripe stripe : stripes ) {
+			stripe.clear();
+		}
+	}
+
+	/**
+	 * Whether verifications are cached at all.
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the number of cached verifications, including expired ones which have not been evicted yet.
+	 *
+	 * @return The number of entries
+	 */
+	public long getSize() {
+		long size = 0;
+		for ( Stripe stripe : stripes ) {
+			size += stripe.size();
+		}
+		return size;
+	}
+
+	/**
+	 * Returns how many verifications were answered from the cache.
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Returns how many verifications were not cached.
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private Id id( String hashed ) {
+		Mac mac = macs.get();
+		mac.update( ( byte ) 0 );
+		byte[] digest = mac.doFinal( hashed.getBytes( StandardCharsets.UTF_8 ) );
+		return new Id( readLong( digest, 0 ), readLong( digest, 8 ) );
+	}
+
+	private byte[] digest( String hashed, String input ) {
+		Mac mac = macs.get();
+		mac.update( ( byte ) 1 );
+		mac.update( hashed.getBytes( StandardCharsets.UTF_8 ) );
+		mac.update( ( byte ) 0 );
+		return Secrets.withUtf8( input, mac::doFinal );
+	}
+
+	private Stripe stripe( Id id ) {
+		return stripes[ ( int ) id.high() & ( STRIPES - 1 ) ];
+	}
+
+	private Mac newMac() {
+		try {
+			Mac mac = Mac.getInstance( HMAC );
+			mac.init( key );
+			return mac;
+		} catch ( GeneralSecurityException e ) {
+			throw new BoxRuntimeException( "HmacSHA256 is not available in this JVM", e );
+		}
+	}
+
+	private static long readLong( byte[] bytes, int offset ) {
+		long result = 0;
+		for ( int i = 0; i < 8; i++ ) {
+			result = ( result << 8 ) | ( bytes[ offset + i ] & 0xFF );
+		}
+		return result;
+	}
+
+	/**
+	 * The first 128 bits of the HMAC of a hash
+	 */
+	private record Id( long high, long low ) {
+	}
+
+	private record Entry( byte[] digest, long expires ) {
+	}
+
+	/**
+	 * A share of the entries in access order, evicting the least recently used one when full
+	 */
+	private static final class Stripe {
+
+		private final LinkedHashMap<Id, Entry> entries;
+
+		Stripe( int capacity ) {
+			this.entries = new LinkedHashMap<>( 16, 0.75f, true ) {
+
+				@Override
+				protected boolean removeEldestEntry( Map.Entry<Id, Entry> eldest ) {
+					return size() > capacity;
+				}
+			};
+		}
+
+		synchronized Entry get( Id id ) {
+			return entries.get( id );
+		}
+
+		synchronized void put( Id id, Entry entry ) {
+			entries.put( id, entry );
+		}
+
+		synchronized boolean remove( Id id ) {
+			return entries.remove( id ) != null;
+		}
+
+		synchronized void clear() {
+			entries.clear();
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+	}
+
+}
@@ -0,0 +1,329 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+/**
+ * Throttles the verifications of a caller-supplied principal, such as a username or an IP address, before any key derivation work is
+ * done for them.
+ * <p>
+ * Every verify of a principal counts as an attempt in a sliding window of {@code windowSeconds}, and an attempt which verifies
+ * successfully is given back, so only failed verifications add up. Once {@code maxFailures} failures fall within the window, further
+ * verifies of the principal are rejected with a {@code PasswordEncrypt.Throttled} exception until enough of them have slid out of it. A
+ * credential stuffing run therefore costs a single map lookup per guess instead of a full KDF.
+ * <p>
+ * The window is approximated from the counts of the current and the previous fixed window, weighted by how far the current one has
+ * progressed. Both counts and the window number are packed into one {@code long} per principal, so counting is a compare-and-set with no
+ * lock. The principals are spread over independent stripes, each holding at most its share of {@code maxPrincipals}: a stripe evicts the
+ * principals whose windows have expired at most once per window, or when it is full, and then the entries beyond its share, so memory
+ * stays bounded however many principals are seen.
+ * <p>
+ * Configured through the {@code throttle} struct of the module settings, disabled by default.
+ */
+public final class VerifyThrottle {
+
+	/**
+	 * The exception type thrown when a principal has too many failed verifications
+	 */
+	public static final String		THROTTLED_TYPE	= "PasswordEncrypt.Throttled";
+
+	/**
+	 * The token of an attempt which is not tracked
+	 */
+	public static final long		UNTRACKED		= -1;
+
+	private static final int		STRIPES			= 64;
+	private static final int		MAX_COUNT		= 0xFFFF;
+	private static final VarHandle	STATE;
+
+	static {
+		try {
+			STATE = MethodHandles.lookup().findVarHandle( Window.class, "state", long.class );
+		} catch ( ReflectiveOperationException e ) {
+			throw new ExceptionInInitializerError( e );
+		}
+	}
+
+	private final boolean			enabled;
+	private final int				maxFailures;
+	private final long				windowNanos;
+	private final int				maxPerStripe;
+	private final long				origin			= System.nanoTime();
+	private final Stripe[]			stripes			= new Stripe[ STRIPES ];
+	private final LongAdder			throttledCount	= new LongAdder();
+
+	private static final class Holder {
+
+		private static final VerifyThrottle INSTANCE = new VerifyThrottle( ModuleSettings.getStruct( EncryptKeys.throttle ) );
+	}
+
+	/**
+	 * Returns the module-wide throttle, created from the module settings on first use.
+	 *
+	 * @return The throttle instance
+	 */
+	public static VerifyThrottle getInstance() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates a throttle from a {@code throttle} settings struct.
+	 *
+	 * @param settings The throttle settings
+	 */
+	public VerifyThrottle( IStruct settings ) {
+		this(
+		    ModuleSettings.getBoolean( settings, EncryptKeys.enabled, false ),
+		    ModuleSettings.getInt( settings, EncryptKeys.maxFailures, 10 ),
+		    TimeUnit.SECONDS.toMillis( ModuleSettings.getInt( settings, EncryptKeys.windowSeconds, 300 ) ),
+		    ModuleSettings.getInt( settings, EncryptKeys.maxPrincipals, 100000 )
+		);
+	}
+
+	/**
+	 * Creates a throttle.
+	 *
+	 * @param enabled       Whether verifications are throttled at all
+	 * @param maxFailures   The number of failed verifications within the window after which a principal is rejected
+	 * @param windowMillis  The length of the sliding window in milliseconds
+	 * @param maxPrincipals The maximum number of principals tracked at once
+	 */
+	public VerifyThrottle( boolean enabled, int maxFailures, long windowMillis, int maxPrincipals ) {
+		this.enabled		= enabled;
+		this.maxFailures	= Math.max( 1, Math.min( maxFailures, MAX_COUNT ) );
+		this.windowNanos	= TimeUnit.MILLISECONDS.toNanos( Math.max( 1, windowMillis ) );
+		this.maxPerStripe	= Math.max( 1, maxPrincipals / STRIPES );
+		for ( int i = 0; i < STRIPES; i++ ) {
+			stripes[ i ] = new Stripe();
+		}
+	}
+
+	/**
+	 * Wraps a verification so that it is only run if the principal is not throttled, and its attempt is given back if it succeeds.
+	 *
+	 * @param principal The principal, or null to not throttle the verification
+	 * @param work      The verification
+	 *
+	 * @return The guarded verification, or the given one if the principal is not tracked
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.Throttled} when the principal has too many failed verifications
+	 */
+	public <T> Callable<T> guard( String principal, Callable<T> work ) {
+		long token = acquire( principal );
+		if ( token == UNTRACKED ) {
+			return work;
+		}
+		return () -> {
+			T result = work.call();
+			if ( Boolean.TRUE.equals( result ) ) {
+				succeeded( principal, token );
+			}
+			return result;
+		};
+	}
+
+	/**
+	 * Counts a verification attempt of the principal.
+	 *
+	 * @param principal The principal, or null to not throttle the verification
+	 *
+	 * @return The token to pass to {@link #succeeded(String, long)}, or {@link #UNTRACKED}
+	 *
+	 * @throws BoxRuntimeException of type {@code PasswordEncrypt.Throttled} when the principal has too many failed verifications
+	 */
+	public long acquire( String principal ) {
+		if ( !enabled || principal == null || principal.isEmpty() ) {
+			return UNTRACKED;
+		}
+		long	now		= System.nanoTime() - origin;
+		int		epoch	= ( int ) ( now / windowNanos );
+		double	elapsed	= ( double ) ( now % windowNanos ) / windowNanos;
+		Window	window	= stripe( principal ).window( principal, epoch );
+		while ( true ) {
+			long	state	= window.state;
+			long	current	= rotate( state, epoch );
+			int		cur		= current( current );
+			if ( previous( current ) * ( 1 - elapsed ) + cur >= maxFailures ) {
+				throttledCount.increment();
+				throw new BoxRuntimeException( "Too many failed password verifications. Please try again later.", THROTTLED_TYPE );
+			}
+			if ( STATE.compareAndSet( window, state, pack( epoch( current ), previous( current ), Math.min( cur + 1, MAX_COUNT ) ) ) ) {
+				return epoch( current );
+			}
+		}
+	}
+
+	/**
+	 * Gives back the attempt of a successful verification, so that only failures count against the principal.
+	 *
+	 * @param principal The principal passed to {@link #acquire(String)}
+	 * @param token     The token returned by {@link #acquire(String)}
+	 */
+	public void succeeded( String principal, long token ) {
+		if ( token == UNTRACKED ) {
+			return;
+		}
+		Window window = stripe( principal ).windows.get( principal );
+		if ( window == null ) {
+			return;
+		}
+		while ( true ) {
+			long	state	= window.state;
+			long	next;
+			if ( epoch( state ) == token && current( state ) > 0 ) {
+				next = pack( epoch( state ), previous( state ), current( state ) - 1 );
+			} else if ( epoch( state ) == token + 1 && previous( state ) > 0 ) {
+				next = pack( epoch( state ), previous( state ) - 1, current( state ) );
+			} else {
+				// The attempt has slid out of the window already
+				return;
+			}
+			if ( STATE.compareAndSet( window, state, next ) ) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Whether verifications are throttled at all.
+	 *
+	 * @return True if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns the number of principals currently tracked.
+	 *
+	 * @return The number of principals
+	 */
+	public long getPrincipalCount() {
+		long count = 0;
+		for ( Stripe stripe : stripes ) {
+			count += stripe.windows.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Returns how many verifications were rejected.
+	 *
+	 * @return The number of throttled verifications
+	 */
+	public long getThrottledCount() {
+		return throttledCount.sum();
+	}
+
+	private Stripe stripe( String principal ) {
+		int hash = principal.hashCode();
+		return stripes[ ( hash ^ ( hash >>> 16 ) ) & ( STRIPES - 1 ) ];
+	}
+
+	/**
+	 * Moves a state into the given window: the current count becomes the previous one after a single window, and both expire after two.
+	 * A state which another thread has already moved further is kept.
+	 */
+	private static long rotate( long state, int epoch ) {
+		int stateEpoch = epoch( state );
+		if ( stateEpoch >= epoch ) {
+			return state;
+		}
+		return stateEpoch == epoch - 1 ? pack( epoch, current( state ), 0 ) : pack( epoch, 0, 0 );
+	}
+
+	private static long pack( int epoch, int previous, int current ) {
+		return ( ( long ) epoch << 32 ) | ( ( long ) previous << 16 ) | current;
+	}
+
+	private static int epoch( long state ) {
+		return ( int ) ( state >>> 32 );
+	}
+
+	private static int previous( long state ) {
+		return ( int ) ( state >>> 16 ) & MAX_COUNT;
+	}
+
+	private static int current( long state ) {
+		return ( int ) state & MAX_COUNT;
+	}
+
+	/**
+	 * The attempts of one principal
+	 */
+	private static final class Window {
+
+		private volatile long state;
+	}
+
+	/**
+	 * A share of the principals with its own map and eviction, so no operation ever spans all principals
+	 */
+	private final class Stripe {
+
+		private final ConcurrentHashMap<String, Window>	windows		= new ConcurrentHashMap<>();
+		private final AtomicBoolean						sweeping	= new AtomicBoolean();
+		private volatile int							sweptEpoch;
+
+		Window window( String principal, int epoch ) {
+			Window window = windows.get( principal );
+			if ( window != null ) {
+				return window;
+			}
+			if ( epoch > sweptEpoch || windows.size() >= maxPerStripe ) {
+				sweep( epoch );
+			}
+			return windows.computeIfAbsent( principal, key -> new Window() );
+		}
+
+		private void sweep( int epoch ) {
+			if ( !sweeping.compareAndSet( false, true ) ) {
+				return;
+			}
+			try {
+				// A window last counted two windows ago holds nothing. An attempt racing with its removal is lost, which errs towards the caller.
+				windows.values().removeIf( window -> epoch( window.state ) < epoch - 1 );
+				if ( windows.size() >= maxPerStripe ) {
+					// Still full of live principals: make room for an eighth of the share rather than sweeping again on every new principal
+					int					excess		= windows.size() - maxPerStripe + Math.max( 1, maxPerStripe / 8 );
+					Iterator<String>	principals	= windows.keySet().iterator();
+					while ( excess-- > 0 && principals.hasNext() ) {
+						principals.next();
+						principals.remove();
+					}
+				}
+				sweptEpoch = epoch;
+			} finally {
+				sweeping.set( false );
+			}
+		}
+	}
+
+}
@@ -19,6 +19,7 @@
 package ortus.boxlang.modules.encrypt.bifs;
 
 import static org.junit.Assert.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.AfterAll;
@@ -110,4 +111,20 @@ public class ArgonTest {
 
 	}
 
+	@DisplayName( "It rejects an explicit variant which does not match the hash, even after a successful verification" )
+	@Test
+	public void testVariantMismatchAfterVerify() {
+		instance.executeSource(
+		    """
+		    hash = ArgonHash( "blah", "argon2id" );
+		    first = ArgonVerify( "blah", hash );
+		    mismatch = ArgonVerify( "blah", hash, "argon2i" );
+		    match = ArgonVerify( "blah", hash, "argon2id" );
+		    """,
+		    context );
+		assertTrue( variables.getAsBoolean( Key.of( "first" ) ) );
+		assertFalse( variables.getAsBoolean( Key.of( "mismatch" ) ) );
+		assertTrue( variables.getAsBoolean( Key.of( "match" ) ) );
+	}
+
 }
@@ -0,0 +1,163 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.ArgumentsScope;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+
+public class InterceptionTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result	= new Key( "result" );
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true );
+		// Registered by ModuleConfig.bx when the module is loaded
+		instance.getInterceptorService().registerInterceptionPoint( EncryptKeys.onEncryptRequest, EncryptKeys.postEncryptRequest );
+	}
+
+	@AfterAll
+	public static void teardown() {
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+	}
+
+	@DisplayName( "It announces the hash and verify calls with their timing and outcome" )
+	@Test
+	public void testAnnounce() {
+		instance.executeSource(
+		    """
+		    result = { before : [], after : [] };
+		    BoxRegisterInterceptor( ( data ) => result.before.append( data ), "onEncryptRequest" );
+		    BoxRegisterInterceptor( ( data ) => result.after.append( data ), "postEncryptRequest" );
+		    hashed = BCryptHash( "secret", 5 );
+		    BCryptVerify( "wrong", hashed );
+		    """,
+		    context );
+		IStruct	events	= variables.getAsStruct( result );
+		Array	before	= events.getAsArray( Key.of( "before" ) );
+		Array	after	= events.getAsArray( Key.of( "after" ) );
+		assertThat( before.size() ).isEqualTo( 2 );
+		assertThat( after.size() ).isEqualTo( 2 );
+
+		IStruct request = ( IStruct ) before.get( 0 );
+		assertThat( request.get( Key.of( "operation" ) ) ).isEqualTo( "hash" );
+		assertThat( request.get( Key.of( "algorithm" ) ) ).isEqualTo( "bcrypt" );
+		assertThat( request.get( Key.of( "parameters" ) ) ).isEqualTo( "cost=5" );
+		assertThat( request.containsKey( Key.of( "durationNanos" ) ) ).isFalse();
+		request = ( IStruct ) before.get( 1 );
+		assertThat( request.get( Key.of( "operation" ) ) ).isEqualTo( "verify" );
+		assertThat( request.get( Key.of( "algorithm" ) ) ).isEqualTo( "bcrypt" );
+		assertThat( request.get( Key.of( "parameters" ) ) ).isEqualTo( "cost=5" );
+
+		IStruct hash = ( IStruct ) after.get( 0 );
+		assertThat( hash.get( Key.of( "operation" ) ) ).isEqualTo( "hash" );
+		assertThat( hash.get( Key.of( "algorithm" ) ) ).isEqualTo( "bcrypt" );
+		assertThat( hash.get( Key.of( "parameters" ) ) ).isEqualTo( "cost=5" );
+		assertThat( hash.get( Key.of( "outcome" ) ) ).isEqualTo( "success" );
+		assertThat( ( Long ) hash.get( Key.of( "durationNanos" ) ) ).isGreaterThan( 0L );
+
+		IStruct verify = ( IStruct ) after.get( 1 );
+		assertThat( verify.get( Key.of( "operation" ) ) ).isEqualTo( "verify" );
+		assertThat( verify.get( Key.of( "outcome" ) ) ).isEqualTo( "rejected" );
+	}
+
+	@DisplayName( "It announces PasswordHash and PasswordVerify before they are dispatched to the executor" )
+	@Test
+	public void testAnnounceBeforeDispatch() {
+		instance.executeSource(
+		    """
+		    result = { before : [], after : [] };
+		    BoxRegisterInterceptor( ( data ) => result.before.append( data ), "onEncryptRequest" );
+		    BoxRegisterInterceptor( ( data ) => result.after.append( data ), "postEncryptRequest" );
+		    """,
+		    context );
+		IStruct			events		= variables.getAsStruct( result );
+		Array			before		= events.getAsArray( Key.of( "before" ) );
+		Array			after		= events.getAsArray( Key.of( "after" ) );
+		// The number of announced requests and completions seen by each dispatch
+		List<Integer>	dispatched	= new ArrayList<>();
+
+		PasswordHash hash = new PasswordHash() {
+
+			@Override
+			protected Object dispatch( Callable<Object> work ) {
+				dispatched.add( before.size() );
+				dispatched.add( after.size() );
+				return super.dispatch( work );
+			}
+		};
+		PasswordVerify verify = new PasswordVerify() {
+
+			@Override
+			protected Object dispatch( Callable<Object> work ) {
+				dispatched.add( before.size() );
+				dispatched.add( after.size() );
+				return super.dispatch( work );
+			}
+		};
+
+		ArgumentsScope arguments = new ArgumentsScope();
+		arguments.put( Key.input, "secret" );
+		arguments.put( EncryptKeys.algorithm, "bcrypt" );
+		arguments.put( EncryptKeys.options, Struct.of( EncryptKeys.iterations, 5 ) );
+		String hashed = ( String ) hash._invoke( context, arguments );
+
+		arguments = new ArgumentsScope();
+		arguments.put( Key.input, "secret" );
+		arguments.put( EncryptKeys.hashed, hashed );
+		assertThat( verify._invoke( context, arguments ) ).isEqualTo( true );
+
+		assertThat( dispatched ).containsExactly( 1, 0, 2, 1 ).inOrder();
+		assertThat( before.size() ).isEqualTo( 2 );
+		assertThat( after.size() ).isEqualTo( 2 );
+		assertThat( ( ( IStruct ) before.get( 0 ) ).get( Key.of( "operation" ) ) ).isEqualTo( "hash" );
+		assertThat( ( ( IStruct ) before.get( 0 ) ).get( Key.of( "parameters" ) ) ).isEqualTo( "cost=5" );
+		assertThat( ( ( IStruct ) before.get( 1 ) ).get( Key.of( "operation" ) ) ).isEqualTo( "verify" );
+		assertThat( ( ( IStruct ) after.get( 1 ) ).get( Key.of( "outcome" ) ) ).isEqualTo( "success" );
+	}
+
+}
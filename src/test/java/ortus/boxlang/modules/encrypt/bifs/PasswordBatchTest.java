@@ -0,0 +1,104 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class PasswordBatchTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result	= new Key( "result" );
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true );
+	}
+
+	@AfterAll
+	public static void teardown() {
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+	}
+
+	@DisplayName( "It hashes and verifies a batch in order" )
+	@Test
+	public void testBatch() {
+		instance.executeSource(
+		    """
+		    passwords = [ "one", "two", "three", "four" ];
+		    hashes = PasswordHashBatch( passwords, "bcrypt", { iterations : 5 } );
+		    pairs = [];
+		    for ( i = 1; i <= passwords.len(); i++ ) {
+		    	pairs.append( { input : passwords[ i ], hashed : hashes[ i ].hashed } );
+		    }
+		    // Swap one input so it no longer matches its hash
+		    pairs[ 2 ].input = "wrong";
+		    result = PasswordVerifyBatch( pairs );
+		    """,
+		    context );
+		Array results = variables.getAsArray( result );
+		assertThat( results.size() ).isEqualTo( 4 );
+		assertThat( ( ( IStruct ) results.get( 0 ) ).getAsBoolean( Key.of( "valid" ) ) ).isTrue();
+		assertThat( ( ( IStruct ) results.get( 1 ) ).getAsBoolean( Key.of( "valid" ) ) ).isFalse();
+		assertThat( ( ( IStruct ) results.get( 2 ) ).getAsBoolean( Key.of( "valid" ) ) ).isTrue();
+		assertThat( ( ( IStruct ) results.get( 3 ) ).getAsBoolean( Key.of( "valid" ) ) ).isTrue();
+	}
+
+	@DisplayName( "It verifies mixed algorithms and reports errors per item" )
+	@Test
+	public void testMixedBatch() {
+		instance.executeSource(
+		    """
+		    result = PasswordVerifyBatch( [
+		    	{ input : "blah", hashed : ArgonHash( "blah" ) },
+		    	{ input : "blah", hashed : "not a hash" },
+		    	{ input : "blah", hashed : SCryptHash( "blah", 8, 1, 32, 8, 1024 ) },
+		    	{ input : "blah", hashed : PasswordHashBatch( [ "blah" ], "argon2id" )[ 1 ].hashed }
+		    ] );
+		    """,
+		    context );
+		Array results = variables.getAsArray( result );
+		assertThat( ( ( IStruct ) results.get( 0 ) ).getAsBoolean( Key.of( "valid" ) ) ).isTrue();
+		assertThat( ( ( IStruct ) results.get( 1 ) ).getAsBoolean( Key.of( "success" ) ) ).isFalse();
+		assertThat( ( ( IStruct ) results.get( 1 ) ).getAsString( Key.of( "error" ) ) ).isNotEmpty();
+		assertThat( ( ( IStruct ) results.get( 2 ) ).getAsBoolean( Key.of( "valid" ) ) ).isTrue();
+		assertThat( ( ( IStruct ) results.get( 3 ) ).getAsBoolean( Key.of( "valid" ) ) ).isTrue();
+	}
+
+}
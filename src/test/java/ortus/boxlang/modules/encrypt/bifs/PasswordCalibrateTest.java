@@ -0,0 +1,97 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Range;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class PasswordCalibrateTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result	= new Key( "result" );
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true );
+	}
+
+	@AfterAll
+	public static void teardown() {
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+	}
+
+	@DisplayName( "It calibrates cost parameters within the bounds of the hash functions" )
+	@Test
+	public void testCalibrate() {
+		instance.executeSource(
+		    """
+		    result = {
+		    	argon2 : PasswordCalibrate( "argon2id", 50, 4096 ),
+		    	bcrypt : PasswordCalibrate( "bcrypt", 50 ),
+		    	scrypt : PasswordCalibrate( "scrypt", 50, 4096 )
+		    };
+		    """,
+		    context );
+		IStruct	calibrated	= variables.getAsStruct( result );
+		IStruct	argon2		= calibrated.getAsStruct( Key.of( "argon2" ) ).getAsStruct( Key.of( "parameters" ) );
+		IStruct	bcrypt		= calibrated.getAsStruct( Key.of( "bcrypt" ) ).getAsStruct( Key.of( "parameters" ) );
+		IStruct	scrypt		= calibrated.getAsStruct( Key.of( "scrypt" ) ).getAsStruct( Key.of( "parameters" ) );
+
+		assertThat( argon2.getAsInteger( Key.of( "memory" ) ) ).isAtMost( 4096 );
+		assertThat( argon2.getAsInteger( Key.of( "iterations" ) ) ).isIn( Range.closed( 1, 20 ) );
+		assertThat( bcrypt.getAsInteger( Key.of( "iterations" ) ) ).isIn( Range.closed( 5, 10 ) );
+		// 128 * r * N bytes must fit in 4 MiB
+		assertThat( 128 * scrypt.getAsInteger( Key.of( "memory" ) ) * scrypt.getAsInteger( Key.of( "cpuCost" ) ) ).isAtMost( 4096 * 1024 );
+	}
+
+	@DisplayName( "It applies calibrated parameters as the module defaults" )
+	@Test
+	public void testApply() {
+		instance.executeSource(
+		    """
+		    calibrated = PasswordCalibrate( "argon2i", 20, 1024, true );
+		    hash = ArgonHash( "blah" );
+		    result = find( "m=#calibrated.parameters.memory#,t=#calibrated.parameters.iterations#,", hash ) > 0 && ArgonVerify( "blah", hash );
+		    """,
+		    context );
+		assertThat( variables.getAsBoolean( result ) ).isTrue();
+	}
+
+}
@@ -0,0 +1,86 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class PasswordEncryptStatsTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result	= new Key( "result" );
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true );
+	}
+
+	@AfterAll
+	public static void teardown() {
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+	}
+
+	@DisplayName( "It reports the calls of the hash and verify functions per algorithm and parameter set" )
+	@Test
+	public void testStats() {
+		instance.executeSource(
+		    """
+		    PasswordEncryptStats( true );
+		    hashed = BCryptHash( "secret", 5 );
+		    BCryptVerify( "secret", hashed );
+		    BCryptVerify( "wrong", hashed );
+		    result = PasswordEncryptStats();
+		    """,
+		    context );
+		IStruct	stats	= variables.getAsStruct( result );
+		IStruct	verify	= null;
+		for ( Object operation : ( Array ) stats.get( Key.of( "operations" ) ) ) {
+			IStruct series = ( IStruct ) operation;
+			if ( series.get( Key.of( "operation" ) ).equals( "verify" ) && series.get( Key.of( "parameters" ) ).equals( "cost=5" ) ) {
+				verify = series;
+			}
+		}
+		assertThat( verify ).isNotNull();
+		assertThat( verify.get( Key.of( "algorithm" ) ) ).isEqualTo( "bcrypt" );
+		assertThat( verify.get( Key.of( "calls" ) ) ).isEqualTo( 2L );
+		assertThat( verify.get( Key.of( "rejections" ) ) ).isEqualTo( 1L );
+		assertThat( stats.getAsStruct( Key.of( "executor" ) ).getAsInteger( Key.of( "maxConcurrency" ) ) ).isGreaterThan( 0 );
+	}
+
+}
@@ -0,0 +1,205 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.bifs;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.BoxRuntime;
+import ortus.boxlang.runtime.context.IBoxContext;
+import ortus.boxlang.runtime.context.ScriptingRequestBoxContext;
+import ortus.boxlang.runtime.scopes.IScope;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.scopes.VariablesScope;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class PasswordTest {
+
+	static BoxRuntime	instance;
+	IBoxContext			context;
+	IScope				variables;
+	static Key			result	= new Key( "result" );
+
+	@BeforeAll
+	public static void setUp() {
+		instance = BoxRuntime.getInstance( true );
+	}
+
+	@AfterAll
+	public static void teardown() {
+	}
+
+	@BeforeEach
+	public void setupEach() {
+		context		= new ScriptingRequestBoxContext( instance.getRuntimeContext() );
+		variables	= context.getScopeNearby( VariablesScope.name );
+	}
+
+	@DisplayName( "It verifies against a parsed hash descriptor" )
+	@Test
+	public void testParse() {
+		instance.executeSource(
+		    """
+		    argon = PasswordParse( ArgonHash( "blah" ) );
+		    bcrypt = PasswordParse( BCryptHash( "blah" ) );
+		    scrypt = PasswordParse( SCryptHash( "blah" ) );
+		    result = ArgonVerify( "blah", argon ) && !ArgonVerify( "nope", argon )
+		    	&& BCryptVerify( "blah", bcrypt ) && !BCryptVerify( "nope", bcrypt )
+		    	&& SCryptVerify( "blah", scrypt ) && !SCryptVerify( "nope", scrypt )
+		    	&& PasswordVerify( "blah", argon ) && PasswordVerify( "blah", bcrypt ) && PasswordVerify( "blah", scrypt )
+		    	&& PasswordVerifyAndUpgrade( "blah", bcrypt ).valid;
+		    """,
+		    context );
+		assertThat( variables.getAsBoolean( result ) ).isTrue();
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource( "result = PasswordParse( 'not a hash' )", context ) );
+	}
+
+	@DisplayName( "It hashes and verifies with every algorithm" )
+	@Test
+	public void testRoundTrip() {
+		instance.executeSource(
+		    """
+		    result = [];
+		    for ( algorithm in [ "argon2", "argon2i", "argon2d", "argon2id", "bcrypt", "scrypt" ] ) {
+		    	hashed = PasswordHash( "blah", algorithm );
+		    	result.append( PasswordVerify( "blah", hashed ) && !PasswordVerify( "nope", hashed ) );
+		    }
+		    result = result.every( ( item ) => item );
+		    """,
+		    context );
+		assertThat( variables.getAsBoolean( result ) ).isTrue();
+	}
+
+	@DisplayName( "It accepts named arguments like the algorithm specific functions" )
+	@Test
+	public void testNamedArguments() {
+		instance.executeSource(
+		    """
+		    hashed = PasswordHash( input = "blah", algorithm = "bcrypt" );
+		    result = PasswordVerify( input = "blah", hashed = hashed ) && !PasswordVerify( input = "nope", hashed = hashed )
+		    	&& PasswordVerifyAndUpgrade( input = "blah", hashed = hashed ).valid;
+		    """,
+		    context );
+		assertThat( variables.getAsBoolean( result ) ).isTrue();
+	}
+
+	@DisplayName( "It verifies hashes created by the algorithm specific functions" )
+	@Test
+	public void testMixedHashes() {
+		instance.executeSource(
+		    """
+		    bcrypt = BCryptHash( "blah" );
+		    result = PasswordVerify( "blah", ArgonHash( "blah" ) )
+		    	&& PasswordVerify( "blah", bcrypt )
+		    	&& PasswordVerify( "blah", "$2b$" & bcrypt.mid( 5 ) )
+		    	&& PasswordVerify( "blah", "$2y$" & bcrypt.mid( 5 ) )
+		    	&& BCryptVerify( "blah", "$2y$" & bcrypt.mid( 5 ) )
+		    	&& PasswordVerify( "blah", SCryptHash( "blah" ) )
+		    	&& PasswordVerify( "blah", SCryptHash( "blah" ).mid( 4 ) );
+		    """,
+		    context );
+		assertThat( variables.getAsBoolean( result ) ).isTrue();
+	}
+
+	@DisplayName( "It detects hashes weaker than the policy" )
+	@Test
+	public void testNeedsRehash() {
+		instance.executeSource(
+		    """
+		    weakBCrypt = BCryptHash( "blah", 5 );
+		    weakArgon = ArgonHash( "blah", "argon2id", 1, 8, 1 );
+		    weakSCrypt = SCryptHash( "blah", 8, 1, 32, 8, 1024 );
+		    result = [
+		    	PasswordNeedsRehash( weakBCrypt, { iterations : 8 } ),
+		    	PasswordNeedsRehash( weakBCrypt, { iterations : 5 } ),
+		    	PasswordNeedsRehash( weakBCrypt, { algorithm : "argon2id" } ),
+		    	PasswordNeedsRehash( weakArgon, { algorithm : "argon2id", iterations : 1, memory : 8, parallelism : 1 } ),
+		    	PasswordNeedsRehash( weakArgon, { algorithm : "argon2id", memory : 1024, iterations : 1, parallelism : 1 } ),
+		    	PasswordNeedsRehash( weakArgon, { algorithm : "argon2i", iterations : 1, memory : 8, parallelism : 1 } ),
+		    	PasswordNeedsRehash( weakSCrypt, { cpuCost : 1024, memory : 8, parallelism : 1 } ),
+		    	PasswordNeedsRehash( weakSCrypt.mid( 4 ), { cpuCost : 4096, memory : 8, parallelism : 1 } )
+		    ];
+		    """,
+		    context );
+		Array results = variables.getAsArray( result );
+		assertThat( results.get( 0 ) ).isEqualTo( true );
+		assertThat( results.get( 1 ) ).isEqualTo( false );
+		assertThat( results.get( 2 ) ).isEqualTo( true );
+		assertThat( results.get( 3 ) ).isEqualTo( false );
+		assertThat( results.get( 4 ) ).isEqualTo( true );
+		assertThat( results.get( 5 ) ).isEqualTo( true );
+		assertThat( results.get( 6 ) ).isEqualTo( false );
+		assertThat( results.get( 7 ) ).isEqualTo( true );
+	}
+
+	@DisplayName( "It upgrades a weak hash on a successful verify only" )
+	@Test
+	public void testVerifyAndUpgrade() {
+		instance.executeSource(
+		    """
+		    weak = BCryptHash( "blah", 5 );
+		    wrong = PasswordVerifyAndUpgrade( "nope", weak, { algorithm : "argon2id" } );
+		    upgraded = PasswordVerifyAndUpgrade( "blah", weak, { algorithm : "argon2id" } );
+		    current = PasswordVerifyAndUpgrade( "blah", upgraded.hashed, { algorithm : "argon2id" } );
+		    result = PasswordVerify( "blah", upgraded.hashed );
+		    """,
+		    context );
+		IStruct	wrong		= variables.getAsStruct( Key.of( "wrong" ) );
+		IStruct	upgraded	= variables.getAsStruct( Key.of( "upgraded" ) );
+		IStruct	current		= variables.getAsStruct( Key.of( "current" ) );
+		assertThat( wrong.getAsBoolean( Key.of( "valid" ) ) ).isFalse();
+		assertThat( wrong.getAsBoolean( Key.of( "upgraded" ) ) ).isFalse();
+		assertThat( upgraded.getAsBoolean( Key.of( "valid" ) ) ).isTrue();
+		assertThat( upgraded.getAsBoolean( Key.of( "upgraded" ) ) ).isTrue();
+		assertThat( upgraded.getAsString( Key.of( "hashed" ) ) ).startsWith( "$argon2id$" );
+		assertThat( current.getAsBoolean( Key.of( "upgraded" ) ) ).isFalse();
+		assertThat( current.getAsString( Key.of( "hashed" ) ) ).isEqualTo( upgraded.getAsString( Key.of( "hashed" ) ) );
+		assertThat( variables.getAsBoolean( result ) ).isTrue();
+	}
+
+	@DisplayName( "It rejects unknown hash formats and algorithms" )
+	@Test
+	public void testInvalid() {
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource( "result = PasswordVerify( 'blah', 'not a hash' )", context ) );
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource( "result = PasswordHash( 'blah', 'md5' )", context ) );
+	}
+
+	@DisplayName( "It rejects malformed hashes and absurd cost parameters before any key derivation" )
+	@Test
+	public void testMalformed() {
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource( "result = SCryptVerify( 'blah', '$s' )", context ) );
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource( "result = BCryptVerify( 'blah', '$2a$10$short' )", context ) );
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource(
+		    "result = ArgonVerify( 'blah', '$argon2id$v=19$m=4294967295,t=1,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5' )", context ) );
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource(
+		    "result = PasswordVerify( 'blah', '$s0$1e08ff$c2FsdA==$a2V5a2V5' )", context ) );
+		// 128 * r * N = 2 GiB exceeds the default verification limit, so neither hash function creates it
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource( "result = SCryptHash( 'blah', 8, 1, 32, 16, 1048576 )", context ) );
+		assertThrows( BoxRuntimeException.class, () -> instance.executeSource(
+		    "result = PasswordHash( 'blah', 'scrypt', { cpuCost : 1048576, memory : 16 } )", context ) );
+	}
+
+}
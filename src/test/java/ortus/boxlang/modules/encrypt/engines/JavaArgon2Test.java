@@ -0,0 +1,177 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Advanced;
+import de.mkammerer.argon2.Argon2Factory;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import de.mkammerer.argon2.Argon2Version;
+import ortus.boxlang.modules.encrypt.util.HashValidator;
+import ortus.boxlang.modules.encrypt.util.KDFExecutor;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class JavaArgon2Test {
+
+	static final byte[]	PASSWORD		= filled( 32, 0x01 );
+	static final byte[]	SALT			= filled( 16, 0x02 );
+	static final byte[]	SECRET			= filled( 8, 0x03 );
+	static final byte[]	ASSOCIATED_DATA	= filled( 12, 0x04 );
+
+	@DisplayName( "It matches the RFC 9106 test vectors" )
+	@Test
+	public void testVectors() {
+		assertThat( derive( Argon2Kernel.TYPE_D, 3, 32, 4, null ) ).isEqualTo( "512b391b6f1162975371d30919734294f868e3be3984f3c1a13a4db9fabe4acb" );
+		assertThat( derive( Argon2Kernel.TYPE_I, 3, 32, 4, null ) ).isEqualTo( "c814d9d1dc7f37aa13f0d77f2494bda1c8de6b016dd388d29952a4c4672b6ce8" );
+		assertThat( derive( Argon2Kernel.TYPE_ID, 3, 32, 4, null ) ).isEqualTo( "0d640df58d78766c08c037a34a8b53c9d01ef0452d75b65eb52520e96b01e659" );
+		// The lanes run in parallel on a pool as well
+		assertThat( derive( Argon2Kernel.TYPE_ID, 3, 32, 4, ForkJoinPool.commonPool() ) )
+		    .isEqualTo( "0d640df58d78766c08c037a34a8b53c9d01ef0452d75b65eb52520e96b01e659" );
+		// And on fewer threads than lanes
+		byte[] capped = new byte[ 32 ];
+		Argon2Kernel.derive( Argon2Kernel.TYPE_ID, Argon2Kernel.VERSION_13, 3, 32, 4, PASSWORD, SALT, SECRET, ASSOCIATED_DATA, capped,
+		    BlockArena.argon2(), ForkJoinPool.commonPool(), 3 );
+		assertThat( HexFormat.of().formatHex( capped ) ).isEqualTo( "0d640df58d78766c08c037a34a8b53c9d01ef0452d75b65eb52520e96b01e659" );
+	}
+
+	@DisplayName( "It matches the native binding for every variant and version" )
+	@Test
+	public void testNative() {
+		int[][]			costs	= { { 1, 8, 1 }, { 2, 64, 1 }, { 3, 100, 3 }, { 1, 1024, 2 }, { 4, 512, 8 } };
+		Argon2Types[]	types	= { Argon2Types.ARGON2d, Argon2Types.ARGON2i, Argon2Types.ARGON2id };
+		for ( int type = 0; type < types.length; type++ ) {
+			Argon2Advanced reference = Argon2Factory.createAdvanced( types[ type ] );
+			for ( Argon2Version version : Argon2Version.values() ) {
+				for ( int[] cost : costs ) {
+					byte[] actual = new byte[ 40 ];
+					Argon2Kernel.derive( type, version.getVersion(), cost[ 0 ], cost[ 1 ], cost[ 2 ], PASSWORD, SALT, SECRET, ASSOCIATED_DATA, actual,
+					    BlockArena.argon2(), ForkJoinPool.commonPool() );
+					byte[] expected = reference.rawHashAdvanced( cost[ 0 ], cost[ 1 ], cost[ 2 ], PASSWORD, SALT, SECRET, ASSOCIATED_DATA, 40, version );
+					assertThat( actual ).isEqualTo( expected );
+				}
+			}
+		}
+	}
+
+	@DisplayName( "Its encoded hashes verify with the native binding and vice versa" )
+	@Test
+	public void testEncoded() {
+		for ( Argon2Types variant : Argon2Types.values() ) {
+			Argon2	java		= new JavaArgon2( variant, ForkJoinPool.commonPool() );
+			Argon2	reference	= Argon2Factory.create( variant );
+			String	javaHash	= java.hash( 2, 256, 2, "pässword".toCharArray() );
+			String	nativeHash	= reference.hash( 2, 256, 2, "pässword".toCharArray() );
+			assertThat( reference.verify( javaHash, "pässword".toCharArray() ) ).isTrue();
+			assertThat( java.verify( nativeHash, "pässword".toCharArray() ) ).isTrue();
+			assertThat( java.verify( nativeHash, "password".toCharArray() ) ).isFalse();
+			assertThat( java.verify( "$argon2i$garbage", "pässword".toCharArray() ) ).isFalse();
+		}
+	}
+
+	@DisplayName( "It reuses released memory matrices" )
+	@Test
+	public void testArena() {
+		BlockArena<long[]>	arena	= BlockArena.longs( BlockArena.DEFAULT_MAX_RETAINED );
+		Argon2				argon2	= new JavaArgon2( Argon2Types.ARGON2id, 16, 32, arena, null );
+		argon2.hash( 1, 64, 1, new byte[] { 1 } );
+		argon2.hash( 1, 64, 1, new byte[] { 1 } );
+		assertThat( arena.getMisses() ).isEqualTo( 1 );
+		assertThat( arena.getHits() ).isEqualTo( 1 );
+		assertThat( arena.getRetained() ).isEqualTo( 64 * 1024 );
+	}
+
+	@DisplayName( "It derives the same hashes from off-heap memory matrices" )
+	@Test
+	public void testOffHeap() {
+		BlockArena<LongBuffer>	offHeap	= BlockArena.directLongs( BlockArena.DEFAULT_MAX_RETAINED, 1L << 20, 5000 );
+		JavaArgon2				heap	= new JavaArgon2( Argon2Types.ARGON2id, 16, 32, BlockArena.argon2(), ForkJoinPool.commonPool(), 4 );
+		JavaArgon2				direct	= new JavaArgon2( Argon2Types.ARGON2id, 16, 32, BlockArena.argon2(), offHeap, 64, ForkJoinPool.commonPool(), 4 );
+		for ( int parallelism : new int[] { 1, 4 } ) {
+			assertThat( direct.derive( Argon2Kernel.VERSION_13, 2, 256, parallelism, PASSWORD, SALT, 32 ) )
+			    .isEqualTo( heap.derive( Argon2Kernel.VERSION_13, 2, 256, parallelism, PASSWORD, SALT, 32 ) );
+		}
+		assertThat( offHeap.getMisses() ).isEqualTo( 1 );
+		assertThat( offHeap.getHits() ).isEqualTo( 1 );
+		assertThat( offHeap.getInUse() ).isEqualTo( 0 );
+		// Below the threshold the heap pool is used
+		direct.derive( Argon2Kernel.VERSION_13, 1, 32, 1, PASSWORD, SALT, 32 );
+		assertThat( offHeap.getMisses() ).isEqualTo( 1 );
+	}
+
+	@DisplayName( "It limits the off-heap memory in use to the budget" )
+	@Test
+	public void testOffHeapBudget() throws InterruptedException {
+		BlockArena<LongBuffer>	arena	= BlockArena.directLongs( 0, 64 * 1024, 5000 );
+		LongBuffer				first	= arena.acquire( 4 * 1024 );
+		assertThat( arena.getInUse() ).isEqualTo( 32 * 1024 );
+		assertThat( assertThrows( BoxRuntimeException.class, () -> arena.acquire( 16 * 1024 ) ).getType() ).isEqualTo( HashValidator.INVALID_TYPE );
+
+		CountDownLatch	acquired	= new CountDownLatch( 1 );
+		Thread			waiter		= new Thread( () -> {
+										arena.release( arena.acquire( 8 * 1024 ) );
+										acquired.countDown();
+									} );
+		waiter.start();
+		assertThat( acquired.await( 200, TimeUnit.MILLISECONDS ) ).isFalse();
+		assertThat( arena.getWaiting() ).isEqualTo( 1 );
+		arena.release( first );
+		assertThat( acquired.await( 5, TimeUnit.SECONDS ) ).isTrue();
+		waiter.join();
+		assertThat( arena.getInUse() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It fails with a busy exception when the off-heap budget is not released within the queue timeout" )
+	@Test
+	public void testOffHeapBudgetTimeout() {
+		BlockArena<LongBuffer>	arena	= BlockArena.directLongs( 0, 64 * 1024, 50 );
+		LongBuffer				first	= arena.acquire( 6 * 1024 );
+		BoxRuntimeException		e		= assertThrows( BoxRuntimeException.class, () -> arena.acquire( 4 * 1024 ) );
+		assertThat( e.getType() ).isEqualTo( KDFExecutor.BUSY_TYPE );
+		assertThat( arena.getInUse() ).isEqualTo( 48 * 1024 );
+		arena.release( first );
+		arena.release( arena.acquire( 4 * 1024 ) );
+		assertThat( arena.getInUse() ).isEqualTo( 0 );
+	}
+
+	private static String derive( int type, int iterations, int memory, int parallelism, ForkJoinPool pool ) {
+		byte[] out = new byte[ 32 ];
+		Argon2Kernel.derive( type, Argon2Kernel.VERSION_13, iterations, memory, parallelism, PASSWORD, SALT, SECRET, ASSOCIATED_DATA, out,
+		    BlockArena.argon2(), pool );
+		return HexFormat.of().formatHex( out );
+	}
+
+	private static byte[] filled( int length, int value ) {
+		byte[] bytes = new byte[ length ];
+		Arrays.fill( bytes, ( byte ) value );
+		return bytes;
+	}
+
+}
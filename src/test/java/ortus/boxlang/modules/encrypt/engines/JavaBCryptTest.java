@@ -0,0 +1,71 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+import ortus.boxlang.modules.encrypt.util.BCryptCodec;
+
+public class JavaBCryptTest {
+
+	@DisplayName( "It matches the jBCrypt test vectors" )
+	@Test
+	public void testVectors() {
+		assertThat( BCryptCodec.hash( new byte[ 0 ], "$2a$06$DCq7YPn5Rq63x1Lad4cll." ) )
+		    .isEqualTo( "$2a$06$DCq7YPn5Rq63x1Lad4cll.TV4S6ytwfsfvkgY8jIucDrjc8deX1s." );
+		assertThat( BCryptCodec.hash( bytes( "abcdefghijklmnopqrstuvwxyz" ), "$2a$08$aTsUwsyowQuzRrDqFflhge" ) )
+		    .isEqualTo( "$2a$08$aTsUwsyowQuzRrDqFflhgekJ8d9/7Z3GV3UcgvzQW3J5zMyrTvlz." );
+		assertThat( BCryptCodec.hash( bytes( "~!@#$%^&*()      ~!@#$%^&*()PNBFRD" ), "$2a$10$LgfYWkbzEvQ4JakH7rOvHe" ) )
+		    .isEqualTo( "$2a$10$LgfYWkbzEvQ4JakH7rOvHe0y8pHKF9OaFgwUZ2q7W2FFZmZzJYlfS" );
+	}
+
+	@DisplayName( "It derives the same ciphertext as jBCrypt" )
+	@Test
+	public void testJBCrypt() {
+		Random random = new Random( 7 );
+		for ( int i = 0; i < 50; i++ ) {
+			byte[]	key		= new byte[ 1 + random.nextInt( 100 ) ];
+			byte[]	salt	= new byte[ 16 ];
+			random.nextBytes( key );
+			random.nextBytes( salt );
+			int[] ciphertext = { 0x4f727068, 0x65616e42, 0x65686f6c, 0x64657253, 0x63727944, 0x6f756274 };
+			assertThat( JavaBCrypt.derive( key, salt, 4 ) ).isEqualTo( new BCrypt().crypt_raw( key, salt, 4, ciphertext ) );
+		}
+	}
+
+	@DisplayName( "It rejects invalid parameters" )
+	@Test
+	public void testInvalid() {
+		assertThrows( IllegalArgumentException.class, () -> JavaBCrypt.derive( new byte[ 1 ], new byte[ 16 ], 3 ) );
+		assertThrows( IllegalArgumentException.class, () -> JavaBCrypt.derive( new byte[ 1 ], new byte[ 15 ], 4 ) );
+		assertThrows( IllegalArgumentException.class, () -> JavaBCrypt.derive( new byte[ 0 ], new byte[ 16 ], 4 ) );
+	}
+
+	private static byte[] bytes( String value ) {
+		return value.getBytes( StandardCharsets.UTF_8 );
+	}
+
+}
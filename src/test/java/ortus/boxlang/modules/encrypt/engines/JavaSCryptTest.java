@@ -0,0 +1,130 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.lambdaworks.crypto.SCrypt;
+
+public class JavaSCryptTest {
+
+	@DisplayName( "It matches the RFC 7914 test vectors" )
+	@Test
+	public void testVectors() throws GeneralSecurityException {
+		JavaSCrypt scrypt = new JavaSCrypt();
+		assertThat( HexFormat.of().formatHex( scrypt.derive( new byte[ 0 ], new byte[ 0 ], 16, 1, 1, 64 ) ) ).isEqualTo(
+		    "77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906" );
+		assertThat( HexFormat.of().formatHex( scrypt.derive( bytes( "password" ), bytes( "NaCl" ), 1024, 8, 16, 64 ) ) ).isEqualTo(
+		    "fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b3731622eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640" );
+	}
+
+	@DisplayName( "It matches lambdaworks scrypt" )
+	@Test
+	public void testLambdaworks() throws GeneralSecurityException {
+		JavaSCrypt	scrypt	= new JavaSCrypt();
+		Random		random	= new Random( 42 );
+		int[][]		costs	= { { 2, 1, 1 }, { 16, 8, 3 }, { 512, 2, 4 }, { 1024, 8, 1 } };
+		for ( int[] cost : costs ) {
+			byte[]	password	= new byte[ 1 + random.nextInt( 80 ) ];
+			byte[]	salt		= new byte[ 16 ];
+			random.nextBytes( password );
+			random.nextBytes( salt );
+			assertThat( scrypt.derive( password, salt, cost[ 0 ], cost[ 1 ], cost[ 2 ], 48 ) )
+			    .isEqualTo( SCrypt.scryptJ( password, salt, cost[ 0 ], cost[ 1 ], cost[ 2 ], 48 ) );
+		}
+	}
+
+	@DisplayName( "It reuses released ROMix tables" )
+	@Test
+	public void testArena() throws GeneralSecurityException {
+		BlockArena<int[]>	arena	= BlockArena.ints( BlockArena.DEFAULT_MAX_RETAINED );
+		JavaSCrypt			scrypt	= new JavaSCrypt( arena );
+		scrypt.derive( bytes( "password" ), bytes( "salt" ), 1024, 8, 1, 32 );
+		scrypt.derive( bytes( "password" ), bytes( "salt" ), 1024, 8, 1, 32 );
+		// The ROMix table and the work buffer of the first call are both reused by the second one
+		assertThat( arena.getMisses() ).isEqualTo( 2 );
+		assertThat( arena.getHits() ).isEqualTo( 2 );
+		assertThat( arena.getRetained() ).isEqualTo( 128 * 8 * 1024 + 4 * ( 64 * 8 + 16 ) );
+	}
+
+	@DisplayName( "It mixes the lanes in parallel within the thread cap" )
+	@Test
+	public void testParallel() throws GeneralSecurityException {
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		try {
+			BlockArena<int[]>	arena	= BlockArena.ints( BlockArena.DEFAULT_MAX_RETAINED );
+			JavaSCrypt			scrypt	= new JavaSCrypt( arena, pool, 2 );
+			assertThat( scrypt.getThreads( 5 ) ).isEqualTo( 2 );
+			assertThat( scrypt.getThreads( 1 ) ).isEqualTo( 1 );
+			assertThat( scrypt.derive( bytes( "password" ), bytes( "salt" ), 256, 4, 5, 32 ) )
+			    .isEqualTo( SCrypt.scryptJ( bytes( "password" ), bytes( "salt" ), 256, 4, 5, 32 ) );
+			// Each of the two threads leased its own table and work buffer
+			assertThat( arena.getMisses() + arena.getHits() ).isEqualTo( 4 );
+			assertThat( new JavaSCrypt( arena, pool, 8 ).getThreads( 10 ) ).isEqualTo( 4 );
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@DisplayName( "It derives the same keys with the vector and the scalar Salsa20/8 cores" )
+	@Test
+	public void testVectorCore() throws GeneralSecurityException {
+		Assumptions.assumeTrue( JavaSCrypt.VECTOR_AVAILABLE, "Run with --add-modules jdk.incubator.vector on a SIMD host" );
+		Random random = new Random( 20 );
+		for ( int r = 1; r <= 4; r++ ) {
+			int[]	scalar	= random.ints( 64 * r + 16 ).toArray();
+			int[]	vector	= scalar.clone();
+			JavaSCrypt.blockMix( scalar, 0, 32 * r, r, false );
+			JavaSCrypt.blockMix( vector, 0, 32 * r, r, true );
+			assertThat( Arrays.copyOf( vector, 64 * r ) ).isEqualTo( Arrays.copyOf( scalar, 64 * r ) );
+		}
+
+		BlockArena<int[]>	arena		= BlockArena.ints( BlockArena.DEFAULT_MAX_RETAINED );
+		JavaSCrypt			vectorized	= new JavaSCrypt( arena, null, 1, true );
+		JavaSCrypt			scalar		= new JavaSCrypt( arena, null, 1, false );
+		assertThat( vectorized.isVectorized() ).isTrue();
+		assertThat( scalar.isVectorized() ).isFalse();
+		assertThat( vectorized.derive( bytes( "password" ), bytes( "NaCl" ), 1024, 8, 2, 64 ) )
+		    .isEqualTo( scalar.derive( bytes( "password" ), bytes( "NaCl" ), 1024, 8, 2, 64 ) );
+	}
+
+	@DisplayName( "It rejects invalid cost parameters" )
+	@Test
+	public void testInvalid() {
+		JavaSCrypt scrypt = new JavaSCrypt();
+		assertThrows( IllegalArgumentException.class, () -> scrypt.derive( bytes( "password" ), bytes( "salt" ), 1000, 8, 1, 32 ) );
+		assertThrows( IllegalArgumentException.class, () -> scrypt.derive( bytes( "password" ), bytes( "salt" ), 1 << 30, 8, 1, 32 ) );
+	}
+
+	private static byte[] bytes( String value ) {
+		return value.getBytes( StandardCharsets.UTF_8 );
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import de.mkammerer.argon2.Argon2;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.engines.JavaArgon2;
+
+public class Argon2RegistryTest {
+
+	@AfterEach
+	public void restoreEngine() {
+		Argon2Registry.setEngine( KDFEngine.AUTO );
+	}
+
+	@DisplayName( "It creates the instances of every variant on warm-up and shares them afterwards" )
+	@Test
+	public void testWarmUp() {
+		Argon2Registry.setEngine( KDFEngine.JAVA );
+		Argon2Registry.warmUp();
+		for ( Argon2Types variant : Argon2Types.values() ) {
+			Argon2 argon2 = Argon2Registry.get( variant );
+			assertThat( argon2 ).isInstanceOf( JavaArgon2.class );
+			assertThat( Argon2Registry.get( variant ) ).isSameInstanceAs( argon2 );
+		}
+	}
+
+	@DisplayName( "It resolves auto to the native binding when it loads, and to the Java engine otherwise" )
+	@Test
+	public void testEngineSelection() {
+		Argon2Registry.setEngine( KDFEngine.AUTO );
+		KDFEngine expected = Argon2Registry.isNativeAvailable() ? KDFEngine.NATIVE : KDFEngine.JAVA;
+		assertThat( Argon2Registry.getEngine() ).isEqualTo( expected );
+		Argon2Registry.warmUp();
+		assertThat( Argon2Registry.get( Argon2Types.ARGON2id ) instanceof JavaArgon2 ).isEqualTo( expected == KDFEngine.JAVA );
+
+		Argon2Registry.setEngine( KDFEngine.JAVA );
+		assertThat( Argon2Registry.getEngine() ).isEqualTo( KDFEngine.JAVA );
+		Argon2 java = Argon2Registry.get( Argon2Types.ARGON2id );
+		assertThat( java ).isInstanceOf( JavaArgon2.class );
+
+		// Switching engines replaces the shared instances
+		Argon2Registry.setEngine( KDFEngine.JAVA );
+		assertThat( Argon2Registry.get( Argon2Types.ARGON2id ) ).isNotSameInstanceAs( java );
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class BatchTaskTest {
+
+	@DisplayName( "It returns the results in input order and reports failing and rejected items" )
+	@Test
+	public void testResults() {
+		KDFExecutor	executor	= new KDFExecutor( true, 2, 100, 5000 );
+		Object[]	results		= BatchTask.run( executor, 2, List.of( 1, 2, 3, 4, 5 ), item -> {
+									if ( ( Integer ) item == 5 ) {
+										throw new IllegalStateException( "rejected" );
+									}
+									return () -> {
+										if ( ( Integer ) item == 3 ) {
+											throw new IllegalStateException( "boom" );
+										}
+										return ( Integer ) item * 10;
+									};
+								} );
+		assertThat( results[ 0 ] ).isEqualTo( 10 );
+		assertThat( results[ 1 ] ).isEqualTo( 20 );
+		assertThat( ( ( IStruct ) results[ 2 ] ).getAsBoolean( EncryptKeys.success ) ).isFalse();
+		assertThat( ( ( IStruct ) results[ 2 ] ).getAsString( EncryptKeys.error ) ).isEqualTo( "boom" );
+		assertThat( results[ 3 ] ).isEqualTo( 40 );
+		assertThat( ( ( IStruct ) results[ 4 ] ).getAsString( EncryptKeys.error ) ).isEqualTo( "rejected" );
+		executor.shutdown();
+	}
+
+	@DisplayName( "It shares the concurrency cap of the executor with single calls" )
+	@Test
+	public void testSharedCap() throws InterruptedException {
+		KDFExecutor		executor	= new KDFExecutor( true, 2, 100, 10000 );
+		AtomicInteger	running		= new AtomicInteger();
+		AtomicInteger	peak		= new AtomicInteger();
+
+		Callable<Integer> work = () -> {
+			peak.accumulateAndGet( running.incrementAndGet(), Math::max );
+			Thread.sleep( 5 );
+			running.decrementAndGet();
+			return 1;
+		};
+		List<Thread>	singles		= new ArrayList<>();
+		List<Object>	failures	= Collections.synchronizedList( new ArrayList<>() );
+		for ( int i = 0; i < 4; i++ ) {
+			Thread single = new Thread( () -> {
+				for ( int j = 0; j < 10; j++ ) {
+					try {
+						executor.execute( work );
+					} catch ( RuntimeException e ) {
+						failures.add( e );
+					}
+				}
+			} );
+			singles.add( single );
+			single.start();
+		}
+
+		Object[] results = BatchTask.run( executor, 2, IntStream.range( 0, 40 ).boxed().toList(), item -> work );
+		for ( Thread single : singles ) {
+			single.join();
+		}
+
+		assertThat( failures ).isEmpty();
+		assertThat( results ).asList().containsExactlyElementsIn( Collections.nCopies( 40, 1 ) );
+		assertThat( peak.get() ).isAtMost( 2 );
+		executor.shutdown();
+	}
+
+}
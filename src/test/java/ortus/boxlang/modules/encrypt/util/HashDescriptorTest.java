@@ -0,0 +1,135 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class HashDescriptorTest {
+
+	@DisplayName( "It decodes the salt and key of every algorithm" )
+	@Test
+	public void testParse() {
+		HashDescriptor argon2 = HashDescriptor.parse( new PasswordHasher( "argon2id", Struct.of( EncryptKeys.memory, 1024 ) ).hash( "secret" ) );
+		assertThat( argon2.getFormat() ).isEqualTo( HashFormat.ARGON2ID );
+		assertThat( argon2.getParameters().memory ).isEqualTo( 1024 );
+		assertThat( argon2.getSalt() ).hasLength( 16 );
+		assertThat( argon2.getKeyLength() ).isEqualTo( 32 );
+
+		HashDescriptor bcrypt = HashDescriptor.parse( new PasswordHasher( "bcrypt", Struct.of( EncryptKeys.iterations, 5 ) ).hash( "secret" ) );
+		assertThat( bcrypt.getAlgorithm() ).isEqualTo( PasswordHasher.Algorithm.BCRYPT );
+		assertThat( bcrypt.getParameters().iterations ).isEqualTo( 5 );
+		assertThat( bcrypt.getSalt() ).hasLength( 16 );
+		assertThat( bcrypt.getKeyLength() ).isEqualTo( 23 );
+
+		String			hashed	= new PasswordHasher( "scrypt", Struct.of( EncryptKeys.cpuCost, 16 ) ).hash( "secret" );
+		HashDescriptor	scrypt	= HashDescriptor.parse( hashed );
+		assertThat( scrypt.getParameters().cpuCost ).isEqualTo( 16 );
+		assertThat( scrypt.getEncoded() ).isEqualTo( hashed );
+		// Hashes stored without their $s0 version prefix decode to the same salt and key
+		HashDescriptor stripped = HashDescriptor.parse( hashed.substring( 3 ) );
+		assertThat( stripped.getSalt() ).isEqualTo( scrypt.getSalt() );
+		assertThat( stripped.getKey() ).isEqualTo( scrypt.getKey() );
+	}
+
+	@DisplayName( "It verifies a descriptor like the encoded hash" )
+	@Test
+	public void testVerify() {
+		for ( PasswordHasher hasher : new PasswordHasher[] {
+		    new PasswordHasher( "argon2i", Struct.of( EncryptKeys.memory, 1024 ) ),
+		    new PasswordHasher( "bcrypt", Struct.of( EncryptKeys.iterations, 5 ) ),
+		    new PasswordHasher( "scrypt", Struct.of( EncryptKeys.cpuCost, 16 ) )
+		} ) {
+			HashDescriptor descriptor = HashDescriptor.parse( hasher.hash( "secret" ) );
+			assertThat( PasswordHasher.verify( "secret", descriptor ) ).isTrue();
+			assertThat( PasswordHasher.verify( "Secret", descriptor ) ).isFalse();
+			assertThat( PasswordHasher.verify( "", descriptor ) ).isFalse();
+			assertThat( hasher.needsRehash( descriptor ) ).isFalse();
+		}
+		// BCrypt truncates at 72 bytes and hashes the empty password like any other
+		HashDescriptor empty = HashDescriptor.parse( new PasswordHasher( "bcrypt", Struct.of( EncryptKeys.iterations, 5 ) ).hash( "" ) );
+		assertThat( PasswordHasher.verify( "", empty ) ).isTrue();
+	}
+
+	@DisplayName( "It verifies legacy $2$ BCrypt hashes, which hash the password without its terminating NUL" )
+	@Test
+	public void testLegacyBCrypt() {
+		// Produced by jBCrypt 1.0.2
+		String hashed = "$2$05$abcdefghijklmnopqrstuuqIe82KKWsiDzC.0CUjfIljjjqz5tbYK";
+		assertThat( HashFormat.detect( hashed ) ).isEqualTo( HashFormat.BCRYPT_2 );
+		assertThat( new HashValidator( 1024, 64, 31 ).validate( hashed ) ).isEqualTo( HashFormat.BCRYPT_2 );
+		assertThat( PasswordHasher.verify( "password", hashed ) ).isTrue();
+		assertThat( PasswordHasher.verify( "passwore", hashed ) ).isFalse();
+
+		HashDescriptor descriptor = HashDescriptor.parse( hashed );
+		assertThat( descriptor.getParameters().iterations ).isEqualTo( 5 );
+		assertThat( PasswordHasher.verify( "password", descriptor ) ).isTrue();
+		assertThat( PasswordHasher.verify( "passwore", descriptor ) ).isFalse();
+		// The same salt with a minor revision hashes the NUL as well and gives another key
+		assertThat( PasswordHasher.verify( "password", "$2a$" + hashed.substring( 3 ) ) ).isFalse();
+	}
+
+	@DisplayName( "It never matches a BCrypt hash with unused bits set, whether parsed or not" )
+	@Test
+	public void testNonCanonicalBCrypt() {
+		String	alphabet	= "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+		String	hashed		= new PasswordHasher( "bcrypt", Struct.of( EncryptKeys.iterations, 5 ) ).hash( "secret" );
+		// The low two bits of the last key character are unused, so this encodes the same key bytes
+		char	last		= alphabet.charAt( alphabet.indexOf( hashed.charAt( 59 ) ) ^ 1 );
+		String	other		= hashed.substring( 0, 59 ) + last;
+
+		HashDescriptor descriptor = HashDescriptor.parse( other );
+		assertThat( descriptor.getKey() ).isEqualTo( HashDescriptor.parse( hashed ).getKey() );
+		assertThat( PasswordHasher.verify( "secret", other ) ).isFalse();
+		assertThat( PasswordHasher.verify( "secret", descriptor ) ).isFalse();
+		assertThat( PasswordHasher.verify( "secret", HashDescriptor.parse( hashed ) ) ).isTrue();
+	}
+
+	@DisplayName( "It is immutable and equal to descriptors of the same hash" )
+	@Test
+	public void testImmutable() {
+		String			hashed		= new PasswordHasher( "bcrypt", Struct.of( EncryptKeys.iterations, 5 ) ).hash( "secret" );
+		HashDescriptor	descriptor	= HashDescriptor.parse( hashed );
+		descriptor.getSalt()[ 0 ]++;
+		descriptor.getKey()[ 0 ]++;
+		assertThat( PasswordHasher.verify( "secret", descriptor ) ).isTrue();
+		assertThat( descriptor ).isEqualTo( HashDescriptor.parse( hashed ) );
+		assertThat( HashDescriptor.encoded( descriptor ) ).isEqualTo( hashed );
+		assertThat( descriptor.toString() ).isEqualTo( hashed );
+	}
+
+	@DisplayName( "It rejects malformed hashes when parsing" )
+	@Test
+	public void testMalformed() {
+		String bcrypt = new PasswordHasher( "bcrypt", Struct.of( EncryptKeys.iterations, 5 ) ).hash( "secret" );
+		assertThrows( BoxRuntimeException.class, () -> HashDescriptor.parse( "5f4dcc3b5aa765d61d8327deb882cf99" ) );
+		assertThrows( BoxRuntimeException.class, () -> HashDescriptor.parse( bcrypt.substring( 0, 29 ) ) );
+		assertThrows( BoxRuntimeException.class, () -> HashDescriptor.parse( bcrypt.substring( 0, 59 ) + "!" ) );
+		assertThrows( BoxRuntimeException.class, () -> HashDescriptor.parse( "$2a$03$" + bcrypt.substring( 7 ) ) );
+		assertThrows( BoxRuntimeException.class, () -> HashDescriptor.parse( "$argon2id$v=19$m=1024,t=1,p=1$c2FsdHNhbHQ$!!!!" ) );
+		assertThrows( BoxRuntimeException.class, () -> HashDescriptor.parse( "$s0$e0801$c2FsdA==" ) );
+	}
+
+}
@@ -0,0 +1,147 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import de.mkammerer.argon2.Argon2Factory;
+import de.mkammerer.argon2.Argon2Factory.Argon2Types;
+import ortus.boxlang.modules.encrypt.engines.JavaArgon2;
+import ortus.boxlang.modules.encrypt.util.PasswordHasher.Algorithm;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class HashValidatorTest {
+
+	static final byte[]			PASSWORD	= { 'b', 'l', 'a', 'h' };
+	static final HashValidator	VALIDATOR	= new HashValidator( 1024, 64, 16 );
+
+	@DisplayName( "It accepts the hashes of every algorithm and engine" )
+	@Test
+	public void testValid() {
+		for ( Argon2Types variant : Argon2Types.values() ) {
+			String java = new JavaArgon2( variant, ForkJoinPool.commonPool() ).hash( 2, 64, 2, PASSWORD );
+			assertThat( VALIDATOR.validate( java, Algorithm.ARGON2 ).variant ).isEqualTo( variant );
+			assertThat( VALIDATOR.validate( Argon2Factory.create( variant ).hash( 2, 64, 2, PASSWORD ) ).variant ).isEqualTo( variant );
+		}
+		assertThat( VALIDATOR.validate( "$argon2i$m=4096,t=3,p=1$c29tZXNhbHQ$iWh06vD8Fy27wf9npn6FXWiCX4K6pW6Ue1Bnzz07Z8A" ) )
+		    .isEqualTo( HashFormat.ARGON2I );
+		for ( int i = 0; i < 200; i++ ) {
+			String bcrypt = BCryptCodec.hash( PASSWORD, BCryptCodec.gensalt( 4 ) );
+			assertThat( VALIDATOR.validate( bcrypt, Algorithm.BCRYPT ) ).isEqualTo( HashFormat.BCRYPT_2A );
+		}
+		String scrypt = PasswordHasher.scrypt( PASSWORD, 16, 1024, 8, 1, 32 );
+		assertThat( VALIDATOR.validate( scrypt, Algorithm.SCRYPT ) ).isEqualTo( HashFormat.SCRYPT );
+		assertThat( VALIDATOR.validate( scrypt.substring( 3 ) ) ).isEqualTo( HashFormat.SCRYPT );
+	}
+
+	@DisplayName( "It rejects malformed and foreign hashes" )
+	@Test
+	public void testMalformed() {
+		String	argon2	= "$argon2id$v=19$m=1024,t=2,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5";
+		String	bcrypt	= BCryptCodec.hash( PASSWORD, BCryptCodec.gensalt( 4 ) );
+		String	scrypt	= PasswordHasher.scrypt( PASSWORD, 16, 1024, 8, 1, 32 );
+		VALIDATOR.validate( argon2 );
+		for ( String hashed : new String[] {
+		    "",
+		    "$",
+		    "not a hash",
+		    "5f4dcc3b5aa765d61d8327deb882cf99",
+		    "$argon2id$",
+		    "$argon2id$v=19$",
+		    "$argon2id$v=18$m=1024,t=2,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5",
+		    "$argon2id$v=19$t=2,m=1024,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5",
+		    "$argon2id$v=19$m=1024,t=2$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5",
+		    "$argon2id$v=19$m=1024,t=0,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5",
+		    "$argon2id$v=19$m=8,t=2,p=2$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5",
+		    "$argon2id$v=19$m=1024,t=2,p=1$c2Fsd$a2V5a2V5a2V5a2V5",
+		    "$argon2id$v=19$m=1024,t=2,p=1$c2FsdHNhbHRzYWx0$a2V5",
+		    "$argon2id$v=19$m=1024,t=2,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5==",
+		    "$argon2id$v=19$m=1024,t=2,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5$",
+		    "$argon2id$v=19$m=1024,t=2,p=1$c2FsdHNh-HRzYWx0$a2V5a2V5a2V5a2V5",
+		    bcrypt.substring( 0, 29 ),
+		    bcrypt.substring( 0, 59 ) + "!",
+		    "$2a$03$" + bcrypt.substring( 7 ),
+		    "$2a$1x$" + bcrypt.substring( 7 ),
+		    "$2c$10$" + bcrypt.substring( 7 ),
+		    scrypt.substring( 0, scrypt.lastIndexOf( '$' ) ),
+		    scrypt + "$",
+		    scrypt.replace( "$s0$a0801$", "$s0$00801$" ),
+		    scrypt.replace( "$s0$a0801$", "$s0$a0001$" ),
+		    scrypt.replace( "$s0$a0801$", "$s0$a0801a0801$" ),
+		    scrypt.substring( 0, scrypt.length() - 1 )
+		} ) {
+			BoxRuntimeException e = assertThrows( BoxRuntimeException.class, () -> VALIDATOR.validate( hashed ), hashed );
+			assertThat( e.getType() ).isEqualTo( HashValidator.INVALID_TYPE );
+		}
+		assertThrows( BoxRuntimeException.class, () -> VALIDATOR.validate( null ) );
+		assertThrows( BoxRuntimeException.class, () -> VALIDATOR.validate( bcrypt, Algorithm.ARGON2 ) );
+		assertThrows( BoxRuntimeException.class, () -> VALIDATOR.validate( argon2, Algorithm.SCRYPT ) );
+	}
+
+	@DisplayName( "It accepts any BCrypt Base64 character at the end of the salt and the key" )
+	@Test
+	public void testBCryptLastCharacter() {
+		String	bcrypt		= BCryptCodec.hash( PASSWORD, BCryptCodec.gensalt( 4 ) );
+		String	alphabet	= "./ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+		for ( int position : new int[] { 28, 59 } ) {
+			for ( char c : alphabet.toCharArray() ) {
+				VALIDATOR.validate( bcrypt.substring( 0, position ) + c + bcrypt.substring( position + 1 ) );
+			}
+		}
+	}
+
+	@DisplayName( "It rejects hashes whose cost exceeds the verification limits" )
+	@Test
+	public void testLimits() {
+		assertThat( assertThrows( BoxRuntimeException.class,
+		    () -> VALIDATOR.validate( "$argon2id$v=19$m=99999999999999999999,t=2,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5" ) ).getMessage() )
+		    .contains( "verification limit of 1024 MiB" );
+		assertThrows( BoxRuntimeException.class,
+		    () -> VALIDATOR.validate( "$argon2id$v=19$m=1024,t=65,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5" ) );
+		assertThrows( BoxRuntimeException.class, () -> VALIDATOR.validate( "$s0$1e08ff$c2FsdA==$a2V5a2V5" ) );
+		String bcrypt = "$2a$31$" + BCryptCodec.gensalt( 4 ).substring( 7 ) + "a".repeat( 30 ) + ".";
+		assertThrows( BoxRuntimeException.class, () -> VALIDATOR.validate( bcrypt ) );
+		// Every BCrypt cost is accepted by default
+		new HashValidator( HashValidator.DEFAULT_MAX_MEMORY, HashValidator.DEFAULT_MAX_ITERATIONS, HashValidator.DEFAULT_MAX_BCRYPT_COST )
+		    .validate( bcrypt );
+
+		HashValidator generous = new HashValidator( 4096, 64, 31 );
+		generous.validate( "$argon2id$v=19$m=4194304,t=2,p=1$c2FsdHNhbHRzYWx0$a2V5a2V5a2V5a2V5" );
+		generous.validate( "$s0$140801$c2FsdA==$a2V5a2V5" );
+		assertThat( generous.getMaxMemory() ).isEqualTo( 4096L << 20 );
+	}
+
+	@DisplayName( "It rejects the cost of a new SCrypt hash which the verify functions would refuse" )
+	@Test
+	public void testSCryptCost() {
+		// 128 * r * N * p = 1 GiB is the default limit itself
+		VALIDATOR.checkSCrypt( 1 << 20, 8, 1 );
+		BoxRuntimeException e = assertThrows( BoxRuntimeException.class, () -> VALIDATOR.checkSCrypt( 1 << 20, 16, 1 ) );
+		assertThat( e.getType() ).isEqualTo( HashValidator.INVALID_TYPE );
+		assertThat( e.getMessage() ).contains( "requires 2048 MiB of memory" );
+		assertThrows( BoxRuntimeException.class, () -> VALIDATOR.checkSCrypt( 1 << 20, 8, 2 ) );
+		new HashValidator( 4096, 64, 31 ).checkSCrypt( 1 << 20, 16, 2 );
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Callable;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.events.InterceptorState;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.services.InterceptorService;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class KDFEventsTest {
+
+	@DisplayName( "It leaves the work untouched when nobody listens" )
+	@Test
+	public void testNoListeners() throws Exception {
+		KDFEvents			events	= new KDFEvents( null );
+		Callable<Boolean>	work	= () -> true;
+		assertThat( events.isListening() ).isFalse();
+		assertThat( events.wrap( KDFMetrics.VERIFY, "bcrypt", KDFMetrics.bcrypt( 10 ), work ) ).isSameInstanceAs( work );
+	}
+
+	@DisplayName( "It announces the outcome once and keeps the result of the work when a listener fails" )
+	@Test
+	public void testFailingListener() throws Exception {
+		InterceptorService	service	= mock( InterceptorService.class );
+		InterceptorState	state	= mock( InterceptorState.class );
+		when( state.size() ).thenReturn( 1 );
+		when( service.hasState( any( Key.class ) ) ).thenReturn( true );
+		when( service.getState( any( Key.class ) ) ).thenReturn( state );
+		doThrow( new IllegalStateException( "listener" ) ).when( service ).announce( eq( EncryptKeys.postEncryptRequest ), any( IStruct.class ) );
+		KDFEvents events = new KDFEvents( service );
+
+		assertThat( events.wrap( KDFMetrics.VERIFY, "bcrypt", KDFMetrics.bcrypt( 10 ), () -> true ).call() ).isTrue();
+		verify( service, times( 1 ) ).announce( eq( EncryptKeys.postEncryptRequest ), any( IStruct.class ) );
+
+		Callable<Boolean>			failing	= events.wrap( KDFMetrics.VERIFY, "bcrypt", KDFMetrics.bcrypt( 10 ), () -> {
+											throw new IllegalArgumentException( "work" );
+										} );
+		IllegalArgumentException	e		= assertThrows( IllegalArgumentException.class, failing::call );
+		assertThat( e.getMessage() ).isEqualTo( "work" );
+		verify( service, times( 2 ) ).announce( eq( EncryptKeys.postEncryptRequest ), any( IStruct.class ) );
+	}
+
+}
@@ -0,0 +1,88 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class KDFExecutorTest {
+
+	@DisplayName( "It runs work on the pool and returns the result" )
+	@Test
+	public void testExecute() {
+		KDFExecutor executor = new KDFExecutor( true, 2, 10, 1000 );
+		assertThat( executor.execute( () -> Thread.currentThread().getName() ) ).startsWith( "bx-password-encrypt-kdf-" );
+		executor.shutdown();
+	}
+
+	@DisplayName( "It runs work on the calling thread when disabled" )
+	@Test
+	public void testDisabled() {
+		KDFExecutor executor = new KDFExecutor( false, 2, 10, 1000 );
+		assertThat( executor.execute( () -> Thread.currentThread().getName() ) ).isEqualTo( Thread.currentThread().getName() );
+		executor.shutdown();
+	}
+
+	@DisplayName( "It fails fast when no slot frees up within the queue timeout" )
+	@Test
+	public void testBusy() throws InterruptedException {
+		KDFExecutor		executor	= new KDFExecutor( true, 1, 10, 50 );
+		CountDownLatch	started		= new CountDownLatch( 1 );
+		CountDownLatch	release		= new CountDownLatch( 1 );
+		Thread			blocker		= new Thread( () -> executor.execute( () -> {
+										started.countDown();
+										return release.await( 5, TimeUnit.SECONDS );
+									} ) );
+		blocker.start();
+		assertThat( started.await( 5, TimeUnit.SECONDS ) ).isTrue();
+
+		BoxRuntimeException e = assertThrows( BoxRuntimeException.class, () -> executor.execute( () -> true ) );
+		assertThat( e.getMessage() ).contains( "busy" );
+
+		release.countDown();
+		blocker.join();
+		executor.shutdown();
+	}
+
+	@DisplayName( "It propagates exceptions thrown by the work" )
+	@Test
+	public void testException() {
+		KDFExecutor executor = new KDFExecutor( true, 1, 10, 1000 );
+		assertThrows( IllegalStateException.class, () -> executor.execute( () -> {
+			throw new IllegalStateException( "boom" );
+		} ) );
+		executor.shutdown();
+	}
+
+	@DisplayName( "It caps the lane threads of a hash at the concurrency cap" )
+	@Test
+	public void testMaxLaneThreads() {
+		assertThat( new KDFExecutor( true, 4, 10, 1000 ).getMaxLaneThreads() ).isEqualTo( 4 );
+		assertThat( new KDFExecutor( true, 4, 10, 1000, 2 ).getMaxLaneThreads() ).isEqualTo( 2 );
+		assertThat( new KDFExecutor( true, 4, 10, 1000, 8 ).getMaxLaneThreads() ).isEqualTo( 4 );
+	}
+
+}
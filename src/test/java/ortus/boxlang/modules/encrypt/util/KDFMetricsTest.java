@@ -0,0 +1,123 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.types.Array;
+import ortus.boxlang.runtime.types.IStruct;
+
+public class KDFMetricsTest {
+
+	@DisplayName( "It counts calls, errors and rejections per series" )
+	@Test
+	public void testRecord() {
+		KDFMetrics	metrics		= new KDFMetrics( true, false );
+		String		parameters	= KDFMetrics.bcrypt( 10 );
+		metrics.record( KDFMetrics.HASH, "bcrypt", parameters, () -> "hash" );
+		metrics.record( KDFMetrics.VERIFY, "bcrypt", parameters, () -> true );
+		metrics.record( KDFMetrics.VERIFY, "bcrypt", parameters, () -> false );
+		assertThrows( IllegalStateException.class, () -> metrics.record( KDFMetrics.VERIFY, "bcrypt", parameters, () -> {
+			throw new IllegalStateException( "boom" );
+		} ) );
+
+		Array operations = ( Array ) metrics.snapshot().get( EncryptKeys.operations );
+		assertThat( operations.size() ).isEqualTo( 2 );
+		IStruct hash = ( IStruct ) operations.get( 0 );
+		assertThat( hash.get( EncryptKeys.operation ) ).isEqualTo( KDFMetrics.HASH );
+		assertThat( hash.get( EncryptKeys.calls ) ).isEqualTo( 1L );
+		IStruct verify = ( IStruct ) operations.get( 1 );
+		assertThat( verify.get( EncryptKeys.parameters ) ).isEqualTo( "cost=10" );
+		assertThat( verify.get( EncryptKeys.calls ) ).isEqualTo( 3L );
+		assertThat( verify.get( EncryptKeys.errors ) ).isEqualTo( 1L );
+		assertThat( verify.get( EncryptKeys.rejections ) ).isEqualTo( 1L );
+
+		metrics.reset();
+		verify = ( IStruct ) ( ( Array ) metrics.snapshot().get( EncryptKeys.operations ) ).get( 1 );
+		assertThat( verify.get( EncryptKeys.calls ) ).isEqualTo( 0L );
+	}
+
+	@DisplayName( "It keys verifications by the parameters of the hash" )
+	@Test
+	public void testVerifySeries() throws Exception {
+		KDFMetrics metrics = new KDFMetrics( true, false );
+		metrics.timedVerify( "$2a$04$EYGOKnk4Jf6TxWkClqJsW.bUAU0dY9kYvbJbzrBBU3tuEWbUzmuNS", () -> true ).call();
+		metrics.timedVerify( "not a hash", () -> false ).call();
+
+		Array operations = ( Array ) metrics.snapshot().get( EncryptKeys.operations );
+		IStruct bcrypt = ( IStruct ) operations.get( 0 );
+		assertThat( bcrypt.get( EncryptKeys.algorithm ) ).isEqualTo( "bcrypt" );
+		assertThat( bcrypt.get( EncryptKeys.parameters ) ).isEqualTo( "cost=4" );
+		IStruct unknown = ( IStruct ) operations.get( 1 );
+		assertThat( unknown.get( EncryptKeys.algorithm ) ).isEqualTo( "unknown" );
+	}
+
+	@DisplayName( "It reuses the series of a parameter set parsed from different hashes" )
+	@Test
+	public void testVerifyParameters() throws Exception {
+		KDFMetrics		metrics	= new KDFMetrics( true, false );
+		HashParameters	first	= HashParameters.parse( "$2a$04$EYGOKnk4Jf6TxWkClqJsW.bUAU0dY9kYvbJbzrBBU3tuEWbUzmuNS" );
+		HashParameters	second	= HashParameters.parse( BCryptCodec.hash( "password".getBytes(), BCryptCodec.gensalt( 4 ) ) );
+		assertThat( second ).isEqualTo( first );
+		assertThat( second.hashCode() ).isEqualTo( first.hashCode() );
+		assertThat( HashParameters.parse( BCryptCodec.hash( "password".getBytes(), BCryptCodec.gensalt( 5 ) ) ) ).isNotEqualTo( first );
+
+		metrics.timedVerify( first, () -> true ).call();
+		metrics.timedVerify( second, () -> false ).call();
+
+		Array operations = ( Array ) metrics.snapshot().get( EncryptKeys.operations );
+		assertThat( operations.size() ).isEqualTo( 1 );
+		IStruct bcrypt = ( IStruct ) operations.get( 0 );
+		assertThat( bcrypt.get( EncryptKeys.parameters ) ).isEqualTo( "cost=4" );
+		assertThat( bcrypt.get( EncryptKeys.calls ) ).isEqualTo( 2L );
+		assertThat( bcrypt.get( EncryptKeys.rejections ) ).isEqualTo( 1L );
+	}
+
+	@DisplayName( "It records nothing when disabled" )
+	@Test
+	public void testDisabled() {
+		KDFMetrics metrics = new KDFMetrics( false, false );
+		assertThat( metrics.record( KDFMetrics.HASH, "bcrypt", KDFMetrics.bcrypt( 10 ), () -> "hash" ) ).isEqualTo( "hash" );
+		assertThat( ( ( Array ) metrics.snapshot().get( EncryptKeys.operations ) ).size() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It unregisters its MXBeans" )
+	@Test
+	public void testUnregister() throws Exception {
+		MBeanServer	server		= ManagementFactory.getPlatformMBeanServer();
+		ObjectName	executor	= new ObjectName( KDFMetrics.DOMAIN + ":type=Executor" );
+		KDFMetrics	metrics		= new KDFMetrics( true, true );
+		metrics.record( KDFMetrics.HASH, "bcrypt", KDFMetrics.bcrypt( 10 ), () -> "hash" );
+		assertThat( server.isRegistered( executor ) ).isTrue();
+		assertThat( server.queryNames( new ObjectName( KDFMetrics.DOMAIN + ":type=Operation,*" ), null ) ).isNotEmpty();
+
+		metrics.unregister();
+		assertThat( server.queryNames( new ObjectName( KDFMetrics.DOMAIN + ":*" ), null ) ).isEmpty();
+	}
+
+}
@@ -0,0 +1,66 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+	@DisplayName( "It keeps every value within its bucket bounds" )
+	@Test
+	public void testBuckets() {
+		for ( long value : new long[] { 0, 1, 15, 16, 17, 31, 32, 1000, 123456, 1L << 40, Long.MAX_VALUE } ) {
+			int index = LatencyHistogram.index( value );
+			assertThat( LatencyHistogram.upperBound( index ) ).isAtLeast( value );
+			if ( index > 0 ) {
+				assertThat( LatencyHistogram.upperBound( index - 1 ) ).isLessThan( value );
+			}
+		}
+	}
+
+	@DisplayName( "It reports percentiles within the bucket precision" )
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for ( int millis = 1; millis <= 100; millis++ ) {
+			histogram.record( millis * 1_000_000L );
+		}
+		assertThat( histogram.getCount() ).isEqualTo( 100 );
+		assertThat( histogram.getMeanMillis() ).isWithin( 0.001 ).of( 50.5 );
+		assertThat( histogram.getMaxMillis() ).isWithin( 0.001 ).of( 100 );
+		assertThat( histogram.getPercentileMillis( 0.5 ) ).isWithin( 50 * 0.0625 ).of( 50 );
+		assertThat( histogram.getPercentileMillis( 0.99 ) ).isWithin( 99 * 0.0625 ).of( 99 );
+		assertThat( histogram.getPercentileMillis( 1 ) ).isWithin( 0.001 ).of( 100 );
+	}
+
+	@DisplayName( "It clears all values on reset" )
+	@Test
+	public void testReset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record( 5_000_000L );
+		histogram.reset();
+		assertThat( histogram.getCount() ).isEqualTo( 0 );
+		assertThat( histogram.getMeanMillis() ).isEqualTo( 0 );
+		assertThat( histogram.getMaxMillis() ).isEqualTo( 0 );
+		assertThat( histogram.getPercentileMillis( 0.99 ) ).isEqualTo( 0 );
+	}
+
+}
@@ -0,0 +1,117 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.Argon2Cost;
+import ortus.boxlang.modules.encrypt.util.CostDefaults.SCryptCost;
+import ortus.boxlang.runtime.types.Struct;
+
+public class LoadShedderTest {
+
+	@DisplayName( "It keeps the requested parameters while the executor keeps up" )
+	@Test
+	public void testIdle() {
+		KDFExecutor	executor	= new KDFExecutor( true, 1, 10, 1000 );
+		LoadShedder	shedder		= shedder( executor, 1000 );
+		Argon2Cost	requested	= new Argon2Cost( 3, 65536, 1 );
+		assertThat( shedder.isSaturated() ).isFalse();
+		assertThat( shedder.argon2( requested ) ).isSameInstanceAs( requested );
+		assertThat( shedder.bcrypt( 10 ) ).isEqualTo( 10 );
+		assertThat( shedder.shouldShed() ).isFalse();
+		assertThat( shedder.getDegradedCount() ).isEqualTo( 0 );
+		executor.shutdown();
+	}
+
+	@DisplayName( "It lowers new hashes to the floor while calls are queued" )
+	@Test
+	public void testSaturated() throws Exception {
+		KDFExecutor		executor	= new KDFExecutor( true, 1, 10, 1000 );
+		LoadShedder		shedder		= shedder( executor, 1000 );
+		CountDownLatch	started		= new CountDownLatch( 1 );
+		CountDownLatch	release		= new CountDownLatch( 1 );
+		executor.submit( () -> {
+			started.countDown();
+			return release.await( 5, TimeUnit.SECONDS );
+		} );
+		assertThat( started.await( 5, TimeUnit.SECONDS ) ).isTrue();
+		CompletableFuture<Boolean> queued = executor.submit( () -> true );
+
+		assertThat( shedder.isSaturated() ).isTrue();
+		assertThat( shedder.argon2( new Argon2Cost( 3, 65536, 1 ) ) ).isEqualTo( new Argon2Cost( 2, 19456, 1 ) );
+		assertThat( shedder.bcrypt( 12 ) ).isEqualTo( 10 );
+		// Parameters without a floor or below it are never changed
+		assertThat( shedder.bcrypt( 8 ) ).isEqualTo( 8 );
+		assertThat( shedder.scrypt( new SCryptCost( 16384, 8, 1 ) ) ).isEqualTo( new SCryptCost( 16384, 8, 1 ) );
+		assertThat( shedder.getDegradedCount() ).isEqualTo( 2 );
+
+		release.countDown();
+		assertThat( queued.get( 5, TimeUnit.SECONDS ) ).isTrue();
+		assertThat( shedder.isSaturated() ).isFalse();
+		executor.shutdown();
+	}
+
+	@DisplayName( "It rejects calls early which would not start within the queue timeout" )
+	@Test
+	public void testShed() throws Exception {
+		KDFExecutor executor = new KDFExecutor( true, 1, 10, 50 );
+		executor.execute( () -> {
+			Thread.sleep( 100 );
+			return true;
+		} );
+		LoadShedder		shedder	= shedder( executor, 50 );
+		CountDownLatch	started	= new CountDownLatch( 1 );
+		CountDownLatch	release	= new CountDownLatch( 1 );
+		executor.submit( () -> {
+			started.countDown();
+			return release.await( 5, TimeUnit.SECONDS );
+		} );
+		assertThat( started.await( 5, TimeUnit.SECONDS ) ).isTrue();
+		assertThat( shedder.shouldShed() ).isFalse();
+
+		executor.submit( () -> true );
+		// One call ahead which recently took 100 ms per slot cannot start within 50 ms
+		assertThat( shedder.shouldShed() ).isTrue();
+		assertThat( shedder.getShedCount() ).isEqualTo( 1 );
+
+		release.countDown();
+		executor.shutdown();
+	}
+
+	private static LoadShedder shedder( KDFExecutor executor, int queueWaitMillis ) {
+		return new LoadShedder( Struct.of(
+		    EncryptKeys.enabled, true,
+		    EncryptKeys.queueDepth, 1,
+		    EncryptKeys.queueWaitMillis, queueWaitMillis,
+		    EncryptKeys.floor, Struct.of(
+		        EncryptKeys.argon2, Struct.of( EncryptKeys.iterations, 2, EncryptKeys.memory, 19456 ),
+		        EncryptKeys.bcrypt, Struct.of( EncryptKeys.iterations, 10 )
+		    )
+		), executor );
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class MemoryBudgetTest {
+
+	@DisplayName( "It charges derivations by the memory of their parameters" )
+	@Test
+	public void testCost() {
+		assertThat( MemoryBudget.argon2( 65536 ) ).isEqualTo( 64L << 20 );
+		assertThat( MemoryBudget.scrypt( 16384, 8, 1 ) ).isEqualTo( 16L << 20 );
+		assertThat( MemoryBudget.cost( HashParameters.parse( "$argon2id$v=19$m=19456,t=2,p=1$c2FsdHNhbHRzYWx0c2FsdA$a2V5" ) ) )
+		    .isEqualTo( 19456L << 10 );
+		assertThat( MemoryBudget.cost( HashParameters.parse( PasswordHasher.scrypt( new byte[] { 1 }, 16, 1024, 8, 2, 32 ) ) ) )
+		    .isEqualTo( 2L << 20 );
+		assertThat( MemoryBudget.cost( HashParameters.parse( BCryptCodec.hash( new byte[] { 1 }, BCryptCodec.gensalt( 4 ) ) ) ) ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It makes derivations wait until their memory fits into the budget" )
+	@Test
+	public void testAdmission() throws InterruptedException {
+		MemoryBudget	budget		= new MemoryBudget( true, 64L << 20, 5000 );
+		CountDownLatch	running		= new CountDownLatch( 1 );
+		CountDownLatch	release		= new CountDownLatch( 1 );
+		CountDownLatch	admitted	= new CountDownLatch( 1 );
+		Thread			first		= new Thread( () -> budget.admit( 48L << 20, () -> {
+										running.countDown();
+										await( release );
+										return null;
+									} ) );
+		first.start();
+		running.await();
+		assertThat( budget.getInUse() ).isEqualTo( 48L << 20 );
+
+		Thread second = new Thread( () -> budget.admit( 32L << 20, () -> {
+			admitted.countDown();
+			return null;
+		} ) );
+		second.start();
+		assertThat( admitted.await( 200, TimeUnit.MILLISECONDS ) ).isFalse();
+		assertThat( budget.getWaiting() ).isEqualTo( 1 );
+
+		release.countDown();
+		assertThat( admitted.await( 5, TimeUnit.SECONDS ) ).isTrue();
+		first.join();
+		second.join();
+		assertThat( budget.getInUse() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It rejects derivations which cannot be admitted in time and admits oversized ones alone" )
+	@Test
+	public void testBusy() {
+		MemoryBudget budget = new MemoryBudget( true, 16L << 20, 50 );
+		assertThat( budget.admit( 1L << 30, () -> budget.getInUse() ) ).isEqualTo( 16L << 20 );
+		BoxRuntimeException e = assertThrows( BoxRuntimeException.class,
+		    () -> budget.admit( 12L << 20, () -> budget.admit( 8L << 20, () -> null ) ) );
+		assertThat( e.getType() ).isEqualTo( KDFExecutor.BUSY_TYPE );
+		assertThat( budget.getBusyCount() ).isEqualTo( 1 );
+		assertThat( budget.getInUse() ).isEqualTo( 0 );
+
+		MemoryBudget disabled = new MemoryBudget( false, 1 << 20, 0 );
+		assertThat( disabled.admit( 1L << 30, () -> disabled.getInUse() ) ).isEqualTo( 0 );
+	}
+
+	private static void await( CountDownLatch latch ) {
+		try {
+			latch.await();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
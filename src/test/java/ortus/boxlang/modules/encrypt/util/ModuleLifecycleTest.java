@@ -0,0 +1,47 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ModuleLifecycleTest {
+
+	@DisplayName( "It releases every instance once, the last created first, even when one release fails" )
+	@Test
+	public void testUnload() {
+		List<String> released = new ArrayList<>();
+		ModuleLifecycle.onUnload( "executor", released::add );
+		ModuleLifecycle.onUnload( "salts", name -> {
+			throw new IllegalStateException( "boom" );
+		} );
+		ModuleLifecycle.onUnload( "metrics", released::add );
+
+		ModuleLifecycle.unload();
+		assertThat( released ).containsExactly( "metrics", "executor" ).inOrder();
+
+		ModuleLifecycle.unload();
+		assertThat( released ).hasSize( 2 );
+	}
+
+}
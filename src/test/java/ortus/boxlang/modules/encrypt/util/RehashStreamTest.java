@@ -0,0 +1,129 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ortus.boxlang.modules.encrypt.types.EncryptKeys;
+import ortus.boxlang.runtime.scopes.Key;
+import ortus.boxlang.runtime.types.IStruct;
+import ortus.boxlang.runtime.types.Struct;
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class RehashStreamTest {
+
+	@TempDir
+	Path tempDir;
+
+	private RehashStream stream( int chunkSize ) {
+		return new RehashStream( new PasswordHasher( "bcrypt", Struct.of( EncryptKeys.iterations, 5 ) ), "id", "hash", chunkSize, 0 );
+	}
+
+	@DisplayName( "It splits CSV lines and parses flat JSON objects" )
+	@Test
+	public void testParsers() {
+		assertThat( RehashStream.parseCsv( "1,\"a,\"\"b\"\"\",," ) ).containsExactly( "1", "a,\"b\"", "", "" ).inOrder();
+		assertThat( RehashStream.parseJson( "{ \"ID\" : 7, \"hash\":\"a\\\"\\u0041\", \"x\": null }" ) ).containsExactly( "ID", "7", "hash", "a\"A", "x", null );
+		assertThrows( BoxRuntimeException.class, () -> RehashStream.parseJson( "{\"hash\":[1]}" ) );
+		assertThrows( BoxRuntimeException.class, () -> RehashStream.parseJson( "{\"hash\":\"a\"" ) );
+	}
+
+	@DisplayName( "It re-hashes an NDJSON file and writes failures in place" )
+	@Test
+	public void testNdjson() throws Exception {
+		Path	source		= tempDir.resolve( "legacy.ndjson" );
+		Path	destination	= tempDir.resolve( "rehashed.ndjson" );
+		Path	checkpoint	= tempDir.resolve( "rehashed.checkpoint" );
+		Files.writeString( source, "{\"id\":1,\"hash\":\"5f4dcc3b\"}\n\n{\"id\":2}\n{\"id\":3,\"hash\":\"e10adc39\"}\n" );
+
+		IStruct result = stream( 2 ).run( source, destination, checkpoint );
+		assertThat( result.get( EncryptKeys.records ) ).isEqualTo( 3L );
+		assertThat( result.get( EncryptKeys.processed ) ).isEqualTo( 2L );
+		assertThat( result.get( EncryptKeys.failed ) ).isEqualTo( 1L );
+		assertThat( Files.exists( checkpoint ) ).isFalse();
+
+		List<String> lines = Files.readAllLines( destination, StandardCharsets.UTF_8 );
+		assertThat( lines ).hasSize( 3 );
+		assertThat( PasswordHasher.verify( "5f4dcc3b", RehashStream.parseJson( lines.get( 0 ) ).get( "hashed" ) ) ).isTrue();
+		assertThat( RehashStream.parseJson( lines.get( 1 ) ) ).containsEntry( "error", "The record has no [hash] value" );
+		assertThat( RehashStream.parseJson( lines.get( 2 ) ) ).containsEntry( "id", "3" );
+	}
+
+	@DisplayName( "It re-hashes a CSV file by column name" )
+	@Test
+	public void testCsv() throws Exception {
+		Path	source		= tempDir.resolve( "legacy.csv" );
+		Path	destination	= tempDir.resolve( "rehashed.csv" );
+		Files.writeString( source, "Hash,Name,ID\n\"5f4d,cc3b\",alice,a1\n" );
+
+		stream( 10 ).run( source, destination, tempDir.resolve( "checkpoint" ) );
+		List<String> lines = Files.readAllLines( destination, StandardCharsets.UTF_8 );
+		assertThat( lines.get( 0 ) ).isEqualTo( "id,hashed,error" );
+		List<String> fields = RehashStream.parseCsv( lines.get( 1 ) );
+		assertThat( fields.get( 0 ) ).isEqualTo( "a1" );
+		assertThat( PasswordHasher.verify( "5f4d,cc3b", fields.get( 1 ) ) ).isTrue();
+	}
+
+	@DisplayName( "It resumes after the last completed chunk" )
+	@Test
+	public void testResume() throws Exception {
+		Path	source		= tempDir.resolve( "legacy.ndjson" );
+		Path	destination	= tempDir.resolve( "rehashed.ndjson" );
+		Path	checkpoint	= tempDir.resolve( "rehashed.checkpoint" );
+		Files.writeString( source, "{\"id\":1,\"hash\":\"a\"}\n{\"id\":2,\"hash\":\"b\"}\n{\"id\":3,\"hash\":\"c\"}\n{\"id\":4,\"hash\":\n{\"id\":5,\"hash\":\"e\"}\n" );
+
+		assertThrows( BoxRuntimeException.class, () -> stream( 2 ).run( source, destination, checkpoint ) );
+		assertThat( Files.exists( checkpoint ) ).isTrue();
+
+		Files.writeString( source, Files.readString( source ).replace( "\"hash\":\n", "\"hash\":\"d\"}\n" ) );
+		IStruct result = stream( 2 ).run( source, destination, checkpoint );
+		assertThat( result.get( EncryptKeys.resumed ) ).isEqualTo( 2L );
+		assertThat( result.get( EncryptKeys.processed ) ).isEqualTo( 3L );
+
+		List<String> lines = Files.readAllLines( destination, StandardCharsets.UTF_8 );
+		assertThat( lines ).hasSize( 5 );
+		for ( int i = 0; i < lines.size(); i++ ) {
+			assertThat( RehashStream.parseJson( lines.get( i ) ) ).containsEntry( "id", String.valueOf( i + 1 ) );
+		}
+	}
+
+	@DisplayName( "It re-hashes the rows of a query" )
+	@Test
+	public void testRows() throws Exception {
+		Path			destination	= tempDir.resolve( "rehashed.ndjson" );
+		List<IStruct>	rows		= List.of(
+		    Struct.of( Key.of( "id" ), 1, Key.of( "hash" ), "a" ),
+		    Struct.of( Key.of( "id" ), 2, Key.of( "hash" ), "b" )
+		);
+
+		IStruct result = stream( 1 ).run( rows, destination, tempDir.resolve( "checkpoint" ) );
+		assertThat( result.get( EncryptKeys.processed ) ).isEqualTo( 2L );
+		assertThat( Files.readAllLines( destination, StandardCharsets.UTF_8 ) ).hasSize( 2 );
+	}
+
+}
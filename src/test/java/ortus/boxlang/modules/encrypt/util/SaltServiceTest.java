@@ -0,0 +1,81 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class SaltServiceTest {
+
+	@DisplayName( "It generates distinct salts of any length on demand" )
+	@Test
+	public void testOnDemand() {
+		SaltService		salts	= new SaltService( "DRBG", 0 );
+		Set<ByteBuffer>	seen	= new HashSet<>();
+		for ( int i = 0; i < 1000; i++ ) {
+			assertThat( seen.add( ByteBuffer.wrap( salts.salt( 16 ) ) ) ).isTrue();
+		}
+		assertThat( salts.salt( 0 ) ).hasLength( 0 );
+		assertThat( salts.salt( 37 ) ).hasLength( 37 );
+		assertThat( salts.getPoolSize() ).isEqualTo( 0 );
+		assertThat( salts.getHits() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It hands out every pooled slot once and falls back when the pool is drained" )
+	@Test
+	public void testPool() throws InterruptedException {
+		SaltService salts = new SaltService( "DRBG", 100 );
+		assertThat( salts.getPoolSize() ).isEqualTo( 128 );
+		// Give the refiller a moment to fill the ring before draining it
+		Thread.sleep( 200 );
+		Set<ByteBuffer> seen = new HashSet<>();
+		for ( int i = 0; i < 2000; i++ ) {
+			byte[] salt = salts.salt( i % 2 == 0 ? 16 : 40 );
+			assertThat( seen.add( ByteBuffer.wrap( salt ) ) ).isTrue();
+		}
+		assertThat( salts.getHits() ).isGreaterThan( 0L );
+		assertThat( salts.getHits() + salts.getMisses() ).isAtLeast( 2000L );
+	}
+
+	@DisplayName( "It keeps handing out salts once shut down" )
+	@Test
+	public void testShutdown() {
+		SaltService salts = new SaltService( "DRBG", 16 );
+		salts.shutdown();
+		Set<ByteBuffer> seen = new HashSet<>();
+		for ( int i = 0; i < 100; i++ ) {
+			assertThat( seen.add( ByteBuffer.wrap( salts.salt( 16 ) ) ) ).isTrue();
+		}
+	}
+
+	@DisplayName( "It rejects unknown SecureRandom algorithms" )
+	@Test
+	public void testUnknownAlgorithm() {
+		assertThrows( BoxRuntimeException.class, () -> new SaltService( "NoSuchPRNG", 0 ) );
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mindrot.jbcrypt.BCrypt;
+
+public class SecretsTest {
+
+	static final String[] PASSWORDS = {
+	    "",
+	    "password",
+	    "pässwörd",
+	    "日本語",
+	    "emoji 😀",
+	    "unpaired \ud800 surrogate",
+	    "long".repeat( 50 )
+	};
+
+	@DisplayName( "It encodes like String.getBytes( UTF_8 )" )
+	@Test
+	public void testEncode() {
+		for ( String password : PASSWORDS ) {
+			byte[] bytes = Secrets.encode( password );
+			assertThat( bytes ).isEqualTo( password.getBytes( StandardCharsets.UTF_8 ) );
+			Secrets.release( bytes );
+		}
+	}
+
+	@DisplayName( "It zeroes released buffers and reuses them per thread" )
+	@Test
+	public void testRelease() {
+		byte[]	first	= Secrets.encode( "secret" );
+		byte[]	nested	= Secrets.encode( "shhhhh" );
+		assertThat( nested ).isNotSameInstanceAs( first );
+
+		Secrets.release( first );
+		assertThat( first ).isEqualTo( new byte[ 6 ] );
+		assertThat( Secrets.acquire( 6 ) ).isSameInstanceAs( first );
+		Secrets.release( nested );
+	}
+
+	@DisplayName( "It leaves the caller's buffer untouched" )
+	@Test
+	public void testByteBuffer() {
+		ByteBuffer	buffer	= ByteBuffer.wrap( "secret".getBytes( StandardCharsets.UTF_8 ) );
+		String		copied	= Secrets.withBytes( buffer, bytes -> new String( bytes, StandardCharsets.UTF_8 ) );
+		assertThat( copied ).isEqualTo( "secret" );
+		assertThat( buffer.remaining() ).isEqualTo( 6 );
+		assertThat( buffer.get( 0 ) ).isEqualTo( ( byte ) 's' );
+	}
+
+	@DisplayName( "It produces the same BCrypt hashes as jBCrypt" )
+	@Test
+	public void testBCryptCodec() {
+		for ( String password : PASSWORDS ) {
+			String	salt	= BCrypt.gensalt( 4 );
+			String	hashed	= Secrets.withUtf8( password, bytes -> BCryptCodec.hash( bytes, salt ) );
+			assertThat( hashed ).isEqualTo( BCrypt.hashpw( password, salt ) );
+		}
+		String hashed = BCrypt.hashpw( "password", BCrypt.gensalt( 4 ) );
+		assertThat( PasswordHasher.verifyBCrypt( "password", "$2y$" + hashed.substring( 4 ) ) ).isTrue();
+		assertThat( PasswordHasher.verifyBCrypt( "Password", hashed ) ).isFalse();
+	}
+
+}
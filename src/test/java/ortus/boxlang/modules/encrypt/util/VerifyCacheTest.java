@@ -0,0 +1,97 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class VerifyCacheTest {
+
+	@DisplayName( "It leaves verifications untouched when disabled" )
+	@Test
+	public void testDisabled() {
+		VerifyCache			cache	= new VerifyCache( false, 60000, 1000 );
+		Callable<Boolean>	work	= () -> true;
+		assertThat( cache.remember( "$2a$10$hash", "secret", work ) ).isSameInstanceAs( work );
+		cache.put( "$2a$10$hash", "secret" );
+		assertThat( cache.contains( "$2a$10$hash", "secret" ) ).isFalse();
+		assertThat( cache.getSize() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It remembers successful verifications only" )
+	@Test
+	public void testRemember() throws Exception {
+		VerifyCache		cache	= new VerifyCache( true, 60000, 1000 );
+		AtomicInteger	calls	= new AtomicInteger();
+		assertThat( cache.remember( "$2a$10$hash", "wrong", () -> calls.incrementAndGet() < 0 ).call() ).isFalse();
+		assertThat( cache.contains( "$2a$10$hash", "wrong" ) ).isFalse();
+
+		assertThat( cache.remember( "$2a$10$hash", "secret", () -> calls.incrementAndGet() > 0 ).call() ).isTrue();
+		assertThat( cache.contains( "$2a$10$hash", "secret" ) ).isTrue();
+		// The entry belongs to this hash and plaintext only
+		assertThat( cache.contains( "$2a$10$hash", "Secret" ) ).isFalse();
+		assertThat( cache.contains( "$2a$10$other", "secret" ) ).isFalse();
+		assertThat( calls.get() ).isEqualTo( 2 );
+		assertThat( cache.getHits() ).isEqualTo( 1 );
+		assertThat( cache.getMisses() ).isEqualTo( 3 );
+	}
+
+	@DisplayName( "It never returns an expired entry" )
+	@Test
+	public void testExpiry() throws Exception {
+		VerifyCache cache = new VerifyCache( true, 50, 1000 );
+		cache.put( "$2a$10$hash", "secret" );
+		assertThat( cache.contains( "$2a$10$hash", "secret" ) ).isTrue();
+		Thread.sleep( 100 );
+		assertThat( cache.contains( "$2a$10$hash", "secret" ) ).isFalse();
+		assertThat( cache.getSize() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It invalidates a single hash or the whole cache" )
+	@Test
+	public void testInvalidate() {
+		VerifyCache cache = new VerifyCache( true, 60000, 1000 );
+		cache.put( "$2a$10$first", "secret" );
+		cache.put( "$2a$10$second", "secret" );
+		assertThat( cache.invalidate( "$2a$10$first" ) ).isTrue();
+		assertThat( cache.invalidate( "$2a$10$first" ) ).isFalse();
+		assertThat( cache.contains( "$2a$10$first", "secret" ) ).isFalse();
+		assertThat( cache.contains( "$2a$10$second", "secret" ) ).isTrue();
+		cache.clear();
+		assertThat( cache.getSize() ).isEqualTo( 0 );
+	}
+
+	@DisplayName( "It bounds the number of entries" )
+	@Test
+	public void testBound() {
+		VerifyCache cache = new VerifyCache( true, 60000, 64 );
+		for ( int i = 0; i < 1000; i++ ) {
+			cache.put( "$2a$10$hash" + i, "secret" );
+		}
+		assertThat( cache.getSize() ).isAtMost( 64 );
+		assertThat( cache.getSize() ).isGreaterThan( 0 );
+		// The most recent entry is kept
+		assertThat( cache.contains( "$2a$10$hash999", "secret" ) ).isTrue();
+	}
+
+}
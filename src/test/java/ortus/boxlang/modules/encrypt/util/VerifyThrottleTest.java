@@ -0,0 +1,117 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import ortus.boxlang.runtime.types.exceptions.BoxRuntimeException;
+
+public class VerifyThrottleTest {
+
+	@DisplayName( "It leaves verifications untouched when disabled or without a principal" )
+	@Test
+	public void testUntracked() {
+		Callable<Boolean> work = () -> false;
+		assertThat( new VerifyThrottle( false, 1, 60000, 1000 ).guard( "alice", work ) ).isSameInstanceAs( work );
+		assertThat( new VerifyThrottle( true, 1, 60000, 1000 ).guard( null, work ) ).isSameInstanceAs( work );
+	}
+
+	@DisplayName( "It rejects a principal after too many failed verifications" )
+	@Test
+	public void testFailures() throws Exception {
+		VerifyThrottle throttle = new VerifyThrottle( true, 3, 60000, 1000 );
+		for ( int i = 0; i < 3; i++ ) {
+			assertThat( throttle.guard( "alice", () -> false ).call() ).isFalse();
+		}
+		BoxRuntimeException e = assertThrows( BoxRuntimeException.class, () -> throttle.guard( "alice", () -> true ) );
+		assertThat( e.getType() ).isEqualTo( VerifyThrottle.THROTTLED_TYPE );
+		assertThat( throttle.getThrottledCount() ).isEqualTo( 1 );
+		// Other principals are not affected
+		assertThat( throttle.guard( "bob", () -> false ).call() ).isFalse();
+	}
+
+	@DisplayName( "It does not count successful verifications" )
+	@Test
+	public void testSuccesses() throws Exception {
+		VerifyThrottle throttle = new VerifyThrottle( true, 3, 60000, 1000 );
+		for ( int i = 0; i < 20; i++ ) {
+			assertThat( throttle.guard( "alice", () -> true ).call() ).isTrue();
+		}
+		throttle.guard( "alice", () -> false ).call();
+		throttle.guard( "alice", () -> false ).call();
+		assertThat( throttle.guard( "alice", () -> true ).call() ).isTrue();
+	}
+
+	@DisplayName( "It lets a principal through again once its failures slide out of the window" )
+	@Test
+	public void testWindow() throws Exception {
+		VerifyThrottle throttle = new VerifyThrottle( true, 2, 100, 1000 );
+		// Failures on both sides of a window boundary are weighted, so it may take a third one
+		assertThrows( BoxRuntimeException.class, () -> {
+			for ( int i = 0; i < 10; i++ ) {
+				throttle.guard( "alice", () -> false ).call();
+			}
+		} );
+		Thread.sleep( 250 );
+		assertThat( throttle.acquire( "alice" ) ).isNotEqualTo( VerifyThrottle.UNTRACKED );
+	}
+
+	@DisplayName( "It bounds the number of tracked principals" )
+	@Test
+	public void testBounded() {
+		VerifyThrottle throttle = new VerifyThrottle( true, 10, 60000, 256 );
+		for ( int i = 0; i < 10000; i++ ) {
+			throttle.acquire( "user" + i );
+		}
+		assertThat( throttle.getPrincipalCount() ).isAtMost( 256L );
+	}
+
+	@DisplayName( "It never lets more concurrent failures through than the limit" )
+	@Test
+	public void testConcurrent() throws Exception {
+		VerifyThrottle	throttle	= new VerifyThrottle( true, 50, 60000, 1000 );
+		AtomicInteger	admitted	= new AtomicInteger();
+		ExecutorService	threads		= Executors.newFixedThreadPool( 8 );
+		for ( int t = 0; t < 8; t++ ) {
+			threads.execute( () -> {
+				for ( int i = 0; i < 100; i++ ) {
+					try {
+						throttle.acquire( "alice" );
+						admitted.incrementAndGet();
+					} catch ( BoxRuntimeException e ) {
+						// Throttled
+					}
+				}
+			} );
+		}
+		threads.shutdown();
+		assertThat( threads.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue();
+		assertThat( admitted.get() ).isEqualTo( 50 );
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+ * [BoxLang]
+ *
+ * Copyright [2023] [Ortus Solutions, Corp]
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ortus.boxlang.modules.encrypt.engines;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BlockMix with Salsa20/8 for {@link JavaSCrypt} on the incubating Vector API, four 32-bit words per lane operation.
+ * <p>
+ * The 16 words of a block are held as its four diagonals {@code ( 0, 5, 10, 15 )}, {@code ( 4, 9, 14, 3 )}, {@code ( 8, 13, 2, 7 )} and
+ * {@code ( 12, 1, 6, 11 )}, so the four quarter-rounds of a column round are one quarter-round on vectors. Rotating the lanes of three
+ * of the vectors lines the rows up for the row round, and rotating them back restores the diagonals. The Salsa20/8 state stays in
+ * registers for the whole BlockMix: each block is loaded as four rows and blended into diagonals, and blended back into rows when it
+ * is stored. Blends are used rather than gather and scatter, which are slower and have crashed the C2 compiler of earlier JDKs.
+ * <p>
+ * This class lives in the {@code vector} source set, the only code compiled against the incubating module, and is packaged into the
+ * same jar. {@link JavaSCrypt} only loads it, by name, once it has found the {@code jdk.incubator.vector} module in the boot layer,
+ * which takes {@code --add-modules jdk.incubator.vector} on the command line of the JVM.
+ */
+final class Salsa20Vector implements JavaSCrypt.Salsa20Core {
+
+	private static final VectorSpecies<Integer>	SPECIES		= IntVector.SPECIES_128;
+	private static final VectorMask<Integer>	LANE_1		= VectorMask.fromLong( SPECIES, 0b0010 );
+	private static final VectorMask<Integer>	LANE_2		= VectorMask.fromLong( SPECIES, 0b0100 );
+	private static final VectorMask<Integer>	LANE_3		= VectorMask.fromLong( SPECIES, 0b1000 );
+	private static final VectorShuffle<Integer>	ROTATE_1	= VectorShuffle.iota( SPECIES, 1, 1, true );
+	private static final VectorShuffle<Integer>	ROTATE_2	= VectorShuffle.iota( SPECIES, 2, 1, true );
+	private static final VectorShuffle<Integer>	ROTATE_3	= VectorShuffle.iota( SPECIES, 3, 1, true );
+
+	Salsa20Vector() {
+	}
+
+	/**
+	 * Whether the vector BlockMix runs on SIMD registers of at least 128 bits on this host and matches the scalar BlockMix.
+	 *
+	 * @return True if the vector BlockMix can replace the scalar one
+	 */
+	@Override
+	public boolean isSupported() {
+		if ( IntVector.SPECIES_PREFERRED.vectorBitSize() < SPECIES.vectorBitSize() ) {
+			// Without SIMD registers the Vector API falls back to plain Java, which is slower than the scalar core
+			return false;
+		}
+		int		r		= 2;
+		int[]	scalar	= new Random( 7914 ).ints( 96 * r + 16 ).toArray();
+		int[]	vector	= scalar.clone();
+		JavaSCrypt.blockMix( scalar, 0, 32 * r, r, false );
+		blockMix( vector, 0, 32 * r, r );
+		return Arrays.equals( scalar, 0, 64 * r, vector, 0, 64 * r );
+	}
+
+	/**
+	 * BlockMix with Salsa20/8 from {@code work[ in, in + 32 * r )} into {@code work[ out, out + 32 * r )}.
+	 *
+	 * @param work The work buffer
+	 * @param in   The offset of the input blocks
+	 * @param out  The offset of the output blocks
+	 * @param r    The memory cost
+	 */
+	@Override
+	public void blockMix( int[] work, int in, int out, int r ) {
+		int			last	= in + ( 2 * r - 1 ) * 16;
+		IntVector	row0	= IntVector.fromArray( SPECIES, work, last );
+		IntVector	row1	= IntVector.fromArray( SPECIES, work, last + 4 );
+		IntVector	row2	= IntVector.fromArray( SPECIES, work, last + 8 );
+		IntVector	row3	= IntVector.fromArray( SPECIES, work, last + 12 );
+		IntVector	a		= diagonal( row0, row1, row2, row3 );
+		IntVector	b		= diagonal( row1, row2, row3, row0 );
+		IntVector	c		= diagonal( row2, row3, row0, row1 );
+		IntVector	d		= diagonal( row3, row0, row1, row2 );
+
+		for ( int i = 0; i < 2 * r; i++ ) {
+			int block = in + i * 16;
+			row0	= IntVector.fromArray( SPECIES, work, block );
+			row1	= IntVector.fromArray( SPECIES, work, block + 4 );
+			row2	= IntVector.fromArray( SPECIES, work, block + 8 );
+			row3	= IntVector.fromArray( SPECIES, work, block + 12 );
+			a		= a.lanewise( VectorOperators.XOR, diagonal( row0, row1, row2, row3 ) );
+			b		= b.lanewise( VectorOperators.XOR, diagonal( row1, row2, row3, row0 ) );
+			c		= c.lanewise( VectorOperators.XOR, diagonal( row2, row3, row0, row1 ) );
+			d		= d.lanewise( VectorOperators.XOR, diagonal( row3, row0, row1, row2 ) );
+
+			IntVector	x0	= a;
+			IntVector	x1	= b;
+			IntVector	x2	= c;
+			IntVector	x3	= d;
+			for ( int round = 0; round < 8; round += 2 ) {
+				// columns
+				x1	= x1.lanewise( VectorOperators.XOR, x0.add( x3 ).lanewise( VectorOperators.ROL, 7 ) );
+				x2	= x2.lanewise( VectorOperators.XOR, x1.add( x0 ).lanewise( VectorOperators.ROL, 9 ) );
+				x3	= x3.lanewise( VectorOperators.XOR, x2.add( x1 ).lanewise( VectorOperators.ROL, 13 ) );
+				x0	= x0.lanewise( VectorOperators.XOR, x3.add( x2 ).lanewise( VectorOperators.ROL, 18 ) );
+				// rows: ( 1, 6, 11, 12 ), ( 2, 7, 8, 13 ) and ( 3, 4, 9, 14 ) line up with the diagonal ( 0, 5, 10, 15 )
+				x3	= x3.rearrange( ROTATE_1 );
+				x2	= x2.rearrange( ROTATE_2 );
+				x1	= x1.rearrange( ROTATE_3 );
+				x3	= x3.lanewise( VectorOperators.XOR, x0.add( x1 ).lanewise( VectorOperators.ROL, 7 ) );
+				x2	= x2.lanewise( VectorOperators.XOR, x3.add( x0 ).lanewise( VectorOperators.ROL, 9 ) );
+				x1	= x1.lanewise( VectorOperators.XOR, x2.add( x3 ).lanewise( VectorOperators.ROL, 13 ) );
+				x0	= x0.lanewise( VectorOperators.XOR, x1.add( x2 ).lanewise( VectorOperators.ROL, 18 ) );
+				x3	= x3.rearrange( ROTATE_3 );
+				x2	= x2.rearrange( ROTATE_2 );
+				x1	= x1.rearrange( ROTATE_1 );
+			}
+			a	= a.add( x0 );
+			b	= b.add( x1 );
+			c	= c.add( x2 );
+			d	= d.add( x3 );
+
+			// Even blocks go to the first half of the output, odd blocks to the second
+			int target = out + ( ( i & 1 ) * r + ( i >>> 1 ) ) * 16;
+			// The rows are the diagonals taken in the opposite order: row 0 is ( a0, d1, c2, b3 ), row 1 is ( b0, a1, d2, c3 ), ...
+			diagonal( a, d, c, b ).intoArray( work, target );
+			diagonal( b, a, d, c ).intoArray( work, target + 4 );
+			diagonal( c, b, a, d ).intoArray( work, target + 8 );
+			diagonal( d, c, b, a ).intoArray( work, target + 12 );
+		}
+	}
+
+	/**
+	 * Takes lane 0 of the first vector, lane 1 of the second, lane 2 of the third and lane 3 of the fourth.
+	 */
+	private static IntVector diagonal( IntVector first, IntVector second, IntVector third, IntVector fourth ) {
+		return first.blend( second, LANE_1 ).blend( third, LANE_2 ).blend( fourth, LANE_3 );
+	}
+
+}